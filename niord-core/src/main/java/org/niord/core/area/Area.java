@@ -17,6 +17,7 @@ package org.niord.core.area;
 
 import com.vividsolutions.jts.geom.Geometry;
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.area.vo.SystemAreaVo;
 import org.niord.core.area.vo.SystemAreaVo.AreaMessageSorting;
 import org.niord.core.geojson.JtsConverter;
@@ -46,6 +47,7 @@ import java.util.stream.Collectors;
  * Represents a specific named area, part of an area-hierarchy
  */
 @Entity
+@BatchSize(size = 100)
 @Cacheable
 @NamedQueries({
         @NamedQuery(name="Area.findByLegacyId",
@@ -74,6 +76,7 @@ public class Area extends TreeBaseEntity<Area> implements ILocalizable<AreaDesc>
     Geometry geometry;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = 100)
     List<AreaDesc> descs = new ArrayList<>();
 
     AreaMessageSorting messageSorting;
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+/**
+ * CDI event fired by {@code AtonService} whenever AtoNs have been created or updated.
+ * <p>
+ * Observers that need to see the committed state of the AtoNs should observe the event using
+ * {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)}.
+ */
+@SuppressWarnings("unused")
+public class AtonChangeEvent {
+
+    final int count;
+
+    /** Constructor **/
+    public AtonChangeEvent(int count) {
+        this.count = count;
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return "AtonChangeEvent{" +
+                "count=" + count +
+                '}';
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import org.hibernate.search.indexes.interceptor.EntityIndexingInterceptor;
+import org.hibernate.search.indexes.interceptor.IndexingOverride;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hibernate Search interceptor that allows the automatic indexing of AtoNs to be suspended.
+ * <p>
+ * Used by bulk imports, which index the imported AtoNs in batches once the import has completed,
+ * instead of updating the index for every single persisted AtoN.
+ * <p>
+ * The suspension only applies to the current thread, i.e. the thread running the import, and
+ * the IDs of the AtoNs whose indexing has been skipped are returned upon resuming the indexing.
+ */
+public class AtonIndexingInterceptor implements EntityIndexingInterceptor<AtonNode> {
+
+    private static final ThreadLocal<Set<Integer>> skippedIds = new ThreadLocal<>();
+
+
+    /** Suspends the automatic indexing of AtoNs in the current thread **/
+    public static void suspendIndexing() {
+        if (skippedIds.get() == null) {
+            skippedIds.set(new HashSet<>());
+        }
+    }
+
+
+    /**
+     * Resumes the automatic indexing of AtoNs in the current thread.
+     *
+     * @return the IDs of the AtoNs that were not indexed whilst the indexing was suspended
+     */
+    public static Set<Integer> resumeIndexing() {
+        Set<Integer> ids = skippedIds.get();
+        skippedIds.remove();
+        return ids != null ? ids : new HashSet<>();
+    }
+
+
+    /** Returns if the automatic indexing of AtoNs is currently suspended in the current thread **/
+    public static boolean isIndexingSuspended() {
+        return skippedIds.get() != null;
+    }
+
+
+    /** Returns the indexing override to use for the current state, and records the skipped AtoNs **/
+    private IndexingOverride override(AtonNode entity) {
+        Set<Integer> ids = skippedIds.get();
+        if (ids != null && entity.getId() != null) {
+            ids.add(entity.getId());
+            return IndexingOverride.SKIP;
+        }
+        return IndexingOverride.APPLY_DEFAULT;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public IndexingOverride onAdd(AtonNode entity) {
+        return override(entity);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public IndexingOverride onUpdate(AtonNode entity) {
+        return override(entity);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public IndexingOverride onDelete(AtonNode entity) {
+        return IndexingOverride.APPLY_DEFAULT;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public IndexingOverride onCollectionUpdate(AtonNode entity) {
+        return override(entity);
+    }
+}
@@ -33,11 +33,16 @@ import javax.persistence.OneToMany;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
 import javax.persistence.Transient;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -51,7 +56,7 @@ import java.util.stream.Collectors;
  * http://wiki.openstreetmap.org/wiki/Elements
  */
 @Entity
-@Indexed
+@Indexed(interceptor = AtonIndexingInterceptor.class)
 @NamedQueries({
         @NamedQuery(name  = "AtonNode.deleteAll",
                 query = "delete from AtonNode"),
@@ -65,6 +70,9 @@ import java.util.stream.Collectors;
 @SuppressWarnings("unused")
 public class AtonNode extends BaseEntity<Integer> {
 
+    /** Position changes smaller than this, in degrees, are not considered AtoN changes **/
+    public static final double POSITION_PRECISION = 0.00001;
+
     double lat;
     double lon;
     String user;
@@ -224,20 +232,75 @@ public class AtonNode extends BaseEntity<Integer> {
     /**
      * Checks if the values of the template has changed.
      * Only checks relevant values, such as position and the tags of the template.
+     * Positions are compared in units of {@code POSITION_PRECISION}, as for the content hash.
      *
      * @param template the template to compare with
      * @return if the AtoN has changed
      */
     @Transient
     public boolean hasChanged(AtonNode template) {
-        return Math.abs(template.getLat() - lat) > 0.00001 ||
-                Math.abs(template.getLon() - lon) > 0.00001 ||
+        return roundPosition(template.getLat()) != roundPosition(lat) ||
+                roundPosition(template.getLon()) != roundPosition(lon) ||
                 template.isVisible() != visible ||
                 template.getTags().stream()
                         .anyMatch(t -> !Objects.equals(t.getV(), getTagValue(t.getK())));
     }
 
 
+    /**
+     * Returns a hash of the values checked by {@code hasChanged()}, i.e. position, visibility and tags.
+     * If two AtoNs have the same content hash, neither will have changed compared to the other.
+     *
+     * @return the content hash of the AtoN
+     */
+    @Transient
+    public long contentHash() {
+        Map<String, String> tagMap = new TreeMap<>();
+        tags.forEach(t -> tagMap.put(t.getK(), t.getV()));
+        return contentHash(lat, lon, visible, tagMap);
+    }
+
+
+    /**
+     * Computes the content hash of an AtoN from its position, visibility and tags
+     *
+     * @param lat the latitude
+     * @param lon the longitude
+     * @param visible the visibility
+     * @param tags the tags
+     * @return the content hash
+     */
+    public static long contentHash(double lat, double lon, boolean visible, Map<String, String> tags) {
+        StringBuilder str = new StringBuilder()
+                .append(roundPosition(lat)).append('|')
+                .append(roundPosition(lon)).append('|')
+                .append(visible);
+        new TreeMap<>(tags).forEach((k, v) -> str.append('|').append(k).append('=').append(v));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(str.toString().getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int x = 0; x < 8; x++) {
+                hash = (hash << 8) | (digest[x] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            return str.toString().hashCode();
+        }
+    }
+
+
+    /**
+     * Rounds the latitude or longitude to a whole number of {@code POSITION_PRECISION} units
+     *
+     * @param degrees the latitude or longitude
+     * @return the rounded position
+     */
+    private static long roundPosition(double degrees) {
+        return Math.round(degrees / POSITION_PRECISION);
+    }
+
+
     /**
      * Updates the node with values of the template.
      * Tags not present in the template are left unchanged.
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, packed in-memory index of the positions of all AtoNs.
+ * <p>
+ * The AtoNs are sorted by the Z-order (quadkey) of their spherical mercator position. Hence, the AtoNs
+ * of any XYZ map tile occupy a contiguous range of the index, which is looked up by binary search.
+ * The positions, IDs and seamark types of the AtoNs are stored in primitive arrays.
+ */
+@SuppressWarnings("unused")
+public class AtonPositionIndex {
+
+    /** The number of bits per mercator axis, i.e. the max zoom level of the index **/
+    public static final int MAX_ZOOM = 31;
+
+    private static final double WORLD_SIZE = 1L << MAX_ZOOM;
+
+    final long[] keys;
+    final double[] lonLats;
+    final int[] ids;
+    final short[] types;
+    final String[] typeNames;
+    final long checksum;
+
+
+    /** Constructor **/
+    private AtonPositionIndex(long[] keys, double[] lonLats, int[] ids, short[] types, String[] typeNames) {
+        this.keys = keys;
+        this.lonLats = lonLats;
+        this.ids = ids;
+        this.types = types;
+        this.typeNames = typeNames;
+
+        long hash = 1L;
+        for (int i = 0; i < ids.length; i++) {
+            hash = 31L * hash + ids[i];
+            hash = 31L * hash + Double.doubleToLongBits(lonLats[2 * i]);
+            hash = 31L * hash + Double.doubleToLongBits(lonLats[2 * i + 1]);
+            hash = 31L * hash + (types[i] < 0 ? 0 : typeNames[types[i]].hashCode());
+        }
+        this.checksum = hash;
+    }
+
+
+    /**
+     * Returns a new index builder
+     * @return a new index builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * Returns the Z-order key of the given position
+     *
+     * @param lon the longitude
+     * @param lat the latitude
+     * @return the Z-order key of the position
+     */
+    public static long zOrderKey(double lon, double lat) {
+        return interleave(worldX(lon), worldY(lat));
+    }
+
+
+    /**
+     * Returns the range of index positions of the AtoNs within the given XYZ tile
+     *
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate, counted from the top
+     * @return the range of index positions, as a from (inclusive) and to (exclusive) index
+     */
+    public int[] tileRange(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= (1L << z) || y >= (1L << z)) {
+            return new int[] { 0, 0 };
+        }
+        int shift = 2 * (MAX_ZOOM - z);
+        long from = interleave(x, y) << shift;
+        long to = from + (1L << shift);
+        return new int[] { lowerBound(from), lowerBound(to) };
+    }
+
+
+    /**
+     * Returns the pixel position of the AtoN at the given index position within the given tile
+     *
+     * @param i the index position
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate, counted from the top
+     * @param tileSize the size of the tile
+     * @return the pixel position within the tile
+     */
+    public double[] tilePixel(int i, int z, int x, int y, int tileSize) {
+        double tiles = 1L << z;
+        return new double[] {
+                (mercatorX(getLon(i)) * tiles - x) * tileSize,
+                (mercatorY(getLat(i)) * tiles - y) * tileSize
+        };
+    }
+
+
+    /**
+     * Returns the lon-lat positions affected by the changes between two indexes, i.e. the positions of
+     * AtoNs that have been added, removed, moved or had their seamark type changed.
+     * Moved AtoNs contribute both their old and their new position.
+     *
+     * @param from the original index
+     * @param to the new index
+     * @return the positions affected by the changes
+     */
+    public static List<double[]> changedPositions(AtonPositionIndex from, AtonPositionIndex to) {
+        Map<Integer, Integer> fromPositions = new HashMap<>();
+        for (int i = 0; i < from.size(); i++) {
+            fromPositions.put(from.getId(i), i);
+        }
+
+        List<double[]> result = new ArrayList<>();
+        for (int i = 0; i < to.size(); i++) {
+            Integer j = fromPositions.remove(to.getId(i));
+            if (j == null
+                    || from.getLon(j) != to.getLon(i)
+                    || from.getLat(j) != to.getLat(i)
+                    || !Objects.equals(from.getType(j), to.getType(i))) {
+                result.add(new double[] { to.getLon(i), to.getLat(i) });
+                if (j != null) {
+                    result.add(new double[] { from.getLon(j), from.getLat(j) });
+                }
+            }
+        }
+
+        // Removed AtoNs
+        fromPositions.values().forEach(j -> result.add(new double[] { from.getLon(j), from.getLat(j) }));
+        return result;
+    }
+
+
+    /**
+     * Returns the XYZ tile containing the given position
+     *
+     * @param lon the longitude
+     * @param lat the latitude
+     * @param z the zoom level
+     * @return the x and y coordinates of the tile
+     */
+    public static int[] tileOf(double lon, double lat, int z) {
+        int shift = MAX_ZOOM - z;
+        return new int[] { (int) (worldX(lon) >> shift), (int) (worldY(lat) >> shift) };
+    }
+
+
+    /** Returns the index of the first key greater than or equal to the given key **/
+    private int lowerBound(long key) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+
+    /** Returns the normalized spherical mercator x coordinate, in the range [0, 1[ **/
+    private static double mercatorX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+
+    /** Returns the normalized spherical mercator y coordinate, counted from the top, in the range [0, 1[ **/
+    private static double mercatorY(double lat) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, lat))));
+        return 0.5 - Math.log((1.0 + sin) / (1.0 - sin)) / (4.0 * Math.PI);
+    }
+
+
+    /** Returns the world x coordinate at the max zoom level **/
+    private static long worldX(double lon) {
+        return clamp((long) Math.floor(mercatorX(lon) * WORLD_SIZE));
+    }
+
+
+    /** Returns the world y coordinate at the max zoom level **/
+    private static long worldY(double lat) {
+        return clamp((long) Math.floor(mercatorY(lat) * WORLD_SIZE));
+    }
+
+
+    /** Clamps the world coordinate to the valid range **/
+    private static long clamp(long v) {
+        return Math.max(0L, Math.min((1L << MAX_ZOOM) - 1L, v));
+    }
+
+
+    /** Interleaves the bits of x (even bits) and y (odd bits) **/
+    private static long interleave(long x, long y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+
+    /** Spreads the lower 32 bits of the value to the even bits of the result **/
+    private static long spread(long v) {
+        v &= 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8))  & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4))  & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2))  & 0x3333333333333333L;
+        v = (v | (v << 1))  & 0x5555555555555555L;
+        return v;
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public int size() {
+        return ids.length;
+    }
+
+    public double getLon(int i) {
+        return lonLats[2 * i];
+    }
+
+    public double getLat(int i) {
+        return lonLats[2 * i + 1];
+    }
+
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    /** Returns the seamark type of the AtoN at the given index position, or null if undefined **/
+    public String getType(int i) {
+        return types[i] < 0 ? null : typeNames[types[i]];
+    }
+
+    /** Returns a checksum of the index content, which can be used as an E-Tag **/
+    public long getChecksum() {
+        return checksum;
+    }
+
+
+    /**
+     * Builds an AtoN position index
+     */
+    public static class Builder {
+
+        final List<double[]> positions = new ArrayList<>();
+        final List<Integer> ids = new ArrayList<>();
+        final List<String> types = new ArrayList<>();
+
+        /** Private constructor **/
+        private Builder() {
+        }
+
+        /**
+         * Adds an AtoN to the index
+         *
+         * @param id the AtoN ID
+         * @param lon the AtoN longitude
+         * @param lat the AtoN latitude
+         * @param type the seamark type of the AtoN. May be null
+         * @return this builder
+         */
+        public Builder add(int id, double lon, double lat, String type) {
+            positions.add(new double[] { lon, lat });
+            ids.add(id);
+            types.add(type);
+            return this;
+        }
+
+        /**
+         * Builds the index
+         * @return the index
+         */
+        public AtonPositionIndex build() {
+            int n = ids.size();
+            long[] unsortedKeys = new long[n];
+            for (int i = 0; i < n; i++) {
+                unsortedKeys[i] = zOrderKey(positions.get(i)[0], positions.get(i)[1]);
+            }
+
+            // Sort by Z-order key, using the AtoN ID as tie-breaker to ensure a deterministic order
+            int[] order = IntStream.range(0, n)
+                    .boxed()
+                    .sorted((a, b) -> unsortedKeys[a] != unsortedKeys[b]
+                            ? Long.compare(unsortedKeys[a], unsortedKeys[b])
+                            : Integer.compare(ids.get(a), ids.get(b)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            Map<String, Short> typeIndex = new HashMap<>();
+            List<String> typeNames = new ArrayList<>();
+            long[] keys = new long[n];
+            double[] lonLats = new double[2 * n];
+            int[] sortedIds = new int[n];
+            short[] sortedTypes = new short[n];
+            for (int i = 0; i < n; i++) {
+                int j = order[i];
+                keys[i] = unsortedKeys[j];
+                lonLats[2 * i] = positions.get(j)[0];
+                lonLats[2 * i + 1] = positions.get(j)[1];
+                sortedIds[i] = ids.get(j);
+                String type = types.get(j);
+                sortedTypes[i] = type == null ? -1 : typeIndex.computeIfAbsent(type, t -> {
+                    typeNames.add(t);
+                    return (short) (typeNames.size() - 1);
+                });
+            }
+
+            return new AtonPositionIndex(keys, lonLats, sortedIds, sortedTypes, typeNames.toArray(new String[typeNames.size()]));
+        }
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return "AtonPositionIndex{" +
+                "size=" + size() +
+                ", types=" + Arrays.toString(typeNames) +
+                '}';
+    }
+}
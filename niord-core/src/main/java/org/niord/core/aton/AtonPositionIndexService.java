@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import org.slf4j.Logger;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maintains the in-memory position index of all AtoNs, used e.g. for generating AtoN map tiles
+ * without accessing the database.
+ * <p>
+ * The index is loaded lazily, and marked as stale whenever AtoNs have been changed. A stale index is
+ * re-loaded by the first subsequent caller, whereas concurrent callers keep using the stale index meanwhile.
+ * <p>
+ * AtoN changes made by other cluster nodes are detected by comparing a cheap aggregate signature
+ * of the AtoN position data every minute.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class AtonPositionIndexService {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    AtonService atonService;
+
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile AtonPositionIndex index;
+    private volatile boolean stale = true;
+    private volatile String signature;
+
+
+    /**
+     * Returns the current AtoN position index
+     * @return the current AtoN position index
+     */
+    public AtonPositionIndex getIndex() {
+        AtonPositionIndex result = index;
+        if (result != null && !stale) {
+            return result;
+        }
+
+        // Block if no index has been loaded yet. Otherwise, use the stale index if another thread is re-loading it
+        if (result == null) {
+            loadLock.lock();
+        } else if (!loadLock.tryLock()) {
+            return result;
+        }
+
+        try {
+            if (index == null || stale) {
+                // Clear the flag first, so that changes committed during the load will flag the index again
+                stale = false;
+                try {
+                    signature = atonService.getAtonPositionSignature();
+                    index = atonService.loadAtonPositionIndex();
+                } catch (RuntimeException e) {
+                    stale = true;
+                    throw e;
+                }
+            }
+            return index;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+
+    /**
+     * Flags the AtoN position index as stale when AtoNs have been changed
+     *
+     * @param event the AtoN change event
+     */
+    public void onAtonChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) AtonChangeEvent event) {
+        stale = true;
+    }
+
+
+    /**
+     * Called every minute to flag the AtoN position index as stale if the AtoNs have been changed,
+     * e.g. by another cluster node
+     */
+    @Schedule(persistent = false, second = "23", minute = "*", hour = "*")
+    public void checkForAtonChanges() {
+        if (index == null || stale) {
+            return;
+        }
+
+        String currentSignature = atonService.getAtonPositionSignature();
+        if (!currentSignature.equals(signature)) {
+            log.debug("AtoNs changed - flagging AtoN position index as stale");
+            stale = true;
+        }
+    }
+}
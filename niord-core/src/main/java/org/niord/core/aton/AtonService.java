@@ -34,6 +34,7 @@ import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.persistence.Tuple;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -54,6 +55,9 @@ public class AtonService extends BaseService {
     @Inject
     private Logger log;
 
+    @Inject
+    Event<AtonChangeEvent> atonChangeEvent;
+
     /*************************/
     /** NEW Aton Model      **/
     /*************************/
@@ -114,36 +118,119 @@ public class AtonService extends BaseService {
 
 
     /**
-     * Replaces the AtoN DB
-     * @param atons the new AtoNs
+     * Loads the AtoN UIDs, database IDs and content hashes of all persisted AtoNs in a single pass,
+     * using two projection queries rather than loading the AtoN entities.
+     *
+     * @return the AtoN UID index
      */
-    public void updateAtons(List<AtonNode> atons) {
+    public AtonUidIndex loadAtonUidIndex() {
+        long t0 = System.currentTimeMillis();
 
-        // Persist new list of AtoNs
+        Map<Integer, Map<String, String>> tags = new HashMap<>();
+        em.createQuery("select t.atonNode.id, t.k, t.v from AtonTag t", Object[].class)
+                .getResultList()
+                .forEach(t -> tags.computeIfAbsent((Integer) t[0], id -> new HashMap<>())
+                        .put((String) t[1], (String) t[2]));
+
+        AtonUidIndex index = new AtonUidIndex();
+        em.createQuery("select n.id, n.lat, n.lon, n.visible from AtonNode n", Object[].class)
+                .getResultList()
+                .forEach(n -> {
+                    Map<String, String> nodeTags = tags.getOrDefault((Integer) n[0], Collections.emptyMap());
+                    String atonUid = nodeTags.get(AtonTag.TAG_ATON_UID);
+                    if (atonUid != null) {
+                        index.put(
+                                atonUid,
+                                (Integer) n[0],
+                                AtonNode.contentHash((Double) n[1], (Double) n[2], (Boolean) n[3], nodeTags));
+                    }
+                });
+
+        log.info("Loaded AtoN UID index with " + index.size() + " AtoNs in "
+                + (System.currentTimeMillis() - t0) + " ms");
+        return index;
+    }
+
+
+    /**
+     * Loads the position index of all AtoNs using a projection query.
+     *
+     * @return the AtoN position index
+     */
+    public AtonPositionIndex loadAtonPositionIndex() {
         long t0 = System.currentTimeMillis();
-        int created = 0, updated = 0, unchanged = 0;
-        for (AtonNode aton : atons) {
 
-            AtonNode orig = findByAtonUid(aton.getAtonUid());
-            if (orig == null) {
-                em.persist(aton);
-                created++;
+        AtonPositionIndex.Builder builder = AtonPositionIndex.builder();
+        em.createQuery("select n.id, n.lon, n.lat, t.v from AtonNode n left join n.tags t on t.k = :type", Object[].class)
+                .setParameter("type", "seamark:type")
+                .getResultList()
+                .forEach(n -> builder.add((Integer) n[0], (Double) n[1], (Double) n[2], (String) n[3]));
+        AtonPositionIndex index = builder.build();
 
-            } else if (orig.hasChanged(aton)) {
-                orig.updateNode(aton);
-                em.persist(orig);
-                updated++;
+        log.info("Loaded AtoN position index with " + index.size() + " AtoNs in "
+                + (System.currentTimeMillis() - t0) + " ms");
+        return index;
+    }
 
-            } else {
-                unchanged++;
-            }
 
-            if ((created + updated + unchanged) % 100 == 0) {
-                em.flush();
+    /**
+     * Returns a signature of the AtoN position data, i.e. the data loaded into the AtoN position index.
+     * It is used for detecting AtoN changes made by other cluster nodes.
+     * <p>
+     * The signature is computed by the database as the count, sum and xor of a CRC-32 hash of each
+     * AtoN ID, position and type. Since these aggregates are exact and independent of the row order,
+     * the signature changes whenever AtoNs are added, removed or moved, or their types change,
+     * including positions swapped between AtoNs and type changes of the same length.
+     *
+     * @return a signature of the AtoN position data
+     */
+    public String getAtonPositionSignature() {
+        String rowHash = "crc32(concat_ws('|', n.id, n.lon, n.lat, t.v))";
+        Object[] signature = (Object[]) em.createNativeQuery(
+                "select count(*), sum(" + rowHash + "), bit_xor(" + rowHash + ") from AtonNode n "
+                + "left join AtonTag t on t.atonNode_id = n.id and t.k = ?1")
+                .setParameter(1, "seamark:type")
+                .getSingleResult();
+        return Arrays.toString(signature);
+    }
+
+
+    /**
+     * Looks up the persisted AtoN with the same AtoN UID as the given AtoN.
+     * <p>
+     * The AtoN UID index is used for resolving the AtoN by database ID. Only AtoN UIDs that have been
+     * registered as new AtoNs since the index was loaded, are looked up by their AtoN UID tag.
+     *
+     * @param index the AtoN UID index
+     * @param aton the AtoN to find the persisted AtoN for
+     * @return the persisted AtoN or null if not found
+     */
+    public AtonNode findExistingAton(AtonUidIndex index, AtonNode aton) {
+        String atonUid = aton.getAtonUid();
+        Integer id = index.getId(atonUid);
+        if (id != null) {
+            return getByPrimaryKey(AtonNode.class, id);
+        }
+        return index.contains(atonUid) ? findByAtonUid(atonUid) : null;
+    }
+
+
+    /**
+     * Persists new AtoNs and updates existing AtoNs.
+     * The changes are flushed in one go, allowing Hibernate to batch the JDBC statements.
+     *
+     * @param atons the AtoNs to save
+     */
+    public void saveAtons(List<AtonNode> atons) {
+        for (AtonNode aton : atons) {
+            if (aton.isNew()) {
+                em.persist(aton);
+            } else if (!em.contains(aton)) {
+                em.merge(aton);
             }
         }
-        log.info(String.format("Updated %s AtoNs (created %d, updated %d, ignored %d) in %d ms",
-                atons.size(), created, updated, unchanged, System.currentTimeMillis() - t0));
+        em.flush();
+        atonChangeEvent.fire(new AtonChangeEvent(atons.size()));
     }
 
 
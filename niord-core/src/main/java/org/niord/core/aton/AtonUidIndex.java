@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the AtoN UIDs of the persisted AtoNs to their database IDs and content hashes.
+ * <p>
+ * Loaded in a single pass by {@code AtonService.loadAtonUidIndex()}, and used by bulk imports
+ * for resolving existing AtoNs and skipping unchanged AtoNs without a database query per AtoN.
+ */
+@SuppressWarnings("unused")
+public class AtonUidIndex {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+
+    /**
+     * Registers an AtoN UID
+     *
+     * @param atonUid the AtoN UID
+     * @param id the database ID of the AtoN, or null if the AtoN is not yet persisted
+     * @param contentHash the content hash of the AtoN
+     */
+    public void put(String atonUid, Integer id, long contentHash) {
+        entries.put(atonUid, new Entry(id, contentHash));
+    }
+
+
+    /** Returns if the AtoN UID is registered **/
+    public boolean contains(String atonUid) {
+        return entries.containsKey(atonUid);
+    }
+
+
+    /** Returns the database ID of the AtoN with the given AtoN UID, or null if undefined **/
+    public Integer getId(String atonUid) {
+        Entry entry = entries.get(atonUid);
+        return entry != null ? entry.id : null;
+    }
+
+
+    /**
+     * Returns if the given AtoN is identical to the persisted AtoN with the same AtoN UID,
+     * i.e. if the content hashes are equal
+     *
+     * @param aton the AtoN to check
+     * @return if the AtoN is unchanged
+     */
+    public boolean isUnchanged(AtonNode aton) {
+        Entry entry = entries.get(aton.getAtonUid());
+        return entry != null && entry.id != null && entry.contentHash == aton.contentHash();
+    }
+
+
+    /** Returns the number of registered AtoN UIDs **/
+    public int size() {
+        return entries.size();
+    }
+
+
+    /** An AtoN UID entry **/
+    private static class Entry {
+        final Integer id;
+        final long contentHash;
+
+        Entry(Integer id, long contentHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+        }
+    }
+}
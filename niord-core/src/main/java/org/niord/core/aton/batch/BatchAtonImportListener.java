@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton.batch;
+
+import org.niord.core.aton.AtonIndexingInterceptor;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.db.HibernateSearchIndexService;
+import org.slf4j.Logger;
+
+import javax.batch.api.listener.AbstractStepListener;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Step listener that suspends the Hibernate Search indexing of AtoNs while AtoNs are imported,
+ * and indexes the imported AtoNs in batches once the import step has completed.
+ * <p>
+ * The suspension only applies to the thread running the import step, so AtoNs updated
+ * elsewhere in the meantime are still indexed automatically.
+ * <p>
+ * Configure using:
+ * <pre>
+ *  &lt;listeners&gt;
+ *      &lt;listener ref="batchAtonImportListener"/&gt;
+ *  &lt;/listeners&gt;
+ * </pre>
+ */
+@Named
+public class BatchAtonImportListener extends AbstractStepListener {
+
+    static final int INDEX_BATCH_SIZE = 500;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    HibernateSearchIndexService hibernateSearchIndexService;
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void beforeStep() throws Exception {
+        AtonIndexingInterceptor.suspendIndexing();
+        log.info("Suspended AtoN indexing during AtoN import");
+    }
+
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterStep() throws Exception {
+        Set<Integer> ids = AtonIndexingInterceptor.resumeIndexing();
+
+        long t0 = System.currentTimeMillis();
+        List<Integer> batch = new ArrayList<>(INDEX_BATCH_SIZE);
+        for (Integer id : ids) {
+            batch.add(id);
+            if (batch.size() == INDEX_BATCH_SIZE) {
+                hibernateSearchIndexService.index(AtonNode.class, batch);
+                batch.clear();
+            }
+        }
+        hibernateSearchIndexService.index(AtonNode.class, batch);
+        log.info("Indexed " + ids.size() + " imported AtoNs in " + (System.currentTimeMillis() - t0) + " ms");
+    }
+}
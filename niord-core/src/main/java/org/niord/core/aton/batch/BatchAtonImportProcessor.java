@@ -18,6 +18,7 @@ package org.niord.core.aton.batch;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonService;
 import org.niord.core.aton.AtonTag;
+import org.niord.core.aton.AtonUidIndex;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.batch.AbstractItemHandler;
 
@@ -26,6 +27,9 @@ import javax.inject.Named;
 
 /**
  * Filters AtoNs that need to be a added or updated
+ * <p>
+ * The AtoN UIDs and content hashes of all existing AtoNs are loaded once, upon processing the first AtoN.
+ * Unchanged AtoNs are skipped without accessing the database, and existing AtoNs are looked up by ID.
  *
  * TODO: we should probably detach the original AtoN looked up in processItem()
  */
@@ -35,6 +39,8 @@ public class BatchAtonImportProcessor extends AbstractItemHandler {
     @Inject
     AtonService atonService;
 
+    AtonUidIndex atonUidIndex;
+
     /** {@inheritDoc} **/
     @Override
     public Object processItem(Object item) throws Exception {
@@ -54,12 +60,25 @@ public class BatchAtonImportProcessor extends AbstractItemHandler {
             //return null;
         }
 
+        // Load the AtoN UIDs and content hashes of all existing AtoNs in one pass
+        if (atonUidIndex == null) {
+            atonUidIndex = atonService.loadAtonUidIndex();
+        }
+
+        // Quick check for unchanged AtoNs
+        if (atonUidIndex.isUnchanged(aton)) {
+            getLog().info("Ignoring unchanged AtoN " + aton.getAtonUid());
+            return null;
+        }
+
         // Look up any existing AtoN with the same AtoN UID
-        AtonNode orig = atonService.findByAtonUid(aton.getAtonUid());
+        AtonNode orig = atonService.findExistingAton(atonUidIndex, aton);
 
         if (orig == null) {
-            // Persist new AtoN
+            // Persist new AtoN. The ID of the imported AtoN is not a database ID
             getLog().info("Persisting new AtoN");
+            aton.setId(null);
+            atonUidIndex.put(aton.getAtonUid(), null, aton.contentHash());
             return aton;
 
         } else if (orig.hasChanged(aton)) {
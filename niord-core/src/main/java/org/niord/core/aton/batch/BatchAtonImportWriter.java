@@ -22,9 +22,12 @@ import org.niord.core.batch.AbstractItemHandler;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- * Persists the AtoNs to the database
+ * Persists the AtoNs to the database.
+ * <p>
+ * The AtoNs of a chunk are flushed in one go, so that Hibernate can batch the JDBC statements.
  */
 @Named
 public class BatchAtonImportWriter extends AbstractItemHandler {
@@ -36,10 +39,10 @@ public class BatchAtonImportWriter extends AbstractItemHandler {
     @Override
     public void writeItems(List<Object> items) throws Exception {
         long t0 = System.currentTimeMillis();
-        for (Object i : items) {
-            AtonNode aton = (AtonNode) i;
-            atonService.saveEntity(aton);
-        }
+        List<AtonNode> atons = items.stream()
+                .map(i -> (AtonNode) i)
+                .collect(Collectors.toList());
+        atonService.saveAtons(atons);
         getLog().info(String.format("Persisted %d AtoNs in %d s", items.size(), (System.currentTimeMillis() - t0) / 1000L));
     }
 }
@@ -16,43 +16,83 @@
 package org.niord.core.cache;
 
 import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
 import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
 import org.infinispan.configuration.global.GlobalConfiguration;
 import org.infinispan.configuration.global.GlobalConfigurationBuilder;
 import org.infinispan.manager.DefaultCacheManager;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import javax.inject.Inject;
 
 /**
- * Base class for Infinispan caches
+ * Base class for Infinispan caches.
+ * <p>
+ * By default, the caches are local to the node. When clustering has been enabled via the
+ * {@link CacheClusterConfig} system properties, sub-classes that override {@link #getClusterCacheMode()}
+ * join a per-cache cluster using the configured JGroups transport, and are either replicated
+ * or invalidated across the nodes.
  */
 @SuppressWarnings("unused")
 public abstract class BaseCache<K, V> {
 
-    @Inject
-    private Logger log;
+    // Not injected, since caches may be initialized outside CDI, e.g. in unit tests
+    private final static Logger log = LoggerFactory.getLogger(BaseCache.class);
 
     protected EmbeddedCacheManager cacheContainer;
 
     /**
-     * Starts the cache container
+     * Starts the cache container using the cluster configuration defined by system properties
      */
     @PostConstruct
     public void initCacheContainer() {
-        if (cacheContainer == null) {
-            GlobalConfiguration globalConfiguration = new GlobalConfigurationBuilder()
-                    .nonClusteredDefault() //Helper method that gets you a default constructed GlobalConfiguration, preconfigured for use in LOCAL mode
-                    .globalJmxStatistics().allowDuplicateDomains(true)
-                    .build(); //Builds  the GlobalConfiguration object
+        initCacheContainer(CacheClusterConfig.fromSystemProperties());
+    }
 
-            Configuration localConfiguration = createCacheConfiguration();
 
-            cacheContainer = new DefaultCacheManager(globalConfiguration, localConfiguration, true);
-            log.info("Init cache container");
+    /**
+     * Starts the cache container using the given cluster configuration
+     * @param clusterConfig the cluster configuration
+     */
+    public void initCacheContainer(CacheClusterConfig clusterConfig) {
+        if (cacheContainer == null) {
+            CacheMode cacheMode = clusterConfig.isClustered() ? getClusterCacheMode() : CacheMode.LOCAL;
+
+            GlobalConfiguration globalConfiguration;
+            if (cacheMode.isClustered()) {
+                GlobalConfigurationBuilder builder = new GlobalConfigurationBuilder();
+                builder.clusteredDefault()
+                        .transport()
+                            .clusterName(clusterConfig.getClusterName() + "-" + getCacheId())
+                            .addProperty("configurationFile", clusterConfig.getTransport())
+                        .globalJmxStatistics().allowDuplicateDomains(true);
+                if (clusterConfig.getNodeName() != null) {
+                    builder.transport().nodeName(clusterConfig.getNodeName());
+                }
+                globalConfiguration = builder.build();
+            } else {
+                globalConfiguration = new GlobalConfigurationBuilder()
+                        .nonClusteredDefault() //Helper method that gets you a default constructed GlobalConfiguration, preconfigured for use in LOCAL mode
+                        .globalJmxStatistics().allowDuplicateDomains(true)
+                        .build(); //Builds  the GlobalConfiguration object
+            }
+
+            Configuration configuration = new ConfigurationBuilder()
+                    .read(createCacheConfiguration())
+                    .clustering().cacheMode(cacheMode)
+                    .build();
+
+            cacheContainer = new DefaultCacheManager(globalConfiguration, configuration, true);
+
+            // Start clustered caches eagerly, so that the node receives updates from the other nodes
+            if (cacheMode.isClustered()) {
+                cacheContainer.getCache(getCacheId());
+            }
+            log.info("Init cache container " + getCacheId() + " in " + cacheMode + " mode");
         }
     }
 
@@ -60,6 +100,19 @@ public abstract class BaseCache<K, V> {
     public abstract String getCacheId();
 
 
+    /**
+     * Returns the cache mode to use when clustering has been enabled.
+     * Defaults to {@code CacheMode.LOCAL}, i.e. node-local caches, which should be used for caches
+     * of node-local data. Sub-classes should override this method to return either a replicated
+     * or an invalidation cache mode.
+     *
+     * @return the cache mode to use when clustering has been enabled
+     */
+    protected CacheMode getClusterCacheMode() {
+        return CacheMode.LOCAL;
+    }
+
+
     /**
      * Returns a reference to the settings cache
      * @return a reference to the settings cache
@@ -79,7 +132,9 @@ public abstract class BaseCache<K, V> {
 
 
     /**
-     * Must be implemented by sub-classes to define the local cache configuration
+     * Must be implemented by sub-classes to define the local cache configuration.
+     * When clustered, the cache mode is replaced with the mode returned by {@link #getClusterCacheMode()}.
+     *
      * @return the local cache configuration
      */
     protected abstract Configuration createCacheConfiguration();
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.cache;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Defines whether and how the Infinispan caches of a Niord node join a cluster.
+ * <p>
+ * The caches are initialized before the settings service is available, so the cluster configuration
+ * is read from system properties, e.g. defined in the Wildfly standalone.xml:
+ * <ul>
+ *     <li>niord.cache.cluster: Set to "true" to cluster the caches. Default "false".</li>
+ *     <li>niord.cache.clusterName: The name of the cluster. Default "niord".</li>
+ *     <li>niord.cache.transport: The JGroups configuration file or class path resource used as transport.
+ *         Default "default-configs/default-jgroups-udp.xml". Use "default-configs/default-jgroups-tcp.xml"
+ *         for TCP-based clusters.</li>
+ *     <li>niord.cache.nodeName: The optional name of the node.</li>
+ * </ul>
+ */
+@SuppressWarnings("unused")
+public class CacheClusterConfig {
+
+    public static final String DEFAULT_CLUSTER_NAME = "niord";
+    public static final String DEFAULT_TRANSPORT    = "default-configs/default-jgroups-udp.xml";
+
+    final boolean clustered;
+    final String clusterName;
+    final String transport;
+    final String nodeName;
+
+    /** Constructor **/
+    public CacheClusterConfig(boolean clustered, String clusterName, String transport, String nodeName) {
+        this.clustered = clustered;
+        this.clusterName = StringUtils.defaultIfBlank(clusterName, DEFAULT_CLUSTER_NAME);
+        this.transport = StringUtils.defaultIfBlank(transport, DEFAULT_TRANSPORT);
+        this.nodeName = StringUtils.defaultIfBlank(nodeName, null);
+    }
+
+
+    /**
+     * Returns a non-clustered configuration
+     * @return a non-clustered configuration
+     */
+    public static CacheClusterConfig local() {
+        return new CacheClusterConfig(false, null, null, null);
+    }
+
+
+    /**
+     * Returns the cluster configuration defined by the system properties
+     * @return the cluster configuration defined by the system properties
+     */
+    public static CacheClusterConfig fromSystemProperties() {
+        return new CacheClusterConfig(
+                Boolean.parseBoolean(System.getProperty("niord.cache.cluster", "false")),
+                System.getProperty("niord.cache.clusterName"),
+                System.getProperty("niord.cache.transport"),
+                System.getProperty("niord.cache.nodeName"));
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return "CacheClusterConfig{" +
+                "clustered=" + clustered +
+                ", clusterName='" + clusterName + '\'' +
+                ", transport='" + transport + '\'' +
+                ", nodeName='" + nodeName + '\'' +
+                '}';
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.niord.core.category;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.category.vo.SystemCategoryVo;
 import org.niord.core.domain.Domain;
 import org.niord.core.model.TreeBaseEntity;
@@ -47,6 +48,7 @@ import java.util.stream.Collectors;
  * The latter type defines the templates used for creating standardized messages.
  */
 @Entity
+@BatchSize(size = 100)
 @Cacheable
 @NamedQueries({
         @NamedQuery(name="Category.findByLegacyId",
@@ -73,6 +75,7 @@ public class Category extends TreeBaseEntity<Category> implements ILocalizable<C
     String mrn;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = 100)
     List<CategoryDesc> descs = new ArrayList<>();
 
     @ElementCollection
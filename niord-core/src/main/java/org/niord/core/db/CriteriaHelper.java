@@ -23,6 +23,8 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,6 +41,15 @@ public class CriteriaHelper<T> {
 
     private static final Pattern MATCH_TEXT_PATTERN = Pattern.compile("\"([^\"]*)\"|(\\S+)");
 
+    /** The max number of values in a single IN-clause **/
+    public static final int MAX_IN_CLAUSE_VALUES = 1000;
+
+    /** Runs of at least this many consecutive ID's are matched by a range predicate **/
+    static final int MIN_ID_RANGE_LENGTH = 3;
+
+    /** The max number of query parameters used for matching the ID's of a bit set **/
+    public static final int MAX_ID_PARAMETERS = 1000;
+
     CriteriaBuilder cb;
     CriteriaQuery<T> q;
     List<Predicate> where = new LinkedList<>();
@@ -169,6 +180,106 @@ public class CriteriaHelper<T> {
         return this;
     }
 
+    /**
+     * Matches the ID attribute with any of the ID's of the given bit set.
+     * If the bit set is undefined (null or empty) this predicate yields false.
+     * <p>
+     * Runs of consecutive ID's are matched by range predicates, and the remaining ID's by IN-clauses
+     * of at most {@code MAX_IN_CLAUSE_VALUES} values. If the ID's are dense, the range between the
+     * lowest and highest ID is matched instead, excluding the gaps.
+     * <p>
+     * Callers must check {@code supportsIdPredicate()} first, and intersect large sparse ID sets in memory instead.
+     *
+     * @param attr the ID attribute
+     * @param ids the ID's to match
+     */
+    public CriteriaHelper<T> in(Expression<Integer> attr, BitSet ids) {
+        if (ids == null || ids.isEmpty()) {
+            where.add(cb.disjunction()); // Always false
+            return this;
+        } else if (!supportsIdPredicate(ids)) {
+            throw new IllegalArgumentException("Too many query parameters required for matching the ID's");
+        }
+
+        int min = ids.nextSetBit(0);
+        int max = ids.length() - 1;
+        BitSet gaps = gaps(ids);
+
+        if (gaps.isEmpty()) {
+            where.add(cb.between(attr, min, max));
+        } else if (idParameterCount(gaps) + 2 < idParameterCount(ids)) {
+            where.add(cb.between(attr, min, max));
+            where.add(cb.not(idPredicate(attr, gaps)));
+        } else {
+            where.add(idPredicate(attr, ids));
+        }
+        return this;
+    }
+
+
+    /**
+     * Returns if the ID's of the bit set can be matched using at most {@code MAX_ID_PARAMETERS} query parameters
+     *
+     * @param ids the ID's to match
+     * @return if the ID's of the bit set can be matched using the {@code in()} predicate
+     */
+    public static boolean supportsIdPredicate(BitSet ids) {
+        if (ids == null || ids.isEmpty()) {
+            return true;
+        }
+        int count = Math.min(idParameterCount(ids), idParameterCount(gaps(ids)) + 2);
+        return count <= MAX_ID_PARAMETERS;
+    }
+
+
+    /** Returns the gaps between the lowest and highest ID of the bit set **/
+    private static BitSet gaps(BitSet ids) {
+        BitSet gaps = new BitSet();
+        gaps.set(ids.nextSetBit(0), ids.length());
+        gaps.andNot(ids);
+        return gaps;
+    }
+
+
+    /** Returns the number of query parameters used for matching the ID's of the bit set **/
+    static int idParameterCount(BitSet ids) {
+        int count = 0;
+        for (int start = ids.nextSetBit(0); start >= 0; ) {
+            int end = ids.nextClearBit(start);
+            count += end - start >= MIN_ID_RANGE_LENGTH ? 2 : end - start;
+            start = ids.nextSetBit(end);
+        }
+        return count;
+    }
+
+
+    /** Returns a predicate matching the ID attribute with the ID's of the bit set **/
+    private Predicate idPredicate(Expression<Integer> attr, BitSet ids) {
+        List<Predicate> predicates = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        for (int start = ids.nextSetBit(0); start >= 0; ) {
+            int end = ids.nextClearBit(start);
+            if (end - start >= MIN_ID_RANGE_LENGTH) {
+                predicates.add(cb.between(attr, start, end - 1));
+            } else {
+                for (int id = start; id < end; id++) {
+                    values.add(id);
+                    if (values.size() == MAX_IN_CLAUSE_VALUES) {
+                        predicates.add(attr.in(values));
+                        values = new ArrayList<>();
+                    }
+                }
+            }
+            start = ids.nextSetBit(end);
+        }
+        if (!values.isEmpty()) {
+            predicates.add(attr.in(values));
+        }
+        return predicates.size() == 1
+                ? predicates.get(0)
+                : cb.or(predicates.toArray(new Predicate[predicates.size()]));
+    }
+
     /**
      * If value1 is defined the attribute must be greater than or equal to this value.
      * If value2 is defined the attribute must be less than or equal to this value.
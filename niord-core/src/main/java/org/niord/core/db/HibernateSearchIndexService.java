@@ -25,6 +25,8 @@ import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.ejb.*;
 import javax.inject.Inject;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Launches the Hibernate Search index
@@ -66,4 +68,32 @@ public class HibernateSearchIndexService extends BaseService {
             log.error("Error indexing AtoNs", e);
         }
     }
+
+
+    /**
+     * Updates the full text indexes of the entities with the given IDs.
+     * Used e.g. after bulk imports that have suspended the automatic indexing of the entities.
+     * <p>
+     * Each call is executed in its own transaction, so callers should pass the IDs in reasonably sized batches.
+     *
+     * @param entityType the entity type to index
+     * @param ids the IDs of the entities to index
+     */
+    public void index(Class<?> entityType, Collection<?> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        String entityName = em.getMetamodel().entity(entityType).getName();
+        List<?> entities = em.createQuery("select e from " + entityName + " e where e.id in :ids", entityType)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(em);
+        entities.forEach(fullTextEntityManager::index);
+        fullTextEntityManager.flushToIndexes();
+        fullTextEntityManager.clear();
+        log.debug("Indexed " + entities.size() + " " + entityName + " entities in " + (System.currentTimeMillis() - t0) + " ms");
+    }
 }
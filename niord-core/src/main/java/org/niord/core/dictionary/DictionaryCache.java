@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.dictionary;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.cache.BaseCache;
+import org.niord.core.dictionary.vo.DictionaryVo;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+
+/**
+ * Implements the cache of dictionary value objects, keyed by dictionary name, with a default timeout of 10 minutes.
+ * <p>
+ * Dictionaries are evicted once the transaction updating the dictionary has been committed, so that
+ * concurrent readers cannot re-cache the uncommitted state.
+ * When clustered, the cache runs in invalidation mode, so that updating a dictionary on one node
+ * evicts the dictionary on all nodes.
+ */
+@ApplicationScoped
+public class DictionaryCache extends BaseCache<String, DictionaryVo> {
+
+    final static long LIFESPAN      = 10 * 60 * 1000;    // 10 minutes
+    final static String CACHE_ID    = "dictionaryCache";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .expiration().lifespan(LIFESPAN)
+                .build();
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CacheMode getClusterCacheMode() {
+        return CacheMode.INVALIDATION_SYNC;
+    }
+
+
+    /**
+     * Evicts the cached dictionary once the transaction updating the dictionary has been committed
+     *
+     * @param event the dictionary change event
+     */
+    public void onDictionaryChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) DictionaryChangeEvent event) {
+        getCache().remove(event.getName());
+    }
+}
@@ -30,6 +30,7 @@ import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.script.ScriptException;
 import java.io.IOException;
@@ -41,11 +42,9 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -65,7 +64,11 @@ public class DictionaryService extends BaseService {
     @Inject
     private NiordApp app;
 
-    private Map<String, DictionaryVo> cachedDictionaries = new ConcurrentHashMap<>();
+    @Inject
+    private DictionaryCache dictionaryCache;
+
+    @Inject
+    Event<DictionaryChangeEvent> dictionaryChangeEvent;
 
     /**
      * Called when the system starts up.
@@ -145,8 +148,8 @@ public class DictionaryService extends BaseService {
 
         saveEntity(dict);
 
-        // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        // Evict the cached dictionary once committed
+        dictionaryChangeEvent.fire(new DictionaryChangeEvent(name));
 
         return entry;
     }
@@ -177,8 +180,8 @@ public class DictionaryService extends BaseService {
 
         saveEntity(original);
 
-        // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        // Evict the cached dictionary once committed
+        dictionaryChangeEvent.fire(new DictionaryChangeEvent(name));
 
         return original;
     }
@@ -208,8 +211,8 @@ public class DictionaryService extends BaseService {
         remove(original);
         saveEntity(dict);
 
-        // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        // Evict the cached dictionary once committed
+        dictionaryChangeEvent.fire(new DictionaryChangeEvent(name));
 
         return true;
     }
@@ -223,13 +226,13 @@ public class DictionaryService extends BaseService {
      */
     public DictionaryVo getCachedDictionary(String name) {
         // Check if the dictionary is cached already
-        DictionaryVo dict = cachedDictionaries.get(name);
+        DictionaryVo dict = dictionaryCache.getCache().get(name);
         if (dict == null) {
             Dictionary dictionary = findByName(name);
             if (dictionary != null) {
                 // TODO: Load more efficiently by using "DictionaryEntry.loadWithDescs" query
                 dict = dictionary.toVo(DataFilter.get());
-                cachedDictionaries.put(dict.getName(), dict);
+                dictionaryCache.getCache().putForExternalRead(dict.getName(), dict);
             }
         }
 
@@ -391,8 +394,8 @@ public class DictionaryService extends BaseService {
                 updateEntry(dictionary, lang, key, properties.getProperty(key));
             }
 
-            // Remove the cached dictionary
-            cachedDictionaries.remove(name);
+            // Evict the cached dictionary once committed
+            dictionaryChangeEvent.fire(new DictionaryChangeEvent(name));
 
             log.info(String.format("Persisted %d new '%s' dictionary entries in %d ms",
                     undefKeys.size(), name, System.currentTimeMillis() - t0));
@@ -428,8 +431,8 @@ public class DictionaryService extends BaseService {
             updateEntry(dictionary, lang, key, properties.getProperty(key));
         }
 
-        // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        // Evict the cached dictionary once committed
+        dictionaryChangeEvent.fire(new DictionaryChangeEvent(name));
 
         log.info(String.format("Persisted %d '%s' dictionary entries in %d ms",
                 properties.size(), name, System.currentTimeMillis() - t0));
@@ -459,8 +462,8 @@ public class DictionaryService extends BaseService {
 
         saveEntity(original);
 
-        // Remove the cached dictionary
-        cachedDictionaries.remove(dictionary.getName());
+        // Evict the cached dictionary once committed
+        dictionaryChangeEvent.fire(new DictionaryChangeEvent(dictionary.getName()));
 
         log.info(String.format("Persisted and updated %d '%s' dictionary entries in %d ms",
                 dictionary.getEntries().size(), dictionary.getName(), System.currentTimeMillis() - t0));
@@ -15,6 +15,7 @@
  */
 package org.niord.core.geojson;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.model.BaseEntity;
 import org.niord.model.geojson.FeatureCollectionVo;
 import org.niord.model.geojson.FeatureVo;
@@ -37,6 +38,7 @@ import java.util.UUID;
  * Represents a GeoJson feature collection entity
  */
 @Entity
+@BatchSize(size = 100)
 @Table(indexes = {
         @Index(name = "feature_collection_uid", columnList="uid", unique = true)
 })
@@ -52,6 +54,7 @@ public class FeatureCollection extends BaseEntity<Integer> {
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "featureCollection", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = 100)
     private List<Feature> features = new ArrayList<>();
 
     /** Converts this FeatureCollection entity to GeoJson */
@@ -17,6 +17,7 @@
 package org.niord.core.geojson;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -27,6 +28,7 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
@@ -40,6 +42,9 @@ import org.niord.model.geojson.MultiPolygonVo;
 import org.niord.model.geojson.PointVo;
 import org.niord.model.geojson.PolygonVo;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Utility functions for converting between the Niord and JTS GeoJSON representations
  */
@@ -76,7 +81,9 @@ public class JtsConverter {
 
 
     /**
-     * Converts two lat-lon corner positions to the corresponding JTS geometry
+     * Converts two lat-lon corner positions to the corresponding JTS geometry.
+     * If the minimum longitude is greater than the maximum longitude, the extent crosses the antimeridian,
+     * and is split into two boxes on either side of the antimeridian.
      * @param minLat the minimum latitude
      * @param minLon the minimum longitude
      * @param maxLat the maximum latitude
@@ -90,6 +97,9 @@ public class JtsConverter {
             minLon = minLon != null ? minLon : -180.0;
             maxLat = maxLat != null ? maxLat : 90.0;
             maxLon = maxLon != null ? maxLon : 180.0;
+            if (minLon > maxLon) {
+                maxLon += 360.0;
+            }
 
             double[][][] coords = {{
                     {minLon, minLat},
@@ -98,12 +108,48 @@ public class JtsConverter {
                     {maxLon, minLat},
                     {minLon, minLat}
             }};
-            return toJtsPolygon(coords);
+            return splitAtAntimeridian(toJtsPolygon(coords));
         }
         return null;
     }
 
 
+    /**
+     * Splits a geometry extending beyond the [-180, 180] longitude range at the antimeridian.
+     * <p>
+     * The parts of the geometry outside the range are shifted by 360 degrees into the range,
+     * so that e.g. an extent from 170 to 190 becomes the two boxes from 170 to 180 and from -180 to -170.
+     * Geometries within the range are returned unchanged.
+     *
+     * @param geometry the geometry to split
+     * @return the split geometry
+     */
+    public static Geometry splitAtAntimeridian(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return geometry;
+        }
+        Envelope env = geometry.getEnvelopeInternal();
+        if (env.getMinX() >= -180.0 && env.getMaxX() <= 180.0) {
+            return geometry;
+        }
+
+        List<Geometry> parts = new ArrayList<>();
+        int minShift = (int) Math.floor((env.getMinX() + 180.0) / 360.0);
+        int maxShift = (int) Math.ceil((env.getMaxX() - 180.0) / 360.0);
+        for (int shift = minShift; shift <= maxShift; shift++) {
+            double offset = shift * 360.0;
+            Geometry part = geometry.intersection(factory.toGeometry(
+                    new Envelope(-180.0 + offset, 180.0 + offset, env.getMinY(), env.getMaxY())));
+            if (!part.isEmpty()) {
+                parts.add(AffineTransformation.translationInstance(-offset, 0.0).transform(part));
+            }
+        }
+        Geometry result = factory.buildGeometry(parts).union();
+        result.setSRID(geometry.getSRID());
+        return result;
+    }
+
+
     /**
      * Converts a GeoJson geometry to the corresponding JTS geometry
      * @param g the GeoJson to convert
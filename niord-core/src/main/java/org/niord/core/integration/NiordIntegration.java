@@ -19,6 +19,7 @@ package org.niord.core.integration;
 
 import org.niord.core.integration.vo.MessageSeriesMappingVo;
 import org.niord.core.integration.vo.NiordIntegrationVo;
+import org.hibernate.annotations.DynamicUpdate;
 import org.niord.core.model.BaseEntity;
 
 import javax.persistence.CascadeType;
@@ -39,8 +40,15 @@ import java.util.stream.Collectors;
  * message series mappings and import settings.
  * <p>
  * The import will only include public messages.
+ * <p>
+ * The import is incremental. The "updatedSince" cursor is the latest updated-time of the messages fetched
+ * from the other Niord server, and "etag" is the entity tag of the latest response.
+ * <p>
+ * NB: The entity uses dynamic updates, since the scheduling and the synchronization state
+ * are updated in separate transactions.
  */
 @Entity
+@DynamicUpdate
 @NamedQueries({
         @NamedQuery(name="NiordIntegration.findPendingNiordIntegrations",
                 query="SELECT i FROM NiordIntegration i where i.active = true and " +
@@ -66,6 +74,13 @@ public class NiordIntegration extends BaseEntity<Integer> {
     @Temporal(TemporalType.TIMESTAMP)
     Date nextScheduledExecution;
 
+    // The updated-time of the latest message fetched from the other Niord server
+    @Temporal(TemporalType.TIMESTAMP)
+    Date updatedSince;
+
+    // The entity tag of the latest response from the other Niord server
+    String etag;
+
 
     /** No-argument constructor */
     public NiordIntegration() {
@@ -167,4 +182,20 @@ public class NiordIntegration extends BaseEntity<Integer> {
     public void setNextScheduledExecution(Date nextScheduledExecution) {
         this.nextScheduledExecution = nextScheduledExecution;
     }
+
+    public Date getUpdatedSince() {
+        return updatedSince;
+    }
+
+    public void setUpdatedSince(Date updatedSince) {
+        this.updatedSince = updatedSince;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
 }
@@ -16,10 +16,14 @@
 
 package org.niord.core.integration;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -54,17 +58,23 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
- * Handles the actual Niord integration execution
+ * Handles the actual Niord integration execution.
+ * <p>
+ * The messages are fetched incrementally, i.e. only the messages updated since the latest execution
+ * are fetched, and the response is parsed as a stream of messages.
  */
 @Stateless
 @SuppressWarnings("unused")
@@ -72,6 +82,15 @@ public class NiordIntegrationExecutionService extends BaseService {
 
     public static final int TIMEOUT = 5; // 5 seconds
 
+    /** Response header confirming that only the messages updated since the given time were returned **/
+    public static final String UPDATED_SINCE_HEADER = "X-Niord-Updated-Since";
+
+    /** Messages updated this long before the cursor are fetched again, to cover transactions committed late **/
+    public static final long UPDATED_SINCE_OVERLAP = 60L * 1000L; // 1 minute
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+    static final ObjectReader MESSAGE_READER = MAPPER.readerFor(MessageVo.class);
+
     @Inject
     private Logger log;
 
@@ -106,68 +125,60 @@ public class NiordIntegrationExecutionService extends BaseService {
         }
 
         try {
-            // Fetch message for all source message series
-            List<MessageVo> messages = fetchMessages(integration);
+            long t0 = System.currentTimeMillis();
+
+            // Look up the synchronization state of the integration
+            NiordIntegration syncState = getByPrimaryKey(NiordIntegration.class, integration.getId());
+            Date updatedSince = syncState != null ? syncState.getUpdatedSince() : null;
+            String etag = syncState != null ? syncState.getEtag() : null;
+
+            // Get the source message series IDs that are mapped to each target message series
+            // Typically, there will only be one, but there may actually be more
+            Map<String, Set<String>> targetSeriesIds = integration.getMessageSeriesMappings().stream()
+                    .collect(Collectors.groupingBy(
+                            MessageSeriesMappingVo::getSourceSeriesId,
+                            Collectors.mapping(MessageSeriesMappingVo::getTargetSeriesId, Collectors.toSet())));
+
+            // Fetch message for all source message series, and group them by target message series
+            Map<String, List<MessageVo>> importMessages = new HashMap<>();
+            FetchResult result = fetchMessages(integration, updatedSince, etag, msg -> {
+                String sourceSeriesId = msg.getMessageSeries() != null ? msg.getMessageSeries().getSeriesId() : null;
+                targetSeriesIds.getOrDefault(sourceSeriesId, Collections.emptySet())
+                        .forEach(seriesId -> importMessages.computeIfAbsent(seriesId, id -> new ArrayList<>()).add(msg));
+            });
+
+            if (result.isNotModified()) {
+                log.debug("No messages updated for integration " + integration.getId() + " in "
+                        + (System.currentTimeMillis() - t0) + " ms");
+                return;
+            }
+            log.debug("Fetched " + result.getMessageCount() + " messages for integration " + integration.getId()
+                    + (result.isIncremental() ? " updated since " + updatedSince : "") + " in "
+                    + (System.currentTimeMillis() - t0) + " ms");
 
-            Set<String> targetSeriesIds = integration.getMessageSeriesMappings().stream()
+            // Handle target message series one by one
+            Set<String> seriesIds = integration.getMessageSeriesMappings().stream()
                     .map(MessageSeriesMappingVo::getTargetSeriesId)
                     .collect(Collectors.toSet());
+            for (String targetSeriesId : seriesIds) {
 
-            // Handle target message series one by one
-            for (String targetSeriesId : targetSeriesIds) {
-
-                MessageSeries targetSeries = messageSeriesService.findBySeriesId(targetSeriesId);
-                if (targetSeries == null) {
+                // When fetching incrementally, only target message series with updated messages are affected
+                List<MessageVo> messages = importMessages.getOrDefault(targetSeriesId, Collections.emptyList());
+                if (result.isIncremental() && messages.isEmpty()) {
                     continue;
                 }
 
-                // Get the source message series IDs that are mapped to the target message series
-                // Typically, there will only be one, but there may actually be more
-                Set<String> sourceSeriesIds = integration.getMessageSeriesMappings().stream()
-                        .filter(ms -> targetSeriesId.equals(ms.getTargetSeriesId()))
-                        .map(MessageSeriesMappingVo::getSourceSeriesId)
-                        .collect(Collectors.toSet());
-
-                // Get all source message whose message series ids should be mapped to the target message series
-                List<MessageVo> importMessages = messages.stream()
-                        .filter(m -> sourceSeriesIds.contains(m.getMessageSeries().getSeriesId()))
-                        .collect(Collectors.toList());
-                Map<String, MessageVo> importMessageMap = importMessages.stream()
-                        .collect(Collectors.toMap(MessageVo::getId, Function.identity()));
-
-                // Get our own messages for the target message series
-                List<Message> ownMessages = fetchOwnMessages(targetSeriesId);
-                Map<String, Message> ownMessageMap = ownMessages.stream()
-                        .collect(Collectors.toMap(Message::getLegacyId, Function.identity()));
-
-                // Determine which of our current messages to cancel and which of the fetched messages to import
-                List<Message> cancelMessages = ownMessages.stream()
-                        .filter(m -> !importMessageMap.containsKey(m.getLegacyId()))
-                        .collect(Collectors.toList());
-                List<MessageVo> createMessages = importMessages.stream()
-                        .filter(m -> !ownMessageMap.containsKey(m.getId()))
-                        .collect(Collectors.toList());
-                List<MessageVo> updateMessages = importMessages.stream()
-                        .filter(m -> ownMessageMap.containsKey(m.getId()))
-                        .filter(m -> m.getUpdated().after(ownMessageMap.get(m.getId()).getUpdated()))
-                        .collect(Collectors.toList());
-
-                // Cancel own message not found in the fetched message list
-                for (Message msg : cancelMessages) {
-                    messageService.updateStatus(msg.getUid(), Status.CANCELLED);
-                }
-
-                // Create fetched messages not yet imported
-                for (MessageVo msg : createMessages) {
-                    importMessage(msg, targetSeries, integration);
+                MessageSeries targetSeries = messageSeriesService.findBySeriesId(targetSeriesId);
+                if (targetSeries != null) {
+                    processMessages(integration, targetSeries, messages, result.isIncremental());
                 }
+            }
 
-                // Update existing message that have been updated after import
-                for (MessageVo msg : updateMessages) {
-                    Message message = ownMessageMap.get(msg.getId());
-                    messageService.updateStatus(message.getUid(), Status.CANCELLED);
-                    importMessage(msg, targetSeries, integration);
-                }
+            // Update the synchronization state
+            if (syncState != null) {
+                syncState.setUpdatedSince(result.getUpdatedSince() != null ? result.getUpdatedSince() : updatedSince);
+                syncState.setEtag(result.getEtag());
+                saveEntity(syncState);
             }
 
         } catch (Exception e) {
@@ -176,6 +187,70 @@ public class NiordIntegrationExecutionService extends BaseService {
     }
 
 
+    /**
+     * Imports the messages fetched for the given target message series.
+     * <p>
+     * If the messages have been fetched incrementally, they comprise the public (published, cancelled or expired)
+     * messages updated since the latest execution. Otherwise, they comprise all published messages, and our own
+     * messages not found in the list are cancelled.
+     *
+     * @param integration the Niord integration point
+     * @param targetSeries the target message series
+     * @param messages the fetched messages mapped to the target message series
+     * @param incremental whether the messages have been fetched incrementally
+     */
+    private void processMessages(NiordIntegrationVo integration, MessageSeries targetSeries,
+                                 List<MessageVo> messages, boolean incremental) throws Exception {
+
+        // Messages that are not published any more are only included in incremental results
+        List<MessageVo> importMessages = messages.stream()
+                .filter(m -> m.getStatus() == null || m.getStatus() == Status.PUBLISHED)
+                .collect(Collectors.toList());
+        Map<String, MessageVo> importMessageMap = importMessages.stream()
+                .collect(Collectors.toMap(MessageVo::getId, Function.identity(), (m1, m2) -> m1));
+
+        // Get our own messages for the target message series
+        List<Message> ownMessages = fetchOwnMessages(targetSeries.getSeriesId());
+        Map<String, Message> ownMessageMap = ownMessages.stream()
+                .collect(Collectors.toMap(Message::getLegacyId, Function.identity()));
+
+        // Determine which of our current messages to cancel and which of the fetched messages to import
+        List<Message> cancelMessages = incremental
+                ? messages.stream()
+                    .filter(m -> !importMessageMap.containsKey(m.getId()))
+                    .map(m -> ownMessageMap.get(m.getId()))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())
+                : ownMessages.stream()
+                    .filter(m -> !importMessageMap.containsKey(m.getLegacyId()))
+                    .collect(Collectors.toList());
+        List<MessageVo> createMessages = importMessageMap.values().stream()
+                .filter(m -> !ownMessageMap.containsKey(m.getId()))
+                .collect(Collectors.toList());
+        List<MessageVo> updateMessages = importMessageMap.values().stream()
+                .filter(m -> ownMessageMap.containsKey(m.getId()))
+                .filter(m -> m.getUpdated().after(ownMessageMap.get(m.getId()).getUpdated()))
+                .collect(Collectors.toList());
+
+        // Cancel own message not found in the fetched message list, or no longer published
+        for (Message msg : cancelMessages) {
+            messageService.updateStatus(msg.getUid(), Status.CANCELLED);
+        }
+
+        // Create fetched messages not yet imported
+        for (MessageVo msg : createMessages) {
+            importMessage(msg, targetSeries, integration);
+        }
+
+        // Update existing message that have been updated after import
+        for (MessageVo msg : updateMessages) {
+            Message message = ownMessageMap.get(msg.getId());
+            messageService.updateStatus(message.getUid(), Status.CANCELLED);
+            importMessage(msg, targetSeries, integration);
+        }
+    }
+
+
     /**
      * Fetches published messages from this Niord server for the given message series.
      * The messages should also have a defined legacyId to partake in the process.
@@ -269,18 +344,27 @@ public class NiordIntegrationExecutionService extends BaseService {
 
 
     /**
-     * Fetches the messages defined by the Niord integration point
+     * Fetches the messages defined by the Niord integration point.
+     * <p>
+     * If the "updatedSince" cursor is defined, only the public messages updated since then are fetched.
+     * The messages are parsed as a stream and passed on to the message consumer one by one.
+     *
      * @param integration the Niord integration point to fetch message from
-     * @return the messages fetched from the Niord integration point
+     * @param updatedSince if defined, the updated-time of the latest message previously fetched
+     * @param etag if defined, the entity tag of the previous response
+     * @param consumer the consumer of the fetched messages
+     * @return the result of fetching the messages
      */
-    public List<MessageVo> fetchMessages(NiordIntegrationVo integration) throws Exception {
-
-        long t0 = System.currentTimeMillis();
+    public FetchResult fetchMessages(NiordIntegrationVo integration, Date updatedSince, String etag,
+                                     Consumer<MessageVo> consumer) throws Exception {
 
         // Construct the URL to fetch messages from
         String params = integration.getMessageSeriesMappings().stream()
                 .map(m -> "messageSeries=" + WebUtils.encodeURIComponent(m.getSourceSeriesId()))
                 .collect(Collectors.joining("&"));
+        if (updatedSince != null) {
+            params += "&updatedSince=" + (updatedSince.getTime() - UPDATED_SINCE_OVERLAP);
+        }
 
         String url = integration.getUrl() + "/rest/public/v1/messages?" + params;
 
@@ -296,15 +380,27 @@ public class NiordIntegrationExecutionService extends BaseService {
                 .setConnectionRequestTimeout(TIMEOUT * 1000)
                 .setSocketTimeout(TIMEOUT * 1000).build();
 
-        CloseableHttpClient client = HttpClients.custom()
-                .setDefaultRequestConfig(config)
-                .setSSLSocketFactory(sslSF)
-                .setHostnameVerifier(new AllowAllHostnameVerifier())
-                .build();
+        HttpGet get = new HttpGet(url);
+        if (StringUtils.isNotBlank(etag)) {
+            get.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+
+        try (CloseableHttpClient client = HttpClients.custom()
+                    .setDefaultRequestConfig(config)
+                    .setSSLSocketFactory(sslSF)
+                    .setHostnameVerifier(new AllowAllHostnameVerifier())
+                    .build();
+             CloseableHttpResponse response = client.execute(get)) {
 
+            FetchResult result = new FetchResult();
 
-        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
             int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                result.notModified = true;
+                result.etag = etag;
+                return result;
+            }
+
             if (status < 200 || status > 299) {
                 try {
                     response.getEntity().getContent().close();
@@ -318,14 +414,65 @@ public class NiordIntegrationExecutionService extends BaseService {
                 throw new Exception("No response received from URL " + url);
             }
 
+            // Older Niord servers do not support fetching messages incrementally
+            result.incremental = updatedSince != null && response.containsHeader(UPDATED_SINCE_HEADER);
+            result.etag = response.containsHeader(HttpHeaders.ETAG)
+                    ? response.getFirstHeader(HttpHeaders.ETAG).getValue()
+                    : null;
 
-            try (InputStream is = entity.getContent()) {
-                List<MessageVo> result = new ObjectMapper().readValue(is, new TypeReference<List<MessageVo>>(){});
-                log.debug("Fetching " + result.size() + " messages from URL " + url + " in " +
-                        (System.currentTimeMillis() - t0) + " ms");
-                return result;
+            try (InputStream is = entity.getContent();
+                 JsonParser parser = MAPPER.getFactory().createParser(is)) {
+
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new Exception("Invalid message list received from URL " + url);
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    MessageVo message = MESSAGE_READER.readValue(parser);
+                    result.messageCount++;
+                    if (message.getUpdated() != null &&
+                            (result.updatedSince == null || message.getUpdated().after(result.updatedSince))) {
+                        result.updatedSince = message.getUpdated();
+                    }
+                    consumer.accept(message);
+                }
             }
+            return result;
         }
     }
 
+
+    /**
+     * The result of fetching messages from a Niord integration point
+     */
+    public static class FetchResult {
+
+        boolean notModified;
+        boolean incremental;
+        String etag;
+        Date updatedSince;
+        int messageCount;
+
+        /** Returns whether the messages have not been modified since the previous response **/
+        public boolean isNotModified() {
+            return notModified;
+        }
+
+        /** Returns whether only the messages updated since the cursor have been fetched **/
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /** Returns the updated-time of the latest message fetched, or null if no messages were fetched **/
+        public Date getUpdatedSince() {
+            return updatedSince;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+    }
 }
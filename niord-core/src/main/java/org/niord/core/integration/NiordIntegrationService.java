@@ -110,6 +110,10 @@ public class NiordIntegrationService extends BaseService {
         original.getMessageSeriesMappings().clear();
         integration.getMessageSeriesMappings().forEach(original::addMessageSeriesMapping);
 
+        // The message series mappings may have changed, so start over with a full synchronization
+        original.setUpdatedSince(null);
+        original.setEtag(null);
+
         // NB: We do not update the nextScheduledExecution attribute, as this gets computed by the system
 
         log.info("Updating Niord integration " + integration.getId());
@@ -149,14 +153,14 @@ public class NiordIntegrationService extends BaseService {
 
 
     /**
-     * Called every minute and processes the next pending Niord Integration
+     * Called every minute and processes the pending Niord Integrations.
+     * <p>
+     * The integrations are independent and executed asynchronously, i.e. in parallel.
      */
     @Schedule(persistent=false, second="51", minute="*/1", hour="*")
-    private void processNextPendingNiordIntegration() {
-        List<NiordIntegration> integrations = getPendingNiordIntegrations();
-        if (!integrations.isEmpty()) {
-            processNiordIntegration(integrations.get(0).getId());
-        }
+    private void processPendingNiordIntegrations() {
+        getPendingNiordIntegrations()
+                .forEach(integration -> processNiordIntegration(integration.getId()));
     }
 
 
@@ -171,6 +175,10 @@ public class NiordIntegrationService extends BaseService {
             throw new IllegalArgumentException("No Niord Integration with ID " + id);
         }
 
+        // Update the next execution time
+        computeNextScheduledExecution(integration);
+        saveEntity(integration);
+
         try {
             log.debug(String.format("Processing Niord Integration %d for server %s",
                     integration.getId(),
@@ -179,10 +187,6 @@ public class NiordIntegrationService extends BaseService {
         } catch (Exception ex) {
             log.error("Error processing Niord Integration " + integration.getId(), ex);
         }
-
-        // Update the next execution time
-        computeNextScheduledExecution(integration);
-        saveEntity(integration);
     }
 
 }
@@ -28,7 +28,6 @@ import javax.inject.Inject;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import java.util.stream.Collectors;
 
@@ -58,6 +57,9 @@ public class MailService extends BaseService {
     @Inject
     MailAttachmentCache mailAttachmentCache;
 
+    @Inject
+    MailTransportPool mailTransportPool;
+
     @Inject
     NiordApp app;
 
@@ -129,7 +131,7 @@ public class MailService extends BaseService {
                 log.debug("Composing mail");
                 Message message = mail.compose(mailSession, mailAttachmentCache.getCache());
                 log.debug("Sending...");
-                Transport.send(message);
+                mailTransportPool.send(message);
 
             }
 
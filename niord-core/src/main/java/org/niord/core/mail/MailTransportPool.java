@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.mail;
+
+import org.niord.core.settings.annotation.Setting;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.niord.core.settings.Setting.Type.Integer;
+
+/**
+ * A bounded pool of persistent SMTP connections.
+ * <p>
+ * Sending a mail using the static {@code Transport.send()} method will open a new SMTP connection,
+ * including TLS handshake and authentication, for every single mail. Instead, the pool keeps
+ * connected transports that are re-used across mails.
+ * <p>
+ * A transport is closed and replaced if sending a mail fails, if it has been idle for more than
+ * {@code MAX_IDLE_MS}, or if it has been used for sending {@code MAX_MAILS_PER_CONNECTION} mails.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class MailTransportPool {
+
+    /** The max number of mails to send via the same SMTP connection **/
+    public static final int MAX_MAILS_PER_CONNECTION = 100;
+
+    /** Idle SMTP connections are closed after this period **/
+    public static final long MAX_IDLE_MS = 30 * 1000L;
+
+    @Resource(name = "java:jboss/mail/Niord")
+    Session mailSession;
+
+    @Inject
+    @Setting(value = "mailTransportPoolSize", defaultValue = "4", type = Integer,
+            description = "The max number of concurrent SMTP connections used for sending mails")
+    Integer poolSize;
+
+    private Semaphore permits;
+    private final Deque<PooledTransport> idleTransports = new ArrayDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong openedConnections = new AtomicLong();
+    private final AtomicLong sentMails = new AtomicLong();
+    private final AtomicLong failedMails = new AtomicLong();
+
+
+    /** Constructor **/
+    public MailTransportPool() {
+    }
+
+
+    /**
+     * Constructor used when the pool is not instantiated as an EJB, e.g. in tests
+     *
+     * @param mailSession the mail session
+     * @param poolSize the max number of concurrent SMTP connections
+     */
+    public MailTransportPool(Session mailSession, int poolSize) {
+        this.mailSession = mailSession;
+        this.poolSize = poolSize;
+        init();
+    }
+
+
+    /** Initializes the pool **/
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(Math.max(1, poolSize), true);
+    }
+
+
+    /** Closes all idle connections when the pool is destroyed **/
+    @PreDestroy
+    void destroy() {
+        closeIdleConnections(0L);
+    }
+
+
+    /**
+     * Sends the message using a pooled SMTP connection.
+     * Blocks until a connection is available.
+     *
+     * @param message the message to send
+     */
+    public void send(Message message) throws MessagingException {
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted whilst waiting for an SMTP connection", e);
+        }
+
+        PooledTransport transport = null;
+        try {
+            transport = borrowTransport();
+
+            message.saveChanges();
+            transport.transport.sendMessage(message, message.getAllRecipients());
+            transport.mailCount++;
+            sentMails.incrementAndGet();
+
+            returnTransport(transport);
+            transport = null;
+
+        } catch (MessagingException e) {
+            failedMails.incrementAndGet();
+            throw e;
+
+        } finally {
+            // The transport is only non-null if sending failed, in which case it is recycled
+            if (transport != null) {
+                close(transport);
+            }
+            permits.release();
+        }
+    }
+
+
+    /**
+     * Returns an idle connected transport, or opens a new connection
+     * @return a connected transport
+     */
+    private PooledTransport borrowTransport() throws MessagingException {
+        PooledTransport transport;
+        while ((transport = pollIdleTransport()) != null) {
+            if (!transport.isExpired(System.currentTimeMillis()) && transport.transport.isConnected()) {
+                return transport;
+            }
+            close(transport);
+        }
+
+        Transport t = mailSession.getTransport();
+        t.connect();
+        openConnections.incrementAndGet();
+        openedConnections.incrementAndGet();
+        return new PooledTransport(t);
+    }
+
+
+    /** Polls the most recently used idle transport **/
+    private PooledTransport pollIdleTransport() {
+        synchronized (idleTransports) {
+            return idleTransports.pollFirst();
+        }
+    }
+
+
+    /** Returns the transport to the pool of idle transports, or closes it if it has been used enough **/
+    private void returnTransport(PooledTransport transport) {
+        if (transport.mailCount >= MAX_MAILS_PER_CONNECTION) {
+            close(transport);
+            return;
+        }
+        transport.lastUsed = System.currentTimeMillis();
+        synchronized (idleTransports) {
+            idleTransports.offerFirst(transport);
+        }
+    }
+
+
+    /** Closes the transport **/
+    private void close(PooledTransport transport) {
+        openConnections.decrementAndGet();
+        try {
+            transport.transport.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+
+    /**
+     * Called every minute to close connections that have been idle for too long
+     */
+    @Schedule(persistent = false, second = "40", minute = "*", hour = "*")
+    void closeExpiredConnections() {
+        closeIdleConnections(MAX_IDLE_MS);
+    }
+
+
+    /**
+     * Closes the connections that have been idle for more than the given period
+     * @param maxIdleMs the max idle period
+     */
+    public void closeIdleConnections(long maxIdleMs) {
+        long now = System.currentTimeMillis();
+        List<PooledTransport> expired = new ArrayList<>();
+        synchronized (idleTransports) {
+            idleTransports.removeIf(t -> now - t.lastUsed >= maxIdleMs && expired.add(t));
+        }
+        expired.forEach(this::close);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return "MailTransportPool{" +
+                "poolSize=" + poolSize +
+                ", openConnections=" + openConnections.get() +
+                ", openedConnections=" + openedConnections.get() +
+                ", sentMails=" + sentMails.get() +
+                ", failedMails=" + failedMails.get() +
+                '}';
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public long getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    public long getSentMails() {
+        return sentMails.get();
+    }
+
+    public long getFailedMails() {
+        return failedMails.get();
+    }
+
+
+    /**
+     * A pooled transport
+     */
+    private static class PooledTransport {
+        final Transport transport;
+        int mailCount;
+        long lastUsed = System.currentTimeMillis();
+
+        /** Constructor **/
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        /** Returns if the transport has been idle for too long **/
+        boolean isExpired(long now) {
+            return now - lastUsed >= MAX_IDLE_MS;
+        }
+    }
+}
@@ -64,6 +64,9 @@ public class ScheduledMailService extends BaseService {
     @Inject
     MailService mailService;
 
+    @Inject
+    MailTransportPool mailTransportPool;
+
     @Inject
     @Setting(value = "mailMaxPerMinute", defaultValue = "10", type = Integer,
             description = "The max number of mails to send per minute")
@@ -77,8 +80,8 @@ public class ScheduledMailService extends BaseService {
 
 
     /**
-     * NB: Niord defines its own managed executor service to limit the number of threads,
-     * and thus, the number of concurrent SMTP connections.
+     * NB: Niord defines its own managed executor service to limit the number of threads.
+     * The number of concurrent SMTP connections is further bounded by the {@code MailTransportPool}.
      */
     @Resource(lookup = "java:jboss/ee/concurrency/executor/MailExecutorService")
     ManagedExecutorService managedExecutorService;
@@ -200,7 +203,11 @@ public class ScheduledMailService extends BaseService {
                     .collect(Collectors.toList());
 
             try {
+                long t0 = System.currentTimeMillis();
                 managedExecutorService.invokeAll(tasks);
+                long ms = Math.max(1L, System.currentTimeMillis() - t0);
+                log.info(String.format("Processed %d scheduled mails in %d ms (%.1f mails/s). SMTP pool: %s",
+                        tasks.size(), ms, 1000.0 * tasks.size() / ms, mailTransportPool));
             } catch (InterruptedException e) {
                 log.error("Error sending scheduled emails: " + scheduledMailIds, e);
             }
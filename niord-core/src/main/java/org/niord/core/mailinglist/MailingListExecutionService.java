@@ -38,9 +38,12 @@ import org.niord.core.service.BaseService;
 import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -48,9 +51,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import static org.niord.core.mail.ScheduledMailRecipient.RecipientType.TO;
@@ -62,6 +67,9 @@ import static org.niord.core.script.ScriptResource.Type.FM;
 @Stateless
 public class MailingListExecutionService extends BaseService {
 
+    /** The number of scheduled mails to persist before flushing **/
+    static final int PERSIST_BATCH_SIZE = 50;
+
     @Inject
     Logger log;
 
@@ -80,12 +88,107 @@ public class MailingListExecutionService extends BaseService {
     @Inject
     DictionaryService dictionaryService;
 
+    @Resource
+    SessionContext ctx;
+
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
 
     /***************************************/
     /** Status change triggers            **/
     /***************************************/
 
 
+    /**
+     * Executes the status change mailing list triggers for the given message.
+     * <p>
+     * The triggers are grouped by their script resources. Within a group, the script resources
+     * are only executed once per language, and the resulting mails of all triggers of the group
+     * are persisted in a single transaction. The groups are executed in parallel.
+     *
+     * @param triggerIds the IDs of the status change mailing list triggers to execute
+     * @param messageUid the message UID to execute the triggers for
+     */
+    public void executeStatusChangeTriggers(List<Integer> triggerIds, String messageUid) {
+
+        // Group the triggers by their script resources
+        Map<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+        for (Integer triggerId : triggerIds) {
+            MailingListTrigger trigger = getByPrimaryKey(MailingListTrigger.class, triggerId);
+            if (trigger != null && trigger.getType() == TriggerType.STATUS_CHANGE) {
+                groups.computeIfAbsent(new ArrayList<>(trigger.getScriptResourcePaths()), p -> new ArrayList<>())
+                        .add(triggerId);
+            }
+        }
+
+        // NB: Each group is executed in a new transaction
+        MailingListExecutionService self = ctx.getBusinessObject(MailingListExecutionService.class);
+        List<Callable<Void>> tasks = groups.values().stream()
+                .map(group -> (Callable<Void>) () -> {
+                    try {
+                        self.executeStatusChangeTriggerGroup(group, messageUid);
+                    } catch (Exception e) {
+                        log.error("Error executing status-change mailing-list triggers " + group, e);
+                    }
+                    return null;
+                })
+                .collect(Collectors.toList());
+
+        try {
+            managedExecutorService.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            log.error("Interrupted executing status-change mailing-list triggers " + triggerIds, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Executes the status change mailing list triggers for the given message.
+     * <p>
+     * All triggers must use the same script resources, since the script resources are only
+     * executed once per language, and the result shared between the triggers.
+     *
+     * @param triggerIds the IDs of the status change mailing list triggers to execute
+     * @param messageUid the message UID to execute the triggers for
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void executeStatusChangeTriggerGroup(List<Integer> triggerIds, String messageUid) throws Exception {
+
+        long t0 = System.currentTimeMillis();
+
+        // Look up the message
+        Message message = messageService.findByUid(messageUid);
+        if (message == null) {
+            throw new IllegalArgumentException("Invalid message " + messageUid);
+        }
+
+        Map<String, String> htmlByLanguage = new HashMap<>();
+        List<ScheduledMail> mails = new ArrayList<>();
+        for (Integer triggerId : triggerIds) {
+            MailingListTrigger trigger = getByPrimaryKey(MailingListTrigger.class, triggerId);
+            if (trigger == null || trigger.getType() != TriggerType.STATUS_CHANGE) {
+                log.error("Invalid trigger " + triggerId);
+                continue;
+            }
+            try {
+                mails.addAll(createStatusChangeMails(trigger, message, htmlByLanguage));
+            } catch (Exception e) {
+                log.error("Error executing status-change mailing-list trigger " + triggerId, e);
+            }
+        }
+
+        persistMails(mails);
+
+        log.debug(String.format("Executed %d status change triggers for %s with %d mails in %d ms",
+                triggerIds.size(),
+                messageUid,
+                mails.size(),
+                System.currentTimeMillis() - t0));
+    }
+
+
     /**
      * Executes the status change mailing list trigger for the given message
      *
@@ -128,6 +231,33 @@ public class MailingListExecutionService extends BaseService {
             throw new IllegalAccessException("Must be a status-change trigger");
         }
 
+        List<ScheduledMail> mails = createStatusChangeMails(trigger, message, new HashMap<>());
+
+        // Persist the mails
+        if (persist) {
+            persistMails(mails);
+        }
+        return mails;
+    }
+
+
+    /**
+     * Creates the mails of the status change mailing list trigger for the given message.
+     * <p>
+     * The HTML generated by executing the script resources of the trigger is looked up and
+     * registered in the {@code htmlByLanguage} cache, which thus may be shared between
+     * triggers with the same script resources.
+     *
+     * @param trigger the status change mailing list trigger to execute
+     * @param message the message to execute the trigger for
+     * @param htmlByLanguage the HTML generated for each language
+     * @return the resulting mails
+     */
+    private List<ScheduledMail> createStatusChangeMails(
+            MailingListTrigger trigger,
+            Message message,
+            Map<String, String> htmlByLanguage) throws Exception {
+
         List<ScheduledMail> mails = new ArrayList<>();
 
         // Check that one or more language variants have been defined
@@ -166,17 +296,17 @@ public class MailingListExecutionService extends BaseService {
                 continue;
             }
 
-            String html = executeScriptResources(trigger, Collections.singletonList(message), language);
+            String html = htmlByLanguage.get(language);
+            if (html == null) {
+                html = executeScriptResources(trigger, Collections.singletonList(message), language);
+                htmlByLanguage.put(language, html);
+            }
             mail.setHtmlContents(html);
 
             // All a copy of the mail for each recipient
             mails.addAll(mail.splitByRecipient());
         }
 
-        // Persist the mails
-        if (persist) {
-            persistMails(mails);
-        }
         return mails;
     }
 
@@ -418,7 +548,7 @@ public class MailingListExecutionService extends BaseService {
     private void persistMails(List<ScheduledMail> mails) {
         for (int x = 0; x < mails.size(); x++) {
             saveEntity(mails.get(x));
-            if ((x + 1) % 20 == 0) {
+            if ((x + 1) % PERSIST_BATCH_SIZE == 0) {
                 em.flush();
             }
         }
@@ -91,13 +91,8 @@ public class MailingListMessageListener implements MessageListener {
                 messageUid,
                 status));
 
-        for (Integer triggerId : triggerIds) {
-            try {
-                // NB: This function requires a new transaction
-                mailingListExecutionService.executeStatusChangeTrigger(triggerId, messageUid);
-            } catch (Exception e) {
-                log.error("Error executing status-change mailing-list trigger " + triggerId, e);
-            }
+        if (!triggerIds.isEmpty()) {
+            mailingListExecutionService.executeStatusChangeTriggers(triggerIds, messageUid);
         }
         log.debug(String.format("Executed %d status change triggers for %s in status %s in %d ms",
                 triggerIds.size(),
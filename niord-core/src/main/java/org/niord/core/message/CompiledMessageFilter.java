@@ -0,0 +1,522 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.niord.model.message.MainType;
+import org.niord.model.message.Status;
+import org.niord.model.message.Type;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a message filter into a Java predicate, for the subset of JavaScript actually used by message filters.
+ * <p>
+ * Message filter example:
+ * "(msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) && msg.status == Status.PUBLISHED"
+ * <p>
+ * Supported are the logical operators "&amp;&amp;", "||" and "!", the comparison operators "==", "!=",
+ * "===", "!==", "&lt;", "&lt;=", "&gt;" and "&gt;=", parentheses, string, number and boolean literals,
+ * "null", constants of the {@code MainType}, {@code Type} and {@code Status} enums, and property paths
+ * rooted at "msg" or "data", such as "msg.messageSeries.seriesId" or "data.phase".
+ * <p>
+ * The evaluation mimics JavaScript semantics, e.g. "&amp;&amp;" and "||" return the deciding operand,
+ * and accessing a property of null fails the evaluation, so that the message is not included.
+ * Likewise, "===" and "!==" compare values of different types as unequal, whereas "==" and "!=" first
+ * convert the values, as Nashorn does, e.g. comparing enum constants by name and numeric strings by value.
+ * The relational operators also convert operands of different types, e.g. comparing numeric strings by value.
+ * <p>
+ * Any other construct, such as function calls, will cause {@code compile()} to throw an
+ * {@code IllegalArgumentException}, in which case the filter should be evaluated using Nashorn.
+ */
+@SuppressWarnings("unused")
+public class CompiledMessageFilter {
+
+    private static final Class<?>[] FILTER_ENUMS = { MainType.class, Type.class, Status.class };
+
+    /** The supported operators. NB: Longest operators first **/
+    private static final String[] OPERATORS = {
+            "===", "!==", "==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", "." };
+
+    /** The JavaScript number format accepted when converting strings to numbers **/
+    private static final Pattern NUMBER_FORMAT = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    /** Represents the JavaScript "undefined" value, e.g. the value of an unknown bean property **/
+    private static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    /** Cache of bean property getters, keyed by class and property name **/
+    private static final Map<String, Optional<Method>> GETTERS = new ConcurrentHashMap<>();
+
+    private final String filter;
+    private final Expr expr;
+
+
+    /** Constructor **/
+    private CompiledMessageFilter(String filter, Expr expr) {
+        this.filter = filter;
+        this.expr = expr;
+    }
+
+
+    /**
+     * Compiles the message filter
+     *
+     * @param filter the message filter
+     * @return the compiled message filter
+     * @throws IllegalArgumentException if the filter uses constructs not supported by the compiler
+     */
+    public static CompiledMessageFilter compile(String filter) {
+        Parser parser = new Parser(tokenize(filter));
+        Expr expr = parser.parseOr();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected token " + parser.peek() + " in filter " + filter);
+        }
+        return new CompiledMessageFilter(filter, expr);
+    }
+
+
+    /**
+     * Check if the message is included in the filter or not
+     * @param message the message to check
+     * @param data optionally, a data object that is accessible in the filter as "data"
+     * @return if the message is included in the filter or not
+     */
+    public boolean includeMessage(Message message, Object data) {
+        try {
+            return Boolean.TRUE.equals(expr.eval(message, data));
+        } catch (Exception ignored) {
+            // Do not include
+            return false;
+        }
+    }
+
+
+    public String getFilter() {
+        return filter;
+    }
+
+
+    /***************************************/
+    /** Evaluation                        **/
+    /***************************************/
+
+
+    /** A compiled expression **/
+    @FunctionalInterface
+    private interface Expr {
+        Object eval(Message msg, Object data) throws Exception;
+    }
+
+
+    /** Returns the JavaScript truthiness of the value **/
+    private static boolean truthy(Object value) {
+        if (value == null || value == UNDEFINED) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return d != 0 && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+
+    /** Checks the values for strict equality ("==="), i.e. values of different types are never equal **/
+    private static boolean strictEqual(Object v1, Object v2) {
+        if (v1 instanceof Number && v2 instanceof Number) {
+            return ((Number) v1).doubleValue() == ((Number) v2).doubleValue();
+        } else if (v1 instanceof String || v1 instanceof Boolean) {
+            return v1.equals(v2);
+        }
+        // null, undefined, enum constants and other Java objects are compared by identity
+        return v1 == v2;
+    }
+
+
+    /** Checks the values for loose equality ("=="), i.e. converting the values if they are of different types **/
+    private static boolean looseEqual(Object v1, Object v2) {
+        boolean null1 = v1 == null || v1 == UNDEFINED, null2 = v2 == null || v2 == UNDEFINED;
+        if (null1 || null2) {
+            return null1 && null2;
+        } else if (v1 instanceof Boolean) {
+            return looseEqual(toNumber(v1), v2);
+        } else if (v2 instanceof Boolean) {
+            return looseEqual(v1, toNumber(v2));
+        } else if (v1 instanceof Number && v2 instanceof String) {
+            return ((Number) v1).doubleValue() == toNumber(v2);
+        } else if (v1 instanceof String && v2 instanceof Number) {
+            return toNumber(v1) == ((Number) v2).doubleValue();
+        } else if (isPrimitive(v1) != isPrimitive(v2)) {
+            // Java objects, such as enum constants, are compared with primitive values by their string value
+            return looseEqual(isPrimitive(v1) ? v1 : v1.toString(), isPrimitive(v2) ? v2 : v2.toString());
+        }
+        return strictEqual(v1, v2);
+    }
+
+
+    /** Returns if the value is a JavaScript primitive value, i.e. a string, number or boolean **/
+    private static boolean isPrimitive(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+
+    /** Converts the primitive value to a number, as per the JavaScript ToNumber() function **/
+    private static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value == UNDEFINED) {
+            return Double.NaN;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        String str = value.toString().trim();
+        if (str.isEmpty()) {
+            return 0;
+        } else if (str.startsWith("0x") || str.startsWith("0X")) {
+            try {
+                return Long.parseLong(str.substring(2), 16);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        } else if (str.matches("[+-]?Infinity")) {
+            return str.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return NUMBER_FORMAT.matcher(str).matches() ? Double.parseDouble(str) : Double.NaN;
+    }
+
+
+    /**
+     * Compares the values as per the JavaScript abstract relational comparison, i.e. Java objects, such as
+     * enum constants, are converted to strings, as Nashorn does. Two strings are compared lexicographically,
+     * and otherwise the values are compared as numbers.
+     *
+     * @return the sign of the comparison, or null if the values are not comparable, i.e. if a number is NaN
+     */
+    private static Integer compare(Object v1, Object v2) {
+        Object p1 = toPrimitive(v1), p2 = toPrimitive(v2);
+        if (p1 instanceof String && p2 instanceof String) {
+            return Integer.signum(((String) p1).compareTo((String) p2));
+        }
+        double d1 = toNumber(p1), d2 = toNumber(p2);
+        if (Double.isNaN(d1) || Double.isNaN(d2)) {
+            return null;
+        }
+        return d1 < d2 ? -1 : (d1 > d2 ? 1 : 0);
+    }
+
+
+    /** Converts Java objects to their string value, as Nashorn does for the JavaScript ToPrimitive() function **/
+    private static Object toPrimitive(Object value) {
+        return value == null || value == UNDEFINED || isPrimitive(value) ? value : value.toString();
+    }
+
+
+    /** Returns the value of the named property of the target. Fails if the target is null **/
+    private static Object property(Object target, String name) throws Exception {
+        if (target == null || target == UNDEFINED) {
+            throw new NullPointerException("Cannot read property " + name + " of " + target);
+        } else if (target instanceof Map) {
+            return ((Map) target).get(name);
+        }
+        Optional<Method> getter = getter(target.getClass(), name);
+        return getter.isPresent() ? getter.get().invoke(target) : UNDEFINED;
+    }
+
+
+    /** Returns the getter of the given bean property **/
+    private static Optional<Method> getter(Class<?> type, String name) {
+        return GETTERS.computeIfAbsent(type.getName() + "#" + name, key -> {
+            String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (String prefix : new String[] { "get", "is" }) {
+                try {
+                    return Optional.of(type.getMethod(prefix + suffix));
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+            return Optional.empty();
+        });
+    }
+
+
+    /***************************************/
+    /** Parsing                           **/
+    /***************************************/
+
+
+    /** Splits the filter into tokens **/
+    private static List<String> tokenize(String filter) {
+        List<String> tokens = new ArrayList<>();
+        int x = 0;
+        while (x < filter.length()) {
+            char c = filter.charAt(x);
+            if (Character.isWhitespace(c)) {
+                x++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = x;
+                while (x < filter.length() && Character.isJavaIdentifierPart(filter.charAt(x))) {
+                    x++;
+                }
+                tokens.add(filter.substring(start, x));
+            } else if (Character.isDigit(c)) {
+                int start = x;
+                while (x < filter.length() && (Character.isDigit(filter.charAt(x)) || filter.charAt(x) == '.')) {
+                    x++;
+                }
+                tokens.add(filter.substring(start, x));
+            } else if (c == '\'' || c == '"') {
+                StringBuilder str = new StringBuilder().append('\'');
+                x++;
+                while (x < filter.length() && filter.charAt(x) != c) {
+                    if (filter.charAt(x) == '\\' && x + 1 < filter.length()) {
+                        x++;
+                    }
+                    str.append(filter.charAt(x++));
+                }
+                if (x >= filter.length()) {
+                    throw new IllegalArgumentException("Unterminated string in filter " + filter);
+                }
+                x++;
+                tokens.add(str.toString());
+            } else {
+                int pos = x;
+                String op = Arrays.stream(OPERATORS)
+                        .filter(o -> filter.startsWith(o, pos))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unsupported character " + c + " in filter " + filter));
+                tokens.add(op);
+                x += op.length();
+            }
+        }
+        return tokens;
+    }
+
+
+    /**
+     * Recursive descent parser for the supported filter grammar:
+     * <pre>
+     *  or         := and ( "||" and )*
+     *  and        := not ( "&amp;&amp;" not )*
+     *  not        := "!" not | comparison
+     *  comparison := operand ( op operand )?
+     *  operand    := "(" or ")" | literal | enum-constant | path
+     *  path       := ( "msg" | "data" ) ( "." identifier )*
+     * </pre>
+     */
+    private static class Parser {
+
+        final List<String> tokens;
+        int pos;
+
+        /** Constructor **/
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return pos >= tokens.size();
+        }
+
+        String peek() {
+            return atEnd() ? null : tokens.get(pos);
+        }
+
+        String next() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of filter");
+            }
+            return tokens.get(pos++);
+        }
+
+        boolean accept(String token) {
+            if (token.equals(peek())) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        Expr parseOr() {
+            Expr expr = parseAnd();
+            while (accept("||")) {
+                Expr left = expr, right = parseAnd();
+                expr = (msg, data) -> {
+                    Object value = left.eval(msg, data);
+                    return truthy(value) ? value : right.eval(msg, data);
+                };
+            }
+            return expr;
+        }
+
+        Expr parseAnd() {
+            Expr expr = parseNot();
+            while (accept("&&")) {
+                Expr left = expr, right = parseNot();
+                expr = (msg, data) -> {
+                    Object value = left.eval(msg, data);
+                    return truthy(value) ? right.eval(msg, data) : value;
+                };
+            }
+            return expr;
+        }
+
+        Expr parseNot() {
+            if (accept("!")) {
+                Expr expr = parseNot();
+                return (msg, data) -> !truthy(expr.eval(msg, data));
+            }
+            return parseComparison();
+        }
+
+        Expr parseComparison() {
+            Expr left = parseOperand();
+            String op = peek();
+            if (op == null) {
+                return left;
+            }
+            switch (op) {
+                case "==":
+                    pos++;
+                    Expr eqRight = parseOperand();
+                    return (msg, data) -> looseEqual(left.eval(msg, data), eqRight.eval(msg, data));
+                case "!=":
+                    pos++;
+                    Expr neRight = parseOperand();
+                    return (msg, data) -> !looseEqual(left.eval(msg, data), neRight.eval(msg, data));
+                case "===":
+                    pos++;
+                    Expr seqRight = parseOperand();
+                    return (msg, data) -> strictEqual(left.eval(msg, data), seqRight.eval(msg, data));
+                case "!==":
+                    pos++;
+                    Expr sneRight = parseOperand();
+                    return (msg, data) -> !strictEqual(left.eval(msg, data), sneRight.eval(msg, data));
+                case "<":
+                    pos++;
+                    Expr ltRight = parseOperand();
+                    return (msg, data) -> {
+                        Integer c = compare(left.eval(msg, data), ltRight.eval(msg, data));
+                        return c != null && c < 0;
+                    };
+                case "<=":
+                    pos++;
+                    Expr leRight = parseOperand();
+                    return (msg, data) -> {
+                        Integer c = compare(left.eval(msg, data), leRight.eval(msg, data));
+                        return c != null && c <= 0;
+                    };
+                case ">":
+                    pos++;
+                    Expr gtRight = parseOperand();
+                    return (msg, data) -> {
+                        Integer c = compare(left.eval(msg, data), gtRight.eval(msg, data));
+                        return c != null && c > 0;
+                    };
+                case ">=":
+                    pos++;
+                    Expr geRight = parseOperand();
+                    return (msg, data) -> {
+                        Integer c = compare(left.eval(msg, data), geRight.eval(msg, data));
+                        return c != null && c >= 0;
+                    };
+                default:
+                    return left;
+            }
+        }
+
+        Expr parseOperand() {
+            String token = next();
+
+            if (token.equals("(")) {
+                Expr expr = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing )");
+                }
+                return expr;
+
+            } else if (token.startsWith("'")) {
+                String value = token.substring(1);
+                return (msg, data) -> value;
+
+            } else if (Character.isDigit(token.charAt(0))) {
+                Double value = Double.valueOf(token);
+                return (msg, data) -> value;
+
+            } else if (token.equals("true") || token.equals("false")) {
+                Boolean value = Boolean.valueOf(token);
+                return (msg, data) -> value;
+
+            } else if (token.equals("null")) {
+                return (msg, data) -> null;
+
+            } else if (token.equals("undefined")) {
+                return (msg, data) -> UNDEFINED;
+
+            } else if (token.equals("msg") || token.equals("data")) {
+                return parsePath(token);
+            }
+
+            // Check for enum constants, such as "Status.PUBLISHED"
+            for (Class<?> enumType : FILTER_ENUMS) {
+                if (enumType.getSimpleName().equals(token) && accept(".")) {
+                    String name = next();
+                    Object value = Arrays.stream(enumType.getEnumConstants())
+                            .filter(e -> ((Enum) e).name().equals(name))
+                            .findFirst()
+                            .orElseThrow(() -> new IllegalArgumentException("Unknown constant " + token + "." + name));
+                    return (msg, data) -> value;
+                }
+            }
+
+            throw new IllegalArgumentException("Unsupported token " + token);
+        }
+
+        Expr parsePath(String root) {
+            Expr expr = root.equals("msg") ? (msg, data) -> msg : (msg, data) -> data;
+            boolean first = true;
+            while (accept(".")) {
+                String name = next();
+                if (!Character.isJavaIdentifierStart(name.charAt(0)) || "(".equals(peek())) {
+                    throw new IllegalArgumentException("Unsupported property " + name);
+                }
+                // Message properties are validated up-front
+                if (first && root.equals("msg") && !getter(Message.class, name).isPresent()) {
+                    throw new IllegalArgumentException("Unknown message property " + name);
+                }
+                first = false;
+                Expr target = expr;
+                expr = (msg, data) -> property(target.eval(msg, data), name);
+            }
+            return expr;
+        }
+    }
+}
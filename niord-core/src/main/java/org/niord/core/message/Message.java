@@ -16,6 +16,7 @@
 package org.niord.core.message;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.area.Area;
 import org.niord.core.category.Category;
 import org.niord.core.chart.Chart;
@@ -49,6 +50,8 @@ import javax.persistence.Enumerated;
 import javax.persistence.Index;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
@@ -88,10 +91,14 @@ import java.util.stream.Stream;
                 query="SELECT msg FROM Message msg where msg.uid in (:uids)"),
         @NamedQuery(name="Message.findByIds",
                 query="SELECT msg FROM Message msg where msg.id in (:ids)"),
+        @NamedQuery(name="Message.findVersionsByIds",
+                query="SELECT msg.id, msg.uid, msg.status, msg.updated FROM Message msg where msg.id in (:ids)"),
         @NamedQuery(name="Message.findByLegacyId",
                 query="SELECT msg FROM Message msg where msg.legacyId = :legacyId"),
         @NamedQuery(name="Message.findByShortId",
                 query="SELECT msg FROM Message msg where msg.shortId = :shortId"),
+        @NamedQuery(name="Message.findByShortIds",
+                query="SELECT msg FROM Message msg where lower(msg.shortId) in (:shortIds)"),
         @NamedQuery(name="Message.findByMessageId",
                 query="select distinct msg from Message msg where lower(msg.uid) = :msgId "
                         + " or lower(msg.shortId) = :msgId"),
@@ -103,11 +110,22 @@ import java.util.stream.Stream;
                         + " msg.publishDateFrom between :fromDate and :toDate and msg.number is not null"),
         @NamedQuery(name="Message.separatePageUids",
                 query="SELECT msg.uid FROM Message msg where msg.separatePage = true and msg.uid in (:uids)"),
+        @NamedQuery(name="Message.findScheduledTransitions",
+                query="SELECT msg.uid, msg.status, msg.publishDateFrom, msg.publishDateTo, msg.updated FROM Message msg where "
+                        + " (msg.status = 'VERIFIED' and msg.publishDateFrom is not null) or "
+                        + " (msg.status = 'PUBLISHED' and msg.publishDateTo is not null)"),
+})
+// NB: Fetch-join at most one collection, since the rows of multiple fetch-joined collections multiply,
+// which duplicates the elements of unordered collections (bags). The remaining collections are batch-fetched
+@NamedEntityGraph(name = Message.SEARCH_RESULT_GRAPH, attributeNodes = {
+        @NamedAttributeNode("messageSeries"),
+        @NamedAttributeNode("areas")
 })
 @SuppressWarnings("unused")
 public class Message extends VersionedEntity<Integer> implements ILocalizable<MessageDesc> {
 
     public static String MESSAGE_REPO_FOLDER = "messages";
+    public static final String SEARCH_RESULT_GRAPH = "Message.searchResult";
     public static final DataFilter MESSAGE_DETAILS_FILTER =
             DataFilter.get().fields("Message.details", "Message.geometry", "Area.parent", "Category.parent");
     public static final DataFilter MESSAGE_DETAILS_AND_PROMULGATIONS_FILTER =
@@ -160,6 +178,7 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
 
     @ManyToMany
     @OrderColumn
+    @BatchSize(size = 100)
     List<Area> areas = new ArrayList<>();
 
     // This area should be the first area of the "areas" list.
@@ -173,10 +192,12 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
     double areaSortOrder;
 
     @ManyToMany
+    @BatchSize(size = 100)
     List<Category> categories = new ArrayList<>();
 
     @ManyToMany
     @OrderColumn
+    @BatchSize(size = 100)
     List<Chart> charts = new ArrayList<>();
 
     String horizontalDatum;
@@ -200,6 +221,7 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "message", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = 100)
     List<Reference> references = new ArrayList<>();
 
     @ManyToMany(mappedBy = "messages")
@@ -211,10 +233,12 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
     Boolean originalInformation;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = 100)
     List<MessageDesc> descs = new ArrayList<>();
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "message", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = 100)
     List<MessagePart> parts = new ArrayList<>();
 
     // Indicates if the title should automatically be updated from the message area, subject and vicinity fields.
@@ -225,6 +249,7 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "message", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = 100)
     List<Attachment> attachments = new ArrayList<>();
 
     @OneToMany(mappedBy = "message")
@@ -234,6 +259,7 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
     Boolean separatePage;
 
     @OneToMany(mappedBy = "message", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     List<BaseMessagePromulgation> promulgations = new ArrayList<>();
 
 
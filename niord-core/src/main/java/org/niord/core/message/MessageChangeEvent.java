@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.niord.model.message.Status;
+
+import java.util.Date;
+
+/**
+ * CDI event fired by {@code MessageService} whenever a message has been saved.
+ * <p>
+ * Observers that need to see the committed state of the message should observe the event using
+ * {@code @Observes(during = TransactionPhase.AFTER_SUCCESS)}.
+ */
+@SuppressWarnings("unused")
+public class MessageChangeEvent {
+
+    final Integer id;
+    final String uid;
+    final String seriesId;
+    final Status status;
+    final Date publishDateFrom;
+    final Date publishDateTo;
+    final Date updated;
+
+    /** Constructor **/
+    public MessageChangeEvent(Message message) {
+        this.id = message.getId();
+        this.uid = message.getUid();
+        this.seriesId = message.getMessageSeries() != null ? message.getMessageSeries().getSeriesId() : null;
+        this.status = message.getStatus();
+        this.publishDateFrom = message.getPublishDateFrom();
+        this.publishDateTo = message.getPublishDateTo();
+        this.updated = message.getUpdated();
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    public String toString() {
+        return "MessageChangeEvent{" +
+                "id=" + id +
+                ", uid='" + uid + '\'' +
+                ", seriesId='" + seriesId + '\'' +
+                ", status=" + status +
+                ", publishDateFrom=" + publishDateFrom +
+                ", publishDateTo=" + publishDateTo +
+                ", updated=" + updated +
+                '}';
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public String getSeriesId() {
+        return seriesId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Date getPublishDateFrom() {
+        return publishDateFrom;
+    }
+
+    public Date getPublishDateTo() {
+        return publishDateTo;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+}
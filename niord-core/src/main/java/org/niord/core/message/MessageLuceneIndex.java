@@ -15,34 +15,57 @@
  */
 package org.niord.core.message;
 
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.ClassicAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TrackingIndexWriter;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
 import org.niord.core.NiordApp;
 import org.niord.core.area.Area;
 import org.niord.core.area.AreaDesc;
 import org.niord.core.category.Category;
 import org.niord.core.category.CategoryDesc;
+import org.niord.core.geojson.Feature;
 import org.niord.core.service.BaseService;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.LuceneUtils;
@@ -58,30 +81,54 @@ import javax.ejb.Asynchronous;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.Timeout;
 import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import static org.niord.core.settings.Setting.Type.Boolean;
 
 /**
  * A Lucene index used for free-text searching all messages.
  * <p>
- * The index will initially index all messages, and subsequently check every minute
- * for changed message to add or update in the index.
+ * The index will initially index all messages. Subsequently, messages are re-indexed in near-real-time
+ * whenever a {@code MessageChangeEvent} is observed after a successful commit. As a safety net, the
+ * index will also check every minute for changed message to add or update in the index.
+ * <p>
+ * A single long-lived index writer is used. Searches use a {@code SearcherManager}, which is refreshed
+ * by a {@code ControlledRealTimeReopenThread} from the writer, so changes become searchable without
+ * committing the index.
+ * <p>
+ * All messages are indexed with the bounding box and geometry of their message parts, so that extent
+ * searches may be answered by the index. The searchable texts are only indexed for eligible messages.
  * <p>
  * Note to self: Using "Hibernate Search" for message (as for AtoNs), was ruled out because it would
  * be too complex to index all related entities by language.
@@ -94,10 +141,40 @@ public class MessageLuceneIndex extends BaseService {
 
     final static String LUCENE_ID_FIELD             = "id";
     final static String LUCENE_SEARCH_FIELD         = "message";
+    final static String LUCENE_GEOMETRY_FIELD       = "geometry";
+    final static String LUCENE_HAS_GEOMETRY_FIELD   = "hasGeometry";
+    final static String LUCENE_MIN_LAT_FIELD        = "minLat";
+    final static String LUCENE_MIN_LON_FIELD        = "minLon";
+    final static String LUCENE_MAX_LAT_FIELD        = "maxLat";
+    final static String LUCENE_MAX_LON_FIELD        = "maxLon";
     final static String LUCENE_LAST_UPDATE          = "lastUpdate";
+    final static String LUCENE_INDEX_VERSION        = "indexVersion";
+    /** Bump whenever the document format or analyzer changes, to force a re-index of existing indexes **/
+    final static int LUCENE_DOCUMENT_VERSION        = 3;
     final static int LUCENE_MAX_INDEX_COUNT         = 5000;
     final static int LUCENE_OPTIMIZE_INDEX_COUNT    = 5000;
     final static int LUCENE_MAX_NUM_SEGMENTS        = 4;
+    final static double LUCENE_MAX_STALE_SEC        = 0.5;
+    final static double LUCENE_MIN_STALE_SEC        = 0.05;
+    final static int LUCENE_REINDEX_BATCH_SIZE      = 500;
+
+    /**
+     * Queries used for fetch-joining the associations used for the searchable texts of a batch of messages.
+     * NB: Only one list (bag) association can be fetch-joined per query.
+     **/
+    final static String[] LUCENE_FETCH_QUERIES = {
+            "select distinct m from Message m left join fetch m.messageSeries left join fetch m.descs where m.id in (:ids)",
+            "select distinct m from Message m left join fetch m.areas where m.id in (:ids)",
+            "select distinct m from Message m left join fetch m.categories where m.id in (:ids)",
+            "select distinct m from Message m left join fetch m.charts where m.id in (:ids)",
+            "select distinct m from Message m left join fetch m.references where m.id in (:ids)",
+            "select distinct r from Reference r left join fetch r.descs where r.message.id in (:ids)",
+            "select distinct m from Message m left join fetch m.parts where m.id in (:ids)",
+            "select distinct p from MessagePart p left join fetch p.descs where p.message.id in (:ids)",
+            "select distinct p from MessagePart p left join fetch p.geometry g left join fetch g.features where p.message.id in (:ids)",
+            "select distinct m from Message m left join fetch m.attachments where m.id in (:ids)",
+            "select distinct a from Attachment a left join fetch a.descs where a.message.id in (:ids)"
+    };
 
     @Inject
     @Setting(value="messageIndexPath", defaultValue="${niord.home}/message-index",
@@ -105,8 +182,9 @@ public class MessageLuceneIndex extends BaseService {
     Path indexFolder;
 
     @Inject
-    @Setting(value = "messageIndexDeleteOnStartup", defaultValue = "true", type = Boolean,
-            description = "Whether the message lucene index is re-created for each restart or not")
+    @Setting(value = "messageIndexDeleteOnStartup", defaultValue = "false", type = Boolean,
+            description = "Whether the message lucene index is re-created for each restart or not. "
+                    + "If not, an existing index of the current index version is updated with changed messages")
     Boolean deleteOnStartup;
 
     @Inject
@@ -120,6 +198,9 @@ public class MessageLuceneIndex extends BaseService {
     @Resource
     TimerService timerService;
 
+    @Resource
+    SessionContext ctx;
+
     @Inject
     MessageService messageService;
 
@@ -127,10 +208,14 @@ public class MessageLuceneIndex extends BaseService {
     NiordApp app;
 
 
-    DirectoryReader reader;
+    IndexWriter writer;
+    SearcherManager searcherManager;
+    ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
     int optimizeIndexCount = 0;
     boolean allMessagesIndexed;
     private final ReentrantLock lock = new ReentrantLock();
+    private final Set<String> pendingMessageUids = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingIndexingScheduled = new AtomicBoolean(false);
 
 
     /**
@@ -147,13 +232,36 @@ public class MessageLuceneIndex extends BaseService {
             }
         }
 
-        // Check if we need to delete the old index on start-up
-        if (deleteOnStartup) {
-            try {
+        try {
+            // Open the long-lived index writer and the searcher manager
+            writer = getNewWriter();
+            searcherManager = new SearcherManager(writer, true, null);
+
+            // Check if we need to delete the old index on start-up.
+            // An existing index of the current version is kept, and updated with the changed messages only
+            String indexVersion = writer.getCommitData().get(LUCENE_INDEX_VERSION);
+            if (deleteOnStartup) {
                 deleteIndex();
-            } catch (IOException e) {
-                log.error("Failed re-creating the index on startup", e);
+            } else if (!getIndexVersion().equals(indexVersion)) {
+                log.info("Message index version " + indexVersion + " differs from " + getIndexVersion()
+                        + ". Re-creating index");
+                deleteIndex();
+            } else {
+                log.info("Updating existing message index changed since " + getLastUpdated());
             }
+
+            // Refresh searchers from the writer in near-real-time
+            reopenThread = new ControlledRealTimeReopenThread<>(
+                    new TrackingIndexWriter(writer),
+                    searcherManager,
+                    LUCENE_MAX_STALE_SEC,
+                    LUCENE_MIN_STALE_SEC);
+            reopenThread.setName("MessageLuceneIndex Reopen Thread");
+            reopenThread.setDaemon(true);
+            reopenThread.start();
+
+        } catch (IOException e) {
+            log.error("Failed opening the message index on startup", e);
         }
 
         // Wait 5 seconds before initializing the message index
@@ -165,12 +273,77 @@ public class MessageLuceneIndex extends BaseService {
      */
     @PreDestroy
     private void closeIndex() {
-        closeReader();
+        if (reopenThread != null) {
+            reopenThread.close();
+        }
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                log.warn("Error closing searcher manager");
+            }
+        }
+        closeWriter(writer);
+    }
+
+
+    /**
+     * Called after a message has successfully been saved and committed.
+     * Schedules the message for near-real-time re-indexing.
+     * <p>
+     * NB: Called synchronously on the committing thread, so the actual indexing is performed asynchronously.
+     *
+     * @param event the message change event
+     */
+    public void onMessageChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageChangeEvent event) {
+        pendingMessageUids.add(event.getUid());
+        if (pendingIndexingScheduled.compareAndSet(false, true)) {
+            ctx.getBusinessObject(MessageLuceneIndex.class).indexPendingMessagesAsync();
+        }
+    }
+
+
+    /**
+     * Re-indexes the messages scheduled for near-real-time indexing.
+     * <p>
+     * The changes are not committed to the index. Rather, they become searchable once the
+     * reopen thread refreshes the searcher manager, and will be committed by the next scheduled update.
+     */
+    @Asynchronous
+    public void indexPendingMessagesAsync() {
+        pendingIndexingScheduled.set(false);
+
+        Set<String> uids = new HashSet<>(pendingMessageUids);
+        pendingMessageUids.removeAll(uids);
+        if (uids.isEmpty()) {
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        lock.lock();
+        try {
+            List<Message> messages = em.createNamedQuery("Message.findByUids", Message.class)
+                    .setParameter("uids", uids)
+                    .getResultList();
+            for (Message message : messages) {
+                indexMessage(writer, message);
+            }
+
+            log.debug("Indexed " + messages.size() + " changed messages in near-real-time in "
+                    + (System.currentTimeMillis() - t0) + " ms");
+
+        } catch (Exception ex) {
+            log.error("Error indexing changed messages " + uids + ": " + ex.getMessage(), ex);
+        } finally {
+            lock.unlock();
+        }
     }
 
 
     /**
-     * Called when the service starts up and then every minute to update the Lucene index
+     * Called when the service starts up and then every minute to update the Lucene index.
+     * Since changed messages are indexed in near-real-time, this mainly serves as a safety net,
+     * and to commit the index along with the last-updated time stamp.
      * <p>
      * Note to self: It's tempting to use @Lock(WRITE) here. However, that would lock search access
      * to the index while it is being updated, and we really do not want that.
@@ -180,7 +353,14 @@ public class MessageLuceneIndex extends BaseService {
     private int updateLuceneIndex() {
         lock.lock();
         try {
+            // If the index is empty, e.g. upon start-up, index all messages in batches
+            if (getLastUpdated().getTime() == 0L) {
+                return reindexAllMessages();
+            }
             return updateLuceneIndex(LUCENE_MAX_INDEX_COUNT);
+        } catch (Exception ex) {
+            log.error("Error updating Lucene index: " + ex.getMessage(), ex);
+            return 0;
         } finally {
             lock.unlock();
         }
@@ -242,33 +422,52 @@ public class MessageLuceneIndex extends BaseService {
 
 
     /**
-     * Adds the given message to the given document
+     * Extracts the searchable texts of the given message.
+     * <p>
+     * The texts are extracted whilst the message entity is attached to the persistence context,
+     * whereas the Lucene document may subsequently be built from the texts in any thread.
      *
-     * @param doc the document to add the message to
-     * @param message the message to add
+     * @param message the message to extract the searchable texts from
+     * @return the searchable texts of the message
      */
-    private void addMessageToDocument(Document doc, Message message) {
+    private MessageSearchTexts extractSearchTexts(Message message) {
+        MessageSearchTexts texts = new MessageSearchTexts(message.getId());
+
+        // Geometry of all message parts
+        texts.setGeometry(message.getParts().stream()
+                .filter(p -> p.getGeometry() != null)
+                .flatMap(p -> p.getGeometry().getFeatures().stream())
+                .map(Feature::getGeometry)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+
+        // All messages are indexed with their geometry, to support extent searches,
+        // but only the eligible messages are indexed with searchable texts
+        if (!shouldIndexTexts(message)) {
+            return texts;
+        }
+
         // For each supported language, update a search field
         for (String language : app.getLanguages()) {
             String searchField = searchField(language);
 
-            addPhraseSearchField(doc, searchField, message.getStatus());
+            texts.add(searchField, message.getStatus());
 
             // UID
-            addPhraseSearchField(doc, searchField, message.getUid());
+            texts.add(searchField, message.getUid());
 
             // Message series identifier
-            addPhraseSearchField(doc, searchField, message.getShortId()); // e.g. "DK-074-14"
+            texts.add(searchField, message.getShortId()); // e.g. "DK-074-14"
             if (message.getNumber() != null) {
-                addPhraseSearchField(doc, searchField, String.valueOf(message.getNumber()));
+                texts.add(searchField, String.valueOf(message.getNumber()));
             }
 
             // References
             message.getReferences().forEach(ref -> {
-                addPhraseSearchField(doc, searchField, ref.getMessageId());
+                texts.add(searchField, ref.getMessageId());
                 ReferenceDesc desc = ref.getDesc(language);
                 if (desc != null) {
-                    addPhraseSearchField(doc, searchField, desc.getDescription());
+                    texts.add(searchField, desc.getDescription());
                 }
             });
 
@@ -277,7 +476,7 @@ public class MessageLuceneIndex extends BaseService {
                 for (Area area = a; area != null; area = area.getParent()) {
                     AreaDesc desc = area.getDesc(language);
                     if (desc != null) {
-                        addPhraseSearchField(doc, searchField, desc.getName());
+                        texts.add(searchField, desc.getName());
                     }
                 }
             });
@@ -287,27 +486,27 @@ public class MessageLuceneIndex extends BaseService {
                 for (Category cat = category; cat != null; cat = cat.getParent()) {
                     CategoryDesc desc = cat.getDesc(language);
                     if (desc != null) {
-                        addPhraseSearchField(doc, searchField, desc.getName());
+                        texts.add(searchField, desc.getName());
                     }
                 }
             });
 
             // Charts
             message.getCharts().forEach(chart -> {
-                addPhraseSearchField(doc, searchField, chart.getChartNumber());
-                addPhraseSearchField(doc, searchField, chart.getInternationalNumber());
+                texts.add(searchField, chart.getChartNumber());
+                texts.add(searchField, chart.getInternationalNumber());
             });
 
             // Horizontal datum
-            addPhraseSearchField(doc, searchField, message.getHorizontalDatum());
+            texts.add(searchField, message.getHorizontalDatum());
 
             // Add language specific fields
             MessageDesc msgDesc = message.getDesc(language);
             if (msgDesc != null) {
-                addPhraseSearchField(doc, searchField, msgDesc.getTitle());
-                addPhraseSearchField(doc, searchField, msgDesc.getVicinity());
-                addPhraseSearchField(doc, searchField, TextUtils.html2txt(msgDesc.getPublication()));
-                addPhraseSearchField(doc, searchField, msgDesc.getSource());
+                texts.add(searchField, msgDesc.getTitle());
+                texts.add(searchField, msgDesc.getVicinity());
+                texts.addHtml(searchField, msgDesc.getPublication());
+                texts.add(searchField, msgDesc.getSource());
             }
 
             // Add message parts
@@ -315,24 +514,19 @@ public class MessageLuceneIndex extends BaseService {
                     .flatMap(part -> part.getDescs().stream())
                     .filter(desc -> language.equals(desc.getLang()))
                     .forEach(desc -> {
-                        addPhraseSearchField(doc, searchField, desc.getSubject());
-                        addPhraseSearchField(doc, searchField, TextUtils.html2txt(desc.getDetails()));
+                        texts.add(searchField, desc.getSubject());
+                        texts.addHtml(searchField, desc.getDetails());
                     });
 
             // Attachments
             message.getAttachments().forEach(att -> {
                 AttachmentDesc desc = att.getDesc(language);
                 if (desc != null) {
-                    addPhraseSearchField(doc, searchField, desc.getCaption());
+                    texts.add(searchField, desc.getCaption());
                 }
             });
-
-
-            // TODO
-            // Add geometry
-            //if (message.getGeometry() != null) {
-            //}
         }
+        return texts;
     }
 
 
@@ -355,23 +549,6 @@ public class MessageLuceneIndex extends BaseService {
     }
 
 
-    /**
-     * Returns the cached index reader, or creates one if none is defined
-     * @return the shared index reader
-     */
-    private DirectoryReader getIndexReader() throws IOException {
-        if (reader == null) {
-           try {
-                reader = DirectoryReader.open(FSDirectory.open(indexFolder));
-            } catch (IOException ex) {
-                log.error("Failed to open Lucene Index in folder " + indexFolder);
-                throw ex;
-            }
-        }
-        return reader;
-    }
-
-
     /**
      * Closes the given writer
      * @param writer the writer to close
@@ -387,32 +564,6 @@ public class MessageLuceneIndex extends BaseService {
     }
 
 
-    /**
-     * Closes the current reader
-     */
-    private void closeReader() {
-        if (reader != null) {
-            try {
-                reader.close();
-            } catch (IOException e) {
-                log.warn("Error closing reader");
-            }
-            reader = null;
-        }
-    }
-
-
-    /**
-     * Refreshes the current reader from the given writer
-     *
-     * @param writer the index writer
-     */
-    private void refreshReader(IndexWriter writer) throws IOException {
-        closeReader();
-        reader = DirectoryReader.open(writer, true);
-    }
-
-
     /**
      * Call this to re-index the message index completely
      */
@@ -433,7 +584,7 @@ public class MessageLuceneIndex extends BaseService {
             deleteIndex();
 
             // Update all messages
-            return updateLuceneIndex(Integer.MAX_VALUE);
+            return reindexAllMessages();
 
         } finally {
             lock.unlock();
@@ -442,19 +593,106 @@ public class MessageLuceneIndex extends BaseService {
 
 
     /**
-     * Deletes the current index
+     * Indexes all messages.
+     * <p>
+     * The message ID's are scrolled in batches. For each batch, the searchable texts are extracted
+     * from the messages in a new transaction, where the associations used for the texts are fetch-joined.
+     * The Lucene documents are then built and added to the shared index writer in parallel.
+     * <p>
+     * The documents replace any existing documents of the messages, so messages indexed concurrently
+     * by change events are not duplicated.
+     *
+     * @return the number of indexed messages
      */
-    private void deleteIndex() throws IOException {
-        // Delete the index
-        IndexWriter writer = null;
+    private int reindexAllMessages() throws IOException {
+
+        // Messages updated whilst re-indexing will be picked up by the next scheduled update
+        Date lastUpdated = new Date();
+
+        long t0 = System.currentTimeMillis();
+        long total = em.createQuery("select count(m) from Message m", Long.class).getSingleResult();
+        log.info("Re-indexing " + total + " messages");
+
+        MessageLuceneIndex self = ctx.getBusinessObject(MessageLuceneIndex.class);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        int indexCount = 0;
+        int processedCount = 0;
         try {
-            writer = getNewWriter();
-            writer.deleteAll();
-            writer.setCommitData(new HashMap<>());
-            writer.commit();
+            Integer lastId = 0;
+            while (true) {
+                List<Integer> ids = em.createQuery(
+                        "select m.id from Message m where m.id > :lastId order by m.id asc", Integer.class)
+                        .setParameter("lastId", lastId)
+                        .setMaxResults(LUCENE_REINDEX_BATCH_SIZE)
+                        .getResultList();
+                if (ids.isEmpty()) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+
+                // Extract the searchable texts, then build and add the documents in parallel
+                List<MessageSearchTexts> batch = self.extractSearchTexts(ids);
+                pool.submit(() -> batch.parallelStream().forEach(this::updateMessageInIndex)).get();
+
+                indexCount += batch.size();
+                processedCount += ids.size();
+                log.info(String.format("Re-indexed %d of %d messages in %d ms",
+                        processedCount, total, System.currentTimeMillis() - t0));
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Error re-indexing messages", e);
         } finally {
-            closeWriter(writer);
+            pool.shutdown();
         }
+
+        // Update the last-updated flag and commit the changes
+        setLastUpdated(lastUpdated, writer);
+        writer.commit();
+        searcherManager.maybeRefresh();
+        allMessagesIndexed = true;
+
+        log.info("Re-indexed " + indexCount + " messages in " + (System.currentTimeMillis() - t0) + " ms");
+        return indexCount;
+    }
+
+
+    /**
+     * Extracts the searchable texts of the messages with the given ID's.
+     * <p>
+     * Called for each batch of messages when re-indexing all messages. The associations used for
+     * the searchable texts are fetch-joined, one association per query, so that the number of
+     * queries is independent of the number of messages in the batch.
+     *
+     * @param ids the ID's of the messages
+     * @return the searchable texts of the messages
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<MessageSearchTexts> extractSearchTexts(List<Integer> ids) {
+        List<Message> messages = em.createNamedQuery("Message.findByIds", Message.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        for (String fetchQuery : LUCENE_FETCH_QUERIES) {
+            em.createQuery(fetchQuery)
+                    .setParameter("ids", ids)
+                    .getResultList();
+        }
+
+        return messages.stream()
+                .map(this::extractSearchTexts)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Deletes the current index
+     */
+    private void deleteIndex() throws IOException {
+        // Delete the index
+        writer.deleteAll();
+        writer.setCommitData(new HashMap<>());
+        writer.commit();
+        searcherManager.maybeRefresh();
     }
 
 
@@ -464,28 +702,47 @@ public class MessageLuceneIndex extends BaseService {
      */
     private Date getLastUpdated() {
         try {
-            DirectoryReader reader = getIndexReader();
-            if (reader.getIndexCommit().getUserData().containsKey(LUCENE_LAST_UPDATE)) {
-                return new Date(Long.valueOf(reader.getIndexCommit().getUserData().get(LUCENE_LAST_UPDATE)));
+            Map<String, String> userData = writer.getCommitData();
+            if (userData.containsKey(LUCENE_LAST_UPDATE)) {
+                return new Date(Long.valueOf(userData.get(LUCENE_LAST_UPDATE)));
             }
         } catch (Exception e) {
-            log.debug("Could not get last-updated flag from index reader");
+            log.debug("Could not get last-updated flag from index writer");
         }
         return new Date(0);
     }
 
 
     /**
-     * Sets the last updated time
+     * Sets the last updated time along with the current index version
      * @param date the last updated time
      */
     private void setLastUpdated(Date date, IndexWriter writer) {
         Map<String,String> userData = new HashMap<>();
         userData.put(LUCENE_LAST_UPDATE, String.valueOf(date.getTime()));
+        userData.put(LUCENE_INDEX_VERSION, getIndexVersion());
         writer.setCommitData(userData);
     }
 
 
+    /**
+     * Returns the version of the index, as stored in the commit data of the index.
+     * <p>
+     * Besides the document version, the version encompasses the Lucene version and
+     * the other parameters that determine the contents of the indexed documents.
+     * An existing index with a different version is re-created upon start-up.
+     *
+     * @return the version of the index
+     */
+    private String getIndexVersion() {
+        return LUCENE_DOCUMENT_VERSION
+                + ":" + Version.LATEST
+                + ":" + getAnalyzer().getClass().getSimpleName()
+                + ":" + String.join(",", app.getLanguages())
+                + ":" + includeDeletedMessages;
+    }
+
+
     /**
      * Updates the Lucene index
      *
@@ -499,7 +756,6 @@ public class MessageLuceneIndex extends BaseService {
         long t0 = System.currentTimeMillis();
         log.debug(String.format("Indexing at most %d changed messages since %s", maxIndexCount, lastUpdated));
 
-        IndexWriter writer = null;
         try {
             // Find all messages changed since the lastUpdated time stamp
             List<Message> updatedMessages = findUpdatedMessages(lastUpdated, maxIndexCount);
@@ -507,10 +763,6 @@ public class MessageLuceneIndex extends BaseService {
                 return 0;
             }
 
-
-            // Create a new index writer
-            writer = getNewWriter();
-
             // Update the index with the changes
             for (Message message : updatedMessages) {
                 indexMessage(writer, message);
@@ -525,8 +777,8 @@ public class MessageLuceneIndex extends BaseService {
             // Commit the changes
             writer.commit();
 
-            // Re-open the reader from the writer
-            refreshReader(writer);
+            // Refresh the searchers from the writer
+            searcherManager.maybeRefresh();
 
             // Check if we need to optimize the index
             optimizeIndexCount += updatedMessages.size();
@@ -542,33 +794,26 @@ public class MessageLuceneIndex extends BaseService {
         } catch (Exception ex) {
             log.error("Error updating Lucene index: " + ex.getMessage(), ex);
             return 0;
-        } finally {
-            closeWriter(writer);
         }
     }
 
 
     /**
-     * Indexes the given message by deleting and adding the document
+     * Indexes the given message by replacing the document of the message
      *
      * @param message the message to index
      */
     private void indexMessage(IndexWriter writer, Message message) {
-        // First delete the message
-        deleteMessageFromIndex(writer, message);
-        // Then add the message
-        if (shouldAddMessage(message)) {
-            addMessageToIndex(writer, message);
-        }
+        updateMessageInIndex(extractSearchTexts(message));
     }
 
     /**
-     * By default, add all eligible messages.
+     * By default, index the searchable texts of all eligible messages.
      * @param message the message to check
-     * @return whether to add the message to the index
+     * @return whether to index the searchable texts of the message
      * @noinspection all
      */
-    private boolean shouldAddMessage(Message message) {
+    private boolean shouldIndexTexts(Message message) {
         if (message.getMessageSeries().getExcludeFromMessageIndex() != null &&
                 message.getMessageSeries().getExcludeFromMessageIndex()) {
             return false;
@@ -578,39 +823,45 @@ public class MessageLuceneIndex extends BaseService {
 
 
     /**
-     * Deletes the given message from the index
-     *
-     * @param message the message to delete
-     */
-    private void deleteMessageFromIndex(IndexWriter writer, Message message) {
-        try {
-            Term idTerm = new Term(LUCENE_ID_FIELD, message.getId().toString());
-            writer.deleteDocuments(idTerm);
-        } catch (IOException e) {
-            log.debug("Error deleting message " + message.getId());
-        }
-    }
-
-
-    /**
-     * Adds the given message to the index
+     * Adds or replaces the document of the message with the given searchable texts in the index.
+     * <p>
+     * The document is atomically replaced by message ID, so a message indexed concurrently by a
+     * re-index and a change event, or indexed repeatedly, only ever has a single document.
+     * <p>
+     * NB: May be called concurrently from multiple threads.
      *
-     * @param message the message to add
+     * @param texts the searchable texts of the message to index
      */
-    private void addMessageToIndex(IndexWriter writer, Message message) {
+    private void updateMessageInIndex(MessageSearchTexts texts) {
         Document doc = new Document();
 
-        // ID field
-        doc.add(new StringField(LUCENE_ID_FIELD, message.getId().toString(), Field.Store.YES));
+        // ID field. Also stored as a doc value, to allow for efficient collection of matching ids
+        doc.add(new StringField(LUCENE_ID_FIELD, texts.id.toString(), Field.Store.YES));
+        doc.add(new NumericDocValuesField(LUCENE_ID_FIELD, texts.id));
 
         // Add the message specific fields
-        addMessageToDocument(doc, message);
+        for (MessageSearchText text : texts.texts) {
+            addPhraseSearchField(doc, text.field, text.html ? TextUtils.html2txt(text.value) : text.value);
+        }
+
+        // Add the geometry. The bounding box is indexed for range queries,
+        // and the geometry itself is stored for testing the exact intersection with a search extent
+        if (texts.geometry != null) {
+            doc.add(new StringField(LUCENE_HAS_GEOMETRY_FIELD, "true", Field.Store.NO));
+            doc.add(new DoubleField(LUCENE_MIN_LAT_FIELD, texts.envelope.getMinY(), Field.Store.NO));
+            doc.add(new DoubleField(LUCENE_MIN_LON_FIELD, texts.envelope.getMinX(), Field.Store.NO));
+            doc.add(new DoubleField(LUCENE_MAX_LAT_FIELD, texts.envelope.getMaxY(), Field.Store.NO));
+            doc.add(new DoubleField(LUCENE_MAX_LON_FIELD, texts.envelope.getMaxX(), Field.Store.NO));
+            doc.add(new StoredField(LUCENE_GEOMETRY_FIELD, texts.geometry));
+        } else {
+            doc.add(new StringField(LUCENE_HAS_GEOMETRY_FIELD, "false", Field.Store.NO));
+        }
 
-        // Add the document to the index
+        // Add or replace the document in the index
         try {
-            writer.addDocument(doc);
+            writer.updateDocument(new Term(LUCENE_ID_FIELD, texts.id.toString()), doc);
         } catch (IOException ex) {
-            log.error("Error adding message " + message.getId() + " to the Lucene index: " + ex.getMessage(), ex);
+            log.error("Error indexing message " + texts.id + " to the Lucene index: " + ex.getMessage(), ex);
         }
     }
 
@@ -655,6 +906,84 @@ public class MessageLuceneIndex extends BaseService {
      */
     public List<Long> searchIndex(String freeTextSearch, String language, int maxHits) throws IOException, ParseException {
 
+        Query query = parseQuery(freeTextSearch, language);
+
+        // Perform the search and collect the ids
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs results = searcher.search(query, maxHits);
+
+            List<Long> ids = new ArrayList<>();
+            for (ScoreDoc hit : results.scoreDocs) {
+                Document d = searcher.doc(hit.doc);
+                ids.add(Long.valueOf(d.get(LUCENE_ID_FIELD)));
+            }
+            return ids;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+
+    /**
+     * Performs a search in the index and returns the ids of all matching messages as a bit set.
+     * <p>
+     * As opposed to {@code searchIndex()}, the hits are not scored or sorted, and the ids are
+     * read from the doc values of the documents, rather than by loading the stored fields.
+     * Hence, this method is suitable for free-text searches with a large number of hits.
+     *
+     * @param freeTextSearch the search string
+     * @param language the language to search
+     * @return the matching ids
+     */
+    public BitSet searchIndexIds(String freeTextSearch, String language) throws IOException, ParseException {
+        return searchIndexIds(freeTextSearch, language, null, false);
+    }
+
+
+    /**
+     * Searches the index for messages matching the free-text search and the geographical extent.
+     * <p>
+     * The bounding box of the extent is matched against the indexed bounding boxes of the messages,
+     * and the stored geometries of the candidate messages are then tested against the extent itself.
+     *
+     * @param freeTextSearch the search string. If blank, only the extent is used
+     * @param language the language to search
+     * @param extent the optional extent to search within
+     * @param includeNoPos whether to include messages without a geometry when an extent is specified
+     * @return the bit set of matching message ids
+     */
+    public BitSet searchIndexIds(String freeTextSearch, String language, Geometry extent, boolean includeNoPos)
+            throws IOException, ParseException {
+
+        Query query = parseQuery(freeTextSearch, language);
+        if (extent != null) {
+            query = new BooleanQuery.Builder()
+                    .add(query, BooleanClause.Occur.MUST)
+                    .add(extentQuery(extent, includeNoPos), BooleanClause.Occur.FILTER)
+                    .build();
+        }
+
+        MessageIdCollector collector = new MessageIdCollector(
+                extent != null ? PreparedGeometryFactory.prepare(extent) : null);
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            searcher.search(query, collector);
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return collector.getIds();
+    }
+
+
+    /**
+     * Parses the free-text search into a Lucene query
+     *
+     * @param freeTextSearch the search string
+     * @param language the language to search
+     * @return the Lucene query
+     */
+    private Query parseQuery(String freeTextSearch, String language) throws ParseException {
         Query query;
         if (StringUtils.isNotBlank(freeTextSearch)) {
             // Normalize query text
@@ -672,17 +1001,176 @@ public class MessageLuceneIndex extends BaseService {
         } else {
             query = new MatchAllDocsQuery();
         }
+        return query;
+    }
 
-        // Perform the search and collect the ids
-        IndexSearcher searcher = new IndexSearcher(getIndexReader());
-        TopDocs results = searcher.search(query, maxHits);
 
-        List<Long> ids = new ArrayList<>();
-        for (ScoreDoc hit : results.scoreDocs) {
-            Document d = searcher.doc(hit.doc);
-            ids.add(Long.valueOf(d.get(LUCENE_ID_FIELD)));
+    /**
+     * Returns a query matching the messages whose bounding box intersects the bounding box of the extent.
+     * <p>
+     * For an extent consisting of several geometries, such as an extent split at the antimeridian,
+     * the bounding box of each geometry is matched, rather than the bounding box of the entire extent.
+     *
+     * @param extent the extent to search within
+     * @param includeNoPos whether to include messages without a geometry
+     * @return the extent query
+     */
+    private Query extentQuery(Geometry extent, boolean includeNoPos) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int x = 0; x < extent.getNumGeometries(); x++) {
+            query.add(bboxQuery(extent.getGeometryN(x).getEnvelopeInternal()), BooleanClause.Occur.SHOULD);
+        }
+        if (includeNoPos) {
+            query.add(new TermQuery(new Term(LUCENE_HAS_GEOMETRY_FIELD, "false")), BooleanClause.Occur.SHOULD);
+        }
+        return query.build();
+    }
+
+
+    /**
+     * Returns a query matching the messages whose bounding box intersects the given bounding box
+     *
+     * @param env the bounding box
+     * @return the bounding box query
+     */
+    private Query bboxQuery(Envelope env) {
+        return new BooleanQuery.Builder()
+                .add(NumericRangeQuery.newDoubleRange(LUCENE_MIN_LAT_FIELD, null, env.getMaxY(), true, true),
+                        BooleanClause.Occur.FILTER)
+                .add(NumericRangeQuery.newDoubleRange(LUCENE_MAX_LAT_FIELD, env.getMinY(), null, true, true),
+                        BooleanClause.Occur.FILTER)
+                .add(NumericRangeQuery.newDoubleRange(LUCENE_MIN_LON_FIELD, null, env.getMaxX(), true, true),
+                        BooleanClause.Occur.FILTER)
+                .add(NumericRangeQuery.newDoubleRange(LUCENE_MAX_LON_FIELD, env.getMinX(), null, true, true),
+                        BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+
+    /**
+     * A Lucene collector that collects the message ids of the matching documents in a bit set.
+     * <p>
+     * The ids are read from the numeric doc values of the documents. For documents indexed
+     * without doc values, the stored id field is used instead.
+     * <p>
+     * If an extent is specified, documents with a stored geometry not intersecting the extent are skipped.
+     */
+    private static class MessageIdCollector extends SimpleCollector {
+
+        final BitSet ids = new BitSet();
+        final PreparedGeometry extent;
+        final WKBReader wkbReader = new WKBReader();
+        LeafReader leafReader;
+        NumericDocValues idValues;
+
+        /** Constructor **/
+        MessageIdCollector(PreparedGeometry extent) {
+            this.extent = extent;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            leafReader = context.reader();
+            idValues = leafReader.getNumericDocValues(LUCENE_ID_FIELD);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void collect(int doc) throws IOException {
+            if (extent != null && !intersectsExtent(doc)) {
+                return;
+            }
+            long id = idValues != null ? idValues.get(doc) : 0L;
+            if (id <= 0L) {
+                id = Long.valueOf(leafReader.document(doc).get(LUCENE_ID_FIELD));
+            }
+            ids.set((int) id);
+        }
+
+        /** Returns if the stored geometry of the document, if any, intersects the extent **/
+        private boolean intersectsExtent(int doc) throws IOException {
+            BytesRef wkb = leafReader.document(doc, Collections.singleton(LUCENE_GEOMETRY_FIELD))
+                    .getBinaryValue(LUCENE_GEOMETRY_FIELD);
+            if (wkb == null) {
+                return true;
+            }
+            try {
+                Geometry geometry = wkbReader.read(Arrays.copyOfRange(wkb.bytes, wkb.offset, wkb.offset + wkb.length));
+                return extent.intersects(geometry);
+            } catch (com.vividsolutions.jts.io.ParseException e) {
+                throw new IOException("Invalid geometry for document " + doc, e);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        public BitSet getIds() {
+            return ids;
+        }
+    }
+
+
+    /**
+     * The searchable texts of a message, i.e. the values of the language specific search fields.
+     * Used for building the Lucene document of the message independently of the message entity.
+     */
+    public static class MessageSearchTexts {
+
+        final Integer id;
+        final List<MessageSearchText> texts = new ArrayList<>();
+        byte[] geometry;
+        Envelope envelope;
+
+        /** Constructor **/
+        MessageSearchTexts(Integer id) {
+            this.id = id;
+        }
+
+        /** Adds a plain text value to the given search field **/
+        void add(String field, Object value) {
+            if (value != null) {
+                texts.add(new MessageSearchText(field, value.toString(), false));
+            }
+        }
+
+        /** Sets the geometry as the WKB of the collection of the given geometries **/
+        void setGeometry(List<Geometry> geometries) {
+            if (!geometries.isEmpty()) {
+                Geometry collection = new GeometryFactory().buildGeometry(geometries);
+                envelope = collection.getEnvelopeInternal();
+                geometry = new WKBWriter().write(collection);
+            }
+        }
+
+        /** Adds an HTML value to the given search field **/
+        void addHtml(String field, String value) {
+            if (value != null) {
+                texts.add(new MessageSearchText(field, value, true));
+            }
+        }
+    }
+
+
+    /**
+     * A single search field value of a message
+     */
+    public static class MessageSearchText {
+
+        final String field;
+        final String value;
+        final boolean html;
+
+        /** Constructor **/
+        MessageSearchText(String field, String value, boolean html) {
+            this.field = field;
+            this.value = value;
+            this.html = html;
         }
-        return ids;
     }
 
 
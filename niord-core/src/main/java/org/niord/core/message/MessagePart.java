@@ -16,6 +16,7 @@
 
 package org.niord.core.message;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.geojson.FeatureCollection;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.model.BaseEntity;
@@ -58,12 +59,14 @@ public class MessagePart extends BaseEntity<Integer> implements ILocalizable<Mes
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "messagePart", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = 100)
     List<DateInterval> eventDates = new ArrayList<>();
 
     @OneToOne(cascade = CascadeType.ALL, orphanRemoval = true)
     FeatureCollection geometry;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = 100)
     List<MessagePartDesc> descs = new ArrayList<>();
 
     // Flags whether or not to hide the message part subject
@@ -31,6 +31,9 @@ import java.util.stream.Collectors;
  * <p>
  * Message filter example:
  * "(msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) && msg.status == Status.PUBLISHED"
+ * <p>
+ * Filters are compiled into Java predicates by {@code CompiledMessageFilter} whenever possible.
+ * Only filters using unsupported constructs, such as function calls, are evaluated using Nashorn.
  */
 @SuppressWarnings("unused")
 public class MessageScriptFilterEvaluator {
@@ -46,6 +49,7 @@ public class MessageScriptFilterEvaluator {
     };
 
     private final String filter;
+    private CompiledMessageFilter compiledFilter = null;
     private Invocable filterFunction = null;
 
     /** Non-public constructor **/
@@ -61,6 +65,16 @@ public class MessageScriptFilterEvaluator {
     public MessageScriptFilterEvaluator(String filter) throws Exception {
         this.filter = filter;
 
+        // Attempt to compile the filter into a Java predicate
+        if (filter != null && filter.trim().length() > 0) {
+            try {
+                compiledFilter = CompiledMessageFilter.compile(filter);
+                return;
+            } catch (IllegalArgumentException ignored) {
+                // Fall back to evaluating the filter using Nashorn
+            }
+        }
+
         // Instantiate the filter Javascript engine
         if (filter != null && filter.trim().length() > 0) {
             try {
@@ -106,7 +120,9 @@ public class MessageScriptFilterEvaluator {
      */
     public boolean includeMessage(Message message, Object data) {
         // Check if a message filter has been defined
-        if (filterFunction != null) {
+        if (compiledFilter != null) {
+            return compiledFilter.includeMessage(message, data);
+        } else if (filterFunction != null) {
             try {
                 return  (Boolean)filterFunction.invokeFunction("includeMessage", message, data);
             } catch (Exception ignored) {
@@ -120,4 +136,9 @@ public class MessageScriptFilterEvaluator {
     public String getFilter() {
         return filter;
     }
+
+    /** Returns if the filter has been compiled into a Java predicate rather than being evaluated by Nashorn **/
+    public boolean isCompiled() {
+        return compiledFilter != null;
+    }
 }
@@ -64,7 +64,8 @@ public class MessageScriptFilterService extends BaseService {
                 if (evaluator == null) {
                     try {
                         evaluator = new MessageScriptFilterEvaluator(filter);
-                        log.info("instantiated message script filter " + filter);
+                        log.info("instantiated " + (evaluator.isCompiled() ? "compiled" : "Nashorn")
+                                + " message script filter " + filter);
                     } catch (Exception ex) {
                         evaluator = MessageScriptFilterEvaluator.EXCLUDE_ALL;
                         log.error("Error instantiating message script filter " + filter, ex);
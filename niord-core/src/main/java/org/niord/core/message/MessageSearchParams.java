@@ -100,6 +100,9 @@ public class MessageSearchParams extends PagedSearchParamsVo {
     Set<String> promulgationTypes = new HashSet<>();
     String viewMode;
 
+    // If defined, use keyset pagination and return the messages sorted after the message with the given UID
+    String seekAfter;
+
     Geometry extent;
     // If an extent is specified, use this to fetch messages with no geometry
     Boolean includeNoPos;
@@ -171,6 +174,7 @@ public class MessageSearchParams extends PagedSearchParamsVo {
                 .page(checkNull(getParameterValues(reqParams, "page"), 0, Integer::valueOf))
                 .sortBy(getParameterValues(reqParams, "sortBy"))
                 .sortOrder(checkNull(getParameterValues(reqParams, "sortOrder"), SortOrder::valueOf));
+        params.seekAfter(getParameterValues(reqParams, "seekAfter"));
 
         // If no explicit sort order is specified, sort by domain sort order
         params.checkSortByDomain(domain);
@@ -245,10 +249,10 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         return this;
     }
 
-    /** Converts en extent defined by a WKT definition into a JTS geometry */
+    /** Converts en extent defined by a WKT definition into a JTS geometry, split at the antimeridian */
     public MessageSearchParams extent(String wkt) {
         try {
-            this.extent = JtsConverter.wktToJts(wkt);
+            this.extent = JtsConverter.splitAtAntimeridian(JtsConverter.wktToJts(wkt));
         } catch (ParseException ignored) {
         }
         return this;
@@ -297,6 +301,7 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         if (publications.size() > 0) { desc.add(String.format("Publications: %s", publications)); }
         if (promulgationTypes.size() > 0) { desc.add(String.format("Promulgation Types: %s", promulgationTypes)); }
         if (extent != null) { desc.add(String.format("Extent: '%s'", extent.toString())); }
+        if (isNotBlank(seekAfter)) { desc.add(String.format("Seek after: %s", seekAfter)); }
 
         return desc.stream().collect(Collectors.joining(", "));
     }
@@ -554,4 +559,13 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         this.viewMode = viewMode;
         return this;
     }
+
+    public String getSeekAfter() {
+        return seekAfter;
+    }
+
+    public MessageSearchParams seekAfter(String seekAfter) {
+        this.seekAfter = seekAfter;
+        return this;
+    }
 }
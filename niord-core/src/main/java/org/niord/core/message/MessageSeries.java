@@ -15,6 +15,7 @@
  */
 package org.niord.core.message;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.message.vo.SystemMessageSeriesVo;
 import org.niord.core.message.vo.SystemMessageSeriesVo.NumberSequenceType;
 import org.niord.core.model.VersionedEntity;
@@ -42,6 +43,7 @@ import java.util.Set;
  * Represents a message series
  */
 @Entity
+@BatchSize(size = 100)
 @Cacheable
 @NamedQueries({
         @NamedQuery(name="MessageSeries.findBySeriesId",
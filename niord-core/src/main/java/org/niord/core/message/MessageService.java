@@ -60,6 +60,7 @@ import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.jms.JMSContext;
 import javax.jms.Topic;
@@ -75,9 +76,10 @@ import javax.persistence.criteria.Selection;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -160,6 +162,9 @@ public class MessageService extends BaseService {
     @Inject
     PromulgationManager promulgationManager;
 
+    @Inject
+    Event<MessageChangeEvent> messageChangeEvent;
+
 
     /***************************************/
     /** Message Look-up                   **/
@@ -260,6 +265,50 @@ public class MessageService extends BaseService {
     }
 
 
+    /**
+     * Resolves the "best" messages with the given message ids, which may be either UIDs,
+     * or short IDs of messages.
+     * <p>
+     * Batch version of {@code resolveMessage()}, which resolves all the message ids using two queries.
+     * As for the "Message.findByMessageId" query, the short IDs are matched ignoring case.
+     *
+     * @param messageIds the message ids to resolve
+     * @return the matching messages indexed by the message ids. Unresolved message ids are not included
+     */
+    public Map<String, Message> resolveMessages(Collection<String> messageIds) {
+        Set<String> ids = messageIds.stream()
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toSet());
+
+        Map<String, Message> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        em.createNamedQuery("Message.findByUids", Message.class)
+                .setParameter("uids", ids)
+                .getResultList()
+                .forEach(m -> result.put(m.getUid(), m));
+
+        // Resolve the remaining message ids as short IDs, ignoring case
+        Map<String, List<String>> shortIds = ids.stream()
+                .filter(id -> !result.containsKey(id))
+                .collect(Collectors.groupingBy(id -> id.toLowerCase()));
+        if (!shortIds.isEmpty()) {
+            em.createNamedQuery("Message.findByShortIds", Message.class)
+                    .setParameter("shortIds", shortIds.keySet())
+                    .getResultList().stream()
+                    .collect(Collectors.groupingBy(m -> m.getShortId().toLowerCase()))
+                    .forEach((shortId, messages) -> {
+                        Message message = resolveMessage(messages);
+                        shortIds.get(shortId).forEach(id -> result.put(id, message));
+                    });
+        }
+
+        return result;
+    }
+
+
     /** Returns a single message from the list - preferably from the current domain */
     private Message resolveMessage(List<Message> messages) {
         // Sort messages by domain and status
@@ -356,6 +405,9 @@ public class MessageService extends BaseService {
         // Save a MessageHistory entity for the message
         saveHistory(message);
 
+        // Notify observers, such as the message Lucene index, about the change
+        messageChangeEvent.fire(new MessageChangeEvent(message));
+
         return message;
     }
 
@@ -941,49 +993,292 @@ public class MessageService extends BaseService {
 
 
     /**
-     * Returns the message with the given IDs
+     * Searches out the ID's of the paged result set of messages defined by the search parameters.
+     * <p>
+     * Along with {@code getMessageVersions()}, this allows callers to e.g. evaluate HTTP preconditions
+     * before loading the messages using {@code getMessages()}.
+     *
+     * @param params the search parameters
+     * @return the search result of message ID's
+     */
+    public PagedSearchResultVo<Integer> searchIds(MessageSearchParams params) {
+
+        PagedSearchResultVo<Integer> result = new PagedSearchResultVo<>();
+
+        try {
+            result.setData(searchPagedMessageIds(params, result));
+            result.updateSize();
+
+        } catch (Exception e) {
+            log.error("Error performing search " + params + ": " + e, e);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Returns the version of the messages with the given IDs, without loading the messages.
+     * Each row contains the id, uid, status and updated date of a message, in the order of the ID list.
+     *
+     * @param ids the message IDs
+     * @return the version of the messages with the given IDs
+     */
+    public List<Object[]> getMessageVersions(List<Integer> ids) {
+
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Integer, Object[]> rows = new HashMap<>();
+        em.createNamedQuery("Message.findVersionsByIds", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> rows.put((Integer) row[0], row));
+
+        return ids.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Returns the message with the given IDs, in the order of the ID list
      *
      * @param ids the message IDs
      * @return the message with the given IDs
      */
-    private List<Message> getMessages(List<Integer> ids) {
+    public List<Message> getMessages(List<Integer> ids) {
 
         if (ids.isEmpty()) {
             return Collections.emptyList();
         }
 
+        // The remaining lazy associations used for VO conversion are batch-fetched (see @BatchSize)
         List<Message> messages = em.createNamedQuery("Message.findByIds", Message.class)
                 .setParameter("ids", ids)
+                .setHint("javax.persistence.loadgraph", em.getEntityGraph(Message.SEARCH_RESULT_GRAPH))
                 .getResultList();
 
-        // Sort the result according to the order of the messages in the ID list
-        messages.sort(Comparator.comparingInt(m -> ids.indexOf(m.getId())));
+        // Sort the result according to the order of the messages in the ID list.
+        // Fetch-joined collections may cause duplicate messages in the result, which are skipped
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int x = ids.size() - 1; x >= 0; x--) {
+            positions.put(ids.get(x), x);
+        }
+        Message[] result = new Message[ids.size()];
+        messages.forEach(m -> result[positions.get(m.getId())] = m);
 
-        return messages;
+        return Arrays.stream(result)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
 
     /**
      * Searches out the ID's of the paged result set of messages defined by the search parameters.
      * Also fills out the total result count of the message search result.
+     * <p>
+     * The total result count is computed using a separate count query, and only the requested page
+     * of message ID's is fetched from the database.
+     * If the search parameters define a "seekAfter" message UID, keyset pagination is used, i.e. the page
+     * of messages sorted after the given message is returned, rather than the page defined by the page number.
+     * <p>
+     * The Lucene hits of a free-text or extent search are included in the SQL as compact ID range and
+     * IN-clause predicates, so that the filtering, counting and paging is still performed by the database.
+     * If the Lucene hits are too many and too sparse for this, the sorted ID's matching the remaining criteria
+     * are fetched instead, and intersected with the Lucene hits in memory.
      *
      * @param param the search parameters
      * @param result the search result to update with the total result count
      * @return the paged list of message ID's
      */
     @SuppressWarnings("all")
-    List<Integer> searchPagedMessageIds(MessageSearchParams param, PagedSearchResultVo<Message> result) throws Exception {
+    List<Integer> searchPagedMessageIds(MessageSearchParams param, PagedSearchResultVo<?> result) throws Exception {
 
         CriteriaBuilder builder = em.getCriteriaBuilder();
-        CriteriaQuery<Tuple> tupleQuery = builder.createTupleQuery();
 
-        // Select messages
+        // The extent is answered by the Lucene index, which avoids joining the message part features.
+        // Only until the index has been built upon start-up, the extent is a spatial predicate of the query
+        boolean luceneExtent = param.getExtent() != null && messageLuceneIndex.allMessagesIndexed();
+
+        // Search the Lucene index for free text search and extent
+        BitSet luceneHits = null;
+        if (param.requiresLuceneSearch() || luceneExtent) {
+            try {
+                luceneHits = messageLuceneIndex.searchIndexIds(
+                        param.getQuery(),
+                        param.getLanguage(),
+                        luceneExtent ? param.getExtent() : null,
+                        param.getIncludeNoPos() != null && param.getIncludeNoPos());
+            } catch (Exception e) {
+                log.warn("Error searching lucene index for query " + param.getQuery());
+                luceneHits = new BitSet();
+            }
+        }
+
+        // Refenced messages
+        Set<Integer> referencedIds = null;
+        if (StringUtils.isNotBlank(param.getMessageId())) {
+            int levels = param.getReferenceLevels() == null ? 1 : param.getReferenceLevels();
+            // NB: This is expensive queries - limit the levels
+            levels = Math.max(0, Math.min(5, levels));
+            // First, find messages referenced by the message ID
+            referencedIds = findReferencedMessageIds(new HashSet<>(), param.getMessageId(), levels);
+            // Next, add messages referencing the message ID
+            findReferencingMessageIds(referencedIds, param.getMessageId(), levels);
+        }
+
+        // If keyset pagination is requested, look up the sort key values of the anchor message
+        Object[] seekAnchor = null;
+        if (StringUtils.isNotBlank(param.getSeekAfter())) {
+            seekAnchor = findSortKeyValues(param, param.getSeekAfter());
+        }
+
+        // Fetch the message id's (and fields used for sorting) of the current page
+        CriteriaQuery<Tuple> tupleQuery = builder.createTupleQuery();
         Root<Message> msgRoot = tupleQuery.from(Message.class);
+        CriteriaHelper<Tuple> criteriaHelper = buildSearchPredicates(
+                new CriteriaHelper<>(builder, tupleQuery), msgRoot, param, luceneHits, luceneExtent, referencedIds);
+
+        List<Expression<?>> sortKeys = getSortKeys(builder, msgRoot, param);
+        boolean asc = param.getSortOrder() == SortOrder.ASC;
+        if (seekAnchor != null) {
+            criteriaHelper.add(seekAfterPredicate(builder, sortKeys, seekAnchor, asc));
+        }
+
+        tupleQuery.multiselect(new ArrayList<Selection<?>>(sortKeys))
+                .distinct(true)
+                .where(criteriaHelper.where())
+                .orderBy(sortKeys.stream()
+                        .map(k -> asc ? builder.asc(k) : builder.desc(k))
+                        .collect(Collectors.toList()));
+
+        long firstResult = seekAnchor != null ? 0L : (long) param.getPage() * (long) param.getMaxSize();
+
+        // Intersect large sparse sets of Lucene hits in memory
+        if (luceneHits != null && !CriteriaHelper.supportsIdPredicate(luceneHits)) {
+            List<Integer> sortedIds = em
+                    .createQuery(tupleQuery)
+                    .getResultList()
+                    .stream()
+                    .map(t -> (Integer) t.get(sortKeys.size() - 1))
+                    .collect(Collectors.toList());
+            return intersectPagedIds(sortedIds, luceneHits, firstResult, param.getMaxSize(), result);
+        }
+
+        if (firstResult > Integer.MAX_VALUE) {
+            result.setTotal(countMessages(param, luceneHits, luceneExtent, referencedIds));
+            return Collections.emptyList();
+        }
+
+        List<Integer> msgIds = em
+                .createQuery(tupleQuery)
+                .setFirstResult((int) firstResult)
+                .setMaxResults(param.getMaxSize())
+                .getResultList()
+                .stream()
+                .map(t -> (Integer) t.get(sortKeys.size() - 1))
+                .collect(Collectors.toList());
+
+        // Register the total result. If the first page is not full, there is no need for a count query
+        if (firstResult == 0 && seekAnchor == null && msgIds.size() < param.getMaxSize()) {
+            result.setTotal(msgIds.size());
+        } else {
+            result.setTotal(countMessages(param, luceneHits, luceneExtent, referencedIds));
+        }
+
+        return msgIds;
+    }
+
+
+    /**
+     * Intersects the sorted ID's with the given ID's, and returns the requested page of the result.
+     * Also fills out the total result count of the search result.
+     *
+     * @param sortedIds the sorted ID's
+     * @param ids the ID's to intersect with
+     * @param firstResult the index of the first ID of the page
+     * @param maxSize the max number of ID's of the page
+     * @param result the search result to update with the total result count
+     * @return the paged list of ID's
+     */
+    public static List<Integer> intersectPagedIds(
+            List<Integer> sortedIds,
+            BitSet ids,
+            long firstResult,
+            int maxSize,
+            PagedSearchResultVo<?> result) {
+
+        List<Integer> pagedIds = new ArrayList<>();
+        long total = 0;
+        for (Integer id : sortedIds) {
+            if (ids.get(id)) {
+                if (total >= firstResult && pagedIds.size() < maxSize) {
+                    pagedIds.add(id);
+                }
+                total++;
+            }
+        }
+        result.setTotal(total);
+        return pagedIds;
+    }
+
+
+    /**
+     * Counts the number of distinct messages matching the search parameters
+     *
+     * @param param the search parameters
+     * @param luceneHits if defined, the ID's of the messages matching the free-text search and Lucene extent
+     * @param luceneExtent whether the extent has been handled by the Lucene search
+     * @param referencedIds if defined, the ID's of the messages matching the referenced message search
+     * @return the number of distinct messages matching the search parameters
+     */
+    private long countMessages(
+            MessageSearchParams param,
+            BitSet luceneHits,
+            boolean luceneExtent,
+            Set<Integer> referencedIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+        Root<Message> countRoot = countQuery.from(Message.class);
+        CriteriaHelper<Long> criteriaHelper = buildSearchPredicates(
+                new CriteriaHelper<>(builder, countQuery), countRoot, param, luceneHits, luceneExtent, referencedIds);
 
-        // Build the predicates based on the search parameters
-        CriteriaHelper<Tuple> criteriaHelper = CriteriaHelper.initWithTupleQuery(em)
-                .between(msgRoot.get("updated"), param.getUpdatedFrom(), param.getUpdatedTo());
+        countQuery.select(builder.countDistinct(countRoot.get("id")))
+                .where(criteriaHelper.where());
+
+        return em.createQuery(countQuery).getSingleResult();
+    }
+
+
+    /**
+     * Translates the search parameters into predicates of the given criteria helper.
+     * <p>
+     * The ID's resulting from a Lucene search or a referenced message search are resolved up-front
+     * by the callee, so that the predicates can be built for both the count query and the page query.
+     *
+     * @param criteriaHelper the criteria helper to add predicates to
+     * @param msgRoot the message root of the query
+     * @param param the search parameters
+     * @param luceneHits if defined, the ID's of the messages matching the free-text search and Lucene extent
+     * @param luceneExtent whether the extent has been handled by the Lucene search
+     * @param referencedIds if defined, the ID's of the messages matching the referenced message search
+     * @return the updated criteria helper
+     */
+    @SuppressWarnings("all")
+    private <T> CriteriaHelper<T> buildSearchPredicates(
+            CriteriaHelper<T> criteriaHelper,
+            Root<Message> msgRoot,
+            MessageSearchParams param,
+            BitSet luceneHits,
+            boolean luceneExtent,
+            Set<Integer> referencedIds) {
+
+        CriteriaBuilder builder = criteriaHelper.getCriteriaBuilder();
 
+        criteriaHelper.between(msgRoot.get("updated"), param.getUpdatedFrom(), param.getUpdatedTo());
 
         // Filter by dates
         if (param.getFrom() != null || param.getTo() != null) {
@@ -1029,16 +1324,11 @@ public class MessageService extends BaseService {
         }
 
 
-        // Search the Lucene index for free text search
-        if (param.requiresLuceneSearch()) {
-            List<Long> ids = null;
-            try {
-                ids = messageLuceneIndex.searchIndex(param.getQuery(), param.getLanguage(), Integer.MAX_VALUE);
-            } catch (Exception e) {
-                log.warn("Error searching lucene index for query " + param.getQuery());
-                ids = Collections.emptyList();
-            }
-            criteriaHelper.in(msgRoot.get("id"), ids);
+        // Free text search. Large sparse sets of Lucene hits are intersected in memory by the callee
+        if (luceneHits != null && CriteriaHelper.supportsIdPredicate(luceneHits)) {
+            criteriaHelper.in(msgRoot.get("id"), luceneHits);
+        } else if (luceneHits != null) {
+            criteriaHelper.between(msgRoot.get("id"), luceneHits.nextSetBit(0), luceneHits.length() - 1);
         }
 
 
@@ -1084,8 +1374,8 @@ public class MessageService extends BaseService {
         }
 
 
-        // Geometry
-        if (param.getExtent() != null) {
+        // Geometry, unless handled by the Lucene search
+        if (param.getExtent() != null && !luceneExtent) {
             param.getExtent().setSRID(WGS84_SRID);
             Join<Message, MessagePart> partRoot = msgRoot.join("parts", JoinType.LEFT);
             Join<Message, FeatureCollection> fcRoot = partRoot.join("geometry", JoinType.LEFT);
@@ -1152,14 +1442,7 @@ public class MessageService extends BaseService {
 
 
         // Refenced messages
-        if (StringUtils.isNotBlank(param.getMessageId())) {
-            int levels = param.getReferenceLevels() == null ? 1 : param.getReferenceLevels();
-            // NB: This is expensive queries - limit the levels
-            levels = Math.max(0, Math.min(5, levels));
-            // First, find messages referenced by the message ID
-            Set<Integer> referencedIds = findReferencedMessageIds(new HashSet<>(), param.getMessageId(), levels);
-            // Next, add messages referencing the message ID
-            findReferencingMessageIds(referencedIds, param.getMessageId(), levels);
+        if (referencedIds != null) {
             criteriaHelper.in(msgRoot.get("id"), referencedIds);
         }
 
@@ -1172,125 +1455,111 @@ public class MessageService extends BaseService {
             criteriaHelper.in(promulgationTypeJoin.get("typeId"), param.getPromulgationTypes());
         }
 
+        return criteriaHelper;
+    }
+
 
-        // Determine the fields to fetch
-        Join<Message, Area> areaRoot = null;
-        Expression<?> treeSortOrder = null;
-        List<Selection<?>> fields = new ArrayList<>();
-        fields.add(msgRoot.get("id"));
+    /**
+     * Returns the list of expressions that the message search result is sorted by.
+     * The message ID is always included as the last field, and used as the final tie-breaker.
+     *
+     * @param builder the criteria builder
+     * @param msgRoot the message root of the query
+     * @param param the search parameters
+     * @return the list of expressions that the message search result is sorted by
+     */
+    private List<Expression<?>> getSortKeys(CriteriaBuilder builder, Root<Message> msgRoot, MessageSearchParams param) {
+        List<Expression<?>> keys = new ArrayList<>();
         if (param.sortByEventDate()) {
-            fields.add(msgRoot.get("eventDateFrom"));
-            fields.add(msgRoot.get("eventDateTo"));
+            keys.add(msgRoot.get("eventDateFrom"));
+            keys.add(msgRoot.get("eventDateTo"));
         } else if (param.sortByPublishDate()) {
-            fields.add(msgRoot.get("publishDateFrom"));
-            fields.add(msgRoot.get("publishDateTo"));
+            keys.add(msgRoot.get("publishDateFrom"));
+            keys.add(msgRoot.get("publishDateTo"));
         } else if (param.sortByFollowUpDate()) {
-            fields.add(msgRoot.get("followUpDate"));
+            keys.add(msgRoot.get("followUpDate"));
         } else if (param.sortById()) {
-            fields.add(msgRoot.get("year"));
-            fields.add(msgRoot.get("number"));
-            fields.add(msgRoot.get("publishDateFrom"));
+            keys.add(msgRoot.get("year"));
+            keys.add(msgRoot.get("number"));
+            keys.add(msgRoot.get("publishDateFrom"));
         } else if (param.sortByArea()) {
-            areaRoot = msgRoot.join("area", JoinType.LEFT);
+            Join<Message, Area> areaRoot = msgRoot.join("area", JoinType.LEFT);
             // General messages (without an associated area) should be sorted last
-            treeSortOrder = builder.selectCase()
+            keys.add(builder.selectCase()
                     .when(builder.isNull(areaRoot.get("treeSortOrder")), 999999)
-                    .otherwise(areaRoot.get("treeSortOrder"));
-            fields.add(treeSortOrder);
-            fields.add(msgRoot.get("areaSortOrder"));
-            fields.add(msgRoot.get("year"));
-            fields.add(msgRoot.get("number"));
+                    .otherwise(areaRoot.get("treeSortOrder")));
+            keys.add(msgRoot.get("areaSortOrder"));
+            keys.add(msgRoot.get("year"));
+            keys.add(msgRoot.get("number"));
         }
-        Selection[] f = fields.toArray(new Selection<?>[fields.size()]);
+        keys.add(msgRoot.get("id"));
+        return keys;
+    }
 
-        // Complete the query and fetch the message id's (and fields used for sorting)
-        tupleQuery.multiselect(f)
-                .distinct(true)
-                .where(criteriaHelper.where());
 
-        // Sort the query
-        if (param.sortByEventDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("eventDateFrom")),
-                        builder.asc(msgRoot.get("eventDateTo")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("eventDateFrom")),
-                        builder.desc(msgRoot.get("eventDateTo")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByPublishDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("publishDateFrom")),
-                        builder.asc(msgRoot.get("publishDateTo")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("publishDateFrom")),
-                        builder.desc(msgRoot.get("publishDateTo")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByFollowUpDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("followUpDate")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("followUpDate")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortById()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("year")),
-                        builder.asc(msgRoot.get("number")),
-                        builder.asc(msgRoot.get("publishDateFrom")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("year")),
-                        builder.desc(msgRoot.get("number")),
-                        builder.desc(msgRoot.get("publishDateFrom")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByArea()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(treeSortOrder),
-                        builder.asc(msgRoot.get("areaSortOrder")),
-                        builder.asc(msgRoot.get("year")),
-                        builder.asc(msgRoot.get("number")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(treeSortOrder),
-                        builder.desc(msgRoot.get("areaSortOrder")),
-                        builder.desc(msgRoot.get("year")),
-                        builder.desc(msgRoot.get("number")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        }
+    /**
+     * Returns the sort key values of the message with the given UID, or null if the message is not found.
+     * The values are ordered as the sort keys returned by {@code getSortKeys()}.
+     *
+     * @param param the search parameters
+     * @param uid the UID of the message
+     * @return the sort key values of the message
+     */
+    private Object[] findSortKeyValues(MessageSearchParams param, String uid) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> anchorQuery = builder.createTupleQuery();
+        Root<Message> anchorRoot = anchorQuery.from(Message.class);
 
-        // Execute the query
-        List<Tuple> totalResult = em
-                .createQuery(tupleQuery)
+        anchorQuery.multiselect(new ArrayList<Selection<?>>(getSortKeys(builder, anchorRoot, param)))
+                .where(builder.equal(anchorRoot.get("uid"), uid));
+
+        List<Tuple> anchor = em.createQuery(anchorQuery)
+                .setMaxResults(1)
                 .getResultList();
+        if (anchor.isEmpty()) {
+            log.warn("Keyset pagination anchor message not found " + uid);
+            return null;
+        }
+        return anchor.get(0).toArray();
+    }
 
-        // Register the total result
-        result.setTotal(totalResult.size());
 
-        List<Integer> msgIds = totalResult.stream()
-                .map(t -> (Integer) t.get(0))
-                .collect(Collectors.toList());
+    /**
+     * Returns a predicate that only matches messages sorted after the anchor values, i.e.
+     * "(k1 > v1) or (k1 = v1 and k2 > v2) or ..." for ascending sort order.
+     * <p>
+     * NB: The predicate follows the MySQL convention, where null values are sorted first in ascending order.
+     *
+     * @param builder the criteria builder
+     * @param sortKeys the sort keys
+     * @param anchor the sort key values of the anchor message
+     * @param asc whether the sort order is ascending or descending
+     * @return the predicate
+     */
+    @SuppressWarnings("all")
+    private Predicate seekAfterPredicate(CriteriaBuilder builder, List<Expression<?>> sortKeys, Object[] anchor, boolean asc) {
+
+        List<Predicate> disjunction = new ArrayList<>();
+        List<Predicate> equalPrefix = new ArrayList<>();
+        for (int x = 0; x < sortKeys.size(); x++) {
+            Expression key = sortKeys.get(x);
+            Comparable value = (Comparable) anchor[x];
+
+            Predicate after;
+            if (asc) {
+                after = value == null ? builder.isNotNull(key) : builder.greaterThan(key, value);
+            } else {
+                after = value == null ? builder.disjunction() : builder.or(builder.lessThan(key, value), builder.isNull(key));
+            }
+
+            List<Predicate> conjunction = new ArrayList<>(equalPrefix);
+            conjunction.add(after);
+            disjunction.add(builder.and(conjunction.toArray(new Predicate[conjunction.size()])));
+
+            equalPrefix.add(value == null ? builder.isNull(key) : builder.equal(key, value));
+        }
 
-        // Extract and return the paged sub-list
-        int startIndex = Math.min(msgIds.size(), param.getPage() * param.getMaxSize());
-        int endIndex = Math.min(msgIds.size(), startIndex + param.getMaxSize());
-        return msgIds.subList(startIndex, endIndex);
+        return builder.or(disjunction.toArray(new Predicate[disjunction.size()]));
     }
 
 
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.niord.model.message.Status;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An in-memory timer index of the upcoming scheduled status transitions of messages, i.e.:
+ * <ul>
+ *     <li>Verified messages are published at their publishDateFrom.</li>
+ *     <li>Published messages are expired at their publishDateTo.</li>
+ * </ul>
+ * A message has at most one pending transition. The transitions are ordered by their due time,
+ * which is the publish date rounded up to the whole minute, so that messages with publish dates
+ * within the same minute are processed together.
+ * <p>
+ * Due transitions are re-scheduled a minute later when polled, so that failed transitions are retried.
+ * A successful transition changes the status of the message, which replaces the re-scheduled transition.
+ * <p>
+ * The message states are versioned by their "updated" timestamp. When the index is re-loaded from the
+ * database, the messages changed whilst loading keep their current transitions, unless the loaded state
+ * is newer.
+ * <p>
+ * The index is thread-safe.
+ */
+@SuppressWarnings("unused")
+public class MessageTransitionIndex {
+
+    /** The types of scheduled message status transitions **/
+    public enum TransitionType { PUBLISH, EXPIRE }
+
+    private static final long MINUTE = 60L * 1000L;
+    private static final long RETRY_DELAY = MINUTE;
+
+    private final TreeSet<Transition> queue = new TreeSet<>(
+            Comparator.comparingLong(Transition::getDueTime).thenComparing(Transition::getUid));
+    private final Map<String, Transition> transitions = new HashMap<>();
+    private final Map<String, Change> changes = new HashMap<>();
+    private long generation;
+
+
+    /**
+     * Updates the pending transition of the message with the given status and publish dates
+     *
+     * @param uid the message UID
+     * @param status the message status
+     * @param publishDateFrom the message publish start date
+     * @param publishDateTo the message publish end date
+     */
+    public void update(String uid, Status status, Date publishDateFrom, Date publishDateTo) {
+        update(uid, status, publishDateFrom, publishDateTo, null);
+    }
+
+
+    /**
+     * Updates the pending transition of the message with the given status and publish dates
+     *
+     * @param uid the message UID
+     * @param status the message status
+     * @param publishDateFrom the message publish start date
+     * @param publishDateTo the message publish end date
+     * @param updated the time the message was updated. If undefined, the state is considered the newest
+     */
+    public synchronized void update(String uid, Status status, Date publishDateFrom, Date publishDateTo, Date updated) {
+        remove(uid);
+
+        long version = updated != null ? updated.getTime() : Long.MAX_VALUE;
+        Transition transition = null;
+        if (status == Status.VERIFIED && publishDateFrom != null) {
+            transition = new Transition(uid, TransitionType.PUBLISH, dueTime(publishDateFrom.getTime()), version);
+        } else if (status == Status.PUBLISHED && publishDateTo != null) {
+            transition = new Transition(uid, TransitionType.EXPIRE, dueTime(publishDateTo.getTime()), version);
+        }
+
+        if (transition != null) {
+            add(transition);
+        }
+        changes.put(uid, new Change(version, ++generation));
+    }
+
+
+    /**
+     * Returns the current generation of the index, which is incremented for every update.
+     * Used for re-loading the index, see {@linkplain #reload(MessageTransitionIndex, long)}.
+     *
+     * @return the current generation of the index
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+
+    /**
+     * Replaces the pending transitions with the transitions of the given index, loaded from the database.
+     * <p>
+     * Messages updated after the given generation, i.e. whilst the index was being loaded, keep their
+     * current transitions, unless the loaded state of the message is newer.
+     *
+     * @param loaded the index loaded from the database
+     * @param generation the generation of this index when the loading started
+     */
+    public synchronized void reload(MessageTransitionIndex loaded, long generation) {
+        Map<String, Transition> merged;
+        synchronized (loaded) {
+            merged = new HashMap<>(loaded.transitions);
+        }
+
+        changes.values().removeIf(change -> change.generation <= generation);
+        changes.forEach((uid, change) -> {
+            Transition loadedTransition = merged.get(uid);
+            if (loadedTransition == null || loadedTransition.getVersion() <= change.version) {
+                Transition current = transitions.get(uid);
+                if (current != null) {
+                    merged.put(uid, current);
+                } else {
+                    merged.remove(uid);
+                }
+            }
+        });
+
+        transitions.clear();
+        queue.clear();
+        merged.values().forEach(this::add);
+    }
+
+
+    /** Adds the given transition **/
+    private void add(Transition transition) {
+        transitions.put(transition.getUid(), transition);
+        queue.add(transition);
+    }
+
+
+    /**
+     * Removes the pending transition of the message with the given UID
+     * @param uid the message UID
+     */
+    public synchronized void remove(String uid) {
+        Transition transition = transitions.remove(uid);
+        if (transition != null) {
+            queue.remove(transition);
+        }
+    }
+
+
+    /** Removes all pending transitions **/
+    public synchronized void clear() {
+        transitions.clear();
+        queue.clear();
+        changes.clear();
+    }
+
+
+    /**
+     * Returns the types of the transitions due at the given time.
+     * <p>
+     * The due transitions are re-scheduled a minute later, so that they are retried if they fail.
+     * When a transition succeeds, the updated message status replaces the re-scheduled transition.
+     *
+     * @param time the current time
+     * @return the types of the due transitions
+     */
+    public synchronized Set<TransitionType> pollDue(long time) {
+        Set<TransitionType> types = EnumSet.noneOf(TransitionType.class);
+        List<Transition> retries = new ArrayList<>();
+        while (!queue.isEmpty() && queue.first().getDueTime() <= time) {
+            Transition transition = queue.pollFirst();
+            types.add(transition.getType());
+            retries.add(new Transition(
+                    transition.getUid(),
+                    transition.getType(),
+                    dueTime(time + RETRY_DELAY),
+                    transition.getVersion()));
+        }
+        retries.forEach(this::add);
+        return types;
+    }
+
+
+    /**
+     * Returns the due time of the next transition, or null if there are no pending transitions
+     * @return the due time of the next transition
+     */
+    public synchronized Long getNextDueTime() {
+        return queue.isEmpty() ? null : queue.first().getDueTime();
+    }
+
+
+    /**
+     * Returns the number of pending transitions
+     * @return the number of pending transitions
+     */
+    public synchronized int size() {
+        return queue.size();
+    }
+
+
+    /** Returns the due time of the given publish time, i.e. the time rounded up to the whole minute **/
+    static long dueTime(long time) {
+        return (time + MINUTE - 1) / MINUTE * MINUTE;
+    }
+
+
+    /**
+     * The version of a message state applied by an update, and the generation of the index at the update
+     */
+    private static class Change {
+
+        final long version;
+        final long generation;
+
+        /** Constructor **/
+        Change(long version, long generation) {
+            this.version = version;
+            this.generation = generation;
+        }
+    }
+
+
+    /**
+     * A pending message status transition
+     */
+    public static class Transition {
+
+        final String uid;
+        final TransitionType type;
+        final long dueTime;
+        final long version;
+
+        /** Constructor **/
+        public Transition(String uid, TransitionType type, long dueTime, long version) {
+            this.uid = uid;
+            this.type = type;
+            this.dueTime = dueTime;
+            this.version = version;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public String toString() {
+            return "Transition{" +
+                    "uid='" + uid + '\'' +
+                    ", type=" + type +
+                    ", dueTime=" + new Date(dueTime) +
+                    ", version=" + version +
+                    '}';
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public String getUid() {
+            return uid;
+        }
+
+        public TransitionType getType() {
+            return type;
+        }
+
+        public long getDueTime() {
+            return dueTime;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.niord.core.message;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.model.BaseEntity;
 import org.niord.core.model.IndexedEntity;
 import org.niord.model.DataFilter;
@@ -58,6 +59,7 @@ public class Reference extends BaseEntity<Integer> implements ILocalizable<Refer
     ReferenceType type;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = 100)
     List<ReferenceDesc> descs = new ArrayList<>();
 
 
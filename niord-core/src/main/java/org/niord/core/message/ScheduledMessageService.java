@@ -17,18 +17,24 @@ package org.niord.core.message;
 
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
+import org.niord.core.message.MessageTransitionIndex.TransitionType;
 import org.niord.core.service.BaseService;
 import org.niord.core.util.TimeUtils;
 import org.niord.model.message.Status;
 import org.slf4j.Logger;
 
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 import javax.inject.Inject;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static org.niord.core.message.MessageSearchParams.DateType.PUBLISH_FROM_DATE;
@@ -37,14 +43,20 @@ import static org.niord.model.message.Status.PUBLISHED;
 import static org.niord.model.message.Status.VERIFIED;
 
 /**
- * This service sets up timers to perform regular message status checks:
+ * This service performs scheduled message status transitions:
  * <ul>
- *     <li>Checks for published messages that have passed the publishDateTo and expires these.</li>
- *     <li>Checks for verified messages with a publishDateFrom in the past and publishes these.</li>
+ *     <li>Published messages that have passed the publishDateTo are expired.</li>
+ *     <li>Verified messages with a publishDateFrom in the past are published.</li>
  * </ul>
+ * The upcoming transitions are kept in an in-memory {@linkplain MessageTransitionIndex}, which is maintained
+ * from {@code MessageChangeEvent} events. The index is checked every 5 seconds, and the database is only
+ * queried when transitions are due. Due transitions that fail are retried every minute.
+ * As a safety net, e.g. for changes made by other nodes, the index is re-loaded from the database
+ * every 15 minutes.
  */
 @Singleton
 @Startup
+@Lock(LockType.READ)
 @SuppressWarnings("unused")
 public class ScheduledMessageService extends BaseService {
 
@@ -57,12 +69,91 @@ public class ScheduledMessageService extends BaseService {
     @Inject
     MessageService messageService;
 
+    final MessageTransitionIndex transitionIndex = new MessageTransitionIndex();
+    final AtomicBoolean processing = new AtomicBoolean(false);
+    volatile boolean reloadIndex = true;
+
+
+    /**
+     * Updates the transition index with the changed message
+     *
+     * @param event the message change event
+     */
+    public void onMessageChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageChangeEvent event) {
+        transitionIndex.update(
+                event.getUid(),
+                event.getStatus(),
+                event.getPublishDateFrom(),
+                event.getPublishDateTo(),
+                event.getUpdated());
+    }
+
+
+    /**
+     * Called every 15 minutes to flag that the transition index should be re-loaded from the database
+     */
+    @Schedule(persistent = false, second = "17", minute = "*/15", hour = "*")
+    public void flagReloadTransitionIndex() {
+        reloadIndex = true;
+    }
+
+
+    /**
+     * Called every 5 seconds to process the due message status transitions
+     */
+    @Schedule(persistent = false, second = "*/5", minute = "*", hour = "*")
+    public void processDueTransitions() {
+
+        // Skip if the previous run is still processing transitions
+        if (!processing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            if (reloadIndex) {
+                reloadIndex = false;
+                loadTransitionIndex();
+            }
+
+            Set<TransitionType> dueTransitions = transitionIndex.pollDue(System.currentTimeMillis());
+            if (dueTransitions.contains(TransitionType.EXPIRE)) {
+                expirePublishedMessages();
+            }
+            if (dueTransitions.contains(TransitionType.PUBLISH)) {
+                publishVerifiedMessages();
+            }
+        } finally {
+            processing.set(false);
+        }
+    }
+
+
+    /**
+     * Loads the pending message status transitions from the database.
+     * <p>
+     * The transitions are loaded into a new index, which replaces the current index. Messages changed
+     * whilst loading keep their current transitions, unless the loaded state is newer.
+     */
+    private void loadTransitionIndex() {
+        long t0 = System.currentTimeMillis();
+
+        long generation = transitionIndex.getGeneration();
+        List<Object[]> rows = em.createNamedQuery("Message.findScheduledTransitions", Object[].class)
+                .getResultList();
+
+        MessageTransitionIndex loaded = new MessageTransitionIndex();
+        rows.forEach(row -> loaded.update((String) row[0], (Status) row[1], (Date) row[2], (Date) row[3], (Date) row[4]));
+        transitionIndex.reload(loaded, generation);
+
+        log.debug("Loaded " + transitionIndex.size() + " scheduled message transitions in "
+                + (System.currentTimeMillis() - t0) + " ms");
+    }
+
 
     /**
-     * Called every minute to update expire published messages where publishDateTo is in the past
+     * Expires published messages where publishDateTo is in the past
      */
-    @Schedule(persistent = false, second = "27", minute = "*", hour = "*")
-    public void checkForExpirablePublishedMessages() {
+    private void expirePublishedMessages() {
 
         // We want to treat messages with timestamps within the same minute equally, so, reset the seconds
         Date now = TimeUtils.resetSeconds(new Date());
@@ -84,10 +175,9 @@ public class ScheduledMessageService extends BaseService {
 
 
     /**
-     * Called every minute to publish messages with a VERIFIED status and a defined publishDateFrom in the past
+     * Publishes messages with a VERIFIED status and a defined publishDateFrom in the past
      */
-    @Schedule(persistent = false, second = "37", minute = "*", hour = "*")
-    public void checkForPublishableMessages() {
+    private void publishVerifiedMessages() {
 
         // We want to treat messages with timestamps within the same minute equally, so, reset the seconds
         Date now = TimeUtils.resetSeconds(new Date());
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script;
+
+import freemarker.template.Configuration;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains the long-lived Freemarker configurations, one per locale, used for executing Freemarker templates.
+ * <p>
+ * Each configuration holds a cache of the compiled templates, so that templates and their includes and imports
+ * are only parsed once. The caches are cleared whenever a script resource is saved or deleted.
+ * The template loader will also check for updated templates, and re-check non-existing templates, after
+ * {@code TEMPLATE_UPDATE_DELAY_MS}, which catches script resources created or updated by other nodes in a cluster.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class FmConfigurationService {
+
+    /** Cached templates are checked for updates at most this often **/
+    static final long TEMPLATE_UPDATE_DELAY_MS = 60 * 1000L;
+
+    @Inject
+    ScriptResourceService resourceService;
+
+    @Inject
+    Logger log;
+
+    private final Map<Locale, Configuration> configurations = new ConcurrentHashMap<>();
+    private FmTemplateLoader templateLoader;
+
+
+    /** Initializes the shared template loader **/
+    @PostConstruct
+    void init() {
+        templateLoader = new FmTemplateLoader(resourceService, true, TEMPLATE_UPDATE_DELAY_MS);
+    }
+
+
+    /**
+     * Returns the Freemarker configuration to use for the given locale
+     *
+     * @param locale the locale
+     * @return the Freemarker configuration for the locale
+     */
+    public Configuration getConfiguration(Locale locale) {
+        return configurations.computeIfAbsent(locale, this::createConfiguration);
+    }
+
+
+    /**
+     * Creates a new Freemarker configuration for the given locale
+     *
+     * @param locale the locale
+     * @return the new Freemarker configuration
+     */
+    private Configuration createConfiguration(Locale locale) {
+        Configuration cfg = new Configuration(Configuration.getVersion());
+        cfg.setLocale(locale);
+        cfg.setLocalizedLookup(true);
+        cfg.setTemplateLoader(templateLoader);
+        cfg.setTemplateUpdateDelayMilliseconds(TEMPLATE_UPDATE_DELAY_MS);
+        cfg.setObjectWrapper(new NiordAppObjectWrapper(cfg.getIncompatibleImprovements()));
+        return cfg;
+    }
+
+
+    /**
+     * Clears the compiled templates when a script resource has been saved or deleted
+     *
+     * @param event the script resource change event
+     */
+    public void onScriptResourceChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) ScriptResourceChangeEvent event) {
+        clearTemplateCaches();
+    }
+
+
+    /**
+     * Clears the compiled templates of all Freemarker configurations
+     */
+    public void clearTemplateCaches() {
+        templateLoader.reset();
+        configurations.values().forEach(Configuration::clearTemplateCache);
+        log.debug("Cleared Freemarker template caches");
+    }
+}
@@ -21,34 +21,47 @@ import org.niord.core.util.CdiUtils;
 
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A version of the Freemarker StringTemplateLoader that loads templates lazily from the ScriptResource database table.
+ * <p>
+ * The template loader is long-lived and shared by the cached Freemarker configurations of
+ * the {@code FmConfigurationService}, and hence, it must be thread-safe.
+ * The Freemarker template cache only calls the template loader when a template is not cached or
+ * when the template update delay has expired.
+ * <p>
+ * Paths that do not exist are remembered for a limited time only, so that templates created by
+ * another cluster node are eventually picked up, even though the reset is only triggered locally.
  */
 public class FmTemplateLoader implements TemplateLoader {
 
-    // All templates that have actually been loaded during execution
-    private final Map<String, ScriptResource> templates = new HashMap<>();
-
-    // All existing paths in the ScriptResource table
-    private final Set<String> existingTemplatePaths;
-
-    // All checked paths that do not exist in the ScriptResource table - used when loading from class-path
-    private final Set<String> nonExistingTemplatePaths = new HashSet<>();
+    // Checked paths that do not exist in the ScriptResource table nor in the class-path, and their expiry time
+    private final Map<String, Long> nonExistingTemplatePaths = new ConcurrentHashMap<>();
 
     private final ScriptResourceService resourceService;
     private boolean loadFromClassPath;
+    private final long nonExistingPathTimeout;
 
 
-    /** Constructor **/
-    public FmTemplateLoader(ScriptResourceService resourceService, boolean loadFromClassPath) {
+    /**
+     * Constructor
+     *
+     * @param resourceService the script resource service
+     * @param loadFromClassPath whether to load templates from the class-path if not found in the database
+     * @param nonExistingPathTimeout the number of milliseconds non-existing template paths are cached
+     */
+    public FmTemplateLoader(ScriptResourceService resourceService, boolean loadFromClassPath, long nonExistingPathTimeout) {
         this.resourceService = resourceService;
-        this.existingTemplatePaths = resourceService.findAllScriptResourcePaths();
         this.loadFromClassPath = loadFromClassPath;
+        this.nonExistingPathTimeout = nonExistingPathTimeout;
+    }
+
+
+    /** Resets the cached non-existing template paths **/
+    public void reset() {
+        nonExistingTemplatePaths.clear();
     }
 
 
@@ -62,22 +75,31 @@ public class FmTemplateLoader implements TemplateLoader {
     @Override
     public ScriptResource findTemplateSource(String path) {
 
-        if (existingTemplatePaths.contains(path)) {
-            if (!templates.containsKey(path)) {
-                templates.put(path, resourceService.findByPath(path));
+        Long expiry = nonExistingTemplatePaths.get(path);
+        if (expiry != null) {
+            if (expiry > System.currentTimeMillis()) {
+                return null;
             }
-        } else if (loadFromClassPath && !nonExistingTemplatePaths.contains(path)) {
-            checkLoadTemplateFromClassPath(path);
+            nonExistingTemplatePaths.remove(path, expiry);
+        }
+
+        ScriptResource template = resourceService.findByPath(path);
+        if (template == null && loadFromClassPath) {
+            template = checkLoadTemplateFromClassPath(path);
+        }
+        if (template == null) {
+            nonExistingTemplatePaths.put(path, System.currentTimeMillis() + nonExistingPathTimeout);
         }
-        return templates.get(path);
+        return template;
     }
 
 
     /**
      * Checks if the template exists in the class-path and loads it if it does
      * @param path the path to check
+     * @return the template loaded from the class-path, or null if not found
      */
-    private void checkLoadTemplateFromClassPath(String path) {
+    private ScriptResource checkLoadTemplateFromClassPath(String path) {
 
         ScriptResource scriptResource = resourceService.readScriptResourceFromClassPath(path);
         if (scriptResource != null) {
@@ -86,20 +108,18 @@ public class FmTemplateLoader implements TemplateLoader {
                 // called outside the transaction where the template loader was instantiated
                 ScriptResourceService rs = CdiUtils.getBean(ScriptResourceService.class);
                 rs.createScriptResource(scriptResource);
-                templates.put(path, scriptResource);
-                existingTemplatePaths.add(path);
             } catch (Exception ignored) {
             }
-        } else {
-            nonExistingTemplatePaths.add(path);
         }
+        return scriptResource;
     }
 
 
     /** {@inheritDoc} **/
     @Override
     public long getLastModified(Object template) {
-        return ((ScriptResource)template).getUpdated().getTime();
+        ScriptResource resource = (ScriptResource)template;
+        return resource.getUpdated() != null ? resource.getUpdated().getTime() : -1;
     }
 
 
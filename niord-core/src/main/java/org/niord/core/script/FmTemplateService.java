@@ -27,17 +27,27 @@ import org.niord.core.dictionary.DictionaryService;
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
 import org.niord.core.script.directive.MultiResourceBundleModel;
+import org.niord.core.repo.RepositoryService;
 import org.niord.core.script.pdf.HtmlToPdfRenderer;
+import org.niord.core.script.pdf.PdfRenderJob;
+import org.niord.core.script.pdf.PdfRenderService;
+import org.niord.core.script.pdf.PdfRenderQueue.PdfWriter;
+import org.niord.core.script.pdf.PdfResourceCache;
 import org.niord.core.service.BaseService;
 import org.niord.core.settings.annotation.Setting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.Stateless;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import javax.servlet.ServletContext;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -83,11 +93,23 @@ public class FmTemplateService extends BaseService {
     DomainService domainService;
 
     @Inject
-    ScriptResourceService resourceService;
+    FmConfigurationService fmConfigurationService;
 
     @Inject
     NiordApp app;
 
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    PdfResourceCache pdfResourceCache;
+
+    @Inject
+    PdfRenderService pdfRenderService;
+
+    @Inject
+    Instance<ServletContext> servletContext;
+
     @Inject
     Logger log;
 
@@ -177,13 +199,8 @@ public class FmTemplateService extends BaseService {
 
         Locale locale = app.getLocale(templateBuilder.getLanguage());
 
-        // Create the Freemarker template loader and configuration
-        FmTemplateLoader templateLoader = new FmTemplateLoader(resourceService, true);
-        Configuration cfg = new Configuration(Configuration.getVersion());
-        cfg.setLocalizedLookup(true);
-        cfg.setTemplateLoader(templateLoader);
-        cfg.setObjectWrapper(new NiordAppObjectWrapper(cfg.getIncompatibleImprovements()));
-
+        // Look up the compiled template using the cached Freemarker configuration for the locale
+        Configuration cfg = fmConfigurationService.getConfiguration(locale);
         return cfg.getTemplate(templateBuilder.getTemplatePath(), locale, "UTF-8");
     }
 
@@ -194,6 +211,29 @@ public class FmTemplateService extends BaseService {
     }
 
 
+    /**
+     * Returns the URL of the static web asset with the given path, e.g. "/css/templates/pdf.css".
+     * The asset is looked up in the web application and, secondly, on the class path.
+     * Returns null if the asset is not found.
+     *
+     * @param path the path of the static web asset
+     * @return the URL of the asset, or null if not found
+     */
+    private URL getAssetUrl(String path) {
+        try {
+            if (!servletContext.isUnsatisfied()) {
+                URL url = servletContext.get().getResource(path);
+                if (url != null) {
+                    return url;
+                }
+            }
+        } catch (Exception e) {
+            log.trace("Failed resolving web asset " + path + ": " + e);
+        }
+        return getClass().getResource(path);
+    }
+
+
     /************************************/
     /** Freemarker Template Builder    **/
     /************************************/
@@ -277,13 +317,10 @@ public class FmTemplateService extends BaseService {
 
                 } else if (format == ProcessFormat.PDF) {
 
-                    HtmlToPdfRenderer.newBuilder()
-                            .baseUri(templateService.getBaseUri())
-                            .html(result)
-                            .encrypt(templateService.getPDFEncryptionPassword())
-                            .pdf(out)
-                            .build()
-                            .render();
+                    // Render the PDF via the PDF render service, which bounds the number of concurrent
+                    // renderings and caches the result
+                    Path pdf = templateService.pdfRenderService.renderPdf(pdfJobId(result), pdfWriter(result));
+                    Files.copy(pdf, out);
 
                     log.info("Completed Freemarker PDF generation for " + getTemplatePath()
                             + " in " + (System.currentTimeMillis() - t0) + " ms");
@@ -296,6 +333,46 @@ public class FmTemplateService extends BaseService {
         }
 
 
+        /**
+         * Generates PDF based on the Freemarker HTML template asynchronously.
+         * The template itself is processed synchronously, whereas the PDF is rendered by the PDF render service.
+         *
+         * @param owner the owner allowed to access the PDF rendering job
+         * @return the PDF rendering job
+         */
+        public PdfRenderJob submitPdf(String owner) throws Exception {
+            String result = process();
+            return templateService.pdfRenderService.submit(pdfJobId(result), owner, pdfWriter(result));
+        }
+
+
+        /** Returns the PDF render job ID of the given HTML **/
+        private String pdfJobId(String html) {
+            return PdfRenderService.jobId(
+                    getTemplatePath(),
+                    templateService.getPDFEncryptionPassword(),
+                    html);
+        }
+
+
+        /** Returns a PDF writer that renders the given HTML **/
+        private PdfWriter pdfWriter(String html) {
+            String baseUri = templateService.getBaseUri();
+            Path repoRoot = templateService.repositoryService.getRepoRoot();
+            String password = templateService.getPDFEncryptionPassword();
+            return out -> HtmlToPdfRenderer.newBuilder()
+                    .baseUri(baseUri)
+                    .repoRoot(repoRoot)
+                    .assetLocator(templateService::getAssetUrl)
+                    .resourceCache(templateService.pdfResourceCache.getCache())
+                    .html(html)
+                    .encrypt(password)
+                    .pdf(out)
+                    .build()
+                    .render();
+        }
+
+
         /*****************************************/
         /** Method-chaining Getters and Setters **/
         /*****************************************/
@@ -27,6 +27,7 @@ import org.niord.core.user.UserService;
 import org.slf4j.Logger;
 
 import javax.ejb.Stateless;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import java.io.InputStream;
 import java.util.Arrays;
@@ -53,6 +54,9 @@ public class ScriptResourceService extends BaseService {
     @Inject
     Logger log;
 
+    @Inject
+    Event<ScriptResourceChangeEvent> scriptResourceChangeEvent;
+
 
     /**
      * Saves the script resource
@@ -71,6 +75,9 @@ public class ScriptResourceService extends BaseService {
         // Save a ScriptResourceHistory entity for the resource
         saveScriptResourceHistory(resource);
 
+        // Notify observers, such as the cached Freemarker configurations, of the change
+        scriptResourceChangeEvent.fire(new ScriptResourceChangeEvent(resource.getPath()));
+
         return resource;
     }
 
@@ -209,6 +216,7 @@ public class ScriptResourceService extends BaseService {
             getScriptResourceHistory(id).forEach(this::remove);
             // Delete the actual resource
             remove(resource);
+            scriptResourceChangeEvent.fire(new ScriptResourceChangeEvent(resource.getPath()));
             return true;
         }
         return false;
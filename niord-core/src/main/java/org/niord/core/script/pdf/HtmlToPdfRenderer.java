@@ -27,10 +27,19 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Used for creating a PDF file from HTML.
  * <p>
+ * Repository files and static web assets referenced by the HTML are loaded locally via the {@linkplain PdfUserAgent}
+ * if a repository root and asset locator have been specified, and may be cached across renderers by
+ * specifying a shared resource cache.
+ * <p>
  * Important: If the HTML document contains inline SVG elements, it MUST defined the following CSS style:
  * <pre>
  * svg {
@@ -43,6 +52,9 @@ public class HtmlToPdfRenderer {
     private Document doc = null;
     private String pdfEncryptionPassword = null;
     private String baseUri = "";
+    private Path repoRoot = null;
+    private Function<String, URL> assetLocator = null;
+    private Map<String, Object> resourceCache = null;
     private OutputStream pdf = null;
 
     /** No-access constructor **/
@@ -76,6 +88,16 @@ public class HtmlToPdfRenderer {
         // Generate PDF from the HTML
         ITextRenderer renderer = new ITextRenderer();
 
+        // Resolve repository files and static assets locally rather than via HTTP
+        PdfUserAgent userAgent = new PdfUserAgent(
+                renderer.getOutputDevice(),
+                baseUri,
+                repoRoot,
+                assetLocator,
+                resourceCache != null ? resourceCache : new ConcurrentHashMap<>());
+        userAgent.setSharedContext(renderer.getSharedContext());
+        renderer.getSharedContext().setUserAgentCallback(userAgent);
+
         // Add support for SVG in PDF generation
         ChainingReplacedElementFactory chainingReplacedElementFactory = new ChainingReplacedElementFactory();
         chainingReplacedElementFactory.addReplacedElementFactory(renderer.getSharedContext().getReplacedElementFactory());
@@ -179,6 +201,27 @@ public class HtmlToPdfRenderer {
         }
 
 
+        /** Sets the repository root used for resolving "/rest/repo/file/..." resources locally **/
+        public HtmlToPdfRendererBuilder repoRoot(Path repoRoot) {
+            renderer.repoRoot = repoRoot;
+            return this;
+        }
+
+
+        /** Sets the function used for resolving the URL of static web assets, e.g. "/css/templates/pdf.css" **/
+        public HtmlToPdfRendererBuilder assetLocator(Function<String, URL> assetLocator) {
+            renderer.assetLocator = assetLocator;
+            return this;
+        }
+
+
+        /** Sets a cache of resources, which may be shared between renderers **/
+        public HtmlToPdfRendererBuilder resourceCache(Map<String, Object> resourceCache) {
+            renderer.resourceCache = resourceCache;
+            return this;
+        }
+
+
         /** Sets the output for the generated PDF **/
         public HtmlToPdfRendererBuilder pdf(OutputStream pdf) {
             renderer.pdf = pdf;
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.niord.core.script.pdf.vo.PdfRenderJobVo;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A PDF rendering job managed by the {@linkplain PdfRenderQueue}.
+ * <p>
+ * The job ID is a hash of the document to render, so identical rendering requests share the same job.
+ * The job is only accessible to the owners that submitted it.
+ */
+@SuppressWarnings("unused")
+public class PdfRenderJob {
+
+    /** The status of a PDF rendering job **/
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    final String jobId;
+    final Path file;
+    final long created = System.currentTimeMillis();
+    final CompletableFuture<Path> result = new CompletableFuture<>();
+    final Set<String> owners = ConcurrentHashMap.newKeySet();
+    volatile Status status = Status.PENDING;
+    volatile String error;
+
+
+    /** Constructor **/
+    public PdfRenderJob(String jobId, Path file) {
+        this.jobId = jobId;
+        this.file = file;
+    }
+
+
+    /** Flags that the PDF file has been rendered **/
+    void completed() {
+        status = Status.DONE;
+        result.complete(file);
+    }
+
+
+    /** Flags that the PDF rendering failed **/
+    void failed(Throwable e) {
+        status = Status.FAILED;
+        error = String.valueOf(e.getMessage());
+        result.completeExceptionally(e);
+    }
+
+
+    /** Returns whether the job has completed, successfully or not **/
+    public boolean isCompleted() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+
+    /** Converts this job to a value object **/
+    public PdfRenderJobVo toVo() {
+        PdfRenderJobVo job = new PdfRenderJobVo();
+        job.setJobId(jobId);
+        job.setStatus(status);
+        job.setCreated(created);
+        job.setError(error);
+        return job;
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /** Returns the owners allowed to access the job **/
+    public Set<String> getOwners() {
+        return owners;
+    }
+
+    /** Returns the future result, i.e. the rendered PDF file **/
+    public CompletableFuture<Path> getResult() {
+        return result;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
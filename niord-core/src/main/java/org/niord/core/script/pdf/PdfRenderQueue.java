@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.niord.core.script.pdf.PdfRenderJob.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Queues PDF rendering jobs and renders at most "maxConcurrency" of them at a time.
+ * <p>
+ * Pending jobs are kept in the queue, and are only dispatched to the executor when a render slot
+ * is available, so that a burst of PDF requests does not occupy the threads of the executor.
+ * <p>
+ * Jobs are identified by a hash of the document to render, so identical requests share a single rendering.
+ * The rendered documents are cached in the cache root folder until they expire. A job is only
+ * accessible to the owners that submitted it.
+ */
+@SuppressWarnings("unused")
+public class PdfRenderQueue {
+
+    private final static Logger log = LoggerFactory.getLogger(PdfRenderQueue.class);
+
+    /** Writes a PDF document to the output stream **/
+    @FunctionalInterface
+    public interface PdfWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    final Executor executor;
+    final int maxConcurrency;
+    final Path cacheRoot;
+    final long cacheTimeout;
+
+    final Map<String, PdfRenderJob> jobs = new ConcurrentHashMap<>();
+    final Queue<Runnable> pending = new LinkedList<>();
+    int running;
+
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor used for rendering PDF documents
+     * @param maxConcurrency the max number of PDF documents rendered concurrently
+     * @param cacheRoot the root folder of the cached PDF documents
+     * @param cacheTimeout the number of milliseconds rendered PDF documents are cached
+     */
+    public PdfRenderQueue(Executor executor, int maxConcurrency, Path cacheRoot, long cacheTimeout) {
+        this.executor = executor;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.cacheRoot = cacheRoot;
+        this.cacheTimeout = cacheTimeout;
+    }
+
+
+    /**
+     * Submits a PDF rendering job. If an identical job is already pending, or the PDF document
+     * has already been rendered, the existing job is returned.
+     *
+     * @param jobId the job ID
+     * @param owner if defined, the owner allowed to access the job
+     * @param writer renders the PDF document
+     * @return the PDF rendering job
+     */
+    public PdfRenderJob submit(String jobId, String owner, PdfWriter writer) {
+        PdfRenderJob result = jobs.compute(jobId, (id, job) -> {
+            if (job != null && isValid(job)) {
+                return job;
+            }
+
+            PdfRenderJob newJob = new PdfRenderJob(id, getPdfFile(id));
+            if (isCached(newJob.getFile())) {
+                newJob.completed();
+            } else {
+                enqueue(() -> render(newJob, writer));
+            }
+            return newJob;
+        });
+
+        if (owner != null) {
+            result.getOwners().add(owner);
+        }
+        return result;
+    }
+
+
+    /**
+     * Renders the PDF document and waits for the result.
+     * If an identical job is already pending, or the PDF document has already been rendered,
+     * the result of the existing job is returned.
+     *
+     * @param jobId the job ID
+     * @param writer renders the PDF document
+     * @param timeout the max time to wait for the PDF document
+     * @param unit the time unit of the timeout
+     * @return the rendered PDF file
+     */
+    public Path renderPdf(String jobId, PdfWriter writer, long timeout, TimeUnit unit) throws Exception {
+        try {
+            return submit(jobId, null, writer).getResult().get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+
+    /**
+     * Returns the PDF rendering job with the given ID, or null if not found or not accessible to the owner
+     *
+     * @param jobId the job ID
+     * @param owner the owner accessing the job
+     * @return the PDF rendering job, or null if not found or not accessible to the owner
+     */
+    public PdfRenderJob getJob(String jobId, String owner) {
+        PdfRenderJob job = jobs.get(jobId);
+        return job != null && owner != null && isValid(job) && job.getOwners().contains(owner) ? job : null;
+    }
+
+
+    /** Adds the render task to the queue and dispatches it if a render slot is available **/
+    private synchronized void enqueue(Runnable task) {
+        pending.add(task);
+        dispatch();
+    }
+
+
+    /** Dispatches pending render tasks to the executor while render slots are available **/
+    private synchronized void dispatch() {
+        while (running < maxConcurrency && !pending.isEmpty()) {
+            Runnable task = pending.poll();
+            running++;
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        completed();
+                    }
+                });
+            } catch (RuntimeException e) {
+                running--;
+                throw e;
+            }
+        }
+    }
+
+
+    /** Releases the render slot of a completed render task **/
+    private synchronized void completed() {
+        running--;
+        dispatch();
+    }
+
+
+    /**
+     * Renders the PDF document of the job.
+     *
+     * @param job the PDF rendering job
+     * @param writer renders the PDF document
+     */
+    private void render(PdfRenderJob job, PdfWriter writer) {
+        try {
+            long t0 = System.currentTimeMillis();
+            job.status = Status.RUNNING;
+
+            Path file = job.getFile();
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), job.getJobId(), ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                    writer.write(out);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            job.completed();
+            log.info("Rendered PDF " + job.getJobId() + " in " + (System.currentTimeMillis() - t0) + " ms");
+
+        } catch (Throwable e) {
+            log.error("Error rendering PDF " + job.getJobId(), e);
+            job.failed(e);
+        }
+    }
+
+
+    /** Returns whether the job is still valid, i.e. pending, or rendered and still cached **/
+    private boolean isValid(PdfRenderJob job) {
+        return job.getStatus() == Status.PENDING || job.getStatus() == Status.RUNNING
+                || (job.getStatus() == Status.DONE && isCached(job.getFile()));
+    }
+
+
+    /** Returns whether the given PDF file exists and has not expired **/
+    private boolean isCached(Path file) {
+        try {
+            return Files.isRegularFile(file)
+                    && Files.getLastModifiedTime(file).toMillis() > expiryTime();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+
+    /** Returns the time before which rendered PDF documents have expired **/
+    private long expiryTime() {
+        return System.currentTimeMillis() - cacheTimeout;
+    }
+
+
+    /**
+     * Returns the cache file of the PDF document with the given job ID
+     *
+     * @param jobId the job ID
+     * @return the cache file of the PDF document
+     */
+    public Path getPdfFile(String jobId) {
+        return cacheRoot.resolve(jobId.substring(0, 2)).resolve(jobId + ".pdf");
+    }
+
+
+    /**
+     * Deletes expired jobs and PDF documents
+     */
+    public void deleteExpiredPdfs() {
+
+        long expiryTime = expiryTime();
+        jobs.values().removeIf(job -> job.isCompleted() && job.getCreated() < expiryTime);
+
+        if (!Files.isDirectory(cacheRoot)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            files.filter(Files::isRegularFile)
+                    .filter(f -> !isCached(f))
+                    .forEach(f -> {
+                        try {
+                            Files.delete(f);
+                        } catch (IOException e) {
+                            log.debug("Failed deleting expired PDF " + f + ": " + e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.error("Failed deleting expired PDF documents", e);
+        }
+    }
+
+
+    /** Returns the number of pending render tasks, not yet dispatched to the executor **/
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+
+    /** Returns the number of render tasks dispatched to the executor **/
+    public synchronized int getRunningCount() {
+        return running;
+    }
+}
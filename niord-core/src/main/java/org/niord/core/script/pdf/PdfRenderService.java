@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.apache.commons.io.FileUtils;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.script.pdf.PdfRenderQueue.PdfWriter;
+import org.niord.core.settings.Setting.Type;
+import org.niord.core.settings.annotation.Setting;
+import org.slf4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders PDF documents asynchronously.
+ * <p>
+ * At most "pdfRenderMaxConcurrency" PDF documents are rendered at a time, which bounds the memory used by
+ * the PDF layout. Jobs are identified by a hash of the document to render, so identical requests share
+ * a single rendering, and rendered documents are cached in the "pdfCachePath" folder for
+ * "pdfCacheTimeout" hours.
+ * <p>
+ * NB: The cached PDF documents may contain non-public messages, so the cache folder must not reside
+ * within the public repository.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class PdfRenderService {
+
+    /** The former cache folder within the public repository **/
+    static final String LEGACY_PDF_CACHE_REPO_FOLDER = "pdf_cache";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @Setting(value = "pdfRenderMaxConcurrency", defaultValue = "2", type = Type.Integer,
+            description = "The max number of PDF documents rendered concurrently")
+    Integer maxConcurrency;
+
+    @Inject
+    @Setting(value = "pdfRenderTimeout", defaultValue = "300", type = Type.Integer,
+            description = "The max number of seconds to wait for a PDF document to be rendered")
+    Integer renderTimeout;
+
+    @Inject
+    @Setting(value = "pdfCacheTimeout", defaultValue = "24", type = Type.Integer,
+            description = "The number of hours rendered PDF documents are cached")
+    Integer cacheTimeout;
+
+    @Inject
+    @Setting(value = "pdfCachePath", defaultValue = "${niord.home}/pdf-cache",
+            description = "The root directory of the cached PDF documents")
+    Path cacheRoot;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
+    PdfRenderQueue renderQueue;
+
+
+    /** Initializes the service **/
+    @PostConstruct
+    private void init() {
+        renderQueue = new PdfRenderQueue(
+                managedExecutorService,
+                maxConcurrency,
+                cacheRoot,
+                cacheTimeout * 60L * 60L * 1000L);
+
+        // Remove PDF documents cached within the public repository by former versions
+        Path legacyCacheRoot = repositoryService.getRepoRoot().resolve(LEGACY_PDF_CACHE_REPO_FOLDER);
+        if (Files.isDirectory(legacyCacheRoot)) {
+            try {
+                FileUtils.deleteDirectory(legacyCacheRoot.toFile());
+            } catch (IOException e) {
+                log.error("Failed deleting legacy PDF cache " + legacyCacheRoot, e);
+            }
+        }
+    }
+
+
+    /**
+     * Computes the job ID of the PDF document defined by the given parts,
+     * e.g. the template path and the HTML to render
+     *
+     * @param parts the parts that define the PDF document
+     * @return the job ID
+     */
+    public static String jobId(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+
+    /**
+     * Submits a PDF rendering job. If an identical job is already pending, or the PDF document
+     * has already been rendered, the existing job is returned.
+     *
+     * @param jobId the job ID
+     * @param owner the owner allowed to access the job
+     * @param writer renders the PDF document
+     * @return the PDF rendering job
+     */
+    public PdfRenderJob submit(String jobId, String owner, PdfWriter writer) {
+        return renderQueue.submit(jobId, owner, writer);
+    }
+
+
+    /**
+     * Renders the PDF document and waits for the result, at most "pdfRenderTimeout" seconds.
+     * If an identical job is already pending, or the PDF document has already been rendered,
+     * the result of the existing job is returned.
+     *
+     * @param jobId the job ID
+     * @param writer renders the PDF document
+     * @return the rendered PDF file
+     */
+    public Path renderPdf(String jobId, PdfWriter writer) throws Exception {
+        return renderQueue.renderPdf(jobId, writer, renderTimeout, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Returns the PDF rendering job with the given ID, or null if not found or not accessible to the owner
+     *
+     * @param jobId the job ID
+     * @param owner the owner accessing the job
+     * @return the PDF rendering job, or null if not found or not accessible to the owner
+     */
+    public PdfRenderJob getJob(String jobId, String owner) {
+        return renderQueue.getJob(jobId, owner);
+    }
+
+
+    /**
+     * Called every 10 minutes to delete expired jobs and PDF documents
+     */
+    @Schedule(persistent = false, second = "38", minute = "*/10", hour = "*")
+    public void deleteExpiredPdfs() {
+        renderQueue.deleteExpiredPdfs();
+    }
+}
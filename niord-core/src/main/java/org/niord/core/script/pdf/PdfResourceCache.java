@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionType;
+import org.niord.core.cache.BaseCache;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Provides an in-memory LRU cache of the decoded images, style sheets and fonts used for
+ * generating PDFs. The cache is shared between all PDF renderers.
+ * <p>
+ * The cached values are not serializable, so the cache must remain local.
+ */
+@ApplicationScoped
+public class PdfResourceCache extends BaseCache<String, Object> {
+
+    final static long MAX_IDLE = 60 * 60 * 1000;    // 1 hour
+    final static long MAX_ENTRIES = 500;            // at most 500 resources
+
+    final static String CACHE_ID = "pdfResourceCache";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .eviction().type(EvictionType.COUNT).size(MAX_ENTRIES).strategy(EvictionStrategy.LRU)
+                .expiration().maxIdle(MAX_IDLE)
+                .build();
+    }
+}
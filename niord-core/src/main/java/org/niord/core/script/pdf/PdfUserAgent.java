@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.script.pdf;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xhtmlrenderer.extend.FSImage;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextUserAgent;
+import org.xhtmlrenderer.resource.CSSResource;
+import org.xhtmlrenderer.resource.ImageResource;
+import org.xhtmlrenderer.util.ImageUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A Flying Saucer user agent that resolves the resources of the PDF document locally where possible,
+ * rather than fetching them over HTTP from the Niord server itself.
+ * <p>
+ * Resources of the form "/rest/repo/file/..." are read directly from the repository root, and static web assets
+ * are resolved using the asset locator. All other resources, e.g. "/rest/message-map-image/...", are
+ * fetched from the base URI as before.
+ * <p>
+ * Locally resolved images, style sheets and binary resources (such as fonts) are cached in the given
+ * resource cache, which may be shared between renderers. Decoded images are cloned before being returned,
+ * since Flying Saucer scales the image returned.
+ */
+public class PdfUserAgent extends ITextUserAgent {
+
+    private final static Logger log = LoggerFactory.getLogger(PdfUserAgent.class);
+
+    public static final String REPO_FILE_PATH   = "/rest/repo/file/";
+    public static final long MAX_CACHED_SIZE    = 2 * 1024 * 1024; // 2 MB
+
+    private final String baseUri;
+    private final Path repoRoot;
+    private final Function<String, URL> assetLocator;
+    private final Map<String, Object> resourceCache;
+
+
+    /**
+     * Constructor
+     *
+     * @param outputDevice the PDF output device
+     * @param baseUri the base URI of the document. May be null
+     * @param repoRoot the repository root. May be null
+     * @param assetLocator resolves the URL of a static web asset path. May be null
+     * @param resourceCache the cache of locally resolved resources
+     */
+    public PdfUserAgent(ITextOutputDevice outputDevice, String baseUri, Path repoRoot,
+                        Function<String, URL> assetLocator, Map<String, Object> resourceCache) {
+        super(outputDevice);
+        this.baseUri = StringUtils.removeEnd(baseUri, "/");
+        this.repoRoot = repoRoot == null ? null : repoRoot.toAbsolutePath().normalize();
+        this.assetLocator = assetLocator;
+        this.resourceCache = resourceCache;
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected InputStream resolveAndOpenStream(String uri) {
+        URL url = localUrl(uri);
+        if (url != null) {
+            try {
+                return url.openStream();
+            } catch (IOException e) {
+                log.debug("Failed opening local resource " + url + ": " + e);
+            }
+        }
+        return super.resolveAndOpenStream(uri);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public CSSResource getCSSResource(String uri) {
+        byte[] data = getCachedBytes(uri);
+        return data != null
+                ? new CSSResource(new ByteArrayInputStream(data))
+                : super.getCSSResource(uri);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public byte[] getBinaryResource(String uri) {
+        byte[] data = getCachedBytes(uri);
+        return data != null
+                ? data
+                : super.getBinaryResource(uri);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public ImageResource getImageResource(String uri) {
+        String key = ImageUtil.isEmbeddedBase64Image(uri) ? null : cacheKey("image", localUrl(uri));
+        if (key == null) {
+            return super.getImageResource(uri);
+        }
+
+        Object cached = resourceCache.get(key);
+        if (cached instanceof ImageResource) {
+            return cloneImageResource((ImageResource) cached);
+        }
+
+        ImageResource image = super.getImageResource(uri);
+        if (image != null && image.getImage() instanceof ITextFSImage) {
+            resourceCache.put(key, image);
+            return cloneImageResource(image);
+        }
+        return image;
+    }
+
+
+    /** Returns a copy of the image resource, which may safely be scaled **/
+    private ImageResource cloneImageResource(ImageResource image) {
+        FSImage fsImage = (FSImage) ((ITextFSImage) image.getImage()).clone();
+        return new ImageResource(image.getImageUri(), fsImage);
+    }
+
+
+    /**
+     * Returns the bytes of the given locally resolved resource, or null if the resource cannot be resolved locally
+     *
+     * @param uri the resource URI
+     * @return the bytes of the resource, or null if not resolved locally
+     */
+    private byte[] getCachedBytes(String uri) {
+        URL url = localUrl(uri);
+        String key = cacheKey("binary", url);
+        if (key == null) {
+            return null;
+        }
+
+        Object cached = resourceCache.get(key);
+        if (cached instanceof byte[]) {
+            return (byte[]) cached;
+        }
+
+        try (InputStream in = url.openStream()) {
+            byte[] data = IOUtils.toByteArray(in);
+            resourceCache.put(key, data);
+            return data;
+        } catch (IOException e) {
+            log.debug("Failed reading local resource " + url + ": " + e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the cache key of the locally resolved resource, or null if the resource should not be cached.
+     * The key of a file includes the last-modified time, so that updated files are re-loaded.
+     *
+     * @param type the type of resource
+     * @param url the URL of the locally resolved resource
+     * @return the cache key, or null if the resource should not be cached
+     */
+    private String cacheKey(String type, URL url) {
+        if (url == null || resourceCache == null) {
+            return null;
+        }
+        String key = type + ":" + url;
+        if ("file".equals(url.getProtocol())) {
+            try {
+                Path file = Paths.get(url.toURI());
+                if (Files.size(file) > MAX_CACHED_SIZE) {
+                    return null;
+                }
+                key += ":" + Files.getLastModifiedTime(file).toMillis();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+
+    /**
+     * Resolves the URL of the resource if it can be loaded locally, and returns null otherwise
+     *
+     * @param uri the resource URI
+     * @return the local URL of the resource, or null if it cannot be loaded locally
+     */
+    URL localUrl(String uri) {
+        String path = localPath(resolveURI(uri));
+        if (path == null) {
+            return null;
+        }
+
+        try {
+            if (path.startsWith(REPO_FILE_PATH)) {
+                if (repoRoot == null) {
+                    return null;
+                }
+                String filePath = URLDecoder.decode(path.substring(REPO_FILE_PATH.length()), "UTF-8");
+                Path file = repoRoot.resolve(filePath).normalize();
+                // Guard against paths outside of the repository
+                return file.startsWith(repoRoot) && Files.isRegularFile(file)
+                        ? file.toUri().toURL()
+                        : null;
+
+            } else if (!path.startsWith("/rest/") && assetLocator != null) {
+                return assetLocator.apply(path);
+            }
+        } catch (Exception e) {
+            log.debug("Failed resolving local resource " + path + ": " + e);
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the server-relative path of the URI if it refers to the Niord server itself, and null otherwise
+     *
+     * @param uri the resolved URI
+     * @return the server-relative path, or null if the URI does not refer to the Niord server
+     */
+    private String localPath(String uri) {
+        if (uri == null) {
+            return null;
+        }
+
+        String path;
+        if (StringUtils.isNotBlank(baseUri) && uri.startsWith(baseUri + "/")) {
+            path = uri.substring(baseUri.length());
+        } else if (uri.startsWith("/")) {
+            path = uri;
+        } else {
+            return null;
+        }
+
+        // Strip any query string or fragment
+        path = StringUtils.substringBefore(StringUtils.substringBefore(path, "#"), "?");
+        return path.contains("..") ? null : path;
+    }
+}
@@ -23,11 +23,16 @@ import org.niord.core.cache.BaseCache;
 import org.niord.core.cache.CacheElement;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
 
 /**
  * Implements the settings cache with a default timeout of 1 minute.
  *
  * NB: We cannot cache null, so use a CacheElement value wrapper.
+ * <p>
+ * When clustered, the cache runs in invalidation mode, so that updating a setting on one node
+ * evicts the setting on all nodes.
  */
 @ApplicationScoped
 public class SettingsCache extends BaseCache<String, CacheElement<Object>> {
@@ -53,4 +58,20 @@ public class SettingsCache extends BaseCache<String, CacheElement<Object>> {
                 .build();
     }
 
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CacheMode getClusterCacheMode() {
+        return CacheMode.INVALIDATION_SYNC;
+    }
+
+
+    /**
+     * Evicts the cached setting once the transaction updating the setting has been committed
+     *
+     * @param event the setting change event
+     */
+    public void onSettingChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) SettingChangeEvent event) {
+        getCache().remove(event.getKey());
+    }
 }
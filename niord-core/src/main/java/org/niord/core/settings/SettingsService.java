@@ -28,6 +28,7 @@ import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.event.Event;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
@@ -61,6 +62,9 @@ public class SettingsService extends BaseService {
     @Inject
     SettingsCache settingsCache;
 
+    @Inject
+    Event<SettingChangeEvent> settingChangeEvent;
+
     /**
      * Called when the system starts up.
      *
@@ -192,9 +196,9 @@ public class SettingsService extends BaseService {
             value = new CacheElement<>(result.getValue());
 
 
-            // Cache it.
+            // Cache it. Use putForExternalRead, since a value loaded from the DB should not invalidate other nodes
             if (setting.isCached()) {
-                settingsCache.getCache().put(setting.getKey(), value);
+                settingsCache.getCache().putForExternalRead(setting.getKey(), value);
             }
         }
 
@@ -281,8 +285,8 @@ public class SettingsService extends BaseService {
         setting.setValue(template.getValue());
         setting = em.merge(setting);
 
-        // Invalidate the cache
-        evictFromCache(setting.getKey());
+        // Invalidate the cache once the transaction has been committed
+        settingChangeEvent.fire(new SettingChangeEvent(setting.getKey()));
 
         return setting;
     }
@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 
 import javax.ejb.Singleton;
 import javax.inject.Inject;
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.UUID;
@@ -220,10 +221,21 @@ public class TicketService extends BaseCache<String, TicketService.TicketData> {
     }
 
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Tickets are replicated, so that a ticket issued by one node can be validated by any node.
+     */
+    @Override
+    protected CacheMode getClusterCacheMode() {
+        return CacheMode.REPL_SYNC;
+    }
+
+
     /**
      * Defines the data that is associated with a ticket
      */
-    public static class TicketData {
+    public static class TicketData implements Serializable {
         String domain;
         String user;
         String[] roles;
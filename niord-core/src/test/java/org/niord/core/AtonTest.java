@@ -20,10 +20,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Assert;
 import org.junit.Test;
 import org.niord.core.aton.AtonFilter;
+import org.niord.core.aton.AtonNode;
+import org.niord.core.aton.AtonPositionIndex;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.aton.vo.AtonOsmVo;
 import org.niord.core.aton.vo.AtonTagVo;
 import org.niord.core.aton.vo.Iso8601DateXmlAdapter;
+import org.niord.core.util.GlobalMercator;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
@@ -32,7 +35,11 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Unit tests for the OSM AtoN model
@@ -120,6 +127,111 @@ public class AtonTest {
     }
 
 
+    @Test
+    public void testAtonContentHash() throws Exception {
+
+        AtonNode aton = new AtonNode(createAtonNode());
+        AtonNode aton2 = new AtonNode(createAtonNode());
+
+        Assert.assertEquals(aton.contentHash(), aton2.contentHash());
+        Assert.assertFalse(aton.hasChanged(aton2));
+
+        aton2.updateTag("seamark:light:colour", "red");
+        Assert.assertNotEquals(aton.contentHash(), aton2.contentHash());
+        Assert.assertTrue(aton.hasChanged(aton2));
+
+        aton2 = new AtonNode(createAtonNode());
+        aton2.setLat(aton2.getLat() + 0.001);
+        Assert.assertNotEquals(aton.contentHash(), aton2.contentHash());
+        Assert.assertTrue(aton.hasChanged(aton2));
+
+        // The content hash and hasChanged() use the same position precision
+        aton2 = new AtonNode(createAtonNode());
+        aton2.setLon(aton2.getLon() + AtonNode.POSITION_PRECISION / 10);
+        Assert.assertEquals(aton.contentHash(), aton2.contentHash());
+        Assert.assertFalse(aton.hasChanged(aton2));
+
+        aton2.setLon(aton.getLon() + 5 * AtonNode.POSITION_PRECISION);
+        Assert.assertNotEquals(aton.contentHash(), aton2.contentHash());
+        Assert.assertTrue(aton.hasChanged(aton2));
+    }
+
+
+    @Test
+    public void testAtonPositionIndex() throws Exception {
+        Random random = new Random(42);
+        AtonPositionIndex.Builder builder = AtonPositionIndex.builder();
+        List<double[]> positions = new ArrayList<>();
+        for (int id = 0; id < 5000; id++) {
+            double lon = 8.0 + 7.0 * random.nextDouble();
+            double lat = 54.5 + 3.5 * random.nextDouble();
+            positions.add(new double[] { lon, lat });
+            builder.add(id, lon, lat, id % 2 == 0 ? "buoy_lateral" : null);
+        }
+        AtonPositionIndex index = builder.build();
+        Assert.assertEquals(5000, index.size());
+
+        // The AtoNs of each tile must match a brute-force computation using the tile bounds
+        GlobalMercator mercator = new GlobalMercator();
+        for (int z : new int[] { 0, 5, 9, 12 }) {
+            int[] tile = mercator.GoogleTile(56.0, 11.0, z);
+            int x = tile[0], y = tile[1];
+            double[] tms = mercator.TileLatLonBounds(x, (1 << z) - 1 - y, z);
+
+            int[] range = index.tileRange(z, x, y);
+            Set<Integer> ids = new HashSet<>();
+            for (int i = range[0]; i < range[1]; i++) {
+                ids.add(index.getId(i));
+                double[] px = index.tilePixel(i, z, x, y, 256);
+                Assert.assertTrue(px[0] >= 0 && px[0] < 256 && px[1] >= 0 && px[1] < 256);
+                Assert.assertEquals(index.getId(i) % 2 == 0 ? "buoy_lateral" : null, index.getType(i));
+            }
+
+            Set<Integer> expected = new HashSet<>();
+            for (int id = 0; id < positions.size(); id++) {
+                double[] p = positions.get(id);
+                if (p[0] >= tms[1] && p[0] < tms[3] && p[1] >= tms[0] && p[1] < tms[2]) {
+                    expected.add(id);
+                }
+            }
+            Assert.assertEquals("Zoom level " + z, expected, ids);
+        }
+
+        // Tiles outside the world are empty
+        int[] range = index.tileRange(1, 2, 0);
+        Assert.assertEquals(range[0], range[1]);
+    }
+
+
+    @Test
+    public void testAtonPositionIndexChanges() throws Exception {
+        AtonPositionIndex from = AtonPositionIndex.builder()
+                .add(1, 10.0, 56.0, "buoy_lateral")
+                .add(2, 11.0, 56.0, "buoy_lateral")
+                .add(3, 12.0, 56.0, "buoy_lateral")
+                .add(4, 13.0, 56.0, "buoy_lateral")
+                .build();
+        AtonPositionIndex to = AtonPositionIndex.builder()
+                .add(1, 10.0, 56.0, "buoy_lateral")     // unchanged
+                .add(2, 11.5, 56.0, "buoy_lateral")     // moved
+                .add(3, 12.0, 56.0, "light_major")      // type changed
+                .add(5, 14.0, 56.0, null)               // added, and 4 removed
+                .build();
+
+        Assert.assertEquals(0, AtonPositionIndex.changedPositions(from, from).size());
+        Assert.assertEquals(from.getChecksum(), AtonPositionIndex.builder()
+                .add(4, 13.0, 56.0, "buoy_lateral")
+                .add(3, 12.0, 56.0, "buoy_lateral")
+                .add(2, 11.0, 56.0, "buoy_lateral")
+                .add(1, 10.0, 56.0, "buoy_lateral")
+                .build().getChecksum());
+
+        Set<Double> lons = new HashSet<>();
+        AtonPositionIndex.changedPositions(from, to).forEach(p -> lons.add(p[0]));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(11.0, 11.5, 12.0, 13.0, 14.0)), lons);
+    }
+
+
     /** Constructs an AtoN programmatically */
     private AtonNodeVo createAtonNode() throws Exception {
         AtonNodeVo aton = new AtonNodeVo();
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.cache.BaseCache;
+import org.niord.core.cache.CacheClusterConfig;
+import org.niord.core.cache.CacheElement;
+import org.niord.core.settings.SettingsCache;
+
+import java.util.UUID;
+
+/**
+ * Tests clustered caches using two cache managers connected via the loopback interface
+ */
+public class CacheClusterTest {
+
+    /** A replicated test cache **/
+    static class ReplicatedCache extends BaseCache<String, String> {
+
+        @Override
+        public String getCacheId() {
+            return "replicatedTestCache";
+        }
+
+        @Override
+        protected Configuration createCacheConfiguration() {
+            return new ConfigurationBuilder()
+                    .clustering().cacheMode(CacheMode.LOCAL)
+                    .build();
+        }
+
+        @Override
+        protected CacheMode getClusterCacheMode() {
+            return CacheMode.REPL_SYNC;
+        }
+    }
+
+
+    /** Returns a cluster configuration for a new test cluster on the loopback interface **/
+    private CacheClusterConfig loopbackCluster() {
+        return new CacheClusterConfig(true, "niord-test-" + UUID.randomUUID(), "jgroups-loopback.xml", null);
+    }
+
+
+    /** Waits until all the caches have joined the cluster and completed state transfer **/
+    private void awaitCluster(Cache<?, ?>... caches) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000L;
+        for (Cache<?, ?> cache : caches) {
+            while (cache.getAdvancedCache().getRpcManager().getMembers().size() < caches.length
+                    || cache.getAdvancedCache().getComponentRegistry().getStateTransferManager()
+                            .isStateTransferInProgress()) {
+                Assert.assertTrue("Timeout waiting for cluster", System.currentTimeMillis() < timeout);
+                Thread.sleep(50);
+            }
+        }
+    }
+
+
+    @Test
+    public void testReplicatedCache() throws Exception {
+        CacheClusterConfig clusterConfig = loopbackCluster();
+        ReplicatedCache node1 = new ReplicatedCache();
+        ReplicatedCache node2 = new ReplicatedCache();
+        try {
+            node1.initCacheContainer(clusterConfig);
+            node2.initCacheContainer(clusterConfig);
+            awaitCluster(node1.getCache(), node2.getCache());
+            Assert.assertEquals(CacheMode.REPL_SYNC, node1.getCache().getCacheConfiguration().clustering().cacheMode());
+
+            // Entries created on one node are visible on the other node
+            node1.getCache().put("ticket", "data");
+            Assert.assertEquals("data", node2.getCache().get("ticket"));
+
+            // Entries removed on one node are removed on the other node
+            Assert.assertEquals("data", node2.getCache().remove("ticket"));
+            Assert.assertNull(node1.getCache().get("ticket"));
+
+        } finally {
+            node2.destroyCacheContainer();
+            node1.destroyCacheContainer();
+        }
+    }
+
+
+    @Test
+    public void testInvalidationCache() throws Exception {
+        CacheClusterConfig clusterConfig = loopbackCluster();
+        SettingsCache node1 = new SettingsCache();
+        SettingsCache node2 = new SettingsCache();
+        try {
+            node1.initCacheContainer(clusterConfig);
+            node2.initCacheContainer(clusterConfig);
+            awaitCluster(node1.getCache(), node2.getCache());
+            Assert.assertEquals(CacheMode.INVALIDATION_SYNC,
+                    node1.getCache().getCacheConfiguration().clustering().cacheMode());
+
+            // Values loaded on each node are not propagated
+            node1.getCache().putForExternalRead("key", new CacheElement<>("value"));
+            Assert.assertNull(node2.getCache().get("key"));
+            node2.getCache().putForExternalRead("key", new CacheElement<>("value"));
+            Assert.assertEquals("value", node1.getCache().get("key").getElement());
+            Assert.assertEquals("value", node2.getCache().get("key").getElement());
+
+            // Evicting the value on one node evicts it on the other node
+            node1.getCache().remove("key");
+            Assert.assertNull(node2.getCache().get("key"));
+
+        } finally {
+            node2.destroyCacheContainer();
+            node1.destroyCacheContainer();
+        }
+    }
+
+
+    @Test
+    public void testLocalCache() throws Exception {
+        SettingsCache cache = new SettingsCache();
+        try {
+            cache.initCacheContainer(CacheClusterConfig.local());
+            Assert.assertEquals(CacheMode.LOCAL, cache.getCache().getCacheConfiguration().clustering().cacheMode());
+        } finally {
+            cache.destroyCacheContainer();
+        }
+    }
+}
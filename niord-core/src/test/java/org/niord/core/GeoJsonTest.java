@@ -17,6 +17,7 @@
 package org.niord.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vividsolutions.jts.geom.Geometry;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 import org.niord.core.geojson.GeoJsonUtils;
@@ -192,6 +193,31 @@ public class GeoJsonTest {
     }
 
 
+    @Test
+    public void splitAtAntimeridianTest() throws Exception {
+
+        // Extents within the longitude range are unchanged
+        Geometry extent = JtsConverter.toJtsExtent(50.0, 10.0, 60.0, 20.0);
+        assertEquals(1, extent.getNumGeometries());
+        assertEquals(10.0, extent.getEnvelopeInternal().getMinX(), 0.0);
+
+        // Extents crossing the antimeridian are split into two boxes
+        extent = JtsConverter.toJtsExtent(50.0, 170.0, 60.0, -170.0);
+        assertEquals(2, extent.getNumGeometries());
+        assertTrue(extent.intersects(JtsConverter.toJtsPoint(55.0, 175.0)));
+        assertTrue(extent.intersects(JtsConverter.toJtsPoint(55.0, -175.0)));
+        assertFalse(extent.intersects(JtsConverter.toJtsPoint(55.0, 0.0)));
+
+        extent = JtsConverter.splitAtAntimeridian(
+                JtsConverter.wktToJts("POLYGON((170 50, 190 50, 190 60, 170 60, 170 50))"));
+        assertEquals(2, extent.getNumGeometries());
+        assertEquals(-180.0, extent.getEnvelopeInternal().getMinX(), 0.0);
+        assertEquals(180.0, extent.getEnvelopeInternal().getMaxX(), 0.0);
+        assertTrue(extent.intersects(JtsConverter.toJtsPoint(55.0, -175.0)));
+        assertFalse(extent.intersects(JtsConverter.toJtsPoint(55.0, -165.0)));
+    }
+
+
     class CoordCounter implements Consumer<double[]> {
         int count = 0;
         @Override
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.mail.MailTransportPool;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the pooled SMTP connections against a minimal in-process SMTP server
+ */
+public class MailTransportPoolTest {
+
+    SmtpStub smtp;
+    Session session;
+
+    @Before
+    public void startSmtpStub() throws Exception {
+        smtp = new SmtpStub();
+        Properties props = new Properties();
+        props.put("mail.transport.protocol", "smtp");
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(smtp.getPort()));
+        session = Session.getInstance(props);
+    }
+
+    @After
+    public void stopSmtpStub() throws Exception {
+        smtp.close();
+    }
+
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+
+        MailTransportPool pool = new MailTransportPool(session, 2);
+        for (int x = 0; x < 10; x++) {
+            pool.send(createMessage(x));
+        }
+
+        assertEquals(10, pool.getSentMails());
+        assertEquals(1, pool.getOpenedConnections());
+        assertEquals(1, pool.getOpenConnections());
+        assertEquals(10, smtp.messages.get());
+        assertEquals(1, smtp.connections.get());
+
+        pool.closeIdleConnections(0L);
+        assertEquals(0, pool.getOpenConnections());
+    }
+
+
+    @Test
+    public void testConcurrentSending() throws Exception {
+
+        MailTransportPool pool = new MailTransportPool(session, 2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int x = 0; x < 20; x++) {
+            int index = x;
+            executor.submit(() -> {
+                pool.send(createMessage(index));
+                return null;
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertEquals(20, pool.getSentMails());
+        assertEquals(20, smtp.messages.get());
+        assertTrue(pool.getOpenedConnections() <= 2);
+        pool.closeIdleConnections(0L);
+    }
+
+
+    private Message createMessage(int index) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("niord@e-navigation.net"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("test" + index + "@e-navigation.net"));
+        message.setSubject("Test " + index);
+        message.setText("Test mail " + index);
+        return message;
+    }
+
+
+    /**
+     * A minimal SMTP server that accepts all mails
+     */
+    static class SmtpStub implements AutoCloseable {
+
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger messages = new AtomicInteger();
+
+        SmtpStub() throws Exception {
+            executor.submit(() -> {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    executor.submit(() -> handle(socket));
+                }
+                return null;
+            });
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void handle(Socket socket) {
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(s.getOutputStream(), true)) {
+
+                out.print("220 localhost SMTP stub\r\n");
+                out.flush();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String cmd = line.toUpperCase();
+                    if (cmd.startsWith("DATA")) {
+                        out.print("354 End data with <CR><LF>.<CR><LF>\r\n");
+                        out.flush();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Skip the message content
+                        }
+                        messages.incrementAndGet();
+                        out.print("250 OK\r\n");
+                    } else if (cmd.startsWith("QUIT")) {
+                        out.print("221 Bye\r\n");
+                        out.flush();
+                        return;
+                    } else {
+                        out.print("250 OK\r\n");
+                    }
+                    out.flush();
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+    }
+}
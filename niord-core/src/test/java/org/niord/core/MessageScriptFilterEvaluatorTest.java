@@ -18,16 +18,27 @@ package org.niord.core;
 
 import org.junit.Test;
 import org.niord.core.mailinglist.MessageFilter;
+import org.niord.core.message.CompiledMessageFilter;
 import org.niord.core.message.Message;
 import org.niord.core.message.MessageScriptFilterEvaluator;
+import org.niord.core.message.MessageSeries;
 import org.niord.core.promulgation.NavtexMessagePromulgation;
 import org.niord.core.promulgation.NavtexTransmitter;
 import org.niord.core.promulgation.PromulgationType;
+import org.niord.model.message.MainType;
 import org.niord.model.message.Status;
+import org.niord.model.message.Type;
 
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.niord.model.message.Type.TEMPORARY_NOTICE;
@@ -56,6 +67,99 @@ public class MessageScriptFilterEvaluatorTest {
     }
 
 
+    @Test
+    public void testCompiledMessageFilter() throws Exception {
+
+        List<String> filters = Arrays.asList(
+                "data.phase == 'msg-status-change' && (msg.status == Status.PUBLISHED || data.isIncluded)",
+                "data.phase == 'msg-status-change' && msg.status == Status.PUBLISHED",
+                "msg.status == Status.PUBLISHED",
+                "msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE",
+                "(msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) && msg.status == Status.PUBLISHED",
+                "msg.mainType === MainType.NM && !(msg.status != Status.PUBLISHED)",
+                "msg.messageSeries.seriesId == \"dma-nm\" && msg.number >= 10",
+                "data.isIncluded",
+                "data.missing.value == 1",
+                // Loose and strict equality of mixed operand types
+                "msg.status == 'PUBLISHED'",
+                "msg.status === 'PUBLISHED'",
+                "msg.status !== 'PUBLISHED' && msg.status != 'DRAFT'",
+                "msg.number == '10' || msg.number == ' 2e1 '",
+                "msg.number === '10' || msg.number === 20",
+                "data.isIncluded == 1 && data.isIncluded !== 1",
+                "msg.messageSeries.seriesId === \"dma-nm\" && msg.mainType == 'NM'",
+                "data.missing === undefined || data.missing === null",
+                "msg.messageSeries.missing === undefined && msg.messageSeries.missing == null",
+                // Relational comparison of mixed operand types
+                "msg.number >= '10' && msg.number < '2e1'",
+                "msg.number > data.isIncluded || msg.number <= null",
+                "msg.status > 'DRAFT' && msg.type < Type.PERMANENT_NOTICE",
+                "msg.messageSeries.seriesId >= 'dma' && msg.messageSeries.seriesId < 10",
+                "msg.number < undefined || msg.number >= data.missing || !(msg.number < 'x')",
+                "data.phase < 'n' && data.isIncluded >= true"
+        );
+
+        List<Message> messages = new ArrayList<>();
+        MessageSeries series = new MessageSeries();
+        series.setSeriesId("dma-nm");
+        for (Status status : Arrays.asList(Status.DRAFT, Status.PUBLISHED)) {
+            for (Type type : Arrays.asList(Type.TEMPORARY_NOTICE, Type.PERMANENT_NOTICE, Type.COASTAL_WARNING)) {
+                Message msg = new Message();
+                msg.setStatus(status);
+                msg.setType(type);
+                msg.setMainType(type.getMainType());
+                msg.setMessageSeries(series);
+                msg.setNumber(type.ordinal() * 10);
+                messages.add(msg);
+            }
+        }
+
+        List<Map<String, Object>> datas = new ArrayList<>();
+        for (String phase : Arrays.asList("msg-status-change", "start-recording")) {
+            for (Boolean isIncluded : Arrays.asList(true, false)) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("phase", phase);
+                data.put("isIncluded", isIncluded);
+                datas.add(data);
+            }
+        }
+
+        // Check that the compiled filters yield the same result as the Nashorn-evaluated filters
+        ScriptEngine jsEngine = new ScriptEngineManager().getEngineByName("Nashorn");
+        for (Class<?> type : new Class<?>[] { MainType.class, Type.class, Status.class }) {
+            jsEngine.eval(String.format("var %s = Java.type('%s');", type.getSimpleName(), type.getName()));
+        }
+        for (int x = 0; x < filters.size(); x++) {
+            jsEngine.eval("function filter" + x + "(msg, data) { return " + filters.get(x) + "; }");
+        }
+        Invocable invocable = (Invocable) jsEngine;
+
+        for (int x = 0; x < filters.size(); x++) {
+            String filter = filters.get(x);
+            assertTrue(new MessageScriptFilterEvaluator(filter).isCompiled());
+
+            CompiledMessageFilter compiledFilter = CompiledMessageFilter.compile(filter);
+            for (Message msg : messages) {
+                for (Map<String, Object> data : datas) {
+                    boolean compiledResult = compiledFilter.includeMessage(msg, data);
+                    boolean nashornResult;
+                    try {
+                        nashornResult = Boolean.TRUE.equals(invocable.invokeFunction("filter" + x, msg, data));
+                    } catch (Exception e) {
+                        nashornResult = false;
+                    }
+
+                    assertEquals(filter + " " + msg.getStatus() + " " + msg.getType() + " " + data,
+                            nashornResult, compiledResult);
+                }
+            }
+        }
+
+        // Function calls are not supported by the compiler and fall back to Nashorn
+        assertFalse(new MessageScriptFilterEvaluator("msg.promulgation('navtex') != null").isCompiled());
+    }
+
+
     @Test
     public void testMessageFilter() throws Exception {
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.db.CriteriaHelper;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageService;
+import org.niord.model.search.PagedSearchResultVo;
+
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests the handling of the Lucene hits of message searches
+ */
+public class MessageSearchTest {
+
+    @Test
+    public void testIdPredicateSupport() {
+
+        // Dense ID's, with or without a few gaps, are matched by a range predicate
+        BitSet dense = new BitSet();
+        dense.set(1, 100000);
+        Assert.assertTrue(CriteriaHelper.supportsIdPredicate(dense));
+        for (int x = 1; x < 100; x++) {
+            dense.clear(x * 1000);
+        }
+        Assert.assertTrue(CriteriaHelper.supportsIdPredicate(dense));
+
+        // Large sparse ID sets exceed the parameter limits, and must be intersected in memory
+        BitSet sparse = sparseIds(70000);
+        Assert.assertFalse(CriteriaHelper.supportsIdPredicate(sparse));
+    }
+
+
+    @Test
+    public void testIntersectPagedIds() {
+        BitSet sparse = sparseIds(70000);
+
+        // The ID's matching the database criteria, sorted descending
+        List<Integer> sortedIds = new ArrayList<>();
+        for (int id = 250000; id > 0; id--) {
+            sortedIds.add(id);
+        }
+
+        PagedSearchResultVo<Message> result = new PagedSearchResultVo<>();
+        List<Integer> page = MessageService.intersectPagedIds(sortedIds, sparse, 200, 100, result);
+        Assert.assertEquals(70000, result.getTotal());
+        Assert.assertEquals(100, page.size());
+        Assert.assertEquals(3 * (70000 - 200) - 2, (int) page.get(0));
+        Assert.assertEquals(3 * (70000 - 299) - 2, (int) page.get(99));
+
+        // Paging beyond the result
+        page = MessageService.intersectPagedIds(sortedIds, sparse, 70000, 100, result);
+        Assert.assertEquals(70000, result.getTotal());
+        Assert.assertTrue(page.isEmpty());
+    }
+
+
+    @Test
+    public void testSearchResultGraph() throws Exception {
+
+        // Fetch-joining several collections duplicates the elements of bags, such as the message descs
+        NamedEntityGraph graph = Message.class.getAnnotation(NamedEntityGraph.class);
+        Assert.assertEquals(Message.SEARCH_RESULT_GRAPH, graph.name());
+        long collectionCount = Arrays.stream(graph.attributeNodes())
+                .map(NamedAttributeNode::value)
+                .filter(attr -> {
+                    try {
+                        return Collection.class.isAssignableFrom(Message.class.getDeclaredField(attr).getType());
+                    } catch (NoSuchFieldException e) {
+                        throw new IllegalArgumentException("Unknown attribute " + attr);
+                    }
+                })
+                .count();
+        Assert.assertTrue(collectionCount <= 1);
+    }
+
+
+    /** Returns a bit set with every third ID set, starting with 1 **/
+    private BitSet sparseIds(int count) {
+        BitSet ids = new BitSet();
+        for (int x = 0; x < count; x++) {
+            ids.set(3 * x + 1);
+        }
+        return ids;
+    }
+}
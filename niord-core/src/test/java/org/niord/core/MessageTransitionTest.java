@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.message.MessageTransitionIndex;
+import org.niord.core.message.MessageTransitionIndex.TransitionType;
+import org.niord.model.message.Status;
+
+import java.util.Date;
+import java.util.EnumSet;
+
+/**
+ * Test the in-memory index of scheduled message status transitions
+ */
+public class MessageTransitionTest {
+
+    static final long MINUTE = 60L * 1000L;
+
+    @Test
+    public void testTransitionIndex() {
+
+        long t0 = 1000L * MINUTE;
+        MessageTransitionIndex index = new MessageTransitionIndex();
+
+        // Only verified and published messages with the relevant publish dates have transitions
+        index.update("1", Status.VERIFIED, new Date(t0 + 10), null);
+        index.update("2", Status.PUBLISHED, new Date(t0 - MINUTE), new Date(t0 + 2 * MINUTE));
+        index.update("3", Status.DRAFT, new Date(t0), new Date(t0 + MINUTE));
+        index.update("4", Status.PUBLISHED, new Date(t0), null);
+        Assert.assertEquals(2, index.size());
+
+        // Due times are rounded up to the whole minute
+        Assert.assertEquals(Long.valueOf(t0 + MINUTE), index.getNextDueTime());
+        Assert.assertTrue(index.pollDue(t0 + MINUTE - 1).isEmpty());
+
+        // Updating a message replaces its pending transition
+        index.update("1", Status.VERIFIED, new Date(t0 + 3 * MINUTE), null);
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(Long.valueOf(t0 + 2 * MINUTE), index.getNextDueTime());
+
+        // Due transitions are re-scheduled a minute later, until the status of the message changes
+        Assert.assertEquals(EnumSet.of(TransitionType.EXPIRE), index.pollDue(t0 + 2 * MINUTE));
+        Assert.assertEquals(2, index.size());
+        Assert.assertTrue(index.pollDue(t0 + 2 * MINUTE).isEmpty());
+        Assert.assertEquals(EnumSet.allOf(TransitionType.class), index.pollDue(t0 + 3 * MINUTE));
+        index.update("2", Status.EXPIRED, null, new Date(t0 + 2 * MINUTE));
+        Assert.assertEquals(1, index.size());
+
+        // Changing the status removes the pending transition
+        index.update("1", Status.CANCELLED, new Date(t0 + 3 * MINUTE), null);
+        Assert.assertEquals(0, index.size());
+        Assert.assertNull(index.getNextDueTime());
+
+        index.update("1", Status.VERIFIED, new Date(t0), null);
+        index.update("2", Status.PUBLISHED, null, new Date(t0));
+        Assert.assertEquals(EnumSet.allOf(TransitionType.class), index.pollDue(t0));
+        Assert.assertEquals(Long.valueOf(t0 + MINUTE), index.getNextDueTime());
+    }
+
+
+    @Test
+    public void testReloadTransitionIndex() {
+
+        long t0 = 1000L * MINUTE;
+        MessageTransitionIndex index = new MessageTransitionIndex();
+        index.update("1", Status.VERIFIED, new Date(t0), null, new Date(1));
+        index.update("2", Status.VERIFIED, new Date(t0), null, new Date(1));
+
+        // Changes made whilst loading the index from the database
+        long generation = index.getGeneration();
+        MessageTransitionIndex loaded = new MessageTransitionIndex();
+        loaded.update("1", Status.VERIFIED, new Date(t0), null, new Date(1));
+        loaded.update("2", Status.VERIFIED, new Date(t0), null, new Date(1));
+        loaded.update("3", Status.VERIFIED, new Date(t0), null, new Date(1));
+        loaded.update("4", Status.PUBLISHED, null, new Date(t0 + MINUTE), new Date(3));
+        index.update("1", Status.DRAFT, new Date(t0), null, new Date(2));
+        index.update("2", Status.VERIFIED, new Date(t0 + 2 * MINUTE), null, new Date(2));
+        index.update("4", Status.VERIFIED, new Date(t0), null, new Date(2));
+
+        // Changes made whilst loading win, unless the loaded state is newer
+        index.reload(loaded, generation);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(EnumSet.of(TransitionType.PUBLISH), index.pollDue(t0));
+        Assert.assertEquals(EnumSet.of(TransitionType.PUBLISH, TransitionType.EXPIRE), index.pollDue(t0 + 2 * MINUTE));
+
+        // Changes made before loading are superseded by the loaded index
+        generation = index.getGeneration();
+        index.reload(new MessageTransitionIndex(), generation);
+        Assert.assertEquals(0, index.size());
+    }
+}
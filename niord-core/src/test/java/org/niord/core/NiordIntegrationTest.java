@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.integration.NiordIntegrationExecutionService;
+import org.niord.core.integration.NiordIntegrationExecutionService.FetchResult;
+import org.niord.core.integration.vo.MessageSeriesMappingVo;
+import org.niord.core.integration.vo.NiordIntegrationVo;
+import org.niord.model.message.MessageSeriesVo;
+import org.niord.model.message.MessageVo;
+import org.niord.model.message.Status;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test fetching messages incrementally from a stand-in Niord server
+ */
+public class NiordIntegrationTest {
+
+    HttpServer server;
+    AtomicReference<String> query = new AtomicReference<>();
+    NiordIntegrationVo integration;
+
+    @Before
+    public void startServer() throws Exception {
+        List<MessageVo> messages = Arrays.asList(
+                message("1", Status.PUBLISHED, 1000L),
+                message("2", Status.PUBLISHED, 3000L),
+                message("3", Status.CANCELLED, 2000L));
+
+        // Serves the published messages, or all messages updated since the "updatedSince" parameter
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/public/v1/messages", exchange -> {
+            String q = exchange.getRequestURI().getQuery();
+            query.set(q);
+            Long updatedSince = q.contains("updatedSince=")
+                    ? Long.valueOf(q.substring(q.indexOf("updatedSince=") + 13))
+                    : null;
+            String etag = "\"" + updatedSince + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            List<MessageVo> result = new ArrayList<>();
+            messages.stream()
+                    .filter(m -> updatedSince == null
+                            ? m.getStatus() == Status.PUBLISHED
+                            : m.getUpdated().getTime() >= updatedSince)
+                    .forEach(result::add);
+            byte[] data = new ObjectMapper().writeValueAsBytes(result);
+
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (updatedSince != null) {
+                exchange.getResponseHeaders().add(NiordIntegrationExecutionService.UPDATED_SINCE_HEADER,
+                        String.valueOf(updatedSince));
+            }
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(data);
+            }
+        });
+        server.start();
+
+        MessageSeriesMappingVo mapping = new MessageSeriesMappingVo();
+        mapping.setSourceSeriesId("dma-nw");
+        mapping.setTargetSeriesId("niord-nw");
+        integration = new NiordIntegrationVo();
+        integration.setUrl("http://localhost:" + server.getAddress().getPort());
+        integration.setMessageSeriesMappings(Collections.singletonList(mapping));
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFetchMessages() throws Exception {
+
+        NiordIntegrationExecutionService service = new NiordIntegrationExecutionService();
+
+        // Full synchronization
+        List<MessageVo> messages = new ArrayList<>();
+        FetchResult result = service.fetchMessages(integration, null, null, messages::add);
+        Assert.assertFalse(result.isIncremental());
+        Assert.assertEquals(2, result.getMessageCount());
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals(3000L, result.getUpdatedSince().getTime());
+        Assert.assertFalse(query.get().contains("updatedSince"));
+
+        // Incremental synchronization, overlapping the cursor
+        long updatedSince = 62000L;
+        messages.clear();
+        result = service.fetchMessages(integration, new Date(updatedSince), result.getEtag(), messages::add);
+        Assert.assertTrue(query.get().endsWith("updatedSince=" + (updatedSince - NiordIntegrationExecutionService.UPDATED_SINCE_OVERLAP)));
+        Assert.assertTrue(result.isIncremental());
+        Assert.assertEquals(2, messages.size());
+        Assert.assertTrue(messages.stream().anyMatch(m -> m.getStatus() == Status.CANCELLED));
+        Assert.assertEquals(3000L, result.getUpdatedSince().getTime());
+
+        // Nothing has changed
+        messages.clear();
+        result = service.fetchMessages(integration, new Date(updatedSince), result.getEtag(), messages::add);
+        Assert.assertTrue(result.isNotModified());
+        Assert.assertTrue(messages.isEmpty());
+    }
+
+    private MessageVo message(String id, Status status, long updated) {
+        MessageSeriesVo series = new MessageSeriesVo();
+        series.setSeriesId("dma-nw");
+        MessageVo message = new MessageVo();
+        message.setId(id);
+        message.setStatus(status);
+        message.setUpdated(new Date(updated));
+        message.setMessageSeries(series);
+        return message;
+    }
+}
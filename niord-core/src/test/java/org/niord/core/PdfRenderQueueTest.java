@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.script.pdf.PdfRenderJob;
+import org.niord.core.script.pdf.PdfRenderQueue;
+import org.niord.core.script.pdf.PdfRenderQueue.PdfWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the PDF render queue using a plain executor
+ */
+public class PdfRenderQueueTest {
+
+    static final long HOUR = 60L * 60L * 1000L;
+
+    Path cacheRoot;
+    ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheRoot = Files.createTempDirectory("pdf-cache");
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        FileUtils.deleteDirectory(cacheRoot.toFile());
+    }
+
+
+    /** Returns a PDF writer that waits for the latch and counts the renderings **/
+    private PdfWriter writer(CountDownLatch latch, AtomicInteger renderings) {
+        return out -> {
+            renderings.incrementAndGet();
+            latch.await(10, TimeUnit.SECONDS);
+            out.write("%PDF".getBytes());
+        };
+    }
+
+
+    @Test
+    public void testDeduplication() throws Exception {
+        PdfRenderQueue queue = new PdfRenderQueue(executor, 2, cacheRoot, HOUR);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger renderings = new AtomicInteger();
+
+        // Identical jobs share a single rendering
+        PdfRenderJob job1 = queue.submit("aa01", "user1", writer(latch, renderings));
+        PdfRenderJob job2 = queue.submit("aa01", "user2", writer(latch, renderings));
+        Assert.assertSame(job1, job2);
+
+        // The job is only accessible to the owners
+        Assert.assertSame(job1, queue.getJob("aa01", "user1"));
+        Assert.assertSame(job1, queue.getJob("aa01", "user2"));
+        Assert.assertNull(queue.getJob("aa01", "user3"));
+
+        // Waiting for the pending job times out
+        try {
+            queue.renderPdf("aa01", writer(latch, renderings), 50, TimeUnit.MILLISECONDS);
+            Assert.fail("Expected timeout");
+        } catch (TimeoutException ignored) {
+        }
+
+        latch.countDown();
+        Path pdf = job1.getResult().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(PdfRenderJob.Status.DONE, job1.getStatus());
+        Assert.assertTrue(Files.isRegularFile(pdf));
+
+        // Rendered documents are served from the cache
+        Assert.assertEquals(pdf, queue.renderPdf("aa01", writer(latch, renderings), 10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, renderings.get());
+    }
+
+
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        PdfRenderQueue queue = new PdfRenderQueue(executor, 1, cacheRoot, HOUR);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger renderings = new AtomicInteger();
+
+        List<PdfRenderJob> jobs = new ArrayList<>();
+        for (int x = 0; x < 3; x++) {
+            jobs.add(queue.submit("bb0" + x, "user", writer(latch, renderings)));
+        }
+
+        // Only one job is dispatched to the executor, the rest are queued
+        Assert.assertEquals(1, queue.getRunningCount());
+        Assert.assertEquals(2, queue.getPendingCount());
+
+        latch.countDown();
+        for (PdfRenderJob job : jobs) {
+            job.getResult().get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(3, renderings.get());
+        Assert.assertEquals(0, queue.getPendingCount());
+    }
+
+
+    @Test
+    public void testExpiry() throws Exception {
+        PdfRenderQueue queue = new PdfRenderQueue(executor, 2, cacheRoot, HOUR);
+        CountDownLatch latch = new CountDownLatch(0);
+        AtomicInteger renderings = new AtomicInteger();
+
+        Path pdf = queue.renderPdf("cc01", writer(latch, renderings), 10, TimeUnit.SECONDS);
+        Assert.assertTrue(Files.isRegularFile(pdf));
+
+        // Expire the rendered document
+        Files.setLastModifiedTime(pdf, FileTime.fromMillis(System.currentTimeMillis() - 2 * HOUR));
+        queue.deleteExpiredPdfs();
+        Assert.assertFalse(Files.exists(pdf));
+        Assert.assertNull(queue.getJob("cc01", null));
+
+        // The document is rendered again when requested
+        Assert.assertEquals(pdf, queue.renderPdf("cc01", writer(latch, renderings), 10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, renderings.get());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.niord.core.script.pdf.HtmlToPdfRenderer;
+import org.xhtmlrenderer.resource.ImageResource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test resolving the resources of PDF reports locally
+ */
+public class PdfResourceTest {
+
+    @Test
+    public void testLocalResources() throws Exception {
+
+        Path root = Files.createTempDirectory("pdf-resources");
+        try {
+            // Create a repository image and a static style sheet
+            Path repoRoot = Files.createDirectories(root.resolve("repo"));
+            Path assetRoot = Files.createDirectories(root.resolve("webapp"));
+            ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png",
+                    Files.createDirectories(repoRoot.resolve("messages/1")).resolve("image.png").toFile());
+            Files.write(Files.createDirectories(assetRoot.resolve("css")).resolve("pdf.css"),
+                    "img { width: 40px; }".getBytes());
+
+            // The base URI is not reachable, so the resources must be resolved locally
+            String html = "<html><head><link rel=\"stylesheet\" type=\"text/css\" href=\"/css/pdf.css\"></head>"
+                    + "<body><img src=\"/rest/repo/file/messages/1/image.png\" /></body></html>";
+
+            Map<String, Object> cache = new ConcurrentHashMap<>();
+            AtomicInteger assetLookups = new AtomicInteger();
+            for (int x = 0; x < 2; x++) {
+                ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+                HtmlToPdfRenderer.newBuilder()
+                        .html(html)
+                        .baseUri("http://localhost:1")
+                        .repoRoot(repoRoot)
+                        .assetLocator(path -> {
+                            assetLookups.incrementAndGet();
+                            try {
+                                return assetRoot.resolve(path.substring(1)).toUri().toURL();
+                            } catch (MalformedURLException e) {
+                                return null;
+                            }
+                        })
+                        .resourceCache(cache)
+                        .pdf(pdf)
+                        .build()
+                        .render();
+                Assert.assertTrue(pdf.size() > 0);
+            }
+
+            // The image and the style sheet are cached once
+            Assert.assertEquals(2, cache.size());
+            Assert.assertEquals(1, cache.values().stream().filter(v -> v instanceof ImageResource).count());
+            Assert.assertEquals(1, cache.values().stream().filter(v -> v instanceof byte[]).count());
+            Assert.assertTrue(assetLookups.get() > 0);
+
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * For a copy of the GNU General Public License, see <http://www.gnu.org/licenses/>.
+ */
+
+package render;
+
+import java.awt.Graphics2D;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+import s57.S57map;
+import s57.S57map.*;
+
+/**
+ * Holds the drawing state of a single invocation of {@link Renderer#reRender}.
+ * <p>
+ * Originally, the state was kept in static fields of Renderer and Rules, meaning that only one chart
+ * could be rendered at a time. The state of the current render is now bound to the rendering thread,
+ * so that several charts can be rendered in parallel.
+ */
+public class RenderContext {
+
+	private static final ThreadLocal<RenderContext> CURRENT = new ThreadLocal<RenderContext>();
+
+	final Graphics2D g2;
+	final int zoom;
+	final ChartContext context;
+	final S57map map;
+	final double sScale;
+	final DecimalFormat df = new DecimalFormat("#.#");
+
+	/** The feature currently being rendered by the rules **/
+	Feature feature;
+
+	/** The features of the object type currently being rendered by the rules **/
+	ArrayList<Feature> objects;
+
+	RenderContext(Graphics2D g2, int zoom, ChartContext context, S57map map, double sScale) {
+		this.g2 = g2;
+		this.zoom = zoom;
+		this.context = context;
+		this.map = map;
+		this.sScale = sScale;
+	}
+
+	/**
+	 * Returns the render context bound to the current thread
+	 * @return the render context bound to the current thread
+	 */
+	public static RenderContext current() {
+		RenderContext rc = CURRENT.get();
+		if (rc == null) {
+			throw new IllegalStateException("No chart is being rendered by the current thread");
+		}
+		return rc;
+	}
+
+	/**
+	 * Binds the given render context to the current thread
+	 * @param rc the render context to bind, or null to unbind the current render context
+	 * @return the previously bound render context, or null if none was bound
+	 */
+	static RenderContext bind(RenderContext rc) {
+		RenderContext previous = CURRENT.get();
+		if (rc == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(rc);
+		}
+		return previous;
+	}
+
+	/**
+	 * Returns the feature currently being rendered
+	 * @return the feature currently being rendered
+	 */
+	public Feature getFeature() {
+		return feature;
+	}
+}
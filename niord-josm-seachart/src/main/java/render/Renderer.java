@@ -28,18 +28,24 @@ public class Renderer {
 
 	public enum LabelStyle { NONE, RRCT, RECT, ELPS, CIRC, VCLR, PCLR, HCLR }
 
-	static ChartContext context;
-	static S57map map;
-	static double sScale;
-	static Graphics2D g2;
-	static int zoom;
+	static RenderContext rc() {
+		return RenderContext.current();
+	}
 
 	public static void reRender(Graphics2D g, Rectangle rect, int z, double factor, S57map m, ChartContext c) {
-		g2 = g;
-		zoom = z;
-		context = c;
-		map = m;
-		sScale = symbolScale[zoom] * factor;
+		RenderContext previous = RenderContext.bind(new RenderContext(g, z, c, m, symbolScale[z] * factor));
+		try {
+			render(rect);
+		} finally {
+			RenderContext.bind(previous);
+		}
+	}
+
+	private static void render(Rectangle rect) {
+		RenderContext rc = rc();
+		Graphics2D g2 = rc.g2;
+		ChartContext context = rc.context;
+		S57map map = rc.map;
 		if (map != null) {
 			if (context.clip()) {
 				Point2D tl = context.getPoint(map.new Snode(map.bounds.maxlat, map.bounds.minlon));
@@ -56,20 +62,20 @@ public class Renderer {
 	}
 
 	public static void symbol(Symbol symbol) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), null, null);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, symbol, rc().sScale, point.getX(), point.getY(), null, null);
 	}
 	public static void symbol(Symbol symbol, Scheme scheme) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), scheme, null);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, symbol, rc().sScale, point.getX(), point.getY(), scheme, null);
 	}
 	public static void symbol(Symbol symbol, Delta delta) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), null, delta);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, symbol, rc().sScale, point.getX(), point.getY(), null, delta);
 	}
 	public static void symbol(Symbol symbol, Scheme scheme, Delta delta) {
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, symbol, sScale, point.getX(), point.getY(), scheme, delta);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, symbol, rc().sScale, point.getX(), point.getY(), scheme, delta);
 	}
 	
 	public static void cluster(ArrayList<Symbol> symbols) {
@@ -169,7 +175,7 @@ public class Renderer {
 	}
 
 	public static void lineSymbols(Symbol prisymb, double space, Symbol secsymb, Symbol tersymb, int ratio, Color col) {
-		if ((Rules.feature.geom.prim == Pflag.NOSP) || (Rules.feature.geom.prim == Pflag.POINT))
+		if ((rc().feature.geom.prim == Pflag.NOSP) || (rc().feature.geom.prim == Pflag.POINT))
 			return;
 		Rectangle2D.Double prect = symbolSize(prisymb);
 		Rectangle2D.Double srect = symbolSize(secsymb);
@@ -177,9 +183,9 @@ public class Renderer {
 		if (srect == null)
 			ratio = 0;
 		if (prect != null) {
-			double psize = Math.abs(prect.getY()) * sScale;
-			double ssize = (srect != null) ? Math.abs(srect.getY()) * sScale : 0;
-			double tsize = (trect != null) ? Math.abs(srect.getY()) * sScale : 0;
+			double psize = Math.abs(prect.getY()) * rc().sScale;
+			double ssize = (srect != null) ? Math.abs(srect.getY()) * rc().sScale : 0;
+			double tsize = (trect != null) ? Math.abs(srect.getY()) * rc().sScale : 0;
 			Point2D prev = new Point2D.Double();
 			Point2D next = new Point2D.Double();
 			Point2D curr = new Point2D.Double();
@@ -191,7 +197,7 @@ public class Renderer {
 			int stcount = ratio;
 			boolean stflag = false;
 			Symbol symbol = prisymb;
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			GeomIterator git = rc().map.new GeomIterator(rc().feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				boolean first = true;
@@ -201,7 +207,7 @@ public class Renderer {
 						Snode node = git.next();
 						if (node == null) continue;
 						prev = next;
-						next = context.getPoint(node);
+						next = rc().context.getPoint(node);
 						angle = Math.atan2(next.getY() - prev.getY(), next.getX() - prev.getX());
 						piv = true;
 						if (first) {
@@ -229,7 +235,7 @@ public class Renderer {
 									succ = new Point2D.Double(curr.getX() + (len * Math.cos(angle)), curr.getY() + (len * Math.sin(angle)));
 								}
 								if (!gap) {
-									Symbols.drawSymbol(g2, symbol, sScale, curr.getX(), curr.getY(), new Scheme(col),
+									Symbols.drawSymbol(rc().g2, symbol, rc().sScale, curr.getX(), curr.getY(), new Scheme(col),
 											new Delta(Handle.BC, AffineTransform.getRotateInstance(Math.atan2((succ.getY() - curr.getY()), (succ.getX() - curr.getX())) + Math.toRadians(90))));
 								}
 								if (space > 0)
@@ -256,13 +262,13 @@ public class Renderer {
 		Path2D.Double p = new Path2D.Double();
 		p.setWindingRule(GeneralPath.WIND_EVEN_ODD);
 		Point2D point;
-		GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+		GeomIterator git = rc().map.new GeomIterator(rc().feature.geom);
 		while (git.hasComp()) {
 			git.nextComp();
 			boolean first = true;
 			while (git.hasEdge()) {
 				git.nextEdge();
-				point = context.getPoint(git.next());
+				point = rc().context.getPoint(git.next());
 				if (first) {
 					p.moveTo(point.getX(), point.getY());
 					first = false;
@@ -272,28 +278,28 @@ public class Renderer {
 				while (git.hasNode()) {
 					Snode node = git.next();
 					if (node == null) continue;
-					point = context.getPoint(node);
+					point = rc().context.getPoint(node);
 					p.lineTo(point.getX(), point.getY());
 				}
 			}
 		}
-		if ((style.fill != null) && (Rules.feature.geom.prim == Pflag.AREA)) {
-			g2.setPaint(style.fill);
-			g2.fill(p);
+		if ((style.fill != null) && (rc().feature.geom.prim == Pflag.AREA)) {
+			rc().g2.setPaint(style.fill);
+			rc().g2.fill(p);
 		}
 		if (style.line != null) {
 			if (style.dash != null) {
 				float[] dash = new float[style.dash.length];
 				System.arraycopy(style.dash, 0, dash, 0, style.dash.length);
 				for (int i = 0; i < style.dash.length; i++) {
-					dash[i] *= (float) sScale;
+					dash[i] *= (float) rc().sScale;
 				}
-				g2.setStroke(new BasicStroke((float) (style.width * sScale), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 1, dash, 0));
+				rc().g2.setStroke(new BasicStroke((float) (style.width * rc().sScale), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 1, dash, 0));
 			} else {
-				g2.setStroke(new BasicStroke((float) (style.width * sScale), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+				rc().g2.setStroke(new BasicStroke((float) (style.width * rc().sScale), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
 			}
-			g2.setPaint(style.line);
-			g2.draw(p);
+			rc().g2.setPaint(style.line);
+			rc().g2.draw(p);
 		}
 	}
 	
@@ -317,7 +323,7 @@ public class Renderer {
 			radius /= 1852;
 			break;
 		}
-		radius *= context.mile(Rules.feature);
+		radius *= rc().context.mile(rc().feature);
 		Symbol circle = new Symbol();
 		if (style.fill != null) {
 			circle.add(new Instr(Form.FILL, style.fill));
@@ -326,38 +332,38 @@ public class Renderer {
 		circle.add(new Instr(Form.FILL, style.line));
 		circle.add(new Instr(Form.STRK, new BasicStroke(style.width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1, style.dash, 0)));
 		circle.add(new Instr(Form.ELPS, new Ellipse2D.Double(-radius,-radius,radius*2,radius*2)));
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, circle, 1, point.getX(), point.getY(), null, null);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, circle, 1, point.getX(), point.getY(), null, null);
 	}
 
 	public static void fillPattern(BufferedImage image) {
 		Path2D.Double p = new Path2D.Double();
 		p.setWindingRule(GeneralPath.WIND_EVEN_ODD);
 		Point2D point;
-		switch (Rules.feature.geom.prim) {
+		switch (rc().feature.geom.prim) {
 		case POINT:
-			point = context.getPoint(Rules.feature.geom.centre);
-			g2.drawImage(image, new AffineTransformOp(AffineTransform.getScaleInstance(sScale, sScale), AffineTransformOp.TYPE_NEAREST_NEIGHBOR),
-					(int)(point.getX() - (50 * sScale)), (int)(point.getY() - (50 * sScale)));
+			point = rc().context.getPoint(rc().feature.geom.centre);
+			rc().g2.drawImage(image, new AffineTransformOp(AffineTransform.getScaleInstance(rc().sScale, rc().sScale), AffineTransformOp.TYPE_NEAREST_NEIGHBOR),
+					(int)(point.getX() - (50 * rc().sScale)), (int)(point.getY() - (50 * rc().sScale)));
 			break;
 		case AREA:
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			GeomIterator git = rc().map.new GeomIterator(rc().feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				while (git.hasEdge()) {
 					git.nextEdge();
-					point = context.getPoint(git.next());
+					point = rc().context.getPoint(git.next());
 					p.moveTo(point.getX(), point.getY());
 					while (git.hasNode()) {
 						Snode node = git.next();
 						if (node == null) continue;
-						point = context.getPoint(node);
+						point = rc().context.getPoint(node);
 						p.lineTo(point.getX(), point.getY());
 					}
 				}
 			}
-	    g2.setPaint(new TexturePaint(image, new Rectangle(0, 0, 1 + (int)(100 * sScale), 1 + (int)(100 * sScale))));
-	    g2.fill(p);
+	    rc().g2.setPaint(new TexturePaint(image, new Rectangle(0, 0, 1 + (int)(100 * rc().sScale), 1 + (int)(100 * rc().sScale))));
+	    rc().g2.fill(p);
 	    break;
 		default:
 			break;
@@ -383,7 +389,7 @@ public class Renderer {
 		if (delta == null) delta = new Delta(Handle.CC);
 		if (bg == null) bg = new Color(0x00000000, true);
 		if ((str == null) || (str.isEmpty())) str = " ";
-    FontRenderContext frc = g2.getFontRenderContext();
+    FontRenderContext frc = rc().g2.getFontRenderContext();
     GlyphVector gv = font.deriveFont((float)(font.getSize())).createGlyphVector(frc, str.equals(" ") ? "!" : str);
     Rectangle2D bounds = gv.getVisualBounds();
     double width = bounds.getWidth();
@@ -474,16 +480,16 @@ public class Renderer {
 			break;
 		}
 		label.add(new Instr(Form.TEXT, new Caption(str, font, tc, new Delta(Handle.TL, AffineTransform.getTranslateInstance(tx, ty)))));
-		Point2D point = context.getPoint(Rules.feature.geom.centre);
-		Symbols.drawSymbol(g2, label, sScale, point.getX(), point.getY(), null, delta);
+		Point2D point = rc().context.getPoint(rc().feature.geom.centre);
+		Symbols.drawSymbol(rc().g2, label, rc().sScale, point.getX(), point.getY(), null, delta);
 	}
 
 	public static void lineText(String str, Font font, Color colour, double offset, double dy) {
 		if (!str.isEmpty()) {
-			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-	    g2.setPaint(colour);
-	    FontRenderContext frc = g2.getFontRenderContext();
-	    GlyphVector gv = font.deriveFont(font.getSize2D() * (float)sScale).createGlyphVector(frc, (" " + str));
+			rc().g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	    rc().g2.setPaint(colour);
+	    FontRenderContext frc = rc().g2.getFontRenderContext();
+	    GlyphVector gv = font.deriveFont(font.getSize2D() * (float)rc().sScale).createGlyphVector(frc, (" " + str));
 	    GeneralPath path = new GeneralPath();
 			Point2D prev = new Point2D.Double();
 			Point2D next = new Point2D.Double();
@@ -492,8 +498,8 @@ public class Renderer {
 			boolean piv = false;
 			double angle = 0;
 			int index = 0;
-			double gwidth = offset * (Rules.feature.geom.length * context.mile(Rules.feature) - gv.getLogicalBounds().getWidth()) + gv.getGlyphMetrics(0).getAdvance();
-			GeomIterator git = map.new GeomIterator(Rules.feature.geom);
+			double gwidth = offset * (rc().feature.geom.length * rc().context.mile(rc().feature) - gv.getLogicalBounds().getWidth()) + gv.getGlyphMetrics(0).getAdvance();
+			GeomIterator git = rc().map.new GeomIterator(rc().feature.geom);
 			while (git.hasComp()) {
 				git.nextComp();
 				boolean first = true;
@@ -503,7 +509,7 @@ public class Renderer {
 						Snode node = git.next();
 						if (node == null) continue;
 						prev = next;
-						next = context.getPoint(node);
+						next = rc().context.getPoint(node);
 						angle = Math.atan2(next.getY() - prev.getY(), next.getX() - prev.getX());
 						piv = true;
 						if (first) {
@@ -530,13 +536,13 @@ public class Renderer {
 								Point2D point = gv.getGlyphPosition(index);
 								AffineTransform at = AffineTransform.getTranslateInstance(curr.getX(), curr.getY());
 								at.rotate(Math.atan2((succ.getY() - curr.getY()), (succ.getX() - curr.getX())));
-								at.translate(-point.getX(), -point.getY() + (dy * sScale));
+								at.translate(-point.getX(), -point.getY() + (dy * rc().sScale));
 								path.append(at.createTransformedShape(shape), false);
 								curr = succ;
 								if (++index < gv.getNumGlyphs()) {
 									gwidth = gv.getGlyphMetrics(index).getAdvance();
 								} else {
-									g2.fill(path);
+									rc().g2.fill(path);
 									return;
 								}
 							}
@@ -548,40 +554,40 @@ public class Renderer {
 	}
 	
 	public static void lightSector(Color col1, Color col2, double radius, double s1, double s2, Double dir, String str) {
-		if ((zoom >= 16) && (radius > 0.2)) {
-			radius /= (Math.pow(2, zoom-15));
+		if ((rc().zoom >= 16) && (radius > 0.2)) {
+			radius /= (Math.pow(2, rc().zoom-15));
 		}
 		double mid = (((s1 + s2)  / 2) + (s1 > s2 ? 180 : 0)) % 360;
-		g2.setStroke(new BasicStroke((float) (3.0 * sScale), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 1, new float[] {20 * (float)sScale, 20 * (float)sScale}, 0));
-		g2.setPaint(Color.black);
-		Point2D.Double centre = (Point2D.Double) context.getPoint(Rules.feature.geom.centre);
-		double radial = radius * context.mile(Rules.feature);
+		rc().g2.setStroke(new BasicStroke((float) (3.0 * rc().sScale), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 1, new float[] {20 * (float)rc().sScale, 20 * (float)rc().sScale}, 0));
+		rc().g2.setPaint(Color.black);
+		Point2D.Double centre = (Point2D.Double) rc().context.getPoint(rc().feature.geom.centre);
+		double radial = radius * rc().context.mile(rc().feature);
 		if (dir != null) {
-			g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(dir)), centre.y + radial * Math.cos(Math.toRadians(dir))));
+			rc().g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(dir)), centre.y + radial * Math.cos(Math.toRadians(dir))));
 		} else {
 			if ((s1 != 0.0) || (s2 != 360.0)) {
-				g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(s1)), centre.y + radial * Math.cos(Math.toRadians(s1))));
-				g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(s2)), centre.y + radial * Math.cos(Math.toRadians(s2))));
+				rc().g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(s1)), centre.y + radial * Math.cos(Math.toRadians(s1))));
+				rc().g2.draw(new Line2D.Double(centre.x, centre.y, centre.x - radial * Math.sin(Math.toRadians(s2)), centre.y + radial * Math.cos(Math.toRadians(s2))));
 			}
 		}
-		double arcWidth =  10.0 * sScale;
-		g2.setStroke(new BasicStroke((float)arcWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1));
-		g2.setPaint(col1);
-		g2.draw(new Arc2D.Double(centre.x - radial, centre.y - radial, 2 * radial, 2 * radial, -(s1 + 90), ((s1 < s2) ? (s1 - s2) : (s1 - s2 - 360)), Arc2D.OPEN));
+		double arcWidth =  10.0 * rc().sScale;
+		rc().g2.setStroke(new BasicStroke((float)arcWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1));
+		rc().g2.setPaint(col1);
+		rc().g2.draw(new Arc2D.Double(centre.x - radial, centre.y - radial, 2 * radial, 2 * radial, -(s1 + 90), ((s1 < s2) ? (s1 - s2) : (s1 - s2 - 360)), Arc2D.OPEN));
 		if (col2 != null) {
-			g2.setPaint(col2);
-			g2.draw(new Arc2D.Double(centre.x - radial + arcWidth, centre.y - radial + arcWidth, 2 * (radial - arcWidth), 2 * (radial - arcWidth), -(s1 + 90), ((s1 < s2) ? (s1 - s2) : (s1 - s2 - 360)), Arc2D.OPEN));
+			rc().g2.setPaint(col2);
+			rc().g2.draw(new Arc2D.Double(centre.x - radial + arcWidth, centre.y - radial + arcWidth, 2 * (radial - arcWidth), 2 * (radial - arcWidth), -(s1 + 90), ((s1 < s2) ? (s1 - s2) : (s1 - s2 - 360)), Arc2D.OPEN));
 		}
 		if ((str != null) && (!str.isEmpty())) {
-			FontRenderContext frc = g2.getFontRenderContext();
+			FontRenderContext frc = rc().g2.getFontRenderContext();
 			Font font = new Font("Arial", Font.PLAIN, 40);
-			GlyphVector gv = font.deriveFont(font.getSize2D() * (float)sScale).createGlyphVector(frc, str);
+			GlyphVector gv = font.deriveFont(font.getSize2D() * (float)rc().sScale).createGlyphVector(frc, str);
 			double arc = (s2 > s1) ? (s2 - s1) : (s2 - s1 + 360);
 			double awidth = (Math.toRadians(arc) * radial);
 			boolean hand = ((mid > 270) || (mid < 90));
 			double phi = Math.toRadians(mid);
-			radial += 30 * sScale;
-			AffineTransform at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / sScale, radial * Math.cos(phi) / sScale);
+			radial += 30 * rc().sScale;
+			AffineTransform at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / rc().sScale, radial * Math.cos(phi) / rc().sScale);
 			if (gv.getLogicalBounds().getWidth() < awidth) {
 				at.rotate(Math.toRadians(mid + (hand ? 0 : 180)));
 				Renderer.labelText(str, font, Color.black, new Delta(Handle.CC, at));
@@ -595,8 +601,8 @@ public class Renderer {
 				str = dir + "°";
 				hand = (dir > 180);
 				phi = Math.toRadians(dir + (hand ? -0.5 : 0.5));
-				radial -= 70 * sScale;
-				at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / sScale, radial * Math.cos(phi) / sScale);
+				radial -= 70 * rc().sScale;
+				at = AffineTransform.getTranslateInstance(-radial * Math.sin(phi) / rc().sScale, radial * Math.cos(phi) / rc().sScale);
 				at.rotate(Math.toRadians(dir + (hand ? 90 : -90)));
 				Renderer.labelText(str, font, Color.black, hand ? new Delta(Handle.BR, at) : new Delta(Handle.BL, at));
 			}
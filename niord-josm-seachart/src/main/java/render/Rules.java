@@ -12,7 +12,6 @@ package render;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.geom.AffineTransform;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
@@ -29,7 +28,6 @@ import symbols.Symbols.*;
 
 public class Rules {
 	
-	static final DecimalFormat df = new DecimalFormat("#.#");
 
 	static final EnumMap<ColCOL, Color> bodyColours = new EnumMap<ColCOL, Color>(ColCOL.class);
 	static {
@@ -63,9 +61,9 @@ public class Rules {
 	}
 	
 	static String getName() {
-		AttVal<?> name = feature.atts.get(Att.OBJNAM);
+		AttVal<?> name = rc().feature.atts.get(Att.OBJNAM);
 		if (name == null) {
-			AttMap atts = feature.objs.get(feature.type).get(0);
+			AttMap atts = rc().feature.objs.get(rc().feature.type).get(0);
 			if (atts != null) {
 				name = atts.get(Att.OBJNAM);
 			}
@@ -83,7 +81,7 @@ public class Rules {
 		addName(z, font, Color.black, delta);
 	}
 	public static void addName(int z, Font font, Color colour, Delta delta) {
-		if (Renderer.zoom >= z) {
+		if (rc().zoom >= z) {
 			String name = getName();
 			if (name != null) {
 				Renderer.labelText(name, font,  colour, delta);
@@ -92,7 +90,7 @@ public class Rules {
 	}
 
 	static AttMap getAtts(Obj obj, int idx) {
-		HashMap<Integer, AttMap> objs = feature.objs.get(obj);
+		HashMap<Integer, AttMap> objs = rc().feature.objs.get(obj);
 		if (objs == null)
 			return null;
 		else
@@ -103,7 +101,7 @@ public class Rules {
 		AttMap atts;
 		HashMap<Integer, AttMap> objs;
 		AttVal<?> item;
-		if ((objs = feature.objs.get(obj)) != null)
+		if ((objs = rc().feature.objs.get(obj)) != null)
 			atts = objs.get(0);
 		else
 			return null;
@@ -184,113 +182,114 @@ public class Rules {
 		return false;
 	}
 	
-	public static Feature feature;
-	static ArrayList<Feature> objects;
-	
+	static RenderContext rc() {
+		return RenderContext.current();
+	}
+
 	static boolean testObject(Obj obj) {
-		return ((objects = Renderer.map.features.get(obj)) != null);
+		return ((rc().objects = rc().map.features.get(obj)) != null);
 	}
 	
 	static boolean testFeature(Feature f) {
-		return ((feature = f).reln == Rflag.MASTER);
+		return ((rc().feature = f).reln == Rflag.MASTER);
 	}
 	
 	public static void rules () {
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.BASE)) {
-			if (testObject(Obj.LNDARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.BUAARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.HRBFAC)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.HRBBSN)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.LOKBSN)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.LKBSPT)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.LAKARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.RIVERS)) for (Feature f : objects) if (testFeature(f)) waterways();
-			if (testObject(Obj.CANALS)) for (Feature f : objects) if (testFeature(f)) waterways();
-			if (testObject(Obj.DEPARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.COALNE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.ROADWY)) for (Feature f : objects) if (testFeature(f)) highways();
-			if (testObject(Obj.RAILWY)) for (Feature f : objects) if (testFeature(f)) highways();
+		if ((rc().context.ruleset() == RuleSet.ALL) || (rc().context.ruleset() == RuleSet.BASE)) {
+			if (testObject(Obj.LNDARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.BUAARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.HRBFAC)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.HRBBSN)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.LOKBSN)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.LKBSPT)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.LAKARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.RIVERS)) for (Feature f : rc().objects) if (testFeature(f)) waterways();
+			if (testObject(Obj.CANALS)) for (Feature f : rc().objects) if (testFeature(f)) waterways();
+			if (testObject(Obj.DEPARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.COALNE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.ROADWY)) for (Feature f : rc().objects) if (testFeature(f)) highways();
+			if (testObject(Obj.RAILWY)) for (Feature f : rc().objects) if (testFeature(f)) highways();
 		}
-		if (testObject(Obj.SLCONS)) for (Feature f : objects) if (testFeature(f)) shoreline();
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.SEAMARK)) {
-			if (testObject(Obj.PIPSOL)) for (Feature f : objects) if (testFeature(f)) pipelines();
-			if (testObject(Obj.CBLSUB)) for (Feature f : objects) if (testFeature(f)) cables();
-			if (testObject(Obj.PIPOHD)) for (Feature f : objects) if (testFeature(f)) pipelines();
-			if (testObject(Obj.CBLOHD)) for (Feature f : objects) if (testFeature(f)) cables();
-			if (testObject(Obj.TSEZNE)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.TSSCRS)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.TSSRON)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.TSELNE)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.TSSLPT)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.TSSBND)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.ISTZNE)) for (Feature f : objects) if (testFeature(f)) separation();
-			if (testObject(Obj.SNDWAV)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.OSPARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.FAIRWY)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.DRGARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.RESARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.PRCARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.SPLARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.SEAARE)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.OBSTRN)) for (Feature f : objects) if (testFeature(f)) obstructions();
-			if (testObject(Obj.UWTROC)) for (Feature f : objects) if (testFeature(f)) obstructions();
-			if (testObject(Obj.MARCUL)) for (Feature f : objects) if (testFeature(f)) areas();
-			if (testObject(Obj.RECTRC)) for (Feature f : objects) if (testFeature(f)) transits();
-			if (testObject(Obj.NAVLNE)) for (Feature f : objects) if (testFeature(f)) transits();
-			if (testObject(Obj.HRBFAC)) for (Feature f : objects) if (testFeature(f)) harbours();
-			if (testObject(Obj.ACHARE)) for (Feature f : objects) if (testFeature(f)) harbours();
-			if (testObject(Obj.ACHBRT)) for (Feature f : objects) if (testFeature(f)) harbours();
-			if (testObject(Obj.BERTHS)) for (Feature f : objects) if (testFeature(f)) harbours();
-			if (testObject(Obj.DISMAR)) for (Feature f : objects) if (testFeature(f)) distances();
-			if (testObject(Obj.HULKES)) for (Feature f : objects) if (testFeature(f)) ports();
-			if (testObject(Obj.CRANES)) for (Feature f : objects) if (testFeature(f)) ports();
-			if (testObject(Obj.LNDMRK)) for (Feature f : objects) if (testFeature(f)) landmarks();
-			if (testObject(Obj.BUISGL)) for (Feature f : objects) if (testFeature(f)) harbours();
-			if (testObject(Obj.MORFAC)) for (Feature f : objects) if (testFeature(f)) moorings();
-			if (testObject(Obj.NOTMRK)) for (Feature f : objects) if (testFeature(f)) notices();
-			if (testObject(Obj.SMCFAC)) for (Feature f : objects) if (testFeature(f)) marinas();
-			if (testObject(Obj.BRIDGE)) for (Feature f : objects) if (testFeature(f)) bridges();
-			if (testObject(Obj.PILPNT)) for (Feature f : objects) if (testFeature(f)) lights();
-			if (testObject(Obj.RDOCAL)) for (Feature f : objects) if (testFeature(f)) callpoint();
-			if (testObject(Obj.LITMIN)) for (Feature f : objects) if (testFeature(f)) lights();
-			if (testObject(Obj.LITMAJ)) for (Feature f : objects) if (testFeature(f)) lights();
-			if (testObject(Obj.LIGHTS)) for (Feature f : objects) if (testFeature(f)) lights();
-			if (testObject(Obj.SISTAT)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.SISTAW)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.CGUSTA)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.RDOSTA)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.RADRFL)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.RADSTA)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.RTPBCN)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.RSCSTA)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.PILBOP)) for (Feature f : objects) if (testFeature(f)) stations();
-			if (testObject(Obj.WTWGAG)) for (Feature f : objects) if (testFeature(f)) gauges();
-			if (testObject(Obj.OFSPLF)) for (Feature f : objects) if (testFeature(f)) platforms();
-			if (testObject(Obj.WRECKS)) for (Feature f : objects) if (testFeature(f)) wrecks();
-			if (testObject(Obj.LITVES)) for (Feature f : objects) if (testFeature(f)) floats();
-			if (testObject(Obj.LITFLT)) for (Feature f : objects) if (testFeature(f)) floats();
-			if (testObject(Obj.BOYINB)) for (Feature f : objects) if (testFeature(f)) floats();
-			if (testObject(Obj.BOYLAT)) for (Feature f : objects) if (testFeature(f)) buoys();
-			if (testObject(Obj.BOYCAR)) for (Feature f : objects) if (testFeature(f)) buoys();
-			if (testObject(Obj.BOYISD)) for (Feature f : objects) if (testFeature(f)) buoys();
-			if (testObject(Obj.BOYSAW)) for (Feature f : objects) if (testFeature(f)) buoys();
-			if (testObject(Obj.BOYSPP)) for (Feature f : objects) if (testFeature(f)) buoys();
-			if (testObject(Obj.BCNLAT)) for (Feature f : objects) if (testFeature(f)) beacons();
-			if (testObject(Obj.BCNCAR)) for (Feature f : objects) if (testFeature(f)) beacons();
-			if (testObject(Obj.BCNISD)) for (Feature f : objects) if (testFeature(f)) beacons();
-			if (testObject(Obj.BCNSAW)) for (Feature f : objects) if (testFeature(f)) beacons();
-			if (testObject(Obj.BCNSPP)) for (Feature f : objects) if (testFeature(f)) beacons();
+		if (testObject(Obj.SLCONS)) for (Feature f : rc().objects) if (testFeature(f)) shoreline();
+		if ((rc().context.ruleset() == RuleSet.ALL) || (rc().context.ruleset() == RuleSet.SEAMARK)) {
+			if (testObject(Obj.PIPSOL)) for (Feature f : rc().objects) if (testFeature(f)) pipelines();
+			if (testObject(Obj.CBLSUB)) for (Feature f : rc().objects) if (testFeature(f)) cables();
+			if (testObject(Obj.PIPOHD)) for (Feature f : rc().objects) if (testFeature(f)) pipelines();
+			if (testObject(Obj.CBLOHD)) for (Feature f : rc().objects) if (testFeature(f)) cables();
+			if (testObject(Obj.TSEZNE)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.TSSCRS)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.TSSRON)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.TSELNE)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.TSSLPT)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.TSSBND)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.ISTZNE)) for (Feature f : rc().objects) if (testFeature(f)) separation();
+			if (testObject(Obj.SNDWAV)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.OSPARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.FAIRWY)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.DRGARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.RESARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.PRCARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.SPLARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.SEAARE)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.OBSTRN)) for (Feature f : rc().objects) if (testFeature(f)) obstructions();
+			if (testObject(Obj.UWTROC)) for (Feature f : rc().objects) if (testFeature(f)) obstructions();
+			if (testObject(Obj.MARCUL)) for (Feature f : rc().objects) if (testFeature(f)) areas();
+			if (testObject(Obj.RECTRC)) for (Feature f : rc().objects) if (testFeature(f)) transits();
+			if (testObject(Obj.NAVLNE)) for (Feature f : rc().objects) if (testFeature(f)) transits();
+			if (testObject(Obj.HRBFAC)) for (Feature f : rc().objects) if (testFeature(f)) harbours();
+			if (testObject(Obj.ACHARE)) for (Feature f : rc().objects) if (testFeature(f)) harbours();
+			if (testObject(Obj.ACHBRT)) for (Feature f : rc().objects) if (testFeature(f)) harbours();
+			if (testObject(Obj.BERTHS)) for (Feature f : rc().objects) if (testFeature(f)) harbours();
+			if (testObject(Obj.DISMAR)) for (Feature f : rc().objects) if (testFeature(f)) distances();
+			if (testObject(Obj.HULKES)) for (Feature f : rc().objects) if (testFeature(f)) ports();
+			if (testObject(Obj.CRANES)) for (Feature f : rc().objects) if (testFeature(f)) ports();
+			if (testObject(Obj.LNDMRK)) for (Feature f : rc().objects) if (testFeature(f)) landmarks();
+			if (testObject(Obj.BUISGL)) for (Feature f : rc().objects) if (testFeature(f)) harbours();
+			if (testObject(Obj.MORFAC)) for (Feature f : rc().objects) if (testFeature(f)) moorings();
+			if (testObject(Obj.NOTMRK)) for (Feature f : rc().objects) if (testFeature(f)) notices();
+			if (testObject(Obj.SMCFAC)) for (Feature f : rc().objects) if (testFeature(f)) marinas();
+			if (testObject(Obj.BRIDGE)) for (Feature f : rc().objects) if (testFeature(f)) bridges();
+			if (testObject(Obj.PILPNT)) for (Feature f : rc().objects) if (testFeature(f)) lights();
+			if (testObject(Obj.RDOCAL)) for (Feature f : rc().objects) if (testFeature(f)) callpoint();
+			if (testObject(Obj.LITMIN)) for (Feature f : rc().objects) if (testFeature(f)) lights();
+			if (testObject(Obj.LITMAJ)) for (Feature f : rc().objects) if (testFeature(f)) lights();
+			if (testObject(Obj.LIGHTS)) for (Feature f : rc().objects) if (testFeature(f)) lights();
+			if (testObject(Obj.SISTAT)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.SISTAW)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.CGUSTA)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.RDOSTA)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.RADRFL)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.RADSTA)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.RTPBCN)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.RSCSTA)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.PILBOP)) for (Feature f : rc().objects) if (testFeature(f)) stations();
+			if (testObject(Obj.WTWGAG)) for (Feature f : rc().objects) if (testFeature(f)) gauges();
+			if (testObject(Obj.OFSPLF)) for (Feature f : rc().objects) if (testFeature(f)) platforms();
+			if (testObject(Obj.WRECKS)) for (Feature f : rc().objects) if (testFeature(f)) wrecks();
+			if (testObject(Obj.LITVES)) for (Feature f : rc().objects) if (testFeature(f)) floats();
+			if (testObject(Obj.LITFLT)) for (Feature f : rc().objects) if (testFeature(f)) floats();
+			if (testObject(Obj.BOYINB)) for (Feature f : rc().objects) if (testFeature(f)) floats();
+			if (testObject(Obj.BOYLAT)) for (Feature f : rc().objects) if (testFeature(f)) buoys();
+			if (testObject(Obj.BOYCAR)) for (Feature f : rc().objects) if (testFeature(f)) buoys();
+			if (testObject(Obj.BOYISD)) for (Feature f : rc().objects) if (testFeature(f)) buoys();
+			if (testObject(Obj.BOYSAW)) for (Feature f : rc().objects) if (testFeature(f)) buoys();
+			if (testObject(Obj.BOYSPP)) for (Feature f : rc().objects) if (testFeature(f)) buoys();
+			if (testObject(Obj.BCNLAT)) for (Feature f : rc().objects) if (testFeature(f)) beacons();
+			if (testObject(Obj.BCNCAR)) for (Feature f : rc().objects) if (testFeature(f)) beacons();
+			if (testObject(Obj.BCNISD)) for (Feature f : rc().objects) if (testFeature(f)) beacons();
+			if (testObject(Obj.BCNSAW)) for (Feature f : rc().objects) if (testFeature(f)) beacons();
+			if (testObject(Obj.BCNSPP)) for (Feature f : rc().objects) if (testFeature(f)) beacons();
 		}
 	}
 	
 	private static void areas() {
 		String name = getName();
-		switch (feature.type) {
+		switch (rc().feature.type) {
 		case BUAARE:
 			Renderer.lineVector(new LineStyle(new Color(0x20000000, true)));
 			break;
 		case COALNE:
-			if (Renderer.zoom >= 12)
+			if (rc().zoom >= 12)
 				Renderer.lineVector(new LineStyle(Color.black, 10));
 			break;
 		case DEPARE:
@@ -300,39 +299,39 @@ public class Rules {
 			}
 			break;
 		case LAKARE:
-			if ((Renderer.zoom >= 12) || (feature.geom.area > 10.0))
+			if ((rc().zoom >= 12) || (rc().feature.geom.area > 10.0))
 				Renderer.lineVector(new LineStyle(Symbols.Bwater));
 			break;
 		case DRGARE:
-			if (Renderer.zoom < 16)
+			if (rc().zoom < 16)
 				Renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }, new Color(0x40ffffff, true)));
 			else
 				Renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }));
 			addName(12, new Font("Arial", Font.PLAIN, 100), new Delta(Handle.CC, new AffineTransform()));
 			break;
 		case FAIRWY:
-			if (feature.geom.area > 2.0) {
-				if (Renderer.zoom < 16)
+			if (rc().feature.geom.area > 2.0) {
+				if (rc().zoom < 16)
 					Renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }, new Color(0x40ffffff, true)));
 				else
 					Renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }));
 			} else {
-				if (Renderer.zoom >= 14)
+				if (rc().zoom >= 14)
 					Renderer.lineVector(new LineStyle(new Color(0x40ffffff, true)));
 			}
 			break;
 		case LKBSPT:
 		case LOKBSN:
 		case HRBBSN:
-			if (Renderer.zoom >= 12) {
+			if (rc().zoom >= 12) {
 				Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
 			} else {
 				Renderer.lineVector(new LineStyle(Symbols.Bwater));
 			}
 			break;
 		case HRBFAC:
-			if (feature.objs.get(Obj.HRBBSN) != null) {
-				if (Renderer.zoom >= 12) {
+			if (rc().feature.objs.get(Obj.HRBBSN) != null) {
+				if (rc().zoom >= 12) {
 					Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
 				} else {
 					Renderer.lineVector(new LineStyle(Symbols.Bwater));
@@ -343,17 +342,17 @@ public class Rules {
 			Renderer.lineVector(new LineStyle(Symbols.Yland));
 			break;
 		case MARCUL:
-			if (Renderer.zoom >= 12) {
-				if (Renderer.zoom >= 14) {
+			if (rc().zoom >= 12) {
+				if (rc().zoom >= 14) {
 					Renderer.symbol(Areas.MarineFarm);
 				}
-				if ((feature.geom.area > 0.2) || ((feature.geom.area > 0.05) && (Renderer.zoom >= 14)) || ((feature.geom.area > 0.005) && (Renderer.zoom >= 16))) {
+				if ((rc().feature.geom.area > 0.2) || ((rc().feature.geom.area > 0.05) && (rc().zoom >= 14)) || ((rc().feature.geom.area > 0.005) && (rc().zoom >= 16))) {
 					Renderer.lineVector(new LineStyle(Color.black, 4, new float[] { 10, 10 }));
 				}
 			}
 			break;
 		case OSPARE:
-			if (testAttribute(feature.type, Att.CATPRA, CatPRA.PRA_WFRM)) {
+			if (testAttribute(rc().feature.type, Att.CATPRA, CatPRA.PRA_WFRM)) {
 				Renderer.symbol(Areas.WindFarm);
 				Renderer.lineVector(new LineStyle(Color.black, 20, new float[] { 40, 40 }));
 				addName(15, new Font("Arial", Font.BOLD, 80), new Delta(Handle.TC, AffineTransform.getTranslateInstance(0, 10)));
@@ -361,45 +360,45 @@ public class Rules {
 			break;
 		case RESARE:
 		case MIPARE:
-			if (Renderer.zoom >= 12) {
+			if (rc().zoom >= 12) {
 				Renderer.lineSymbols(Areas.Restricted, 1.0, null, null, 0, Symbols.Mline);
-				if (testAttribute(feature.type, Att.CATREA, CatREA.REA_NWAK)) {
+				if (testAttribute(rc().feature.type, Att.CATREA, CatREA.REA_NWAK)) {
 					Renderer.symbol(Areas.NoWake);
 				}
 			}
 			break;
 		case PRCARE:
-			if (Renderer.zoom >= 12) {
+			if (rc().zoom >= 12) {
 				Renderer.lineVector(new LineStyle(Symbols.Mline, 10, new float[] { 40, 40 }));
 			}
 			break;
 		case SEAARE:
-			switch ((CatSEA) getAttEnum(feature.type, Att.CATSEA)) {
+			switch ((CatSEA) getAttEnum(rc().feature.type, Att.CATSEA)) {
 			case SEA_RECH:
-				if ((Renderer.zoom >= 10) && (name != null))
-					if (feature.geom.prim == Pflag.LINE) {
+				if ((rc().zoom >= 10) && (name != null))
+					if (rc().feature.geom.prim == Pflag.LINE) {
 						Renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
 					} else {
 						Renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
 					}
 				break;
 			case SEA_BAY:
-				if ((Renderer.zoom >= 12) && (name != null))
-					if (feature.geom.prim == Pflag.LINE) {
+				if ((rc().zoom >= 12) && (name != null))
+					if (rc().feature.geom.prim == Pflag.LINE) {
 						Renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
 					} else {
 						Renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
 					}
 				break;
 			case SEA_SHOL:
-				if (Renderer.zoom >= 14) {
-					if (feature.geom.prim == Pflag.AREA) {
+				if (rc().zoom >= 14) {
+					if (rc().feature.geom.prim == Pflag.AREA) {
 						Renderer.lineVector(new LineStyle(new Color(0xc480ff), 4, new float[] { 25, 25 }));
 						if (name != null) {
 							Renderer.labelText(name, new Font("Arial", Font.ITALIC, 75), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
 							Renderer.labelText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, new Delta(Handle.BC));
 						}
-					} else if (feature.geom.prim == Pflag.LINE) {
+					} else if (rc().feature.geom.prim == Pflag.LINE) {
 						if (name != null) {
 							Renderer.lineText(name, new Font("Arial", Font.ITALIC, 75), Color.black, 0.5, -40);
 							Renderer.lineText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 0);
@@ -421,10 +420,10 @@ public class Rules {
 			}
 			break;
 		case SNDWAV:
-			if (Renderer.zoom >= 12) Renderer.fillPattern(Areas.Sandwaves);
+			if (rc().zoom >= 12) Renderer.fillPattern(Areas.Sandwaves);
 			break;
 		case SPLARE:
-			if (Renderer.zoom >= 12) {
+			if (rc().zoom >= 12) {
 				Renderer.symbol(Areas.Plane, new Scheme(Symbols.Msymb));
 				Renderer.lineSymbols(Areas.Restricted, 0.5, Areas.LinePlane, null, 10, Symbols.Mline);
 			}
@@ -437,12 +436,12 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void beacons() {
-		if ((Renderer.zoom >= 14) || ((Renderer.zoom >= 12) && ((feature.type == Obj.BCNLAT) || (feature.type == Obj.BCNCAR)))) {
-			BcnSHP shape = (BcnSHP)getAttEnum(feature.type, Att.BCNSHP);
+		if ((rc().zoom >= 14) || ((rc().zoom >= 12) && ((rc().feature.type == Obj.BCNLAT) || (rc().feature.type == Obj.BCNCAR)))) {
+			BcnSHP shape = (BcnSHP)getAttEnum(rc().feature.type, Att.BCNSHP);
 			if (shape == BcnSHP.BCN_UNKN)
 				shape = BcnSHP.BCN_PILE;
-			if ((shape == BcnSHP.BCN_WTHY) && (feature.type == Obj.BCNLAT)) {
-				switch ((CatLAM) getAttEnum(feature.type, Att.CATLAM)) {
+			if ((shape == BcnSHP.BCN_WTHY) && (rc().feature.type == Obj.BCNLAT)) {
+				switch ((CatLAM) getAttEnum(rc().feature.type, Att.CATLAM)) {
 				case LAM_PORT:
 					Renderer.symbol(Beacons.WithyPort);
 					break;
@@ -450,10 +449,10 @@ public class Rules {
 					Renderer.symbol(Beacons.WithyStarboard);
 					break;
 				default:
-					Renderer.symbol(Beacons.Stake, getScheme(feature.type));
+					Renderer.symbol(Beacons.Stake, getScheme(rc().feature.type));
 				}
-			} else if ((shape == BcnSHP.BCN_PRCH) && (feature.type == Obj.BCNLAT) && !(feature.objs.containsKey(Obj.TOPMAR))) {
-				switch ((CatLAM) getAttEnum(feature.type, Att.CATLAM)) {
+			} else if ((shape == BcnSHP.BCN_PRCH) && (rc().feature.type == Obj.BCNLAT) && !(rc().feature.objs.containsKey(Obj.TOPMAR))) {
+				switch ((CatLAM) getAttEnum(rc().feature.type, Att.CATLAM)) {
 				case LAM_PORT:
 					Renderer.symbol(Beacons.PerchPort);
 					break;
@@ -461,17 +460,17 @@ public class Rules {
 					Renderer.symbol(Beacons.PerchStarboard);
 					break;
 				default:
-					Renderer.symbol(Beacons.Stake, getScheme(feature.type));
+					Renderer.symbol(Beacons.Stake, getScheme(rc().feature.type));
 				}
 			} else {
-				Renderer.symbol(Beacons.Shapes.get(shape), getScheme(feature.type));
-				if (feature.objs.containsKey(Obj.TOPMAR)) {
-					AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
+				Renderer.symbol(Beacons.Shapes.get(shape), getScheme(rc().feature.type));
+				if (rc().feature.objs.containsKey(Obj.TOPMAR)) {
+					AttMap topmap = rc().feature.objs.get(Obj.TOPMAR).get(0);
 					if (topmap.containsKey(Att.TOPSHP)) {
 						Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BeaconDelta);
 					}
-				} else if (feature.objs.containsKey(Obj.DAYMAR)) {
-					AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
+				} else if (rc().feature.objs.containsKey(Obj.DAYMAR)) {
+					AttMap topmap = rc().feature.objs.get(Obj.DAYMAR).get(0);
 					if (topmap.containsKey(Att.TOPSHP)) {
 						Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BeaconDelta);
 					}
@@ -484,17 +483,17 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void buoys() {
-		if ((Renderer.zoom >= 14) || ((Renderer.zoom >= 12) && ((feature.type == Obj.BOYLAT) || (feature.type == Obj.BOYCAR)))) {
-			BoySHP shape = (BoySHP) getAttEnum(feature.type, Att.BOYSHP);
+		if ((rc().zoom >= 14) || ((rc().zoom >= 12) && ((rc().feature.type == Obj.BOYLAT) || (rc().feature.type == Obj.BOYCAR)))) {
+			BoySHP shape = (BoySHP) getAttEnum(rc().feature.type, Att.BOYSHP);
 			if (shape == BoySHP.BOY_UNKN) shape = BoySHP.BOY_PILR;
-			Renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
-			if (feature.objs.containsKey(Obj.TOPMAR)) {
-				AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
+			Renderer.symbol(Buoys.Shapes.get(shape), getScheme(rc().feature.type));
+			if (rc().feature.objs.containsKey(Obj.TOPMAR)) {
+				AttMap topmap = rc().feature.objs.get(Obj.TOPMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
 					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BuoyDeltas.get(shape));
 				}
-			} else if (feature.objs.containsKey(Obj.DAYMAR)) {
-				AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
+			} else if (rc().feature.objs.containsKey(Obj.DAYMAR)) {
+				AttMap topmap = rc().feature.objs.get(Obj.DAYMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
 					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BuoyDeltas.get(shape));
 				}
@@ -505,9 +504,9 @@ public class Rules {
 	}
 	
 	private static void bridges() {
-		if (Renderer.zoom >= 16) {
+		if (rc().zoom >= 16) {
 			double verclr, verccl, vercop, horclr;
-			AttMap atts = feature.objs.get(Obj.BRIDGE).get(0);
+			AttMap atts = rc().feature.objs.get(Obj.BRIDGE).get(0);
 			String vstr = "";
 			String hstr = "";
 			if (atts != null) {
@@ -544,11 +543,11 @@ public class Rules {
 	}
 	
 	private static void cables() {
-		if ((Renderer.zoom >= 16) && (feature.geom.length < 2)) {
-			if (feature.type == Obj.CBLSUB) {
+		if ((rc().zoom >= 16) && (rc().feature.geom.length < 2)) {
+			if (rc().feature.type == Obj.CBLSUB) {
 				Renderer.lineSymbols(Areas.Cable, 0.0, null, null, 0, Symbols.Mline);
-			} else if (feature.type == Obj.CBLOHD) {
-				AttMap atts = feature.objs.get(Obj.CBLOHD).get(0);
+			} else if (rc().feature.type == Obj.CBLOHD) {
+				AttMap atts = rc().feature.objs.get(Obj.CBLOHD).get(0);
 				if ((atts != null) && (atts.containsKey(Att.CATCBL)) && (atts.get(Att.CATCBL).val == CatCBL.CBL_POWR)) {
 					Renderer.lineSymbols(Areas.CableDash, 0, Areas.CableDot, Areas.CableFlash, 2, Color.black);
 				} else {
@@ -566,32 +565,32 @@ public class Rules {
 	}
 	
 	private static void callpoint() {
-		if (Renderer.zoom >= 14) {
+		if (rc().zoom >= 14) {
 			Symbol symb = Harbours.CallPoint2;
-			TrfTRF trf = (TrfTRF) getAttEnum(feature.type, Att.TRAFIC);
+			TrfTRF trf = (TrfTRF) getAttEnum(rc().feature.type, Att.TRAFIC);
 			if (trf != TrfTRF.TRF_TWOW) {
 				symb = Harbours.CallPoint1;
 			}
 			Double orient = 0.0;
-			if ((orient = (Double) getAttVal(feature.type, Att.ORIENT)) == null) {
+			if ((orient = (Double) getAttVal(rc().feature.type, Att.ORIENT)) == null) {
 				orient = 0.0;
 			}
 			Renderer.symbol(symb, new Delta(Handle.CC, AffineTransform.getRotateInstance(Math.toRadians(orient))));
 			String chn;
-			if (!(chn = getAttStr(feature.type, Att.COMCHA)).isEmpty()) {
+			if (!(chn = getAttStr(rc().feature.type, Att.COMCHA)).isEmpty()) {
 				Renderer.labelText(("Ch." + chn), new Font("Arial", Font.PLAIN, 50), Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,50)));
 			}
 		}
 	}
 	
 	private static void distances() {
-		if (Renderer.zoom >= 14) {
+		if (rc().zoom >= 14) {
 			if (!testAttribute(Obj.DISMAR, Att.CATDIS, CatDIS.DIS_NONI)) {
 				Renderer.symbol(Harbours.DistanceI);
 			} else {
 				Renderer.symbol(Harbours.DistanceU);
 			}
-			if (Renderer.zoom >= 15) {
+			if (rc().zoom >= 15) {
 				AttMap atts = getAtts(Obj.DISMAR, 0);
 				if ((atts != null) && (atts.containsKey(Att.WTWDIS))) {
 					Double dist = (Double) atts.get(Att.WTWDIS).val;
@@ -629,27 +628,27 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void floats() {
-		if (Renderer.zoom >= 12) {
-			switch (feature.type) {
+		if (rc().zoom >= 12) {
+			switch (rc().feature.type) {
 			case LITVES:
-				Renderer.symbol(Buoys.Super, getScheme(feature.type));
+				Renderer.symbol(Buoys.Super, getScheme(rc().feature.type));
 				break;
 			case LITFLT:
-				Renderer.symbol(Buoys.Float, getScheme(feature.type));
+				Renderer.symbol(Buoys.Float, getScheme(rc().feature.type));
 				break;
 			case BOYINB:
-				Renderer.symbol(Buoys.Super, getScheme(feature.type));
+				Renderer.symbol(Buoys.Super, getScheme(rc().feature.type));
 				break;
 			default:
 				break;
 			}
-			if (feature.objs.containsKey(Obj.TOPMAR)) {
-				AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
+			if (rc().feature.objs.containsKey(Obj.TOPMAR)) {
+				AttMap topmap = rc().feature.objs.get(Obj.TOPMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
 					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.FloatDelta);
 				}
-			} else if (feature.objs.containsKey(Obj.DAYMAR)) {
-				AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
+			} else if (rc().feature.objs.containsKey(Obj.DAYMAR)) {
+				AttMap topmap = rc().feature.objs.get(Obj.DAYMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
 					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.FloatDelta);
 				}
@@ -660,7 +659,7 @@ public class Rules {
 	}
 	
 	private static void gauges() {
-		if (Renderer.zoom >= 14) {
+		if (rc().zoom >= 14) {
 			Renderer.symbol(Harbours.TideGauge);
 			addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(20, -50)));
 			Signals.addSignals();
@@ -670,11 +669,11 @@ public class Rules {
 	@SuppressWarnings("unchecked")
 	private static void harbours() {
 		String name = getName();
-		switch (feature.type) {
+		switch (rc().feature.type) {
 		case ACHBRT:
-			if (Renderer.zoom >= 14) {
+			if (rc().zoom >= 14) {
 				Renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
-				if (Renderer.zoom >= 15) {
+				if (rc().zoom >= 15) {
 					Renderer.labelText(name == null ? "" : name, new Font("Arial", Font.PLAIN, 30), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white, new Delta(Handle.BC));
 				}
 			}
@@ -690,8 +689,8 @@ public class Rules {
 			}
 			break;
 		case ACHARE:
-			if (Renderer.zoom >= 12) {
-				if (feature.geom.prim != Pflag.AREA) {
+			if (rc().zoom >= 12) {
+				if (rc().feature.geom.prim != Pflag.AREA) {
 					Renderer.symbol(Harbours.Anchorage, new Scheme(Color.black));
 				} else {
 					Renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
@@ -699,7 +698,7 @@ public class Rules {
 				}
 				addName(15, new Font("Arial", Font.BOLD, 60), Symbols.Mline, new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, 0)));
 				ArrayList<StsSTS> sts = (ArrayList<StsSTS>) getAttList(Obj.ACHARE, Att.STATUS);
-				if ((Renderer.zoom >= 15) && (sts.contains(StsSTS.STS_RESV))) {
+				if ((rc().zoom >= 15) && (sts.contains(StsSTS.STS_RESV))) {
 					Renderer.labelText("Reserved", new Font("Arial", Font.PLAIN, 50), Symbols.Mline, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0, 60)));
 				}
 				ArrayList<CatACH> cats = (ArrayList<CatACH>) getAttList(Obj.ACHARE, Att.CATACH);
@@ -736,19 +735,19 @@ public class Rules {
 			}
 			break;
 		case BERTHS:
-			if (Renderer.zoom >= 14) {
+			if (rc().zoom >= 14) {
 				Renderer.lineVector(new LineStyle(Symbols.Mline, 6, new float[] { 20, 20 }));
 				Renderer.labelText(name == null ? " " : name, new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white);
 			}
 			break;
 		case BUISGL:
-			if (Renderer.zoom >= 16) {
+			if (rc().zoom >= 16) {
 				ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 				ArrayList<FncFNC> fncs = (ArrayList<FncFNC>) getAttList(Obj.BUISGL, Att.FUNCTN);
 				for (FncFNC fnc : fncs) {
 					symbols.add(Landmarks.Funcs.get(fnc));
 				}
-				if (feature.objs.containsKey(Obj.SMCFAC)) {
+				if (rc().feature.objs.containsKey(Obj.SMCFAC)) {
 					ArrayList<CatSCF> scfs = (ArrayList<CatSCF>) getAttList(Obj.SMCFAC, Att.CATSCF);
 					for (CatSCF scf : scfs) {
 						symbols.add(Facilities.Cats.get(scf));
@@ -758,7 +757,7 @@ public class Rules {
 			}
 			break;
 		case HRBFAC:
-			if (Renderer.zoom >= 12) {
+			if (rc().zoom >= 12) {
 				ArrayList<CatHAF> cathaf = (ArrayList<CatHAF>) getAttList(Obj.HRBFAC, Att.CATHAF);
 				if (cathaf.size() == 1) {
 					switch (cathaf.get(0)) {
@@ -787,7 +786,7 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void highways() {
-		switch (feature.type) {
+		switch (rc().feature.type) {
 		case ROADWY:
 			ArrayList<CatROD> cat = (ArrayList<CatROD>) (getAttList(Obj.ROADWY, Att.CATROD));
 			if (cat.size() > 0) {
@@ -818,20 +817,20 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void landmarks() {
-		if (Renderer.zoom >= 12) {
-			ArrayList<CatLMK> cats = (ArrayList<CatLMK>) getAttList(feature.type, Att.CATLMK);
+		if (rc().zoom >= 12) {
+			ArrayList<CatLMK> cats = (ArrayList<CatLMK>) getAttList(rc().feature.type, Att.CATLMK);
 			Symbol catSym = Landmarks.Shapes.get(cats.get(0));
-			ArrayList<FncFNC> fncs = (ArrayList<FncFNC>) getAttList(feature.type, Att.FUNCTN);
+			ArrayList<FncFNC> fncs = (ArrayList<FncFNC>) getAttList(rc().feature.type, Att.FUNCTN);
 			Symbol fncSym = Landmarks.Funcs.get(fncs.get(0));
 			if ((fncs.get(0) == FncFNC.FNC_CHCH) && (cats.get(0) == CatLMK.LMK_TOWR))
 				catSym = Landmarks.ChurchTower;
-			if ((cats.get(0) == CatLMK.LMK_UNKN) && (fncs.get(0) == FncFNC.FNC_UNKN) && (feature.objs.get(Obj.LIGHTS) != null))
+			if ((cats.get(0) == CatLMK.LMK_UNKN) && (fncs.get(0) == FncFNC.FNC_UNKN) && (rc().feature.objs.get(Obj.LIGHTS) != null))
 				catSym = Beacons.LightMajor;
 			if (cats.get(0) == CatLMK.LMK_RADR)
 				fncSym = Landmarks.RadioTV;
 			Renderer.symbol(catSym);
 			Renderer.symbol(fncSym);
-			if (Renderer.zoom >= 15)
+			if (rc().zoom >= 15)
 				addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(60, -50)));
 			Signals.addSignals();
 		}
@@ -839,7 +838,7 @@ public class Rules {
 	
 	@SuppressWarnings("unchecked")
 	private static void lights() {
-		switch (feature.type) {
+		switch (rc().feature.type) {
 		case LITMAJ:
 			Renderer.symbol(Beacons.LightMajor);
 			break;
@@ -848,7 +847,7 @@ public class Rules {
 			Renderer.symbol(Beacons.LightMinor);
 			break;
 		case PILPNT:
-			if (feature.objs.containsKey(Obj.LIGHTS))
+			if (rc().feature.objs.containsKey(Obj.LIGHTS))
 				Renderer.symbol(Beacons.LightMinor);
 			else
 				Renderer.symbol(Harbours.Post);
@@ -856,13 +855,13 @@ public class Rules {
 		default:
 			break;
 		}
-		if (feature.objs.containsKey(Obj.TOPMAR)) {
-			AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
+		if (rc().feature.objs.containsKey(Obj.TOPMAR)) {
+			AttMap topmap = rc().feature.objs.get(Obj.TOPMAR).get(0);
 			if (topmap.containsKey(Att.TOPSHP)) {
 				Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.LightDelta);
 			}
-		} else	if (feature.objs.containsKey(Obj.DAYMAR)) {
-			AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
+		} else	if (rc().feature.objs.containsKey(Obj.DAYMAR)) {
+			AttMap topmap = rc().feature.objs.get(Obj.DAYMAR).get(0);
 			if (topmap.containsKey(Att.TOPSHP)) {
 				Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.LightDelta);
 			}
@@ -872,7 +871,7 @@ public class Rules {
 
 	@SuppressWarnings("unchecked")
 	private static void marinas() {
-		if (Renderer.zoom >= 16) {
+		if (rc().zoom >= 16) {
 			ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 			ArrayList<CatSCF> scfs = (ArrayList<CatSCF>) getAttList(Obj.SMCFAC, Att.CATSCF);
 			for (CatSCF scf : scfs) {
@@ -883,8 +882,8 @@ public class Rules {
 	}
 	
 	private static void moorings() {
-		if (Renderer.zoom >= 14) {
-			switch ((CatMOR) getAttEnum(feature.type, Att.CATMOR)) {
+		if (rc().zoom >= 14) {
+			switch ((CatMOR) getAttEnum(rc().feature.type, Att.CATMOR)) {
 			case MOR_DLPN:
 				Renderer.symbol(Harbours.Dolphin);
 				break;
@@ -896,11 +895,11 @@ public class Rules {
 				Renderer.symbol(Harbours.Bollard);
 				break;
 			case MOR_BUOY:
-				BoySHP shape = (BoySHP) getAttEnum(feature.type, Att.BOYSHP);
+				BoySHP shape = (BoySHP) getAttEnum(rc().feature.type, Att.BOYSHP);
 				if (shape == BoySHP.BOY_UNKN) {
 					shape = BoySHP.BOY_SPHR;
 				}
-				Renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
+				Renderer.symbol(Buoys.Shapes.get(shape), getScheme(rc().feature.type));
 				Renderer.symbol(Topmarks.TopMooring, Topmarks.BuoyDeltas.get(shape));
 				break;
 			default:
@@ -911,9 +910,9 @@ public class Rules {
 	}
 
 	private static void notices() {
-		if (Renderer.zoom >= 14) {
+		if (rc().zoom >= 14) {
 			double dx = 0.0, dy = 0.0;
-			switch (feature.type) {
+			switch (rc().feature.type) {
 			case BCNCAR:
 			case BCNISD:
 			case BCNLAT:
@@ -929,9 +928,9 @@ public class Rules {
 			}
 			MarSYS sys = MarSYS.SYS_CEVN;
 //			BnkWTW bnk = BnkWTW.BWW_UNKN;
-			AttVal<?> att = feature.atts.get(Att.MARSYS);
+			AttVal<?> att = rc().feature.atts.get(Att.MARSYS);
 			if (att != null) sys = (MarSYS)att.val;
-			ObjTab objs = feature.objs.get(Obj.NOTMRK);
+			ObjTab objs = rc().feature.objs.get(Obj.NOTMRK);
 			int n = objs.size();
 			if (n > 5) {
 				Renderer.symbol(Notices.Notice, new Delta(Handle.CC, AffineTransform.getTranslateInstance(dx, dy)));
@@ -977,19 +976,19 @@ public class Rules {
 	}
 
 	private static void obstructions() {
-		if ((Renderer.zoom >= 12) && (feature.type == Obj.OBSTRN)) {
-			switch ((CatOBS) getAttEnum(feature.type, Att.CATOBS)) {
+		if ((rc().zoom >= 12) && (rc().feature.type == Obj.OBSTRN)) {
+			switch ((CatOBS) getAttEnum(rc().feature.type, Att.CATOBS)) {
 			case OBS_BOOM:
 				Renderer.lineVector(new LineStyle(Color.black, 5, new float[] { 20, 20 }, null));
-				if (Renderer.zoom >= 15) {
+				if (rc().zoom >= 15) {
 					Renderer.lineText("Boom", new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
 				}
 			default:
 				break;
 			}
 		}
-		if ((Renderer.zoom >= 14) && (feature.type == Obj.UWTROC)) {
-			switch ((WatLEV) getAttEnum(feature.type, Att.WATLEV)) {
+		if ((rc().zoom >= 14) && (rc().feature.type == Obj.UWTROC)) {
+			switch ((WatLEV) getAttEnum(rc().feature.type, Att.WATLEV)) {
 			case LEV_CVRS:
 				Renderer.symbol(Areas.RockC);
 				break;
@@ -1005,12 +1004,12 @@ public class Rules {
 	}
 
 	private static void pipelines() {
-		if ((Renderer.zoom >= 16) && (feature.geom.length < 2)) {
-			if (feature.type == Obj.PIPSOL) {
+		if ((rc().zoom >= 16) && (rc().feature.geom.length < 2)) {
+			if (rc().feature.type == Obj.PIPSOL) {
 				Renderer.lineSymbols(Areas.Pipeline, 1.0, null, null, 0, Symbols.Mline);
-			} else if (feature.type == Obj.PIPOHD) {
+			} else if (rc().feature.type == Obj.PIPOHD) {
 				Renderer.lineVector(new LineStyle(Color.black, 8));
-				AttMap atts = feature.atts;
+				AttMap atts = rc().feature.atts;
 				double verclr = 0;
 				if (atts != null) {
 					if (atts.containsKey(Att.VERCLR)) {
@@ -1038,13 +1037,13 @@ public class Rules {
 	}
 
 	private static void ports() {
-		if (Renderer.zoom >= 14) {
-			if (feature.type == Obj.CRANES) {
-				if ((CatCRN) getAttEnum(feature.type, Att.CATCRN) == CatCRN.CRN_CONT)
+		if (rc().zoom >= 14) {
+			if (rc().feature.type == Obj.CRANES) {
+				if ((CatCRN) getAttEnum(rc().feature.type, Att.CATCRN) == CatCRN.CRN_CONT)
 					Renderer.symbol(Harbours.ContainerCrane);
 				else
 					Renderer.symbol(Harbours.PortCrane);
-			} else if (feature.type == Obj.HULKES) {
+			} else if (rc().feature.type == Obj.HULKES) {
 				Renderer.lineVector(new LineStyle(Color.black, 4, null, new Color(0xffe000)));
 				addName(15, new Font("Arial", Font.BOLD, 40));
 			}
@@ -1052,11 +1051,11 @@ public class Rules {
 	}
 
 	private static void separation() {
-		switch (feature.type) {
+		switch (rc().feature.type) {
 		case TSEZNE:
 		case TSSCRS:
 		case TSSRON:
-			if (Renderer.zoom <= 15)
+			if (rc().zoom <= 15)
 				Renderer.lineVector(new LineStyle(Symbols.Mtss));
 			else
 				Renderer.lineVector(new LineStyle(Symbols.Mtss, 20, null, null));
@@ -1081,34 +1080,34 @@ public class Rules {
 
 	@SuppressWarnings("unchecked")
 	private static void shoreline() {
-		CatSLC cat = (CatSLC) getAttEnum(feature.type, Att.CATSLC);
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.BASE)) {
+		CatSLC cat = (CatSLC) getAttEnum(rc().feature.type, Att.CATSLC);
+		if ((rc().context.ruleset() == RuleSet.ALL) || (rc().context.ruleset() == RuleSet.BASE)) {
 			if ((cat != CatSLC.SLC_SWAY) && (cat != CatSLC.SLC_TWAL)) {
-				if (Renderer.zoom >= 12) {
+				if (rc().zoom >= 12) {
 					Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Yland));
 				} else {
 					Renderer.lineVector(new LineStyle(Symbols.Yland));
 				}
 			}
 		}
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.SEAMARK)) {
-			if (Renderer.zoom >= 12) {
+		if ((rc().context.ruleset() == RuleSet.ALL) || (rc().context.ruleset() == RuleSet.SEAMARK)) {
+			if (rc().zoom >= 12) {
 				switch (cat) {
 				case SLC_TWAL:
-					WatLEV lev = (WatLEV) getAttEnum(feature.type, Att.WATLEV);
+					WatLEV lev = (WatLEV) getAttEnum(rc().feature.type, Att.WATLEV);
 					if (lev == WatLEV.LEV_CVRS) {
 						Renderer.lineVector(new LineStyle(Color.black, 10, new float[] { 40, 40 }, null));
-						if (Renderer.zoom >= 15)
+						if (rc().zoom >= 15)
 							Renderer.lineText("(covers)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 80);
 					} else {
 						Renderer.lineVector(new LineStyle(Color.black, 10, null, null));
 					}
-					if (Renderer.zoom >= 15)
+					if (rc().zoom >= 15)
 						Renderer.lineText("Training Wall", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, -30);
 					break;
 				case SLC_SWAY:
 					Renderer.lineVector(new LineStyle(Color.black, 2, null, new Color(0xffe000)));
-					if ((Renderer.zoom >= 16) && feature.objs.containsKey(Obj.SMCFAC)) {
+					if ((rc().zoom >= 16) && rc().feature.objs.containsKey(Obj.SMCFAC)) {
 						ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 						ArrayList<CatSCF> scfs = (ArrayList<CatSCF>) getAttList(Obj.SMCFAC, Att.CATSCF);
 						for (CatSCF scf : scfs) {
@@ -1126,9 +1125,9 @@ public class Rules {
 
 	@SuppressWarnings("unchecked")
 	private static void stations() {
-		if (Renderer.zoom >= 14) {
+		if (rc().zoom >= 14) {
 			String str = "";
-			switch (feature.type) {
+			switch (rc().feature.type) {
 			case SISTAT:
 				Renderer.symbol(Harbours.SignalStation);
 				str = "SS";
@@ -1209,7 +1208,7 @@ public class Rules {
 			case PILBOP:
 				Renderer.symbol(Harbours.Pilot);
 				addName(15, new Font("Arial", Font.BOLD, 40), Symbols.Msymb , new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, -40)));
-				CatPIL cat = (CatPIL) getAttEnum(feature.type, Att.CATPIL);
+				CatPIL cat = (CatPIL) getAttEnum(rc().feature.type, Att.CATPIL);
 				if (cat == CatPIL.PIL_HELI) {
 					Renderer.labelText("H", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, 0)));
 				}
@@ -1217,7 +1216,7 @@ public class Rules {
 			case CGUSTA:
 				Renderer.symbol(Harbours.SignalStation);
 				str = "CG";
-			  if (feature.objs.containsKey(Obj.RSCSTA)) Renderer.symbol(Harbours.Rescue, new Delta(Handle.CC, AffineTransform.getTranslateInstance(130, 0)));
+			  if (rc().feature.objs.containsKey(Obj.RSCSTA)) Renderer.symbol(Harbours.Rescue, new Delta(Handle.CC, AffineTransform.getTranslateInstance(130, 0)));
 				break;
 			case RSCSTA:
 				Renderer.symbol(Harbours.Rescue);
@@ -1225,7 +1224,7 @@ public class Rules {
 			default:
 				break;
 			}
-			if ((Renderer.zoom >= 15) && !str.isEmpty()) {
+			if ((rc().zoom >= 15) && !str.isEmpty()) {
 				Renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.LC, AffineTransform.getTranslateInstance(40, 0)));
 			}
 			Signals.addSignals();
@@ -1233,18 +1232,18 @@ public class Rules {
 	}
 
 	private static void transits() {
-	  if (Renderer.zoom >= 14) {
-	  	if (feature.type == Obj.RECTRC) Renderer.lineVector (new LineStyle(Color.black, 10, null, null));
-	  	else if (feature.type == Obj.NAVLNE) Renderer.lineVector (new LineStyle(Color.black, 10, new float[] { 25, 25 }, null));
+	  if (rc().zoom >= 14) {
+	  	if (rc().feature.type == Obj.RECTRC) Renderer.lineVector (new LineStyle(Color.black, 10, null, null));
+	  	else if (rc().feature.type == Obj.NAVLNE) Renderer.lineVector (new LineStyle(Color.black, 10, new float[] { 25, 25 }, null));
 	  }
-		if (Renderer.zoom >= 15) {
+		if (rc().zoom >= 15) {
 			String str = "";
 			String name = getName();
 			if (name != null)
 				str += name + " ";
 			Double ort;
-			if ((ort = (Double) getAttVal(feature.type, Att.ORIENT)) != null) {
-				str += df.format(ort) + "º";
+			if ((ort = (Double) getAttVal(rc().feature.type, Att.ORIENT)) != null) {
+				str += rc().df.format(ort) + "º";
 				if (!str.isEmpty())
 					Renderer.lineText(str, new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
 			}
@@ -1252,12 +1251,12 @@ public class Rules {
 	}
 
 	private static void waterways() {
-		Renderer.lineVector(new LineStyle(Symbols.Bwater, 20, (feature.geom.prim == Pflag.AREA) ? Symbols.Bwater : null));
+		Renderer.lineVector(new LineStyle(Symbols.Bwater, 20, (rc().feature.geom.prim == Pflag.AREA) ? Symbols.Bwater : null));
 	}
 
 	private static void wrecks() {
-		if (Renderer.zoom >= 14) {
-			switch ((CatWRK) getAttEnum(feature.type, Att.CATWRK)) {
+		if (rc().zoom >= 14) {
+			switch ((CatWRK) getAttEnum(rc().feature.type, Att.CATWRK)) {
 			case WRK_DNGR:
 			case WRK_MSTS:
 				Renderer.symbol(Areas.WreckD);
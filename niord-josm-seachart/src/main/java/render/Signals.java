@@ -12,7 +12,6 @@ package render;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.geom.*;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.EnumMap;
 
@@ -97,26 +96,28 @@ public class Signals {
 		fogSignals.put(CatFOG.FOG_HORN, "Horn");
 	}
 
-	static final DecimalFormat df = new DecimalFormat("#.#");
+	static RenderContext rc() {
+		return RenderContext.current();
+	}
 	
 	public static void addSignals() {
-	  if (Rules.feature.objs.containsKey(Obj.RADRFL)) reflectors();
-	  if (Rules.feature.objs.containsKey(Obj.FOGSIG)) fogSignals();
-	  if (Rules.feature.objs.containsKey(Obj.RTPBCN)) radarStations();
-	  if (Rules.feature.objs.containsKey(Obj.RADSTA)) radarStations();
-	  if (Rules.feature.objs.containsKey(Obj.RDOSTA)) radioStations();
-	  if (Rules.feature.objs.containsKey(Obj.LIGHTS)) lights();
+	  if (rc().feature.objs.containsKey(Obj.RADRFL)) reflectors();
+	  if (rc().feature.objs.containsKey(Obj.FOGSIG)) fogSignals();
+	  if (rc().feature.objs.containsKey(Obj.RTPBCN)) radarStations();
+	  if (rc().feature.objs.containsKey(Obj.RADSTA)) radarStations();
+	  if (rc().feature.objs.containsKey(Obj.RDOSTA)) radioStations();
+	  if (rc().feature.objs.containsKey(Obj.LIGHTS)) lights();
 	}
 
 	public static void reflectors() {
-		if (Renderer.zoom >= 14) {
-			switch (Rules.feature.type) {
+		if (rc().zoom >= 14) {
+			switch (rc().feature.type) {
 			case BCNLAT:
 			case BCNCAR:
 			case BCNISD:
 			case BCNSAW:
 			case BCNSPP:
-				if ((Rules.feature.objs.containsKey(Obj.TOPMAR)) || (Rules.feature.objs.containsKey(Obj.DAYMAR))) {
+				if ((rc().feature.objs.containsKey(Obj.TOPMAR)) || (rc().feature.objs.containsKey(Obj.DAYMAR))) {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -140)));
 				} else {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -80)));
@@ -125,7 +126,7 @@ public class Signals {
 			case LITFLT:
 			case LITVES:
 			case BOYINB:
-				if ((Rules.feature.objs.containsKey(Obj.TOPMAR)) || (Rules.feature.objs.containsKey(Obj.DAYMAR))) {
+				if ((rc().feature.objs.containsKey(Obj.TOPMAR)) || (rc().feature.objs.containsKey(Obj.DAYMAR))) {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -110)));
 				} else {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -60)));
@@ -133,7 +134,7 @@ public class Signals {
 				break;
 			case LITMAJ:
 			case LITMIN:
-				if ((Rules.feature.objs.containsKey(Obj.TOPMAR)) || (Rules.feature.objs.containsKey(Obj.DAYMAR))) {
+				if ((rc().feature.objs.containsKey(Obj.TOPMAR)) || (rc().feature.objs.containsKey(Obj.DAYMAR))) {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -90)));
 				} else {
 					Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -30)));
@@ -144,14 +145,14 @@ public class Signals {
 			case BOYISD:
 			case BOYSAW:
 			case BOYSPP:
-				if ((Rules.feature.objs.containsKey(Obj.TOPMAR)) || (Rules.feature.objs.containsKey(Obj.DAYMAR))) {
-					if (Rules.testAttribute(Rules.feature.type, Att.BOYSHP, BoySHP.BOY_PILR) || Rules.testAttribute(Rules.feature.type, Att.BOYSHP, BoySHP.BOY_SPAR)) {
+				if ((rc().feature.objs.containsKey(Obj.TOPMAR)) || (rc().feature.objs.containsKey(Obj.DAYMAR))) {
+					if (Rules.testAttribute(rc().feature.type, Att.BOYSHP, BoySHP.BOY_PILR) || Rules.testAttribute(rc().feature.type, Att.BOYSHP, BoySHP.BOY_SPAR)) {
 						Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(50, -160)));
 					} else {
 						Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(25, -80)));
 					}
 				} else {
-					if (Rules.testAttribute(Rules.feature.type, Att.BOYSHP, BoySHP.BOY_PILR) || Rules.testAttribute(Rules.feature.type, Att.BOYSHP, BoySHP.BOY_SPAR)) {
+					if (Rules.testAttribute(rc().feature.type, Att.BOYSHP, BoySHP.BOY_PILR) || Rules.testAttribute(rc().feature.type, Att.BOYSHP, BoySHP.BOY_SPAR)) {
 						Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(30, -100)));
 					} else {
 						Renderer.symbol(Topmarks.RadarReflector, new Delta(Handle.BC, AffineTransform.getTranslateInstance(10, -50)));
@@ -165,10 +166,10 @@ public class Signals {
 	}
 	
 	public static void fogSignals() {
-		if (Renderer.zoom >= 11)
+		if (rc().zoom >= 11)
 			Renderer.symbol(Beacons.FogSignal);
-		if (Renderer.zoom >= 15) {
-			AttMap atts = Rules.feature.objs.get(Obj.FOGSIG).get(0);
+		if (rc().zoom >= 15) {
+			AttMap atts = rc().feature.objs.get(Obj.FOGSIG).get(0);
 			if (atts != null) {
 				String str = "";
 				if (atts.containsKey(Att.CATFOG)) {
@@ -180,10 +181,10 @@ public class Signals {
 					str += " ";
 				}
 				if (atts.containsKey(Att.SIGPER)) {
-					str += df.format(atts.get(Att.SIGPER).val) + "s";
+					str += rc().df.format(atts.get(Att.SIGPER).val) + "s";
 				}
 				if (atts.containsKey(Att.VALMXR)) {
-					str += df.format(atts.get(Att.VALMXR).val) + "M";
+					str += rc().df.format(atts.get(Att.VALMXR).val) + "M";
 				}
 				if (!str.isEmpty()) {
 					Renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.TR, AffineTransform.getTranslateInstance(-60, -30)));
@@ -193,9 +194,9 @@ public class Signals {
 	}
 
 	public static void radarStations() {
-		if (Renderer.zoom >= 11)
+		if (rc().zoom >= 11)
 			Renderer.symbol(Beacons.RadarStation);
-		if (Renderer.zoom >= 15) {
+		if (rc().zoom >= 15) {
 			String bstr = "";
 			CatRTB cat = (CatRTB) Rules.getAttEnum(Obj.RTPBCN, Att.CATRTB);
 			String wal = Rules.getAttStr(Obj.RTPBCN, Att.RADWAL);
@@ -242,7 +243,7 @@ public class Signals {
 	public static void radioStations() {
 		boolean vais = false;
 		String bstr = "";
-		if (Renderer.zoom >= 11) {
+		if (rc().zoom >= 11) {
 			ArrayList<CatROS> cats = (ArrayList<CatROS>) Rules.getAttList(Obj.RDOSTA, Att.CATROS);
 			for (CatROS ros : cats) {
 				switch (ros) {
@@ -348,7 +349,7 @@ public class Signals {
 				Renderer.symbol(Beacons.RadarStation);
 			}
 		}
-		if (Renderer.zoom >= 15) {
+		if (rc().zoom >= 15) {
 			if (vais) {
 				Renderer.labelText("V-AIS", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, 70)));
 			}
@@ -372,7 +373,7 @@ public class Signals {
 	public static void lights() {
 		Enum<ColCOL> col = null;
 		Enum<ColCOL> tcol = null;
-		ObjTab lights = Rules.feature.objs.get(Obj.LIGHTS);
+		ObjTab lights = rc().feature.objs.get(Obj.LIGHTS);
 		for (AttMap atts : lights.values()) {
 			if (atts.containsKey(Att.COLOUR)) {
 				ArrayList<Enum<ColCOL>> cols = (ArrayList<Enum<ColCOL>>) atts.get(Att.COLOUR).val;
@@ -490,12 +491,12 @@ public class Signals {
 							str += LightLetters.get(cols.get(1));
 					}
 					if (atts.containsKey(Att.SIGPER)) {
-						str += "." + df.format(atts.get(Att.SIGPER).val) + "s";
+						str += "." + rc().df.format(atts.get(Att.SIGPER).val) + "s";
 					}
 					if ((s1 <= 360) && (s2 <= 360) && (s1 != s2))
-						Renderer.lightSector(LightColours.get(col1), LightColours.get(col2), radius, s1, s2, dir, (Renderer.zoom >= 15) ? str : "");
+						Renderer.lightSector(LightColours.get(col1), LightColours.get(col2), radius, s1, s2, dir, (rc().zoom >= 15) ? str : "");
 				}
-			if (Renderer.zoom >= 15) {
+			if (rc().zoom >= 15) {
 				class LitSect {
 					boolean dir;
 					LitCHR chr;
@@ -613,18 +614,18 @@ public class Signals {
 					if ((tmp.per > 0) || (tmp.hgt > 0) || (colrng.get(0).rng > 0))
 						str += ".";
 					if (tmp.per > 0)
-						str += df.format(tmp.per) + "s";
+						str += rc().df.format(tmp.per) + "s";
 					if (tmp.hgt > 0)
-						str += df.format(tmp.hgt) + "m";
+						str += rc().df.format(tmp.hgt) + "m";
 					if (colrng.get(0).rng > 0)
-						str += df.format(colrng.get(0).rng) + ((colrng.size() > 1) ? ((colrng.size() > 2) ? ("-" + df.format(colrng.get(colrng.size() - 1).rng)) : ("/" + df.format(colrng.get(1).rng))) : "") + "M";
+						str += rc().df.format(colrng.get(0).rng) + ((colrng.size() > 1) ? ((colrng.size() > 2) ? ("-" + rc().df.format(colrng.get(colrng.size() - 1).rng)) : ("/" + rc().df.format(colrng.get(1).rng))) : "") + "M";
 					Renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.TL, AffineTransform.getTranslateInstance(60, y)));
 					y += 40;
 					str = "";
 				}
 			}
 		} else {
-			if (Renderer.zoom >= 15) {
+			if (rc().zoom >= 15) {
 				AttMap atts = lights.get(0);
 				ArrayList<CatLIT> cats = new ArrayList<>();
 				if (atts.containsKey(Att.CATLIT)) {
@@ -668,9 +669,9 @@ public class Signals {
 				str += (cats.contains(CatLIT.LIT_VERT)) ? "(vert)" : "";
 				str += (cats.contains(CatLIT.LIT_HORI)) ? "(hor)" : "";
 				str += (!str.isEmpty() && (atts.containsKey(Att.SIGPER) || atts.containsKey(Att.HEIGHT) || atts.containsKey(Att.VALMXR)) && !str.endsWith(")")) ? "." : "";
-				str += (atts.containsKey(Att.SIGPER)) ? df.format(atts.get(Att.SIGPER).val) + "s" : "";
-				str += (atts.containsKey(Att.HEIGHT)) ? df.format(atts.get(Att.HEIGHT).val) + "m" : "";
-				str += (atts.containsKey(Att.VALNMR)) ? df.format(atts.get(Att.VALNMR).val) + "M" : "";
+				str += (atts.containsKey(Att.SIGPER)) ? rc().df.format(atts.get(Att.SIGPER).val) + "s" : "";
+				str += (atts.containsKey(Att.HEIGHT)) ? rc().df.format(atts.get(Att.HEIGHT).val) + "m" : "";
+				str += (atts.containsKey(Att.VALNMR)) ? rc().df.format(atts.get(Att.VALNMR).val) + "M" : "";
 				str += (cats.contains(CatLIT.LIT_FRNT)) ? "(Front)" : "";
 				str += (cats.contains(CatLIT.LIT_REAR)) ? "(Rear)" : "";
 				str += (cats.contains(CatLIT.LIT_UPPR)) ? "(Upper)" : "";
@@ -0,0 +1,146 @@
+/*
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * For a copy of the GNU General Public License, see <http://www.gnu.org/licenses/>.
+ */
+
+package render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import s57.S57map;
+import s57.S57map.Feature;
+import s57.S57map.Snode;
+
+/**
+ * Tests that the icons of the examples.xml file render identically when rendered concurrently
+ */
+public class RendererTest {
+
+	static final int THREADS = 8;
+	static final int RENDERS_PER_THREAD = 25;
+
+	@Test
+	public void testConcurrentRendering() throws Exception {
+		List<Icon> icons = loadIcons();
+		assertFalse(icons.isEmpty());
+
+		// Render the icons single-threaded as the reference
+		List<Integer> expected = new ArrayList<>();
+		for (Icon icon : icons) {
+			expected.add(icon.render());
+		}
+
+		// Render the icons from several threads, each starting with a different icon
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int offset = t;
+				tasks.add(() -> {
+					for (int r = 0; r < RENDERS_PER_THREAD; r++) {
+						int i = (offset + r) % icons.size();
+						assertEquals("Pixel hash of " + icons.get(i).file, expected.get(i), (Integer) icons.get(i).render());
+					}
+					return null;
+				});
+			}
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** Loads the icons of the examples.xml file **/
+	private List<Icon> loadIcons() throws Exception {
+		List<Icon> icons = new ArrayList<>();
+		try (InputStream in = getClass().getResourceAsStream("/examples.xml")) {
+			NodeList iconElements = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in)
+					.getElementsByTagName("icon");
+			for (int i = 0; i < iconElements.getLength(); i++) {
+				Element e = (Element) iconElements.item(i);
+				Icon icon = new Icon();
+				icon.file = e.getAttribute("file");
+				icon.w = Integer.parseInt(e.getAttribute("width"));
+				icon.h = Integer.parseInt(e.getAttribute("height"));
+				icon.x = e.hasAttribute("x") ? Integer.parseInt(e.getAttribute("x")) : icon.w / 2;
+				icon.y = e.hasAttribute("y") ? Integer.parseInt(e.getAttribute("y")) : icon.h / 2;
+				icon.s = Double.parseDouble(e.getAttribute("scale"));
+				NodeList tags = e.getElementsByTagName("tag");
+				for (int t = 0; t < tags.getLength(); t++) {
+					Element tag = (Element) tags.item(t);
+					icon.tags.add(new String[] { tag.getAttribute("k"), tag.getAttribute("v") });
+				}
+				icons.add(icon);
+			}
+		}
+		return icons;
+	}
+
+	/** An icon of the examples.xml file **/
+	static class Icon implements ChartContext {
+		String file;
+		int w, h, x, y;
+		double s;
+		List<String[]> tags = new ArrayList<>();
+
+		/** Renders the icon as a PNG image and returns the hash of the pixels **/
+		int render() {
+			S57map map = new S57map(true);
+			map.addNode(0, 0, 0);
+			tags.forEach(t -> map.addTag(t[0], t[1]));
+			map.tagsDone(0);
+
+			BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2 = img.createGraphics();
+			Renderer.reRender(g2, new Rectangle(x, y, w, h), 16, s / Renderer.symbolScale[16], map, this);
+			g2.dispose();
+			return Arrays.hashCode(img.getRGB(0, 0, w, h, null, 0, w));
+		}
+
+		public Point2D getPoint(Snode coord) {
+			return new Point2D.Double(x, y);
+		}
+
+		public double mile(Feature feature) {
+			return Math.min(w, h);
+		}
+
+		public boolean clip() {
+			return false;
+		}
+
+		public Color background(S57map map) {
+			return new Color(0, true);
+		}
+
+		public RuleSet ruleset() {
+			return RuleSet.SEAMARK;
+		}
+	}
+}
@@ -19,6 +19,8 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.message.MessageSearchParams;
 import org.slf4j.Logger;
 
 import javax.inject.Inject;
@@ -30,15 +32,23 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * A public REST API for accessing messages as S-124 GML.
@@ -113,6 +123,72 @@ public class S124RestService {
     }
 
 
+    /**
+     * Returns an S-124 GML dataset of the published navigational warnings matching the filters
+     */
+    @ApiOperation(
+            value = "Returns S-124 GML dataset of the published navigational warnings matching the filters." +
+                    "NB: Only use this service for test purposes, not for production.",
+            response = String.class,
+            tags = {"S-124"}
+    )
+    @GET
+    @Path("/messages")
+    @Produces({"application/gml+xml;charset=UTF-8"})
+    public Response s124Messages(
+            @ApiParam(value = "Two-letter ISO 639-1 language code", example = "en")
+            @QueryParam("lang") @DefaultValue("en") String language,
+
+            @ApiParam(value = "The IDs of the domains to select messages from", example = "niord-client-nw")
+            @QueryParam("domain") Set<String> domainIds,
+
+            @ApiParam(value = "The IDs of the areas to select messages from", example = "urn:mrn:iho:country:dk")
+            @QueryParam("areaId") Set<String> areaIds,
+
+            @ApiParam(value = "Bounding box of the messages, as minLon,minLat,maxLon,maxLat", example = "7,54,13,58")
+            @QueryParam("bbox") String bbox
+
+    ) throws Exception {
+
+        double[] bounds = null;
+        if (StringUtils.isNotBlank(bbox)) {
+            try {
+                bounds = Arrays.stream(bbox.split(","))
+                        .mapToDouble(v -> Double.valueOf(v.trim()))
+                        .toArray();
+            } catch (NumberFormatException ignored) {
+            }
+            if (bounds == null || bounds.length != 4) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .type(MediaType.TEXT_HTML_TYPE)
+                        .entity("Invalid bbox: " + bbox)
+                        .build();
+            }
+        }
+
+        MessageSearchParams params = s124Service.datasetSearchParams(domainIds, areaIds, bounds);
+
+        double[] datasetBounds = bounds;
+        StreamingOutput stream = os -> {
+            long t0 = System.currentTimeMillis();
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                s124Service.generateGML(params, language, datasetBounds, out);
+                log.info("Generated GML dataset for messages in " + (System.currentTimeMillis() - t0) + " ms");
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Error generating S-124 GML dataset: " + e);
+                throw new IOException("Error generating S-124 GML dataset", e);
+            }
+        };
+
+        return Response.ok(stream)
+                .type("application/gml+xml;charset=UTF-8")
+                .build();
+    }
+
+
     /** Arghh, for some insane reason, this function does not work properly :-( **/
     public static String prettyPrint(String input) {
         try {
@@ -18,22 +18,37 @@ package org.niord.s124;
 
 import freemarker.cache.ClassTemplateLoader;
 import freemarker.template.Configuration;
-import freemarker.template.Template;
 import org.niord.core.NiordApp;
+import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainService;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.core.message.MessageSeries;
 import org.niord.core.message.MessageService;
+import org.niord.core.message.Reference;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.model.message.MainType;
 import org.niord.model.message.ReferenceVo;
+import org.niord.model.message.Status;
 
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 /**
@@ -50,12 +65,30 @@ import java.util.Map;
 @Stateless
 public class S124Service {
 
+    /** The number of messages to load in each transaction when generating a dataset of messages **/
+    static final int S124_BATCH_SIZE = 100;
+
+    /**
+     * The Freemarker configuration is thread-safe and caches the compiled template,
+     * so a single configuration is shared by all service instances.
+     **/
+    static final Configuration TEMPLATE_CONFIG = new Configuration(Configuration.getVersion());
+    static {
+        TEMPLATE_CONFIG.setTemplateLoader(new ClassTemplateLoader(S124Service.class, "/templates/gml"));
+    }
+
     @Inject
     MessageService messageService;
 
+    @Inject
+    DomainService domainService;
+
     @Inject
     NiordApp app;
 
+    @Resource
+    SessionContext ctx;
+
     /**
      * Generates S-124 compliant GML for the message
      * @param messageId the message
@@ -78,13 +111,7 @@ public class S124Service {
         // Ensure we use a valid language
         language = app.getLanguage(language);
 
-        SystemMessageVo msg = message.toVo(
-                SystemMessageVo.class,
-                Message.MESSAGE_DETAILS_FILTER);
-        msg.sort(language);
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("msg", msg);
+        Map<String, Object> data = messageData(message, language, referencedMessages(Collections.singletonList(message)));
         data.put("language", language);
 
         double[] bbox = GeoJsonUtils.computeBBox(message.toGeoJson());
@@ -92,31 +119,181 @@ public class S124Service {
             data.put("bbox", bbox);
         }
 
-        data.put("references", referencedMessages(msg, language));
+        StringWriter result = new StringWriter();
+        TEMPLATE_CONFIG.getTemplate("generate-s124.ftl").process(data, result);
+        return result.toString();
+    }
 
-        Configuration cfg = new Configuration(Configuration.getVersion());
-        cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
 
-        StringWriter result = new StringWriter();
-        Template fmTemplate = cfg.getTemplate("generate-s124.ftl");
+    /**
+     * Returns the search parameters for the published navigational warnings of a dataset
+     *
+     * @param domainIds the optional domains of the messages
+     * @param areaIds the optional areas of the messages
+     * @param bbox the optional bounding box of the messages, as [minLon, minLat, maxLon, maxLat]
+     * @return the search parameters
+     */
+    public MessageSearchParams datasetSearchParams(Set<String> domainIds, Set<String> areaIds, double[] bbox) {
+        MessageSearchParams params = new MessageSearchParams()
+                .statuses(Collections.singleton(Status.PUBLISHED))
+                .mainTypes(Collections.singleton(MainType.NW))
+                .areaIds(areaIds);
 
+        // Restrict the messages by the message series and, if defined, the areas of the domains
+        List<Domain> domains = domainService.findByDomainIds(domainIds);
+        if (!domains.isEmpty()) {
+            params.getSeriesIds().addAll(domains.stream()
+                    .flatMap(d -> d.getMessageSeries().stream())
+                    .map(MessageSeries::getSeriesId)
+                    .collect(Collectors.toSet()));
+            if (domains.stream().noneMatch(d -> d.getAreas().isEmpty())) {
+                params.getAreaIds().addAll(domains.stream()
+                        .flatMap(d -> d.getAreas().stream())
+                        .map(a -> a.getId().toString())
+                        .collect(Collectors.toSet()));
+            }
+        }
 
-        fmTemplate.process(data, result);
-        return result.toString();
+        if (bbox != null) {
+            params.extent(bbox[1], bbox[0], bbox[3], bbox[2]);
+        }
+
+        params.checkSortByDomain(domains.isEmpty() ? null : domains.get(0));
+        params.maxSize(S124_BATCH_SIZE);
+        return params;
+    }
+
+
+    /**
+     * Generates an S-124 compliant GML dataset for the messages matching the search parameters,
+     * and writes it incrementally to the given writer.
+     * <p>
+     * The messages are loaded in batches, each batch in a separate transaction, whilst the
+     * template is processed. Un-numbered navigational warnings are not included.
+     *
+     * @param params the search parameters
+     * @param language the language
+     * @param bbox the optional bounding box of the dataset, as [minLon, minLat, maxLon, maxLat]
+     * @param out the writer to write the GML to
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void generateGML(MessageSearchParams params, String language, double[] bbox, Writer out) throws Exception {
+
+        // Ensure we use a valid language
+        String lang = app.getLanguage(language);
+        S124Service self = ctx.getBusinessObject(S124Service.class);
+
+        // Lazily loads the next batch of messages when the template iterates past the current batch
+        Iterator<Map<String, Object>> messages = new Iterator<Map<String, Object>>() {
+            Iterator<Map<String, Object>> batch = Collections.emptyIterator();
+            boolean lastBatch;
+
+            @Override
+            public boolean hasNext() {
+                while (!batch.hasNext() && !lastBatch) {
+                    S124Batch next = self.loadBatch(params, lang);
+                    params.seekAfter(next.lastUid);
+                    lastBatch = next.lastUid == null;
+                    batch = next.messages.iterator();
+                }
+                return batch.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.next();
+            }
+        };
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("messages", messages);
+        data.put("language", lang);
+        if (bbox != null) {
+            data.put("bbox", bbox);
+        }
+
+        TEMPLATE_CONFIG.getTemplate("generate-s124.ftl").process(data, out);
+        out.flush();
+    }
+
+
+    /**
+     * Loads the next batch of messages matching the search parameters as template data.
+     * The batch follows the message defined by the "seekAfter" search parameter.
+     *
+     * @param params the search parameters
+     * @param language the language
+     * @return the batch of messages
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public S124Batch loadBatch(MessageSearchParams params, String language) {
+        List<Message> page = messageService.search(params).getData();
+
+        // S-124 does not support un-numbered navigational warnings
+        List<Message> messages = page.stream()
+                .filter(m -> m.getNumber() != null)
+                .collect(Collectors.toList());
+
+        // Resolve the references of all messages in the batch up-front
+        Map<String, Message> references = referencedMessages(messages);
+
+        S124Batch batch = new S124Batch();
+        batch.messages = messages.stream()
+                .map(m -> messageData(m, language, references))
+                .collect(Collectors.toList());
+        batch.lastUid = page.size() < params.getMaxSize() ? null : page.get(page.size() - 1).getUid();
+        return batch;
+    }
+
+
+    /**
+     * Returns the template data for the message
+     * @param message the message
+     * @param language the language
+     * @param references the resolved referenced messages indexed by message id
+     * @return the template data for the message
+     */
+    private Map<String, Object> messageData(Message message, String language, Map<String, Message> references) {
+        SystemMessageVo msg = message.toVo(
+                SystemMessageVo.class,
+                Message.MESSAGE_DETAILS_FILTER);
+        msg.sort(language);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("msg", msg);
+        data.put("references", referencedMessages(msg, language, references));
+        return data;
+    }
+
+
+    /**
+     * Resolves the messages referenced by the given messages
+     * @param messages the messages
+     * @return the resolved referenced messages indexed by message id
+     */
+    private Map<String, Message> referencedMessages(List<Message> messages) {
+        return messageService.resolveMessages(messages.stream()
+                .flatMap(m -> m.getReferences().stream())
+                .map(Reference::getMessageId)
+                .collect(Collectors.toSet()));
     }
 
 
     /**
      * Returns resolved message references
      * @param message the message to return resolved message references for
+     * @param references the resolved referenced messages indexed by message id
      * @return the resolved message references
      */
-    private List<MessageReferenceVo> referencedMessages(SystemMessageVo message, String language) {
+    private List<MessageReferenceVo> referencedMessages(SystemMessageVo message, String language, Map<String, Message> references) {
         List<MessageReferenceVo> result = new ArrayList<>();
         if (message.getReferences() != null) {
             for (ReferenceVo ref : message.getReferences()) {
                 try {
-                    Message refMsg = messageService.resolveMessage(ref.getMessageId());
+                    Message refMsg = references.get(ref.getMessageId());
                     if (refMsg != null && refMsg.getMainType() == MainType.NW && refMsg.getNumber() != null) {
                         SystemMessageVo msg = refMsg.toVo(
                                 SystemMessageVo.class,
@@ -132,6 +309,15 @@ public class S124Service {
     }
 
 
+    /**
+     * A batch of messages loaded as template data
+     */
+    public static class S124Batch {
+        List<Map<String, Object>> messages;
+        String lastUid;
+    }
+
+
     /**
      * Utility class used for message references, including the referenced message
      */
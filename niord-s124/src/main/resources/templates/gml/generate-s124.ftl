@@ -1,10 +1,16 @@
 <?xml version="1.0" encoding="UTF-8"?>
 
 <#assign htmlToText = "org.niord.core.script.directive.HtmlToTextDirective"?new()>
-<#assign id='DK.' + msg.shortId!msg.id/>
-<#assign mrn='urn:mrn:iho:' + msg.mainType?lower_case + ':dk:' + (msg.shortId!msg.id)?lower_case/>
-<#assign geomId=0>
 <#setting time_zone="UTC">
+<#--
+    Generates an S-124 dataset for either a single message, defined by "msg" and "references",
+    or for multiple messages, defined by "messages", where each element defines "msg" and "references".
+-->
+<#if messages??>
+    <#assign dataSetId=dataSetId!'DK.S124'/>
+<#else>
+    <#assign dataSetId='DK.' + msg.shortId!msg.id/>
+</#if>
 
 <S124:DataSet xmlns:S124="http://www.iho.int/S124/gml/1.0"
               xsi:schemaLocation="http://www.iho.int/S124/gml/1.0 S124.xsd"
@@ -12,7 +18,7 @@
               xmlns:gml="http://www.opengis.net/gml/3.2"
               xmlns:S100="http://www.iho.int/s100gml/1.0"
               xmlns:xlink="http://www.w3.org/1999/xlink"
-              gml:id="${id}">
+              gml:id="${dataSetId}">
 
     <#if bbox??>
         <gml:boundedBy>
@@ -23,6 +29,23 @@
         </gml:boundedBy>
     </#if>
 
+    <#if messages??>
+        <#list messages as m>
+            <#assign msg=m.msg references=m.references/>
+            <@generateMessage></@generateMessage>
+        </#list>
+    <#else>
+        <@generateMessage></@generateMessage>
+    </#if>
+
+</S124:DataSet>
+
+
+<#macro generateMessage>
+    <#assign id='DK.' + msg.shortId!msg.id/>
+    <#assign mrn='urn:mrn:iho:' + msg.mainType?lower_case + ':dk:' + (msg.shortId!msg.id)?lower_case/>
+    <#assign geomId=0>
+
     <imember>
         <@generatePreamble msg=msg></@generatePreamble>
     </imember>
@@ -54,8 +77,7 @@
             </imember>
         </#list>
     </#if>
-
-</S124:DataSet>
+</#macro>
 
 
 <#function descForLang entity lang=language >
@@ -28,9 +28,12 @@ import org.niord.model.geojson.FeatureCollectionVo;
 
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertTrue;
+
 public class S124Test {
 
 
@@ -70,5 +73,31 @@ public class S124Test {
         System.out.printf(S124RestService.prettyPrint(result.toString()));
 
     }
-}
 
+
+    @Test
+    public void testGenerateS124Dataset() throws Exception {
+
+        String language = "en";
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        SystemMessageVo message = objectMapper.readValue(getClass().getResource("/message.json"), SystemMessageVo.class);
+
+        message.sort(language);
+
+        Map<String, Object> msgData = new HashMap<>();
+        msgData.put("msg", message);
+        msgData.put("references", new ArrayList<>());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("messages", Collections.singletonList(msgData).iterator());
+        data.put("language", language);
+
+        StringWriter result = new StringWriter();
+        S124Service.TEMPLATE_CONFIG.getTemplate("generate-s124.ftl").process(data, result);
+
+        String gml = S124RestService.prettyPrint(result.toString());
+        assertTrue(gml.contains("gml:id=\"DK.S124\""));
+        assertTrue(gml.contains("gml:id=\"PR.DK." + message.getShortId() + "\""));
+    }
+}
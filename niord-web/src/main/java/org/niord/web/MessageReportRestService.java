@@ -21,16 +21,22 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.security.annotation.SecurityDomain;
 import org.niord.core.NiordApp;
 import org.niord.core.batch.AbstractBatchableRestService;
+import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
 import org.niord.core.report.FmReport;
 import org.niord.core.report.FmReportService;
 import org.niord.core.script.FmTemplateService;
+import org.niord.core.script.FmTemplateService.FmTemplateBuilder;
 import org.niord.core.script.FmTemplateService.ProcessFormat;
+import org.niord.core.script.pdf.PdfRenderJob;
+import org.niord.core.script.pdf.PdfRenderService;
+import org.niord.core.script.pdf.vo.PdfRenderJobVo;
 import org.niord.core.report.vo.FmReportVo;
 import org.niord.core.message.MessagePrintParams;
 import org.niord.core.message.MessageSearchParams;
 import org.niord.core.message.MessageService;
 import org.niord.core.user.Roles;
+import org.niord.core.user.User;
 import org.niord.core.user.UserService;
 import org.niord.model.DataFilter;
 import org.niord.model.message.MessageVo;
@@ -101,6 +107,9 @@ public class MessageReportRestService extends AbstractBatchableRestService {
     @Inject
     FmTemplateService templateService;
 
+    @Inject
+    PdfRenderService pdfRenderService;
+
     /***************************************/
     /** PDF Reports                       **/
     /***************************************/
@@ -297,45 +306,16 @@ public class MessageReportRestService extends AbstractBatchableRestService {
     @NoCache
     public Response generatePdfForSearch(@Context HttpServletRequest request) throws Exception {
 
-        // Perform a search for at most 1000 messages
-        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
-        params.maxSize(1000).page(0);
-
         MessagePrintParams printParams = MessagePrintParams.instantiate(request);
 
-        // We prefer to get all language variants and then sort the result
-        String language = params.getLanguage();
-        params.language(null);
-        PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
-        result.getData().forEach(m -> m.sort(language));
-
-        // Get the UIDs of the messages that should start on a new page
-        Set<String> separatePageIds = messageService.getSeparatePageUids(
-                result.getData().stream().map(MessageVo::getId).collect(Collectors.toSet()));
-
         try {
-            FmReport report = fmReportService.getReport(printParams.getReport());
+            FmTemplateBuilder templateBuilder = newSearchReport(request, printParams);
 
             ProcessFormat format = printParams.getDebug() ? ProcessFormat.TEXT : ProcessFormat.PDF;
 
             StreamingOutput stream = os -> {
                 try {
-                    templateService.newFmTemplateBuilder()
-                            .templatePath(report.getTemplatePath())
-                            .data("executionMode", app.getExecutionMode())
-                            .data("messages", result.getData())
-                            .data("areaHeadings", params.sortByArea())
-                            .data("searchCriteria", result.getDescription())
-                            .data("pageSize", printParams.getPageSize())
-                            .data("pageOrientation", printParams.getPageOrientation())
-                            .data("mapThumbnails", printParams.getMapThumbnails())
-                            .data("separatePageIds", separatePageIds)
-                            .data("frontPage", true)
-                            .data(report.getProperties())  // Let report override settings
-                            .data(printParams.getParams()) // Custom user-defined params
-                            .dictionaryNames("web", "message", "pdf")
-                            .language(language)
-                            .process(format, os);
+                    templateBuilder.process(format, os);
                 } catch (Exception e) {
                     throw new WebApplicationException("Error generating PDF for messages", e);
                 }
@@ -354,4 +334,140 @@ public class MessageReportRestService extends AbstractBatchableRestService {
         }
     }
 
+
+    /**
+     * Submits a job for generating a PDF for the message search result asynchronously.
+     * Identical requests share the same job, and the rendered PDF is cached for a while.
+     *
+     * Poll the job status via "/report-job/{jobId}" and download the PDF via "/report-job/{jobId}.pdf"
+     *
+     * @return the PDF rendering job
+     */
+    @POST
+    @Path("/report-job")
+    @Produces("application/json;charset=UTF-8")
+    @NoCache
+    public PdfRenderJobVo submitPdfForSearch(@Context HttpServletRequest request) throws Exception {
+
+        MessagePrintParams printParams = MessagePrintParams.instantiate(request);
+
+        try {
+            return newSearchReport(request, printParams)
+                    .submitPdf(pdfJobOwner())
+                    .toVo();
+        } catch (Exception e) {
+            log.error("Error submitting PDF job for messages", e);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns the status of the PDF rendering job with the given ID.
+     * Only the user that submitted the job, in the same domain, may access the job.
+     *
+     * @param jobId the job ID
+     * @return the status of the PDF rendering job
+     */
+    @GET
+    @Path("/report-job/{jobId}")
+    @Produces("application/json;charset=UTF-8")
+    @NoCache
+    public PdfRenderJobVo getPdfJob(@PathParam("jobId") String jobId) {
+        PdfRenderJob job = pdfRenderService.getJob(jobId, pdfJobOwner());
+        if (job == null) {
+            throw new WebApplicationException(404);
+        }
+        return job.toVo();
+    }
+
+
+    /**
+     * Downloads the PDF of the PDF rendering job with the given ID.
+     * Returns status 202 (Accepted) along with the job status, if the PDF has not been rendered yet.
+     * Only the user that submitted the job, in the same domain, may access the job.
+     *
+     * @param jobId the job ID
+     * @return the rendered PDF
+     */
+    @GET
+    @Path("/report-job/{jobId}.pdf")
+    @NoCache
+    public Response downloadPdfJob(@PathParam("jobId") String jobId, @Context HttpServletRequest request) {
+        PdfRenderJob job = pdfRenderService.getJob(jobId, pdfJobOwner());
+        if (job == null) {
+            throw new WebApplicationException(404);
+        } else if (job.getStatus() == PdfRenderJob.Status.FAILED) {
+            throw new WebApplicationException("Error generating PDF: " + job.getError(), 500);
+        } else if (job.getStatus() != PdfRenderJob.Status.DONE) {
+            return Response.status(Response.Status.ACCEPTED)
+                    .type("application/json;charset=UTF-8")
+                    .entity(job.toVo())
+                    .build();
+        }
+
+        MessagePrintParams printParams = MessagePrintParams.instantiate(request);
+        return Response.ok(job.getFile().toFile())
+                .type("application/pdf")
+                .header("Content-Disposition", printParams.getFileNameHeader("messages"))
+                .build();
+    }
+
+
+    /**
+     * Returns the owner of PDF rendering jobs submitted by the current user in the current domain.
+     * The search result, and thus the PDF, depends on both the user and the domain.
+     *
+     * @return the owner of PDF rendering jobs submitted by the current user
+     */
+    private String pdfJobOwner() {
+        User user = userService.currentUser();
+        Domain domain = domainService.currentDomain();
+        return (user != null ? user.getUsername() : "")
+                + "|" + (domain != null ? domain.getDomainId() : "");
+    }
+
+
+    /**
+     * Searches for the messages and prepares the report template used for printing the search result
+     *
+     * @param request the servlet request
+     * @param printParams the print parameters
+     * @return the report template
+     */
+    private FmTemplateBuilder newSearchReport(HttpServletRequest request, MessagePrintParams printParams) throws Exception {
+
+        // Perform a search for at most 1000 messages
+        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
+        params.maxSize(1000).page(0);
+
+        // We prefer to get all language variants and then sort the result
+        String language = params.getLanguage();
+        params.language(null);
+        PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
+        result.getData().forEach(m -> m.sort(language));
+
+        // Get the UIDs of the messages that should start on a new page
+        Set<String> separatePageIds = messageService.getSeparatePageUids(
+                result.getData().stream().map(MessageVo::getId).collect(Collectors.toSet()));
+
+        FmReport report = fmReportService.getReport(printParams.getReport());
+
+        return templateService.newFmTemplateBuilder()
+                .templatePath(report.getTemplatePath())
+                .data("executionMode", app.getExecutionMode())
+                .data("messages", result.getData())
+                .data("areaHeadings", params.sortByArea())
+                .data("searchCriteria", result.getDescription())
+                .data("pageSize", printParams.getPageSize())
+                .data("pageOrientation", printParams.getPageOrientation())
+                .data("mapThumbnails", printParams.getMapThumbnails())
+                .data("separatePageIds", separatePageIds)
+                .data("frontPage", true)
+                .data(report.getProperties())  // Let report override settings
+                .data(printParams.getParams()) // Custom user-defined params
+                .dictionaryNames("web", "message", "pdf")
+                .language(language);
+    }
+
 }
@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import javax.inject.Inject;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -103,6 +104,58 @@ public abstract class AbstractApiService {
             Set<String> areaIds,
             Set<MainType> mainTypes,
             String wkt) throws Exception {
+        return searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, null);
+    }
+
+
+    /**
+     * Returns all published messages.
+     * Optionally, filter by a geometry defined by the WKT (well-known text) parameter.
+     * <p>
+     * If the "updatedSince" parameter is specified, only the public (published, cancelled or expired)
+     * messages updated since the given time are returned, which allows clients to synchronize incrementally.
+     */
+    public PagedSearchResultVo<Message> searchMessages(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Date updatedSince) throws Exception {
+
+        MessageSearchParams params = searchParams(
+                language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, updatedSince);
+        if (params == null) {
+            return new PagedSearchResultVo<>();
+        }
+
+        // Perform the search
+        long t0 = System.currentTimeMillis();
+        PagedSearchResultVo<Message> searchResult = messageService.search(params);
+        log.debug(String.format("Public search [%s] returns %d of %d messages in %d ms",
+                params.toString(), searchResult.getData().size(), searchResult.getTotal(), System.currentTimeMillis() - t0));
+
+        return searchResult;
+    }
+
+
+    /**
+     * Returns the message search parameters used for searching the published messages.
+     * See {@code searchMessages()} for a description of the parameters.
+     *
+     * @return the message search parameters, or null if the search cannot match any messages
+     */
+    public MessageSearchParams searchParams(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Date updatedSince) {
 
         Domain sortDomain = null;
 
@@ -191,11 +244,14 @@ public abstract class AbstractApiService {
 
         // If no publications or message series (and thus, no domains) have been specified, return nothing
         if (params.getTags().isEmpty() && params.getSeriesIds().isEmpty()) {
-            return new PagedSearchResultVo<>();
+            return null;
         }
 
         // Enforce allowed statuses
-        if (params.getTags().isEmpty()) {
+        if (updatedSince != null) {
+            params.updatedFrom(updatedSince)
+                    .statuses(new HashSet<>(Arrays.asList(Status.PUBLISHED, Status.CANCELLED, Status.EXPIRED)));
+        } else if (params.getTags().isEmpty()) {
              params.statuses(Collections.singleton(Status.PUBLISHED));
         } else {
             params.statuses(new HashSet<>(Arrays.asList(Status.PUBLISHED, Status.CANCELLED, Status.EXPIRED)));
@@ -204,13 +260,7 @@ public abstract class AbstractApiService {
         // Apply domain sort order
         params.checkSortByDomain(sortDomain);
 
-        // Perform the search
-        long t0 = System.currentTimeMillis();
-        PagedSearchResultVo<Message> searchResult = messageService.search(params);
-        log.debug(String.format("Public search [%s] returns %d of %d messages in %d ms",
-                params.toString(), searchResult.getData().size(), searchResult.getTotal(), System.currentTimeMillis() - t0));
-
-        return searchResult;
+        return params;
     }
 
 
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.api;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import org.niord.core.area.Area;
+import org.niord.core.category.Category;
+import org.niord.core.geojson.Feature;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageChangeEvent;
+import org.niord.core.message.MessageService;
+import org.niord.model.message.MainType;
+import org.niord.model.message.MessageVo;
+import org.niord.model.message.Status;
+import org.slf4j.Logger;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains in-memory snapshots of the published messages returned by the public API.
+ * <p>
+ * A snapshot contains the published messages of a set of domains in a given language, as value objects
+ * along with the data needed for filtering the messages by area, main type and geographical extent.
+ * Hence, public message searches for domains can be served without accessing the database.
+ * <p>
+ * Snapshots are built lazily by the callee. Concurrent requests for the same snapshot share a single build.
+ * <p>
+ * The freshness of a snapshot is based on the "updated" timestamp of the messages in the database, so that
+ * messages changed by any node of a cluster are detected: Every {@code CHANGE_CHECK_INTERVAL_MS}, and right
+ * after a message has been saved on this node, the messages updated since the snapshot was built are loaded.
+ * Updated messages are replaced in the snapshot, and withdrawn messages are removed from the snapshot.
+ * Only newly published messages, and changes affecting the sort order of a message, cause the snapshot
+ * to be re-built.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class ApiMessageSnapshotService {
+
+    /** Snapshots are re-built at least this often, to reflect changes to domains, areas, etc. **/
+    static final long SNAPSHOT_TTL_MS = 10 * 60 * 1000L;
+
+    /** Snapshots are checked for changed messages this often **/
+    static final long CHANGE_CHECK_INTERVAL_MS = 5 * 1000L;
+
+    /** Messages updated this long before the last check are re-checked, to allow for commit delays and clock skew **/
+    static final long CHANGE_CHECK_MARGIN_MS = 10 * 1000L;
+
+    /** If more messages than this have changed, the snapshot is re-built rather than updated **/
+    static final int MAX_INCREMENTAL_CHANGES = 100;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    MessageService messageService;
+
+    private final Map<String, MessageSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<MessageSnapshot>> builds = new ConcurrentHashMap<>();
+    private volatile long lastLocalChange;
+
+
+    /**
+     * Returns the snapshot of the published messages of the given domains in the given language.
+     * If no valid snapshot exists, the snapshot is built using the given builder.
+     *
+     * @param language the language
+     * @param domainIds the domains. If empty, the domains published by default
+     * @param externalize whether message links are rewritten to be absolute URLs
+     * @param builder the builder of the snapshot
+     * @param converter converts changed messages to snapshot messages
+     * @return the snapshot of published messages
+     */
+    public MessageSnapshot getSnapshot(
+            String language,
+            Set<String> domainIds,
+            boolean externalize,
+            Supplier<MessageSnapshot> builder,
+            Function<Message, SnapshotMessage> converter) {
+
+        String key = language + "|" + new TreeSet<>(domainIds) + "|" + externalize;
+
+        MessageSnapshot snapshot = snapshots.get(key);
+        if (snapshot != null && !snapshot.isExpired()) {
+            if (!needsChangeCheck(snapshot)) {
+                return snapshot;
+            }
+            MessageSnapshot updatedSnapshot = checkForChanges(snapshot, converter);
+            if (updatedSnapshot != null) {
+                if (updatedSnapshot != snapshot) {
+                    snapshots.replace(key, snapshot, updatedSnapshot);
+                }
+                return updatedSnapshot;
+            }
+        }
+
+        // If the snapshot is already being built by another request, wait for the result
+        CompletableFuture<MessageSnapshot> build = new CompletableFuture<>();
+        CompletableFuture<MessageSnapshot> pendingBuild = builds.putIfAbsent(key, build);
+        if (pendingBuild != null) {
+            try {
+                return pendingBuild.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // Messages updated during the build are picked up by the first change check
+            long t0 = System.currentTimeMillis();
+            snapshot = builder.get();
+            snapshot.changeMarker = t0;
+            snapshot.changesChecked = t0;
+            snapshots.put(key, snapshot);
+            build.complete(snapshot);
+
+            log.info("Built public message snapshot " + key + " with " + snapshot.getMessages().size()
+                    + " messages in " + (System.currentTimeMillis() - t0) + " ms");
+            return snapshot;
+
+        } catch (RuntimeException | Error e) {
+            build.completeExceptionally(e);
+            throw e;
+        } finally {
+            builds.remove(key, build);
+        }
+    }
+
+
+    /** Returns if the snapshot should be checked for changed messages **/
+    private boolean needsChangeCheck(MessageSnapshot snapshot) {
+        return lastLocalChange >= snapshot.changesChecked
+                || System.currentTimeMillis() - snapshot.changesChecked > CHANGE_CHECK_INTERVAL_MS;
+    }
+
+
+    /**
+     * Checks the snapshot for messages changed since the last check.
+     *
+     * @param snapshot the snapshot to check
+     * @param converter converts changed messages to snapshot messages
+     * @return the updated snapshot, or null if the snapshot must be re-built
+     */
+    private MessageSnapshot checkForChanges(MessageSnapshot snapshot, Function<Message, SnapshotMessage> converter) {
+        long t0 = System.currentTimeMillis();
+        snapshot.changesChecked = t0;
+
+        List<Message> changed = messageService.findUpdatedMessages(
+                new Date(snapshot.changeMarker - CHANGE_CHECK_MARGIN_MS),
+                MAX_INCREMENTAL_CHANGES + 1);
+        if (changed.size() > MAX_INCREMENTAL_CHANGES) {
+            return null;
+        }
+
+        MessageSnapshot updatedSnapshot = snapshot.update(changed, converter);
+        if (updatedSnapshot != null && updatedSnapshot != snapshot) {
+            updatedSnapshot.changeMarker = t0;
+            updatedSnapshot.changesChecked = t0;
+            log.debug("Updated public message snapshot in " + (System.currentTimeMillis() - t0) + " ms");
+        } else if (updatedSnapshot != null) {
+            snapshot.changeMarker = t0;
+        }
+        return updatedSnapshot;
+    }
+
+
+    /**
+     * Flags that the snapshots should be checked for changes upon the next request
+     *
+     * @param event the message change event
+     */
+    public void onMessageChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageChangeEvent event) {
+        lastLocalChange = System.currentTimeMillis();
+    }
+
+
+    /**
+     * An immutable snapshot of the published messages of a set of domains in a given language
+     */
+    public static class MessageSnapshot {
+
+        final long created;
+        final Set<String> seriesIds;
+        final List<String> domainAreaLineages;
+        final List<String> domainCategoryLineages;
+        final List<SnapshotMessage> messages;
+        final Map<Integer, SnapshotMessage> messageIndex;
+        final Map<String, Optional<String>> areaLineages = new ConcurrentHashMap<>();
+
+        // Changes are checked for messages updated since the change marker
+        volatile long changeMarker;
+        volatile long changesChecked;
+
+        /**
+         * Constructor
+         *
+         * @param seriesIds the message series of the domains
+         * @param domainAreaLineages if the domains restrict the messages by area, the area lineages of the domains
+         * @param domainCategoryLineages if the domains restrict the messages by category, the category lineages of the domains
+         * @param messages the published messages in sort order
+         */
+        public MessageSnapshot(
+                Set<String> seriesIds,
+                List<String> domainAreaLineages,
+                List<String> domainCategoryLineages,
+                List<SnapshotMessage> messages) {
+            this(System.currentTimeMillis(), seriesIds, domainAreaLineages, domainCategoryLineages, messages);
+        }
+
+
+        /** Constructor **/
+        private MessageSnapshot(
+                long created,
+                Set<String> seriesIds,
+                List<String> domainAreaLineages,
+                List<String> domainCategoryLineages,
+                List<SnapshotMessage> messages) {
+            this.created = created;
+            this.seriesIds = Collections.unmodifiableSet(seriesIds);
+            this.domainAreaLineages = domainAreaLineages;
+            this.domainCategoryLineages = domainCategoryLineages;
+            this.messages = Collections.unmodifiableList(messages);
+            this.messageIndex = messages.stream()
+                    .collect(Collectors.toMap(m -> m.id, m -> m));
+        }
+
+
+        /** Returns if the snapshot should be re-built **/
+        boolean isExpired() {
+            return System.currentTimeMillis() - created > SNAPSHOT_TTL_MS;
+        }
+
+
+        /**
+         * Returns an updated snapshot reflecting the changed messages.
+         * <p>
+         * Changed messages of the snapshot are replaced, and messages no longer published are removed.
+         * Returns null if the snapshot must be re-built, i.e. if a message has been published for the domains,
+         * or if a change may affect the sort order of the messages.
+         *
+         * @param changed the changed messages
+         * @param converter converts changed messages to snapshot messages
+         * @return the updated snapshot, the snapshot itself if unaffected, or null if the snapshot must be re-built
+         */
+        MessageSnapshot update(Collection<Message> changed, Function<Message, SnapshotMessage> converter) {
+            Map<Integer, SnapshotMessage> replaced = new HashMap<>();
+            Set<Integer> removed = new HashSet<>();
+
+            for (Message message : changed) {
+                SnapshotMessage current = messageIndex.get(message.getId());
+                boolean included = message.getStatus() == Status.PUBLISHED && includesMessage(message);
+
+                if (current == null) {
+                    if (included) {
+                        return null;
+                    }
+                } else if (!included) {
+                    removed.add(current.id);
+                } else if (current.updated != SnapshotMessage.timestamp(message.getUpdated())) {
+                    SnapshotMessage updated = converter.apply(message);
+                    if (!updated.sortKey.equals(current.sortKey)) {
+                        return null;
+                    }
+                    replaced.put(current.id, updated);
+                }
+            }
+
+            if (replaced.isEmpty() && removed.isEmpty()) {
+                return this;
+            }
+
+            List<SnapshotMessage> updatedMessages = messages.stream()
+                    .filter(m -> !removed.contains(m.id))
+                    .map(m -> replaced.getOrDefault(m.id, m))
+                    .collect(Collectors.toList());
+            return new MessageSnapshot(created, seriesIds, domainAreaLineages, domainCategoryLineages, updatedMessages);
+        }
+
+
+        /** Returns if the message matches the message series, areas and categories of the domains **/
+        boolean includesMessage(Message message) {
+            return message.getMessageSeries() != null
+                    && seriesIds.contains(message.getMessageSeries().getSeriesId())
+                    && matchesLineages(domainAreaLineages,
+                            message.getAreas().stream().map(Area::getLineage).collect(Collectors.toList()))
+                    && matchesLineages(domainCategoryLineages,
+                            message.getCategories().stream().map(Category::getLineage).collect(Collectors.toList()));
+        }
+
+
+        /** Returns if any of the lineages are sub-lineages of the domain lineages, or if the domain lineages are undefined **/
+        private static boolean matchesLineages(List<String> domainLineages, List<String> lineages) {
+            return domainLineages == null
+                    || lineages.stream()
+                        .filter(Objects::nonNull)
+                        .anyMatch(l -> domainLineages.stream().anyMatch(l::startsWith));
+        }
+
+
+        /**
+         * Returns if the snapshot can be filtered by the given areas.
+         * <p>
+         * When the domains restrict the messages by area, the area filter of a database search also
+         * includes the messages of the domain areas, which cannot be emulated using the snapshot.
+         *
+         * @param areaIds the area filter
+         * @return if the snapshot can be filtered by the given areas
+         */
+        public boolean supportsAreaFilter(Set<String> areaIds) {
+            return areaIds == null || areaIds.isEmpty() || domainAreaLineages == null;
+        }
+
+
+        /**
+         * Filters the messages of the snapshot
+         *
+         * @param areaIds the optional IDs of the areas to filter by
+         * @param areaLineageResolver resolves the lineage of an area ID, or null if the area is undefined
+         * @param mainTypes the optional main types to filter by
+         * @param extent the optional extent to filter by. Messages without a geometry are included
+         * @return the filtered messages in sort order
+         */
+        public List<MessageVo> filter(
+                Set<String> areaIds,
+                Function<String, String> areaLineageResolver,
+                Set<MainType> mainTypes,
+                Geometry extent) {
+
+            List<String> lineages = null;
+            if (areaIds != null && !areaIds.isEmpty()) {
+                lineages = areaIds.stream()
+                        .map(aid -> areaLineages.computeIfAbsent(
+                                aid,
+                                id -> Optional.ofNullable(areaLineageResolver.apply(id))))
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .collect(Collectors.toList());
+            }
+            List<String> areaFilter = lineages;
+            PreparedGeometry extentFilter = extent != null ? PreparedGeometryFactory.prepare(extent) : null;
+
+            return messages.stream()
+                    .filter(m -> areaFilter == null || m.matchesAreas(areaFilter))
+                    .filter(m -> mainTypes == null || mainTypes.isEmpty() || mainTypes.contains(m.message.getMainType()))
+                    .filter(m -> extentFilter == null || m.matchesExtent(extentFilter))
+                    .map(m -> m.message)
+                    .collect(Collectors.toList());
+        }
+
+
+        /** Getters **/
+
+        public List<SnapshotMessage> getMessages() {
+            return messages;
+        }
+    }
+
+
+    /**
+     * A published message of a snapshot
+     */
+    public static class SnapshotMessage {
+
+        final Integer id;
+        final long updated;
+        final MessageVo message;
+        final List<String> areaLineages;
+        final List<Geometry> geometries;
+        final List<Object> sortKey;
+
+        /**
+         * Constructor
+         *
+         * @param msg the message
+         * @param message the message value object
+         */
+        public SnapshotMessage(Message msg, MessageVo message) {
+            this.id = msg.getId();
+            this.updated = timestamp(msg.getUpdated());
+            this.message = message;
+            this.areaLineages = msg.getAreas().stream()
+                    .map(Area::getLineage)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            this.geometries = msg.getParts().stream()
+                    .filter(p -> p.getGeometry() != null)
+                    .flatMap(p -> p.getGeometry().getFeatures().stream())
+                    .map(Feature::getGeometry)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            // The fields that may be used for sorting the messages of a domain
+            this.sortKey = Arrays.asList(
+                    msg.getArea() != null ? msg.getArea().getId() : null,
+                    msg.getAreaSortOrder(),
+                    msg.getNumber(),
+                    timestamp(msg.getEventDateFrom()),
+                    timestamp(msg.getEventDateTo()),
+                    timestamp(msg.getPublishDateFrom()),
+                    timestamp(msg.getPublishDateTo()),
+                    timestamp(msg.getFollowUpDate()));
+        }
+
+
+        /** Returns the epoch millis of the date, or 0 if undefined **/
+        static long timestamp(Date date) {
+            return date != null ? date.getTime() : 0L;
+        }
+
+
+        /** Returns if any of the message areas is a sub-area of one of the given area lineages **/
+        boolean matchesAreas(List<String> lineages) {
+            return areaLineages.stream()
+                    .anyMatch(l -> lineages.stream().anyMatch(l::startsWith));
+        }
+
+
+        /** Returns if the message has no geometry or if the geometry intersects the extent **/
+        boolean matchesExtent(PreparedGeometry extent) {
+            return geometries.isEmpty() || geometries.stream().anyMatch(extent::intersects);
+        }
+    }
+}
@@ -25,7 +25,12 @@ import org.jboss.resteasy.annotations.GZIP;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.niord.core.NiordApp;
 import org.niord.core.area.Area;
+import org.niord.core.category.Category;
+import org.niord.core.domain.Domain;
+import org.niord.core.integration.NiordIntegrationExecutionService;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.core.message.MessageSeries;
 import org.niord.core.publication.Publication;
 import org.niord.model.DataFilter;
 import org.niord.model.message.AreaVo;
@@ -33,6 +38,8 @@ import org.niord.model.message.MainType;
 import org.niord.model.message.MessageVo;
 import org.niord.model.publication.PublicationVo;
 import org.niord.model.search.PagedSearchResultVo;
+import org.niord.web.api.ApiMessageSnapshotService.MessageSnapshot;
+import org.niord.web.api.ApiMessageSnapshotService.SnapshotMessage;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -42,7 +49,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.JAXBContext;
@@ -51,12 +61,19 @@ import javax.xml.transform.Result;
 import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A public REST API for accessing message and publications Niord data.
@@ -86,6 +103,9 @@ public class ApiRestService extends AbstractApiService {
     @Inject
     NiordApp app;
 
+    @Inject
+    ApiMessageSnapshotService messageSnapshotService;
+
 
     /***************************
      * Message end-points
@@ -131,26 +151,83 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @ApiParam(value = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @ApiParam(value = "Timestamp (Unix epoch). If specified, only the published, cancelled or expired messages updated since this time are returned")
+            @QueryParam("updatedSince") Long updatedSince,
+
+            @Context Request request
 
     ) throws Exception {
 
-        // Perform the search
-        PagedSearchResultVo<Message> searchResult =
-                super.searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt);
+        List<MessageVo> messages = null;
+        EntityTag etag = null;
+
+        // Searches for domains are served from the in-memory snapshot of published messages
+        if ((publicationIds == null || publicationIds.isEmpty()) && (messageSeries == null || messageSeries.isEmpty())
+                && updatedSince == null) {
+            Set<String> domains = domainIds != null ? domainIds : Collections.emptySet();
+            MessageSnapshot snapshot = messageSnapshotService.getSnapshot(
+                    language,
+                    domains,
+                    externalize,
+                    () -> buildMessageSnapshot(language, domains, externalize),
+                    m -> new SnapshotMessage(m, toMessageVo(m, language, externalize)));
+
+            if (snapshot.supportsAreaFilter(areaIds)) {
+                messages = snapshot.filter(
+                        areaIds,
+                        areaId -> {
+                            Area area = getArea(areaId);
+                            return area != null ? area.getLineage() : null;
+                        },
+                        mainTypes,
+                        new MessageSearchParams().extent(wkt).getExtent());
+
+                // If the client already has the current result, return 304 without serializing the messages
+                etag = messagesEntityTag(language, externalize, dateFormat, updatedSince,
+                        messages.stream().map(m -> m.getId() + ":" + m.getStatus() + ":" + timestamp(m.getUpdated())));
+                Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                if (notModified != null) {
+                    return notModified.build();
+                }
+            }
+        }
 
+        if (messages == null) {
+            // Search for the ID's of the messages
+            MessageSearchParams params = searchParams(language, domainIds, messageSeries, publicationIds, areaIds,
+                    mainTypes, wkt, updatedSince != null ? new Date(updatedSince) : null);
+            List<Integer> ids = params != null
+                    ? messageService.searchIds(params).getData()
+                    : Collections.emptyList();
+
+            // If the client already has the current result, return 304 without loading the messages
+            etag = messagesEntityTag(language, externalize, dateFormat, updatedSince,
+                    messageService.getMessageVersions(ids).stream()
+                            .map(v -> v[1] + ":" + v[2] + ":" + timestamp((Date) v[3])));
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.build();
+            }
 
-        // Convert messages to value objects and externalize message links, if requested
-        List<MessageVo> messages = searchResult
-                .map(m -> toMessageVo(m, language, externalize))
-                .getData();
+            // Load the messages, convert them to value objects and externalize message links, if requested
+            messages = messageService.getMessages(ids).stream()
+                    .map(m -> toMessageVo(m, language, externalize))
+                    .collect(Collectors.toList());
+        }
 
         // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
-        StreamingOutput stream = os -> objectMapperForDateFormat(dateFormat).writeValue(os, messages);
+        List<MessageVo> result = messages;
+        StreamingOutput stream = os -> objectMapperForDateFormat(dateFormat).writeValue(os, result);
 
-        return Response
+        Response.ResponseBuilder response = Response
                 .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
-                .build();
+                .tag(etag);
+        if (updatedSince != null) {
+            response.header(NiordIntegrationExecutionService.UPDATED_SINCE_HEADER, updatedSince);
+        }
+        return response.build();
 
     }
 
@@ -178,7 +255,9 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @ApiParam(value = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @Context Request request
 
     ) throws Exception {
 
@@ -192,6 +271,17 @@ public class ApiRestService extends AbstractApiService {
                     .build();
         } else {
 
+            // If the client already has the current message, return 304 without converting the message
+            EntityTag etag = entityTag(language, externalize, dateFormat,
+                    Stream.of(message.getUid() + ":" + timestamp(message.getUpdated())));
+            Date lastModified = lastModified(message.getUpdated());
+            Response.ResponseBuilder notModified = lastModified != null
+                    ? request.evaluatePreconditions(lastModified, etag)
+                    : request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+
             // Convert message to value objects and externalize message links, if requested
             MessageVo result = toMessageVo(message, language, externalize);
 
@@ -200,6 +290,8 @@ public class ApiRestService extends AbstractApiService {
 
             return Response
                     .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
+                    .tag(etag)
+                    .lastModified(lastModified)
                     .build();
         }
     }
@@ -252,6 +344,51 @@ public class ApiRestService extends AbstractApiService {
     }
 
 
+    /**
+     * Builds a snapshot of the published messages of the given domains.
+     *
+     * @param language the language
+     * @param domainIds the domains. If empty, the domains published by default
+     * @param externalize whether to rewrite all links to make them external URLs
+     * @return the snapshot of published messages
+     */
+    private MessageSnapshot buildMessageSnapshot(String language, Set<String> domainIds, boolean externalize) {
+        try {
+            List<Domain> domains = domainIds.isEmpty()
+                    ? domainService.getPublishedDomains()
+                    : domainService.findByDomainIds(domainIds);
+
+            Set<String> seriesIds = domains.stream()
+                    .flatMap(d -> d.getMessageSeries().stream())
+                    .map(MessageSeries::getSeriesId)
+                    .collect(Collectors.toSet());
+            // If all domains specify areas or categories, these restrict the messages
+            List<String> areaLineages = !domains.isEmpty() && domains.stream().noneMatch(d -> d.getAreas().isEmpty())
+                    ? domains.stream()
+                        .flatMap(d -> d.getAreas().stream())
+                        .map(Area::getLineage)
+                        .collect(Collectors.toList())
+                    : null;
+            List<String> categoryLineages = !domains.isEmpty() && domains.stream().noneMatch(d -> d.getCategories().isEmpty())
+                    ? domains.stream()
+                        .flatMap(d -> d.getCategories().stream())
+                        .map(Category::getLineage)
+                        .collect(Collectors.toList())
+                    : null;
+
+            List<SnapshotMessage> messages = super
+                    .searchMessages(language, domainIds, null, null, null, null, null)
+                    .getData().stream()
+                    .map(m -> new SnapshotMessage(m, toMessageVo(m, language, externalize)))
+                    .collect(Collectors.toList());
+
+            return new MessageSnapshot(seriesIds, areaLineages, categoryLineages, messages);
+        } catch (Exception e) {
+            throw new RuntimeException("Error building message snapshot", e);
+        }
+    }
+
+
     /**
      * Convert the message to a value object representation.
      * If requested, rewrite all links to make them external URLs.
@@ -322,7 +459,9 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @ApiParam(value = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @Context Request request
     ) {
 
         // If from and to-dates are unspecified, return the publications currently active
@@ -330,7 +469,17 @@ public class ApiRestService extends AbstractApiService {
             from = to = System.currentTimeMillis();
         }
 
-        List<PublicationVo> publications = super.searchPublications(language, from, to).stream()
+        List<Publication> searchResult = super.searchPublications(language, from, to);
+
+        // If the client already has the current result, return 304 without converting the publications
+        EntityTag etag = entityTag(language, externalize, dateFormat, searchResult.stream()
+                .map(p -> p.getPublicationId() + ":" + timestamp(p.getUpdated())));
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        List<PublicationVo> publications = searchResult.stream()
                 .map(p -> toPublicationVo(p, language, externalize))
                 .collect(Collectors.toList());
 
@@ -339,6 +488,7 @@ public class ApiRestService extends AbstractApiService {
 
         return Response
                 .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
+                .tag(etag)
                 .build();
     }
 
@@ -367,7 +517,9 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @ApiParam(value = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @Context Request request
     ) {
 
         Publication publication = super.getPublication(publicationId);
@@ -379,6 +531,17 @@ public class ApiRestService extends AbstractApiService {
                     .build();
         } else {
 
+            // If the client already has the current publication, return 304 without converting the publication
+            EntityTag etag = entityTag(language, externalize, dateFormat,
+                    Stream.of(publication.getPublicationId() + ":" + timestamp(publication.getUpdated())));
+            Date lastModified = lastModified(publication.getUpdated());
+            Response.ResponseBuilder notModified = lastModified != null
+                    ? request.evaluatePreconditions(lastModified, etag)
+                    : request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+
             // Convert publication to value objects and externalize publication links, if requested
             PublicationVo result = toPublicationVo(publication, language, externalize);
 
@@ -387,6 +550,8 @@ public class ApiRestService extends AbstractApiService {
 
             return Response
                     .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
+                    .tag(etag)
+                    .lastModified(lastModified)
                     .build();
         }
     }
@@ -520,6 +685,63 @@ public class ApiRestService extends AbstractApiService {
      ***************************/
 
 
+    /**
+     * Returns a strong entity tag for a representation of the given resources.
+     * <p>
+     * The entity tag is derived from the parameters that affect the representation and from
+     * the ID and last-updated time of each of the resources, so that the entity tag changes
+     * whenever a resource is added, removed or updated.
+     *
+     * @param language the language of the representation
+     * @param externalize whether links are externalized in the representation
+     * @param dateFormat the date format of the representation
+     * @param resources the "ID:updated" validators of the resources
+     * @return the entity tag
+     */
+    private EntityTag entityTag(String language, boolean externalize, JsonDateFormat dateFormat, Stream<String> resources) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update((language + "|" + externalize + "|" + dateFormat).getBytes(StandardCharsets.UTF_8));
+            resources.forEach(r -> md.update(("|" + r).getBytes(StandardCharsets.UTF_8)));
+            return new EntityTag(new BigInteger(1, md.digest()).toString(16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("This should never happen", e);
+        }
+    }
+
+
+    /**
+     * Returns the entity tag of a message search result.
+     * NB: The status is included, since cancelled and expired messages are included in incremental results
+     *
+     * @param language the language of the representation
+     * @param externalize whether links are externalized in the representation
+     * @param dateFormat the date format of the representation
+     * @param updatedSince the optional "updatedSince" parameter of the search
+     * @param messages the "uid:status:updated" validators of the messages
+     * @return the entity tag
+     */
+    private EntityTag messagesEntityTag(String language, boolean externalize, JsonDateFormat dateFormat,
+                                        Long updatedSince, Stream<String> messages) {
+        return entityTag(language, externalize, dateFormat, Stream.concat(
+                Stream.of("updatedSince:" + updatedSince),
+                messages));
+    }
+
+
+    /** Returns the epoch millis of the date, or 0 if undefined **/
+    private long timestamp(Date date) {
+        return date != null ? date.getTime() : 0L;
+    }
+
+
+    /** Returns the last-modified date truncated to seconds, as used in HTTP headers, or null if undefined **/
+    private Date lastModified(Date date) {
+        return date != null ? new Date(date.getTime() / 1000L * 1000L) : null;
+    }
+
+
+
     /** Returns an ObjectMapper for the given date format **/
     private ObjectMapper objectMapperForDateFormat(JsonDateFormat dateFormat) {
         ObjectMapper mapper = new ObjectMapper();
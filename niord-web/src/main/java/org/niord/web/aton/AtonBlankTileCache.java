@@ -28,11 +28,12 @@ import javax.enterprise.context.ApplicationScoped;
 
 /**
  * Provides a cache of blank tiles.
+ * <p>
+ * Entries are invalidated explicitly by the {@code AtonTilePyramidService} when the AtoNs of a tile change.
  */
 @ApplicationScoped
 public class AtonBlankTileCache extends BaseCache<String, String> {
 
-    final static long LIFESPAN = 6 * 60 * 60 * 1000;    // 6 hours
     final static long MAX_ENTRIES = 100000;             // at most 100.000 URL's
 
     final static String CACHE_ID = "atonTileCache";
@@ -52,7 +53,6 @@ public class AtonBlankTileCache extends BaseCache<String, String> {
                 .clustering().cacheMode(CacheMode.LOCAL)
                 .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
                 .eviction().type(EvictionType.COUNT).size(MAX_ENTRIES).strategy(EvictionStrategy.LRU)
-                .expiration().lifespan(LIFESPAN)
                 .build();
     }
 
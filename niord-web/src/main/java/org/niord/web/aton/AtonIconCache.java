@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.aton;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionType;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.cache.BaseCache;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Provides an in-memory LRU cache of encoded AtoN icons.
+ * <p>
+ * Icons are keyed by a hash of the rendering parameters and the canonically sorted AtoN tags,
+ * so the key also serves as a strong E-Tag of the icon.
+ */
+@ApplicationScoped
+public class AtonIconCache extends BaseCache<String, AtonIconCache.AtonIcon> {
+
+    /** Bump this whenever a change to the renderer changes the appearance of the icons **/
+    final static int ICON_VERSION = 1;
+
+    final static long MAX_ENTRIES = 5000;               // at most 5.000 icons
+
+    final static String CACHE_ID = "atonIconCache";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .eviction().type(EvictionType.COUNT).size(MAX_ENTRIES).strategy(EvictionStrategy.LRU)
+                .build();
+    }
+
+
+    /**
+     * Computes the content-addressed key of an icon
+     *
+     * @param format the icon format, i.e. "png" or "svg"
+     * @param w the icon width
+     * @param h the icon height
+     * @param x the x position of the AtoN
+     * @param y the y position of the AtoN
+     * @param scale the icon scale
+     * @param tags the AtoN tags
+     * @return the icon key
+     */
+    public static String iconKey(String format, int w, int h, int x, int y, double scale, Map<String, String> tags) {
+        StringBuilder str = new StringBuilder()
+                .append(ICON_VERSION).append('|')
+                .append(format.toLowerCase()).append('|')
+                .append(w).append('|').append(h).append('|')
+                .append(x).append('|').append(y).append('|')
+                .append(scale);
+        new TreeMap<>(tags).forEach((k, v) -> str.append('|').append(escape(k)).append('=').append(escape(v)));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(str.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+
+    /** Escapes the separators used in the icon key, so that different tags cannot produce the same key **/
+    private static String escape(String value) {
+        return value == null
+                ? "\\0"
+                : value.replace("\\", "\\\\").replace("|", "\\|").replace("=", "\\=");
+    }
+
+
+    /**
+     * An encoded AtoN icon
+     */
+    public static class AtonIcon implements Serializable {
+
+        final String key;
+        final String contentType;
+        final byte[] data;
+
+        /** Constructor **/
+        public AtonIcon(String key, String contentType, byte[] data) {
+            this.key = key;
+            this.contentType = contentType;
+            this.data = data;
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -21,34 +21,49 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.repo.RepositoryService;
+import org.niord.web.aton.AtonIconCache.AtonIcon;
 import org.slf4j.Logger;
 
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Creates and caches AtoN icons
+ * Creates and caches AtoN icons.
+ * <p>
+ * Icons are content-addressed by a hash of the AtoN tags and rendering parameters (see {@link AtonIconCache}).
+ * The encoded icons are kept in an in-memory LRU cache, backed by the repository for the overview icons,
+ * and streamed directly to the client along with the key as E-Tag.
  */
 @javax.ws.rs.Path("/aton-icon")
 @Startup
 @Singleton
+@Lock(LockType.READ)
 public class AtonIconRestService {
 
     static final String OVERVIEW_ICON_REPO = "aton_icons";
     static final int OVERVIEW_ICON_HEIGHT = 90;
     static final int OVERVIEW_ICON_WIDTH = 60;
     static final double OVERVIEW_ICON_SCALE = 0.3;
+    static final int OVERVIEW_ICON_MAX_AGE = 30 * 24 * 60 * 60; // Icons are immutable, so cache them for 30 days
 
     @Inject
     Logger log;
@@ -56,6 +71,9 @@ public class AtonIconRestService {
     @Inject
     RepositoryService repositoryService;
 
+    @Inject
+    AtonIconCache iconCache;
+
 
     @POST
     @javax.ws.rs.Path("/svg")
@@ -69,24 +87,19 @@ public class AtonIconRestService {
             @QueryParam("scale") @DefaultValue("0.4") double scale,
             AtonNodeVo aton) throws Exception {
 
-        long t0 = System.currentTimeMillis();
+        int x = width / 2;
+        int y = height / 2;
+        String key = AtonIconCache.iconKey("svg", width, height, x, y, scale, tagMap(aton));
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        AtonIconRenderer.renderIcon(
-                aton,
-                "svg",
-                out,
-                width,       // width
-                height,      // height
-                width/2,     // x
-                height/2,    // y
-                scale        // scale
-        );
-
-        log.trace("Generated AtoN SVG in " + (System.currentTimeMillis() - t0) + " ms");
+        AtonIcon icon = iconCache.getCache().get(key);
+        if (icon == null) {
+            icon = renderIcon(key, aton, "svg", width, height, x, y, scale);
+            iconCache.getCache().put(key, icon);
+        }
 
         return Response
-                .ok(out.toByteArray())
+                .ok(icon.getData(), icon.getContentType())
+                .tag(new EntityTag(key))
                 .build();
     }
 
@@ -94,10 +107,7 @@ public class AtonIconRestService {
 
     @GET
     @javax.ws.rs.Path("/overview")
-    @NoCache
-    public Response getAtonOverviewIcon(@Context HttpServletRequest request) throws Exception {
-
-        long t0 = System.currentTimeMillis();
+    public Response getAtonOverviewIcon(@Context HttpServletRequest request, @Context Request req) throws Exception {
 
         String type = request.getParameter("seamark:type");
         if (StringUtils.isBlank(type)) {
@@ -108,74 +118,149 @@ public class AtonIconRestService {
 
         // Prepare an AtoN to use as a template for icon construction
         AtonNode aton = new AtonNode();
+        addParam(aton, request, "seamark:type");
+        addParam(aton, request, "seamark:" + type + ":category");
+        addParam(aton, request, "seamark:" + type + ":shape");
+        addParam(aton, request, "seamark:" + type + ":colour");
+        addParam(aton, request, "seamark:" + type + ":colour_pattern");
+        addParam(aton, request, "seamark:topmark:shape");
+        addParam(aton, request, "seamark:topmark:colour");
+        addParam(aton, request, "seamark:light:character");
+        addParam(aton, request, "seamark:light:colour");
+        AtonNodeVo atonVo = aton.toVo();
+
+        String key = AtonIconCache.iconKey(
+                "png",
+                OVERVIEW_ICON_WIDTH,
+                OVERVIEW_ICON_HEIGHT,
+                OVERVIEW_ICON_WIDTH / 3,
+                2 * OVERVIEW_ICON_HEIGHT / 3,
+                OVERVIEW_ICON_SCALE,
+                tagMap(atonVo));
+
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(OVERVIEW_ICON_MAX_AGE);
+
+        // Check for an ETag match
+        EntityTag etag = new EntityTag(key);
+        Response.ResponseBuilder responseBuilder = req.evaluatePreconditions(etag);
+        if (responseBuilder != null) {
+            return responseBuilder
+                    .cacheControl(cacheControl)
+                    .build();
+        }
 
-        // Construct a repository path to the icon
+        AtonIcon icon = getOverviewIcon(key, atonVo);
+        return Response
+                .ok(icon.getData(), icon.getContentType())
+                .cacheControl(cacheControl)
+                .tag(etag)
+                .build();
+    }
+
+
+    /**
+     * Returns the overview icon with the given key. Looks up the icon in the in-memory cache first,
+     * then in the repository, and lastly, renders the icon.
+     *
+     * @param key the icon key
+     * @param aton the AtoN to render
+     * @return the icon
+     */
+    private AtonIcon getOverviewIcon(String key, AtonNodeVo aton) throws IOException {
+
+        AtonIcon icon = iconCache.getCache().get(key);
+        if (icon != null) {
+            return icon;
+        }
+
+        // Check if the icon has already been stored in the repository
         Path path = repositoryService
                 .getRepoRoot()
-                .resolve(OVERVIEW_ICON_REPO);
-
-        path = addParam(aton, path, request, "seamark:type");
-        path = addParam(aton, path, request, "seamark:" + type + ":category");
-        path = addParam(aton, path, request, "seamark:" + type + ":shape");
-        path = addParam(aton, path, request, "seamark:" + type + ":colour");
-        path = addParam(aton, path, request, "seamark:" + type + ":colour_pattern");
-        path = addParam(aton, path, request, "seamark:topmark:shape");
-        path = addParam(aton, path, request, "seamark:topmark:colour");
-        path = addParam(aton, path, request, "seamark:light:character");
-        path = addParam(aton, path, request, "seamark:light:colour");
-
-        // And the actual icon file
-        path = path.resolve("aton_icon_" + OVERVIEW_ICON_WIDTH + "x" + OVERVIEW_ICON_HEIGHT + ".png");
-
-        if (!Files.isRegularFile(path)) {
+                .resolve(OVERVIEW_ICON_REPO)
+                .resolve(key.substring(0, 2))
+                .resolve(key + ".png");
+
+        if (Files.isRegularFile(path)) {
+            icon = new AtonIcon(key, "image/png", Files.readAllBytes(path));
+
+        } else {
+            icon = renderIcon(
+                    key,
+                    aton,
+                    "png",
+                    OVERVIEW_ICON_WIDTH,            // width
+                    OVERVIEW_ICON_HEIGHT,           // height
+                    OVERVIEW_ICON_WIDTH / 3,        // x
+                    2 * OVERVIEW_ICON_HEIGHT / 3,   // y
+                    OVERVIEW_ICON_SCALE             // scale
+            );
+
+            // Write the icon via a temporary file, so that concurrent requests never read a partial icon
             checkCreateParentDirs(path);
-
-            try (FileOutputStream out = new FileOutputStream(path.toFile())) {
-                AtonIconRenderer.renderIcon(
-                        aton.toVo(),
-                        "png",
-                        out,
-                        OVERVIEW_ICON_WIDTH,            // width
-                        OVERVIEW_ICON_HEIGHT,           // height
-                        OVERVIEW_ICON_WIDTH / 3,        // x
-                        2 * OVERVIEW_ICON_HEIGHT / 3,   // y
-                        OVERVIEW_ICON_SCALE             // scale
-                );
-
-                log.trace("Generated AtoN PNG " + path + " in " + (System.currentTimeMillis() - t0) + " ms");
-            }
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.write(tmp, icon.getData());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
 
-        // Redirect to the icon
-        String iconUri = repositoryService.getRepoUri(path);
-        return Response
-                .temporaryRedirect(new URI("../" + iconUri))
-                .build();
+        iconCache.getCache().put(key, icon);
+        return icon;
+    }
+
+
+    /**
+     * Renders the AtoN icon
+     *
+     * @param key the icon key
+     * @param aton the AtoN to render
+     * @param format the icon format, either "png" or "svg"
+     * @param w the icon width
+     * @param h the icon height
+     * @param x the x position of the AtoN
+     * @param y the y position of the AtoN
+     * @param scale the icon scale
+     * @return the rendered icon
+     */
+    private AtonIcon renderIcon(String key, AtonNodeVo aton, String format, int w, int h, int x, int y, double scale)
+            throws IOException {
+
+        long t0 = System.currentTimeMillis();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtonIconRenderer.renderIcon(aton, format, out, w, h, x, y, scale);
+
+        log.trace("Generated AtoN " + format + " " + key + " in " + (System.currentTimeMillis() - t0) + " ms");
+        return new AtonIcon(key, "svg".equals(format) ? "image/svg+xml" : "image/png", out.toByteArray());
     }
 
 
     /**
-     * If the parameter is well-defined, add a sub-folder to the path
+     * Returns the tags of the AtoN as a map
+     *
+     * @param aton the AtoN
+     * @return the tags of the AtoN
+     */
+    private Map<String, String> tagMap(AtonNodeVo aton) {
+        Map<String, String> tags = new HashMap<>();
+        if (aton.getTags() != null) {
+            Arrays.stream(aton.getTags()).forEach(t -> tags.put(t.getK(), t.getV()));
+        }
+        return tags;
+    }
+
+
+    /**
+     * If the parameter is well-defined, add it as a tag to the AtoN template
      *
      * @param aton an AtoN template to update with the parameter tags
-     * @param path the path to update
      * @param request the servlet request
      * @param param the param to check for
-     * @return the potentially updated path
      */
-    private Path addParam(AtonNode aton, Path path, HttpServletRequest request, String param) {
+    private void addParam(AtonNode aton, HttpServletRequest request, String param) {
         String val = request.getParameter(param);
         if (StringUtils.isNotBlank(val)) {
             aton.updateTag(param, val);
-            path = path.resolve(escape(val));
         }
-        return path;
-    }
-
-
-    /** Escape naughty file name characters **/
-    private String escape(String name) {
-        return name.replaceAll("[^a-zA-Z0-9.-]", "_");
     }
 
 
@@ -190,4 +275,3 @@ public class AtonIconRestService {
     }
 
 }
-
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.aton;
+
+import org.niord.core.aton.AtonPositionIndex;
+import org.niord.core.aton.AtonPositionIndexService;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.settings.Setting.Type;
+import org.niord.core.settings.annotation.Setting;
+import org.niord.core.util.GraphicsUtils;
+import org.slf4j.Logger;
+
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.imageio.ImageIO;
+import javax.inject.Inject;
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the AtoN tile pyramid of the repository "aton_tiles" folder.
+ * <p>
+ * The tiles of the zoom levels up to the configured max pyramid zoom level are pre-generated in parallel.
+ * Whenever AtoNs have been changed, the AtoN position index is compared with the index that the
+ * pyramid was last generated from, and only the tiles covering the modified AtoNs are re-generated.
+ * Tiles of higher zoom levels are deleted and re-generated on demand. A tile file is only re-written
+ * if its content has changed, so the tile files can be streamed as static files with stable E-Tags.
+ * <p>
+ * Tiles generated on demand are written whilst holding the read lock of the tile lock, and from the
+ * AtoN position index fetched whilst holding the lock. Tiles are invalidated whilst holding the write lock.
+ * Hence, a tile invalidated by a sync is never re-written from an index older than the sync.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class AtonTilePyramidService {
+
+    static final int        TILE_SIZE           = 256;
+    static final int        MAX_PYRAMID_ZOOM    = 16;
+    static final int        TILES_PER_TASK      = 200;
+    static final String     TILE_REPO_FOLDER    = "aton_tiles";
+    static final Color      ATON_COLOR          = new Color(200, 0, 0);
+
+    /** The state of a re-generated tile **/
+    private enum TileState { BLANK, UNCHANGED, WRITTEN }
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @Setting(value = "atonTilePyramidMaxZoom", defaultValue = "10", type = Type.Integer,
+            description = "The max zoom level of the pre-generated AtoN tile pyramid")
+    Integer pyramidMaxZoom;
+
+    @Inject
+    AtonPositionIndexService atonPositionIndexService;
+
+    @Inject
+    AtonBlankTileCache blankTileCache;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
+    private final AtomicBoolean syncInProgress = new AtomicBoolean();
+    private final ReadWriteLock tileLock = new ReentrantReadWriteLock();
+    private volatile AtonPositionIndex syncedIndex;
+
+
+    /**
+     * Returns the tile file, or null if the tile is blank.
+     * If the tile has not been generated yet, it is generated from the AtoN position index.
+     *
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate, counted from the top
+     * @return the tile file, or null if the tile is blank
+     */
+    public Path getTile(int z, int x, int y) throws IOException {
+        Path file = getTileFile(z, x, y);
+        if (blankTileCache.getCache().containsKey(file.toString())) {
+            return null;
+        } else if (Files.exists(file)) {
+            return file;
+        }
+
+        tileLock.readLock().lock();
+        try {
+            return refreshTile(atonPositionIndexService.getIndex(), z, x, y) != TileState.BLANK ? file : null;
+        } finally {
+            tileLock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Returns the repository path of the given tile
+     *
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate, counted from the top
+     * @return the repository path of the tile
+     */
+    public Path getTileFile(int z, int x, int y) {
+        return getTileRoot()
+                .resolve(String.valueOf(z))
+                .resolve(String.valueOf(x))
+                .resolve(String.valueOf(y) + ".png");
+    }
+
+
+    /** Returns the root repository folder of the tiles **/
+    public Path getTileRoot() {
+        return repositoryService.getRepoRoot().resolve(TILE_REPO_FOLDER);
+    }
+
+
+    /**
+     * Called every minute to bring the tile pyramid in sync with the AtoN position index.
+     * <p>
+     * The first time, i.e. after a restart, all pyramid tiles along with any existing tile files are re-generated.
+     * Subsequently, only the tiles covering AtoNs that have changed since the last sync are re-generated.
+     */
+    @Schedule(persistent = false, second = "20", minute = "*", hour = "*")
+    void syncTilePyramid() {
+        if (!syncInProgress.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            AtonPositionIndex index = atonPositionIndexService.getIndex();
+            AtonPositionIndex previous = syncedIndex;
+            if (previous != null && previous.getChecksum() == index.getChecksum()) {
+                return;
+            }
+
+            long t0 = System.currentTimeMillis();
+            int maxZoom = Math.max(0, Math.min(MAX_PYRAMID_ZOOM, pyramidMaxZoom));
+            Set<Long> tiles = previous == null
+                    ? computeAllTiles(index, maxZoom)
+                    : computeChangedTiles(previous, index, maxZoom);
+
+            int written = refreshTiles(index, tiles);
+            syncedIndex = index;
+
+            log.info("Synced AtoN tile pyramid. Checked " + tiles.size() + " tiles, wrote " + written
+                    + " tiles in " + (System.currentTimeMillis() - t0) + " ms");
+
+        } catch (Exception e) {
+            log.error("Error syncing AtoN tile pyramid", e);
+        } finally {
+            syncInProgress.set(false);
+        }
+    }
+
+
+    /**
+     * Computes the pyramid tiles containing AtoNs, along with the existing tiles of the pyramid zoom levels.
+     * Existing tiles of higher zoom levels are deleted.
+     *
+     * @param index the AtoN position index
+     * @param maxZoom the max pyramid zoom level
+     * @return the tiles to re-generate
+     */
+    private Set<Long> computeAllTiles(AtonPositionIndex index, int maxZoom) throws IOException {
+        Set<Long> tiles = new HashSet<>();
+        for (int z = 0; z <= maxZoom; z++) {
+            for (int i = 0; i < index.size(); i++) {
+                int[] xy = AtonPositionIndex.tileOf(index.getLon(i), index.getLat(i), z);
+                tiles.add(tileKey(z, xy[0], xy[1]));
+            }
+        }
+
+        // Include existing tiles, which may have become blank
+        Path root = getTileRoot();
+        List<Path> invalidated = new ArrayList<>();
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> files = Files.find(root, 3, (f, attr) -> attr.isRegularFile())) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    int[] zxy = parseTileFile(root, file);
+                    if (zxy != null && zxy[0] <= maxZoom) {
+                        tiles.add(tileKey(zxy[0], zxy[1], zxy[2]));
+                    } else if (zxy != null) {
+                        invalidated.add(file);
+                    }
+                }
+            }
+        }
+        invalidateTiles(invalidated);
+        return tiles;
+    }
+
+
+    /**
+     * Computes the pyramid tiles covering AtoNs that have changed between the two indexes.
+     * Tiles of higher zoom levels covering the changed AtoNs are invalidated.
+     *
+     * @param previous the AtoN position index that the pyramid was generated from
+     * @param index the current AtoN position index
+     * @param maxZoom the max pyramid zoom level
+     * @return the tiles to re-generate
+     */
+    private Set<Long> computeChangedTiles(AtonPositionIndex previous, AtonPositionIndex index, int maxZoom)
+            throws IOException {
+        Set<Long> tiles = new HashSet<>();
+        List<Path> invalidated = new ArrayList<>();
+        for (double[] lonLat : AtonPositionIndex.changedPositions(previous, index)) {
+            for (int z = 0; z <= AtonPositionIndex.MAX_ZOOM; z++) {
+                int[] xy = AtonPositionIndex.tileOf(lonLat[0], lonLat[1], z);
+                if (z <= maxZoom) {
+                    tiles.add(tileKey(z, xy[0], xy[1]));
+                } else {
+                    invalidated.add(getTileFile(z, xy[0], xy[1]));
+                }
+            }
+        }
+        invalidateTiles(invalidated);
+        return tiles;
+    }
+
+
+    /**
+     * Deletes the given tile files, along with their blank tile cache entries, so that the tiles
+     * are re-generated on demand.
+     * <p>
+     * The write lock ensures that no tile being generated on demand from an older index is written afterwards.
+     *
+     * @param files the tile files to invalidate
+     */
+    private void invalidateTiles(List<Path> files) throws IOException {
+        tileLock.writeLock().lock();
+        try {
+            for (Path file : files) {
+                blankTileCache.getCache().remove(file.toString());
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            tileLock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Re-generates the given tiles in parallel
+     *
+     * @param index the AtoN position index
+     * @param tiles the tiles to re-generate
+     * @return the number of tile files written
+     */
+    private int refreshTiles(AtonPositionIndex index, Set<Long> tiles) throws Exception {
+        List<Long> tileList = new ArrayList<>(tiles);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int start = 0; start < tileList.size(); start += TILES_PER_TASK) {
+            List<Long> batch = tileList.subList(start, Math.min(tileList.size(), start + TILES_PER_TASK));
+            tasks.add(() -> {
+                int written = 0;
+                for (long tile : batch) {
+                    int z = (int) (tile >>> 58), x = (int) ((tile >>> 29) & 0x1FFFFFFF), y = (int) (tile & 0x1FFFFFFF);
+                    if (refreshTile(index, z, x, y) == TileState.WRITTEN) {
+                        written++;
+                    }
+                }
+                return written;
+            });
+        }
+
+        int written = 0;
+        for (Future<Integer> result : managedExecutorService.invokeAll(tasks)) {
+            written += result.get();
+        }
+        return written;
+    }
+
+
+    /**
+     * Re-generates the given tile. The tile file is only written if the content has changed.
+     *
+     * @param index the AtoN position index
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate, counted from the top
+     * @return the resulting state of the tile
+     */
+    private TileState refreshTile(AtonPositionIndex index, int z, int x, int y) throws IOException {
+        Path file = getTileFile(z, x, y);
+        int[] range = index.tileRange(z, x, y);
+
+        // If the tile is empty, delete any existing tile file and cache the result
+        if (range[0] == range[1]) {
+            Files.deleteIfExists(file);
+            blankTileCache.getCache().put(file.toString(), file.toString());
+            return TileState.BLANK;
+        }
+
+        byte[] data = generateAtonTile(z, x, y, index, range);
+        blankTileCache.getCache().remove(file.toString());
+
+        if (!Files.exists(file) || !Arrays.equals(data, Files.readAllBytes(file))) {
+            // Write the tile via a temporary file, so that concurrent requests never read a partial tile
+            checkCreateParentDirs(file);
+            Path tmp = Files.createTempFile(file.getParent(), String.valueOf(y), ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return TileState.WRITTEN;
+        }
+        return TileState.UNCHANGED;
+    }
+
+
+    /**
+     * Generates an AtoN tile
+     * @param z the zoom level
+     * @param x the tile x coordinate
+     * @param y the tile y coordinate
+     * @param index the AtoN position index
+     * @param range the range of index positions of the AtoNs within the tile
+     * @return the resulting PNG image
+     */
+    private byte[] generateAtonTile(int z, int x, int y, AtonPositionIndex index, int[] range) throws IOException {
+
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        GraphicsUtils.antialias(g2);
+        g2.setColor(ATON_COLOR);
+
+        double radius = (z < 6) ? 0.5 : 1.0;
+        for (int i = range[0]; i < range[1]; i++) {
+            double[] pixel = index.tilePixel(i, z, x, y, TILE_SIZE);
+            Shape theCircle = new Ellipse2D.Double(pixel[0] - radius, pixel[1] - radius, 2.0 * radius, 2.0 * radius);
+            g2.fill(theCircle);
+        }
+
+        g2.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+
+    /** Returns a key for the tile **/
+    private long tileKey(int z, int x, int y) {
+        return ((long) z << 58) | ((long) x << 29) | y;
+    }
+
+
+    /** Parses the zoom level and tile coordinates of a tile file, or returns null if it is not a tile file **/
+    private int[] parseTileFile(Path root, Path file) {
+        Path path = root.relativize(file);
+        String name = file.getFileName().toString();
+        if (path.getNameCount() != 3 || !name.matches("\\d+\\.png")) {
+            return null;
+        }
+        try {
+            return new int[] {
+                    Integer.parseInt(path.getName(0).toString()),
+                    Integer.parseInt(path.getName(1).toString()),
+                    Integer.parseInt(name.substring(0, name.length() - 4))
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Ensures that parent directories are created
+     * @param file the file whose parent directories will be created
+     */
+    private void checkCreateParentDirs(Path file) throws IOException {
+        if (!Files.exists(file.getParent())) {
+            Files.createDirectories(file.getParent());
+        }
+    }
+}
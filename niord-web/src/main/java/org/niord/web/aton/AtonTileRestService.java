@@ -16,35 +16,35 @@
 package org.niord.web.aton;
 
 import org.apache.commons.io.IOUtils;
-import org.niord.core.aton.AtonSearchParams;
-import org.niord.core.aton.AtonService;
-import org.niord.core.repo.RepositoryService;
-import org.niord.core.util.GlobalMercator;
-import org.niord.core.util.GraphicsUtils;
+import org.niord.core.aton.AtonPositionIndex;
+import org.niord.core.aton.AtonPositionIndexService;
 import org.slf4j.Logger;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.awt.*;
-import java.awt.geom.Ellipse2D;
-import java.awt.image.BufferedImage;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
- * Feeds AtoN data as bitmaps.
+ * Feeds AtoN data as bitmaps or Mapbox Vector Tiles.
  * Can be used for servicing an OpenStreetMap Layer in Openlayers.
- * The layer should be configured to have the url "/rest/aton-tiles/${z}/${x}/${y}.png"
+ * The layer should be configured to have the url "/rest/aton-tiles/${z}/${x}/${y}.png",
+ * or "/rest/aton-tiles/${z}/${x}/${y}.mvt" for vector tiles.
+ * <p>
+ * The PNG tiles are streamed as static files from the tile pyramid maintained by {@code AtonTilePyramidService}.
+ * The vector tiles are computed from the in-memory AtoN position index, rather than by querying the database.
  * <p>
  * The handling of blank tiles in particular is un-optimal. This is due to problems getting the service
  * to work with Microsoft IE and Edge:
@@ -58,22 +58,18 @@ import java.util.Date;
 @javax.ws.rs.Path("/aton-tiles")
 public class AtonTileRestService {
 
-    static final int        TILE_SIZE           = 256;
-    static final int        TILE_TTL_HOURS      = 24; // A tile file is refreshed every 24 hours...
-    static final String     TILE_REPO_FOLDER    = "aton_tiles";
-    static final Color      ATON_COLOR          = new Color(200, 0, 0);
+    static final String     VECTOR_TILE_LAYER   = "atons";
+    static final int        TILE_MAX_AGE        = 10 * 60; // Tiles are re-validated after 10 minutes
+    static final EntityTag  BLANK_TILE_ETAG     = new EntityTag("blank_256");
 
     @Inject
     Logger log;
 
     @Inject
-    AtonService atonService;
-
-    @Inject
-    AtonBlankTileCache blankTileCache;
+    AtonPositionIndexService atonPositionIndexService;
 
     @Inject
-    RepositoryService repositoryService;
+    AtonTilePyramidService atonTilePyramidService;
 
     /**
      * Streams the given tile
@@ -84,68 +80,25 @@ public class AtonTileRestService {
                                   @Context Request request) throws IOException {
 
         try {
-            // Next, check if the tile exists in the repository
-            Path file = repositoryService.getRepoRoot()
-                    .resolve(TILE_REPO_FOLDER)
-                    .resolve(String.valueOf(z))
-                    .resolve(String.valueOf(x))
-                    .resolve(String.valueOf(y) + ".png");
-
-            long ttlMs = 1000L * 60L * 60L * TILE_TTL_HOURS;
-            Date expirationDate = new Date(System.currentTimeMillis() + ttlMs);
-
-            // Check if the tile is a known blank tile
-            if (blankTileCache.getCache().containsKey(file.toString())) {
-                return streamBlankTile(expirationDate);
-
-            } else if (Files.exists(file) &&
-                    System.currentTimeMillis() < Files.getLastModifiedTime(file).toMillis() + ttlMs) {
-                // The tile exists and is not expired
-
-                // Check for an ETag match
-                EntityTag etag = entityTagForFile(file);
-                Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
-                if (responseBuilder != null) {
-                    // Etag match
-                    log.trace("File unchanged. Return code 304");
-                    return responseBuilder
-                            .expires(expirationDate)
-                            .build();
-                } else {
-                    log.trace("Return existing tile " + file);
-                    return streamTile(file, expirationDate, etag);
-                }
-            }
-
-
-            // Search all messages in the bounds of the tile
-            long t0 = System.currentTimeMillis();
-            GlobalMercator mercator = new GlobalMercator();
-            double[] bounds = mercator.TileLatLonBounds(x, y, z);
-
-            // Convert to mapExtents search parameters
-            AtonSearchParams param = new AtonSearchParams()
-                .extent(-bounds[2], bounds[1], -bounds[0], bounds[3]);
-
-            // Compute the atons of the tile extent
-            java.util.List<double[]> atonLonLast = atonService.searchPositions(param);
-
-            // If the search result is empty, return blank and cache the result
-            if (atonLonLast.isEmpty()) {
-                blankTileCache.getCache().put(file.toString(), file.toString());
-                return streamBlankTile(expirationDate);
+            // Look up the tile in the tile pyramid
+            Path file = atonTilePyramidService.getTile(z, x, y);
+
+            // Check for an ETag match
+            EntityTag etag = file != null ? entityTagForFile(file) : BLANK_TILE_ETAG;
+            Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
+            if (responseBuilder != null) {
+                // Etag match
+                log.trace("File unchanged. Return code 304");
+                return responseBuilder
+                        .cacheControl(tileCacheControl())
+                        .build();
+            } else if (file == null) {
+                return streamBlankTile();
+            } else {
+                log.trace("Return existing tile " + file);
+                return streamTile(file, etag);
             }
 
-            // Generate an image
-            BufferedImage image = generateAtonTile(z, bounds, mercator, atonLonLast);
-
-            // Write the image to the repository
-            checkCreateParentDirs(file);
-            ImageIO.write(image, "png", file.toFile());
-            log.debug("Generated " + file + " in " + (System.currentTimeMillis() - t0) + " ms");
-
-            return streamTile(file, expirationDate, null);
-
         } catch (Exception e) {
             log.error(String.format("Error generating tile z=%d, x=%d, y=%d. Error=%s", z, x, y, e));
             return Response
@@ -158,35 +111,54 @@ public class AtonTileRestService {
 
 
     /**
-     * Generates an AtoN tile
-     * @param z the zoom level
-     * @param bounds the tile bounds
-     * @param mercator the mercator calculator
-     * @param atonLonLats the aton positions
-     * @return the resulting image
+     * Streams the given tile as a Mapbox Vector Tile, with the seamark type of the AtoNs as attribute
      */
-    private BufferedImage generateAtonTile(int z, double[] bounds, GlobalMercator mercator, java.util.List<double[]> atonLonLats) {
+    @GET
+    @javax.ws.rs.Path("/{z}/{x}/{y}.mvt")
+    public Response streamVectorTile(@PathParam("z") int z, @PathParam("x") int x, @PathParam("y") int y,
+                                     @Context Request request) {
+
+        AtonPositionIndex index = atonPositionIndexService.getIndex();
 
-        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = image.createGraphics();
-        GraphicsUtils.antialias(g2);
+        CacheControl cacheControl = tileCacheControl();
 
-        int xy0[] =  mercator.LatLonToPixels(-bounds[0], bounds[1], z);
+        // The tile content only changes with the index, so use the index checksum as E-Tag
+        EntityTag etag = new EntityTag(Long.toHexString(index.getChecksum()));
+        Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
+        if (responseBuilder != null) {
+            return responseBuilder
+                    .cacheControl(cacheControl)
+                    .build();
+        }
 
-        atonLonLats.stream().forEach(lonLat -> {
+        int[] range = index.tileRange(z, x, y);
+        VectorTileEncoder encoder = new VectorTileEncoder(VECTOR_TILE_LAYER, VectorTileEncoder.DEFAULT_EXTENT);
+
+        // Only include one AtoN of each type per tile coordinate
+        Set<String> added = new HashSet<>();
+        for (int i = range[0]; i < range[1]; i++) {
+            double[] pixel = index.tilePixel(i, z, x, y, VectorTileEncoder.DEFAULT_EXTENT);
+            int px = (int) pixel[0];
+            int py = (int) pixel[1];
+            String type = index.getType(i);
+            if (added.add(px + "_" + py + "_" + type)) {
+                encoder.addPoint(index.getId(i), px, py, Collections.singletonMap("type", type));
+            }
+        }
 
-            int xy[] = mercator.LatLonToPixels(lonLat[1], lonLat[0], z);
-            double px = xy[0] - xy0[0];
-            double py = -(xy[1] - xy0[1]);
-            double radius = (z < 6) ? 0.5 : 1.0;
+        return Response
+                .ok(encoder.encode(), VectorTileEncoder.CONTENT_TYPE)
+                .cacheControl(cacheControl)
+                .tag(etag)
+                .build();
+    }
 
-            Shape theCircle = new Ellipse2D.Double(px - radius, py - radius, 2.0 * radius, 2.0 * radius);
-            g2.setColor(ATON_COLOR);
-            g2.fill(theCircle);
-        });
 
-        g2.dispose();
-        return image;
+    /** Returns the cache control used for tiles **/
+    private CacheControl tileCacheControl() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(TILE_MAX_AGE);
+        return cacheControl;
     }
 
     /**
@@ -202,29 +174,23 @@ public class AtonTileRestService {
     /**
      * Streams a tile
      * @param file the tile to stream
-     * @param expirationDate the expiration date of the returned tile
-     * @param etag the E-Tag. May be null.
+     * @param etag the E-Tag
      * @return the response
      */
-    private Response streamTile(Path file, Date expirationDate, EntityTag etag) throws IOException {
-        if (etag == null) {
-            etag = entityTagForFile(file);
-        }
+    private Response streamTile(Path file, EntityTag etag) throws IOException {
         return Response
                 .ok(file.toFile(), "image/png")
-                .expires(expirationDate)
+                .cacheControl(tileCacheControl())
                 .tag(etag)
                 .build();
     }
 
     /**
      * Streams a blank tile
-     * @param expirationDate the expiration date of the returned tile
      * @return the response
      */
-    private Response streamBlankTile(Date expirationDate) throws IOException {
-        Path file = repositoryService.getRepoRoot()
-                .resolve(TILE_REPO_FOLDER)
+    private Response streamBlankTile() throws IOException {
+        Path file = atonTilePyramidService.getTileRoot()
                 .resolve("blank_256.png");
 
         // Make sure the blank file is present in the repository
@@ -238,7 +204,8 @@ public class AtonTileRestService {
         log.trace("Streaming blank file: " + file);
         return Response
                 .ok(file.toFile(), "image/png")
-                .expires(expirationDate)
+                .cacheControl(tileCacheControl())
+                .tag(BLANK_TILE_ETAG)
                 .build();
     }
 
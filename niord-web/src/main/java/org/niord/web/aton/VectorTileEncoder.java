@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.aton;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal encoder of Mapbox Vector Tiles (version 2) containing a single layer of point features.
+ * <p>
+ * The protocol buffer wire format is written directly, as the point layers served by Niord only
+ * use a small subset of the specification.
+ * See https://github.com/mapbox/vector-tile-spec/tree/master/2.1
+ */
+public class VectorTileEncoder {
+
+    public static final String CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
+    public static final int DEFAULT_EXTENT = 4096;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private static final int GEOM_TYPE_POINT = 1;
+    private static final int CMD_MOVE_TO = 1;
+
+    final String layerName;
+    final int extent;
+    final Map<String, Integer> keys = new LinkedHashMap<>();
+    final Map<String, Integer> values = new LinkedHashMap<>();
+    final List<byte[]> features = new ArrayList<>();
+
+
+    /**
+     * Constructor
+     *
+     * @param layerName the name of the layer
+     * @param extent the extent of the tile coordinate system
+     */
+    public VectorTileEncoder(String layerName, int extent) {
+        this.layerName = layerName;
+        this.extent = extent;
+    }
+
+
+    /**
+     * Adds a point feature to the layer
+     *
+     * @param id the ID of the feature
+     * @param x the x coordinate in the tile coordinate system
+     * @param y the y coordinate in the tile coordinate system
+     * @param attributes the string attributes of the feature. Null values are skipped
+     * @return this encoder
+     */
+    public VectorTileEncoder addPoint(long id, int x, int y, Map<String, String> attributes) {
+        ByteArrayOutputStream tags = new ByteArrayOutputStream();
+        attributes.forEach((k, v) -> {
+            if (v != null) {
+                writeVarint(tags, keys.computeIfAbsent(k, key -> keys.size()));
+                writeVarint(tags, values.computeIfAbsent(v, val -> values.size()));
+            }
+        });
+
+        ByteArrayOutputStream geometry = new ByteArrayOutputStream();
+        writeVarint(geometry, (1 << 3) | CMD_MOVE_TO);
+        writeVarint(geometry, zigZag(x));
+        writeVarint(geometry, zigZag(y));
+
+        ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        writeTag(feature, 1, WIRE_VARINT);
+        writeVarint(feature, id);
+        writeBytes(feature, 2, tags.toByteArray());
+        writeTag(feature, 3, WIRE_VARINT);
+        writeVarint(feature, GEOM_TYPE_POINT);
+        writeBytes(feature, 4, geometry.toByteArray());
+
+        features.add(feature.toByteArray());
+        return this;
+    }
+
+
+    /**
+     * Encodes the vector tile
+     * @return the encoded vector tile
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream layer = new ByteArrayOutputStream();
+        writeTag(layer, 15, WIRE_VARINT);
+        writeVarint(layer, 2);
+        writeBytes(layer, 1, layerName.getBytes(StandardCharsets.UTF_8));
+        features.forEach(f -> writeBytes(layer, 2, f));
+        keys.keySet().forEach(k -> writeBytes(layer, 3, k.getBytes(StandardCharsets.UTF_8)));
+        values.keySet().forEach(v -> {
+            ByteArrayOutputStream value = new ByteArrayOutputStream();
+            writeBytes(value, 1, v.getBytes(StandardCharsets.UTF_8));
+            writeBytes(layer, 4, value.toByteArray());
+        });
+        writeTag(layer, 5, WIRE_VARINT);
+        writeVarint(layer, extent);
+
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        writeBytes(tile, 3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+
+    /** Returns the number of features added to the layer **/
+    public int getFeatureCount() {
+        return features.size();
+    }
+
+
+    /** Writes a field tag **/
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, (field << 3) | wireType);
+    }
+
+
+    /** Writes a length-delimited field **/
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] data) {
+        writeTag(out, field, WIRE_LENGTH_DELIMITED);
+        writeVarint(out, data.length);
+        out.write(data, 0, data.length);
+    }
+
+
+    /** Writes an unsigned varint **/
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+
+    /** ZigZag-encodes a signed integer **/
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+}
@@ -17,21 +17,19 @@ package org.niord.web.wms;
 
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.WebUtils;
+import org.niord.web.wms.WmsTileCache.WmsTile;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.URL;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static org.niord.core.settings.Setting.Type.Boolean;
@@ -40,22 +38,21 @@ import static org.niord.core.settings.Setting.Type.Password;
 /**
  * Proxy WMS data
  *
- * This servlet will mask out a couple of colours that makes the current Danish WMS service unusable...
+ * The tiles returned by the upstream WMS are streamed as-is, and cached by the {@linkplain WmsTileService}.
  *
  * Define the settings for the "wmsLogin", "wmsPassword", etc. in the "${niord.home}/niord.json" settings file.
  */
 @WebServlet(value = "/wms/*")
 public class WmsProxyServlet extends HttpServlet {
 
-    // The color we want transparent
-    final static Color[]    MASKED_COLORS   = { Color.WHITE, new Color(221, 241, 239) };
-    final static int        COLOR_DIST      = 20;
-    final static int        CACHE_TIMEOUT   =  24 * 60 * 60; // 24 hours
     static final String     BLANK_IMAGE     = "/img/blank.png";
 
     @Inject
     Logger log;
 
+    @Inject
+    WmsTileService wmsTileService;
+
     @Inject
     @Setting(value="wmsProvider", description="The WMS provider")
     String wmsProvider;
@@ -102,96 +99,62 @@ public class WmsProxyServlet extends HttpServlet {
             return;
         }
 
-        // Cache for a day
-        WebUtils.cache(response, CACHE_TIMEOUT);
-
         // Check that the WMS provider has been defined using system properties
         if (StringUtils.isBlank(wmsServiceName) || StringUtils.isBlank(wmsProvider) ||
                 StringUtils.isBlank(wmsLogin) || StringUtils.isBlank(wmsPassword)) {
+            WebUtils.cache(response, WmsTileService.CACHE_TIMEOUT);
             response.sendRedirect(BLANK_IMAGE);
             return;
         }
 
+        // Normalize the request, so that equivalent requests share the same cached tile.
+        // WMS parameter names are case-insensitive
         @SuppressWarnings("unchecked")
         Map<String, String[]> paramMap = request.getParameterMap();
-        String params = paramMap
-                .entrySet()
-                .stream()
+        Map<String, String> params = new TreeMap<>();
+        paramMap.entrySet().stream()
+                .filter(p -> p.getValue().length > 0)
                 .filter(p -> StringUtils.isBlank(wmsLayers) || !"layers".equalsIgnoreCase(p.getKey()))
-                .map(p -> String.format("%s=%s", p.getKey(), p.getValue()[0]))
-                .collect(Collectors.joining("&"));
-        params += String.format("&SERVICENAME=%s&LOGIN=%s&PASSWORD=%s", wmsServiceName, wmsLogin, wmsPassword);
+                .forEach(p -> params.put(p.getKey().toUpperCase(), p.getValue()[0]));
         if (StringUtils.isNotBlank(wmsLayers)) {
-            params += String.format("&LAYERS=%s", wmsLayers);
+            params.put("LAYERS", wmsLayers);
         }
+        String query = params.entrySet().stream()
+                .map(p -> String.format("%s=%s", p.getKey(), p.getValue()))
+                .collect(Collectors.joining("&"));
 
-        String url = wmsProvider + "?" + params;
-        log.trace("Loading image " + url);
+        String key = WmsTileService.tileKey(wmsProvider + "?" + query);
+        String url = wmsProvider + "?" + query
+                + String.format("&SERVICENAME=%s&LOGIN=%s&PASSWORD=%s", wmsServiceName, wmsLogin, wmsPassword);
 
-        try {
-            BufferedImage image = ImageIO.read(new URL(url));
-            if (image != null) {
-                //image = transformWhiteToTransparent(image);
-
-                OutputStream out = response.getOutputStream();
-                ImageIO.write(image, "png", out);
-                image.flush();
-                out.close();
+        // Cache for a day
+        WebUtils.cache(response, WmsTileService.CACHE_TIMEOUT);
+
+        log.trace("Loading image " + key);
+        WmsTile tile = wmsTileService.getTile(key, url, params.get("FORMAT"));
+
+        if (tile != null) {
+            // The ETag is derived from the tile data, so it changes if the upstream tile is changed once
+            // the cached tile has expired. If the client already has the current tile, return 304
+            response.setHeader("ETag", tile.getETag());
+            if (tile.getETag().equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
                 return;
             }
-        } catch (Exception e) {
-            log.trace("Failed loading WMS image for URL " + url + ": " + e);
+
+            response.setContentType(tile.getContentType());
+            response.setContentLength(tile.getData().length);
+            try (OutputStream out = response.getOutputStream()) {
+                out.write(tile.getData());
+            }
+            return;
         }
 
         // Fall back to return a blank image
         try {
             response.sendRedirect(BLANK_IMAGE);
         } catch (Exception e) {
-            log.trace("Failed returning blank image for URL " + url + ": " + e);
-        }
-    }
-
-
-    /**
-     * Masks out white colour
-     * @param image the image to mask out
-     * @return the resulting image
-     */
-    @SuppressWarnings("unused")
-    private BufferedImage transformWhiteToTransparent(BufferedImage image) {
-
-        BufferedImage dest = image;
-        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
-            dest = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = dest.createGraphics();
-            g2.drawImage(image, 0, 0, null);
-            g2.dispose();
-
-            image.flush();
-        }
-
-        // Mask out the white pixels
-        final int width = image.getWidth();
-        int[] imgData = new int[width];
-
-        for (int y = 0; y < dest.getHeight(); y++) {
-            // fetch a line of data from each image
-            dest.getRGB(0, y, width, 1, imgData, 0, 1);
-            // apply the mask
-            for (int x = 0; x < width; x++) {
-                for (Color col : MASKED_COLORS) {
-                    int colDist
-                            = Math.abs(col.getRed() - (imgData[x] >> 16 & 0x000000FF))
-                            + Math.abs(col.getGreen() - (imgData[x] >> 8 & 0x000000FF))
-                            + Math.abs(col.getBlue() - (imgData[x] & 0x000000FF));
-                    if (colDist <= COLOR_DIST) {
-                        imgData[x] = 0x00FFFFFF & imgData[x];
-                    }
-                }
-            }
-            // replace the data
-            dest.setRGB(0, y, width, 1, imgData, 0, 1);
+            log.trace("Failed returning blank image for tile " + key + ": " + e);
         }
-        return dest;
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.wms;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.eviction.EvictionType;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.cache.BaseCache;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Provides an in-memory LRU cache of the WMS tiles fetched by the WMS proxy.
+ * <p>
+ * Tiles are keyed by a hash of the normalized upstream WMS request, and expire
+ * when they have been cached for {@code WmsTileService.CACHE_TIMEOUT} seconds.
+ */
+@ApplicationScoped
+public class WmsTileCache extends BaseCache<String, WmsTileCache.WmsTile> {
+
+    final static long MAX_ENTRIES = 2000;               // at most 2.000 tiles
+
+    final static String CACHE_ID = "wmsTileCache";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .eviction().type(EvictionType.COUNT).size(MAX_ENTRIES).strategy(EvictionStrategy.LRU)
+                .expiration().lifespan(WmsTileService.CACHE_TIMEOUT * 1000L)
+                .build();
+    }
+
+
+    /**
+     * An encoded WMS tile, as returned by the upstream WMS service
+     */
+    public static class WmsTile implements Serializable {
+
+        final String key;
+        final String contentType;
+        final byte[] data;
+        final long created;
+        final String etag;
+
+        /** Constructor **/
+        public WmsTile(String key, String contentType, byte[] data, long created) {
+            this.key = key;
+            this.contentType = contentType;
+            this.data = data;
+            this.created = created;
+            this.etag = "\"" + contentHash(data) + "\"";
+        }
+
+        /** Returns a hex-encoded MD5 hash of the tile data **/
+        private static String contentHash(byte[] data) {
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+                StringBuilder hash = new StringBuilder(2 * digest.length);
+                for (byte b : digest) {
+                    hash.append(String.format("%02x", b & 0xff));
+                }
+                return hash.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5 not supported", e);
+            }
+        }
+
+        /**
+         * Returns the number of milliseconds until the tile expires
+         * @return the number of milliseconds until the tile expires
+         */
+        public long getRemainingLifespan() {
+            return created + WmsTileService.CACHE_TIMEOUT * 1000L - System.currentTimeMillis();
+        }
+
+        /*************************/
+        /** Getters and Setters **/
+        /*************************/
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        /** Returns the HTTP entity tag of the tile, derived from the tile data **/
+        public String getETag() {
+            return etag;
+        }
+    }
+}
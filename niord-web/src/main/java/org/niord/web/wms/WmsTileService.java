@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.wms;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.settings.annotation.Setting;
+import org.niord.web.wms.WmsTileCache.WmsTile;
+import org.slf4j.Logger;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loads and caches the tiles of the upstream WMS service proxied by {@linkplain WmsProxyServlet}.
+ * <p>
+ * The tile bytes returned by the upstream WMS are passed on as-is, i.e. without being decoded and re-encoded,
+ * and are cached in memory and in the WMS tile folder for {@code CACHE_TIMEOUT} seconds.
+ * Concurrent requests for the same uncached tile are coalesced into a single upstream request.
+ * Expired tile files are deleted from the WMS tile folder every hour.
+ */
+@Singleton
+@Lock(LockType.READ)
+@SuppressWarnings("unused")
+public class WmsTileService {
+
+    final static int CACHE_TIMEOUT      = 24 * 60 * 60; // 24 hours
+    final static int CONNECT_TIMEOUT    = 10 * 1000;    // 10 seconds
+    final static int READ_TIMEOUT       = 30 * 1000;    // 30 seconds
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @Setting(value="wmsTileCachePath", defaultValue="${niord.home}/wms-tiles",
+            description="The directory used for caching WMS tiles")
+    Path tileRoot;
+
+    @Inject
+    WmsTileCache tileCache;
+
+    // The upstream requests currently in progress
+    final Map<String, CompletableFuture<WmsTile>> pendingTiles = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns the cache key of the given normalized upstream WMS request,
+     * i.e. a request with sorted parameters, but without credentials.
+     *
+     * @param request the normalized upstream WMS request
+     * @return the cache key
+     */
+    public static String tileKey(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(request.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+
+    /**
+     * Returns the WMS tile with the given key. If the tile is not cached, it is loaded from the given upstream URL.
+     * Returns null if the tile could not be loaded.
+     *
+     * @param key the tile key
+     * @param url the upstream URL of the tile
+     * @param format the requested image format, e.g. "image/png"
+     * @return the WMS tile, or null if not found
+     */
+    public WmsTile getTile(String key, String url, String format) {
+
+        WmsTile tile = tileCache.getCache().get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        // Check if another thread is already loading the tile
+        CompletableFuture<WmsTile> result = new CompletableFuture<>();
+        CompletableFuture<WmsTile> pending = pendingTiles.putIfAbsent(key, result);
+        if (pending != null) {
+            try {
+                return pending.get(CONNECT_TIMEOUT + READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.trace("Failed waiting for WMS tile " + key + ": " + e);
+                return null;
+            }
+        }
+
+        try {
+            // The tile may have been cached since the first check
+            tile = tileCache.getCache().get(key);
+            if (tile == null) {
+                tile = loadTile(key, url, format);
+            }
+            return tile;
+        } finally {
+            result.complete(tile);
+            pendingTiles.remove(key, result);
+        }
+    }
+
+
+    /**
+     * Loads the tile with the given key from the WMS tile folder or the upstream WMS,
+     * and caches it in memory.
+     *
+     * @param key the tile key
+     * @param url the upstream URL of the tile
+     * @param format the requested image format
+     * @return the WMS tile, or null if not found
+     */
+    private WmsTile loadTile(String key, String url, String format) {
+        Path file = getTileFile(key, format);
+
+        WmsTile tile = readTileFile(key, file, format);
+        if (tile == null) {
+            tile = fetchTile(key, url);
+            if (tile != null && file != null && file.equals(getTileFile(key, tile.getContentType()))) {
+                writeTileFile(file, tile);
+            }
+        }
+
+        if (tile != null && tile.getRemainingLifespan() > 0) {
+            tileCache.getCache().put(key, tile, tile.getRemainingLifespan(), TimeUnit.MILLISECONDS);
+        }
+        return tile;
+    }
+
+
+    /**
+     * Fetches the tile from the upstream WMS. Returns null if the WMS does not return an image.
+     *
+     * @param key the tile key
+     * @param url the upstream URL of the tile
+     * @return the WMS tile, or null if not found
+     */
+    private WmsTile fetchTile(String key, String url) {
+        long t0 = System.currentTimeMillis();
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL(url).openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT);
+            con.setReadTimeout(READ_TIMEOUT);
+
+            String contentType = con.getContentType();
+            if (con.getResponseCode() != HttpURLConnection.HTTP_OK || getImageType(contentType) == null) {
+                // Typically, the WMS returns an XML service exception
+                log.trace("Invalid WMS response " + con.getResponseCode() + " of type " + contentType);
+                return null;
+            }
+
+            try (InputStream in = con.getInputStream()) {
+                byte[] data = IOUtils.toByteArray(in);
+                log.trace("Fetched WMS tile " + key + " in " + (System.currentTimeMillis() - t0) + " ms");
+                return new WmsTile(key, contentType, data, System.currentTimeMillis());
+            }
+
+        } catch (Exception e) {
+            log.trace("Failed loading WMS tile " + key + ": " + e);
+            return null;
+        } finally {
+            if (con != null) {
+                con.disconnect();
+            }
+        }
+    }
+
+
+    /**
+     * Reads the tile from the WMS tile folder. Returns null if the tile file does not exist or has expired
+     *
+     * @param key the tile key
+     * @param file the tile file
+     * @param contentType the content type of the tile
+     * @return the WMS tile, or null if not found
+     */
+    private WmsTile readTileFile(String key, Path file, String contentType) {
+        try {
+            if (file != null && Files.isRegularFile(file)) {
+                long created = Files.getLastModifiedTime(file).toMillis();
+                if (created + CACHE_TIMEOUT * 1000L > System.currentTimeMillis()) {
+                    return new WmsTile(key, contentType, Files.readAllBytes(file), created);
+                }
+            }
+        } catch (IOException e) {
+            log.trace("Failed reading WMS tile file " + file + ": " + e);
+        }
+        return null;
+    }
+
+
+    /**
+     * Writes the tile to the WMS tile folder
+     *
+     * @param file the tile file
+     * @param tile the tile
+     */
+    private void writeTileFile(Path file, WmsTile tile) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), tile.getKey(), ".tmp");
+            Files.write(tmp, tile.getData());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed writing WMS tile file " + file + ": " + e);
+        }
+    }
+
+
+    /**
+     * Returns the file of the tile with the given key and content type,
+     * or null if the content type is not an image type
+     *
+     * @param key the tile key
+     * @param contentType the content type of the tile
+     * @return the tile file
+     */
+    Path getTileFile(String key, String contentType) {
+        String imageType = getImageType(contentType);
+        return imageType == null
+                ? null
+                : tileRoot.resolve(key.substring(0, 2)).resolve(key + "." + imageType);
+    }
+
+
+    /**
+     * Returns the image sub-type of the given content type, e.g. "png" for "image/png; mode=8bit",
+     * or null if the content type is not an image type
+     *
+     * @param contentType the content type
+     * @return the image sub-type
+     */
+    static String getImageType(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("image/")) {
+            return null;
+        }
+        String imageType = StringUtils.substringBefore(contentType.substring("image/".length()), ";")
+                .trim()
+                .toLowerCase()
+                .replaceAll("[^a-z0-9]", "");
+        return StringUtils.defaultIfBlank(imageType, null);
+    }
+
+
+    /**
+     * Called every hour to delete expired tile files from the WMS tile folder
+     */
+    @Schedule(persistent = false, second = "47", minute = "13", hour = "*")
+    public void deleteExpiredTiles() {
+        if (!Files.isDirectory(tileRoot)) {
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        long expiryTime = t0 - CACHE_TIMEOUT * 1000L;
+        int[] deleted = { 0 };
+        try (Stream<Path> files = Files.walk(tileRoot)) {
+            files.filter(Files::isRegularFile)
+                    .forEach(f -> {
+                        try {
+                            if (Files.getLastModifiedTime(f).toMillis() <= expiryTime) {
+                                Files.delete(f);
+                                deleted[0]++;
+                            }
+                        } catch (IOException e) {
+                            log.trace("Failed deleting expired WMS tile file " + f + ": " + e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.error("Failed deleting expired WMS tile files", e);
+        }
+        log.info("Deleted " + deleted[0] + " expired WMS tile files in " + (System.currentTimeMillis() - t0) + " ms");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.api;
+
+import org.junit.Test;
+import org.niord.core.area.Area;
+import org.niord.core.message.Message;
+import org.niord.core.message.MessageSeries;
+import org.niord.model.message.MessageVo;
+import org.niord.model.message.Status;
+import org.niord.web.api.ApiMessageSnapshotService.MessageSnapshot;
+import org.niord.web.api.ApiMessageSnapshotService.SnapshotMessage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the incremental update of public message snapshots
+ */
+public class ApiMessageSnapshotServiceTest {
+
+    static final Function<Message, SnapshotMessage> CONVERTER = m -> {
+        MessageVo vo = new MessageVo();
+        vo.setId(m.getUid());
+        vo.setShortId(m.getShortId());
+        return new SnapshotMessage(m, vo);
+    };
+
+    Area dk = area(1, "/1/");
+    Area gl = area(2, "/2/");
+
+    @Test
+    public void testUpdate() {
+        Message m1 = message(1, "DK", dk, 1000);
+        Message m2 = message(2, "DK", dk, 2000);
+        Message m3 = message(3, "DK", dk, 3000);
+        MessageSnapshot snapshot = snapshot(null, m1, m2, m3);
+
+        // Unchanged messages leave the snapshot as is
+        assertSame(snapshot, snapshot.update(Arrays.asList(m1, m2), CONVERTER));
+
+        // Messages of other message series are ignored
+        assertSame(snapshot, snapshot.update(Collections.singletonList(message(4, "GL", dk, 4000)), CONVERTER));
+
+        // Updated messages are replaced in place
+        m2.setShortId("DK-002-17");
+        m2.setUpdated(new Date(2500));
+        MessageSnapshot updated = snapshot.update(Collections.singletonList(m2), CONVERTER);
+        assertNotNull(updated);
+        assertEquals(Arrays.asList(1, 2, 3), ids(updated));
+        assertEquals("DK-002-17", updated.getMessages().get(1).message.getShortId());
+        assertEquals(snapshot.created, updated.created);
+
+        // Withdrawn messages are removed
+        m1.setStatus(Status.CANCELLED);
+        m1.setUpdated(new Date(5000));
+        updated = updated.update(Collections.singletonList(m1), CONVERTER);
+        assertNotNull(updated);
+        assertEquals(Arrays.asList(2, 3), ids(updated));
+
+        // Changes to the sort order requires a re-build
+        m3.setAreaSortOrder(-1);
+        m3.setUpdated(new Date(6000));
+        assertNull(updated.update(Collections.singletonList(m3), CONVERTER));
+
+        // New published messages requires a re-build
+        assertNull(updated.update(Collections.singletonList(message(5, "DK", dk, 7000)), CONVERTER));
+    }
+
+
+    @Test
+    public void testUpdateAreaRestricted() {
+        Message m1 = message(1, "DK", dk, 1000);
+        MessageSnapshot snapshot = snapshot(Collections.singletonList(dk.getLineage()), m1);
+
+        // New messages outside the domain areas are ignored
+        assertSame(snapshot, snapshot.update(Collections.singletonList(message(2, "DK", gl, 2000)), CONVERTER));
+        assertNull(snapshot.update(Collections.singletonList(message(3, "DK", area(3, "/1/3/"), 3000)), CONVERTER));
+
+        // Messages moved outside the domain areas are removed
+        m1.setAreas(Collections.singletonList(gl));
+        m1.setUpdated(new Date(4000));
+        MessageSnapshot updated = snapshot.update(Collections.singletonList(m1), CONVERTER);
+        assertNotNull(updated);
+        assertEquals(Collections.emptyList(), ids(updated));
+    }
+
+
+    private MessageSnapshot snapshot(List<String> areaLineages, Message... messages) {
+        return new MessageSnapshot(
+                new HashSet<>(Collections.singletonList("DK")),
+                areaLineages,
+                null,
+                Arrays.stream(messages).map(CONVERTER).collect(Collectors.toList()));
+    }
+
+
+    private List<Integer> ids(MessageSnapshot snapshot) {
+        return snapshot.getMessages().stream().map(m -> m.id).collect(Collectors.toList());
+    }
+
+
+    private Area area(Integer id, String lineage) {
+        Area area = new Area();
+        area.setId(id);
+        area.setLineage(lineage);
+        return area;
+    }
+
+
+    private Message message(Integer id, String seriesId, Area area, long updated) {
+        MessageSeries series = new MessageSeries();
+        series.setSeriesId(seriesId);
+
+        Message message = new Message();
+        message.setId(id);
+        message.setMessageSeries(series);
+        message.setStatus(Status.PUBLISHED);
+        message.setArea(area);
+        message.getAreas().add(area);
+        message.setUpdated(new Date(updated));
+        return message;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.aton;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests the computation of AtoN icon keys
+ */
+public class AtonIconCacheTest {
+
+    @Test
+    public void testIconKey() {
+        // The order of the tags does not matter
+        Map<String, String> tags1 = new LinkedHashMap<>();
+        tags1.put("seamark:type", "light_minor");
+        tags1.put("seamark:light:colour", "red");
+        Map<String, String> tags2 = new LinkedHashMap<>();
+        tags2.put("seamark:light:colour", "red");
+        tags2.put("seamark:type", "light_minor");
+        assertEquals(key(tags1), key(tags2));
+
+        // Tags containing the key separators must not collide
+        assertNotEquals(key(tags("a", "b|c=d")), key(tags("a", "b", "c", "d")));
+        assertNotEquals(key(tags("a=b", "c")), key(tags("a", "b=c")));
+        assertNotEquals(key(tags("a", "b\\|c=d")), key(tags("a", "b\\", "c", "d")));
+        assertNotEquals(key(tags("a", null)), key(tags("a", "")));
+    }
+
+
+    private String key(Map<String, String> tags) {
+        return AtonIconCache.iconKey("png", 100, 100, 50, 50, 0.2, tags);
+    }
+
+
+    private Map<String, String> tags(String... keyValues) {
+        Map<String, String> tags = new HashMap<>();
+        for (int x = 0; x < keyValues.length; x += 2) {
+            tags.put(keyValues[x], keyValues[x + 1]);
+        }
+        return tags;
+    }
+}
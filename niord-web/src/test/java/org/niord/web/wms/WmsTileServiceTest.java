@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.wms;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.cache.CacheClusterConfig;
+import org.niord.web.wms.WmsTileCache.WmsTile;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the WMS tile service against a local stub WMS
+ */
+public class WmsTileServiceTest {
+
+    static final byte[] TILE = { (byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4 };
+
+    HttpServer wms;
+    AtomicInteger wmsRequests = new AtomicInteger();
+    Path tileRoot;
+    List<WmsTileService> services = new ArrayList<>();
+
+    @Before
+    public void startWms() throws Exception {
+        wms = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        wms.createContext("/wms", exchange -> {
+            wmsRequests.incrementAndGet();
+            boolean error = exchange.getRequestURI().getQuery().contains("ERROR");
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            byte[] data = error ? "<ServiceExceptionReport/>".getBytes() : TILE;
+            exchange.getResponseHeaders().add("Content-Type", error ? "application/vnd.ogc.se_xml" : "image/png");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(data);
+            }
+        });
+        wms.setExecutor(Executors.newCachedThreadPool());
+        wms.start();
+        tileRoot = Files.createTempDirectory("wms-tiles");
+    }
+
+    @After
+    public void stopWms() throws Exception {
+        services.forEach(s -> s.tileCache.destroyCacheContainer());
+        wms.stop(0);
+        FileUtils.deleteDirectory(tileRoot.toFile());
+    }
+
+    /** Creates a new WMS tile service with an empty in-memory cache **/
+    private WmsTileService newService() {
+        WmsTileService service = new WmsTileService();
+        service.log = LoggerFactory.getLogger(WmsTileService.class);
+        service.tileRoot = tileRoot;
+        service.tileCache = new WmsTileCache();
+        service.tileCache.initCacheContainer(CacheClusterConfig.local());
+        services.add(service);
+        return service;
+    }
+
+    private String url(String query) {
+        return "http://127.0.0.1:" + wms.getAddress().getPort() + "/wms?" + query;
+    }
+
+    @Test
+    public void testRequestCoalescing() throws Exception {
+        WmsTileService service = newService();
+        String key = WmsTileService.tileKey("wms?BBOX=1,2,3,4&FORMAT=image/png");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<WmsTile>> tiles = new ArrayList<>();
+            for (int x = 0; x < 8; x++) {
+                tiles.add(executor.submit(() -> service.getTile(key, url("BBOX=1,2,3,4"), "image/png")));
+            }
+            for (Future<WmsTile> tile : tiles) {
+                Assert.assertArrayEquals(TILE, tile.get().getData());
+                Assert.assertEquals("image/png", tile.get().getContentType());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // All concurrent requests should be served by a single upstream request
+        Assert.assertEquals(1, wmsRequests.get());
+
+        // Served from the in-memory cache
+        Assert.assertArrayEquals(TILE, service.getTile(key, url("BBOX=1,2,3,4"), "image/png").getData());
+        Assert.assertEquals(1, wmsRequests.get());
+
+        // Served from the tile folder
+        Assert.assertTrue(Files.isRegularFile(service.getTileFile(key, "image/png")));
+        Assert.assertArrayEquals(TILE, newService().getTile(key, url("BBOX=1,2,3,4"), "image/png").getData());
+        Assert.assertEquals(1, wmsRequests.get());
+    }
+
+    @Test
+    public void testServiceException() throws Exception {
+        WmsTileService service = newService();
+        String key = WmsTileService.tileKey("wms?ERROR");
+
+        // Service exceptions are not cached
+        Assert.assertNull(service.getTile(key, url("ERROR"), "image/png"));
+        Assert.assertNull(service.getTile(key, url("ERROR"), "image/png"));
+        Assert.assertEquals(2, wmsRequests.get());
+        Assert.assertFalse(Files.exists(service.getTileFile(key, "image/png")));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        WmsTileService service = newService();
+        String key = WmsTileService.tileKey("wms?BBOX=5,6,7,8&FORMAT=image/png");
+
+        WmsTile tile = service.getTile(key, url("BBOX=5,6,7,8"), "image/png");
+        Assert.assertEquals(newService().getTile(key, url("BBOX=5,6,7,8"), "image/png").getETag(), tile.getETag());
+        Assert.assertEquals(1, wmsRequests.get());
+
+        // Expired tile files are re-fetched, and purged from the tile folder
+        Path file = service.getTileFile(key, "image/png");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(
+                System.currentTimeMillis() - WmsTileService.CACHE_TIMEOUT * 1000L - 1000L));
+        service.deleteExpiredTiles();
+        Assert.assertFalse(Files.exists(file));
+        Assert.assertArrayEquals(TILE, newService().getTile(key, url("BBOX=5,6,7,8"), "image/png").getData());
+        Assert.assertEquals(2, wmsRequests.get());
+        Assert.assertTrue(Files.isRegularFile(file));
+    }
+
+    @Test
+    public void testImageType() {
+        Assert.assertEquals("png", WmsTileService.getImageType("image/png"));
+        Assert.assertEquals("png", WmsTileService.getImageType("image/PNG; mode=8bit"));
+        Assert.assertEquals("jpeg", WmsTileService.getImageType("image/jpeg"));
+        Assert.assertNull(WmsTileService.getImageType("application/vnd.ogc.se_xml"));
+        Assert.assertNull(WmsTileService.getImageType(null));
+    }
+}